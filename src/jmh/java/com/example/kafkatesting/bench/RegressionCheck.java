@@ -0,0 +1,75 @@
+package com.example.kafkatesting.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against a baseline and exits non-zero when any
+ * benchmark present in both got worse by more than the tolerance. Throughput
+ * modes regress when the score drops; time modes regress when it rises.
+ *
+ * <pre>RegressionCheck &lt;results.json&gt; &lt;baseline.json&gt; [tolerance, default 0.10]</pre>
+ */
+public final class RegressionCheck {
+
+    private RegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args[1].isBlank()) {
+            System.err.println("usage: RegressionCheck <results.json> <baseline.json> [tolerance]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        Map<String, JsonNode> current = load(new File(args[0]));
+        Map<String, JsonNode> baseline = load(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> e : current.entrySet()) {
+            JsonNode base = baseline.get(e.getKey());
+            if (base == null) {
+                System.out.printf("NEW        %-90s %12.3f%n", e.getKey(), score(e.getValue()));
+                continue;
+            }
+            double now = score(e.getValue());
+            double then = score(base);
+            boolean higherIsBetter = "thrpt".equals(e.getValue().path("mode").asText());
+            double change = then == 0 ? 0 : (now - then) / then;
+            double worse = higherIsBetter ? -change : change;
+            boolean regressed = worse > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-10s %-90s %12.3f -> %12.3f %s (%+.1f%%)%n",
+                    regressed ? "REGRESSED" : "ok", e.getKey(), then, now,
+                    e.getValue().path("primaryMetric").path("scoreUnit").asText(), change * 100);
+        }
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    /** benchmark name plus sorted params -> result node. */
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").properties().forEach(p -> params.put(p.getKey(), p.getValue().asText()));
+            params.forEach((k, v) -> key.append(' ').append(k).append('=').append(v));
+            byKey.put(key.toString(), result);
+        }
+        return byKey;
+    }
+}
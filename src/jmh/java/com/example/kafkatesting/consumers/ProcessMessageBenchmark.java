@@ -0,0 +1,57 @@
+package com.example.kafkatesting.consumers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-record "fail" check in ConsumerTwo.processMessage: the current
+ * in-place ASCII scan against the toLowerCase().contains it replaced, which
+ * copied the payload whenever it had an upper-case character, and against
+ * regionMatches(ignoreCase), which allocates nothing but folds case slowly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessMessageBenchmark {
+
+    @Param({
+            "order-42 shipped",
+            "Order-42 Shipped To Customer In Region EU-WEST",
+            "please FAIL this one"
+    })
+    public String payload;
+
+    @Benchmark
+    public boolean toLowerCaseContains() {
+        return payload.toLowerCase().contains("fail");
+    }
+
+    @Benchmark
+    public boolean regionMatchesIgnoreCase() {
+        String p = payload;
+        for (int i = 0, last = p.length() - 4; i <= last; i++) {
+            if (p.regionMatches(true, i, "fail", 0, 4)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean isSimulatedFailure() {
+        return ConsumerTwo.isSimulatedFailure(payload);
+    }
+}
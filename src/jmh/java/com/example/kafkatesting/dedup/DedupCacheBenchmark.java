@@ -0,0 +1,90 @@
+package com.example.kafkatesting.dedup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DedupCache at the default 1M capacity filled with 2M distinct ids (so it is
+ * full and evicting): lookups of present ids, of unknown ids, and the
+ * check-then-add a consumer does per record. Ids are shaped like x-event-id:
+ * a few producer prefixes, each with its own sequence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class DedupCacheBenchmark {
+
+    private static final int CAPACITY = 1_000_000;
+    private static final int MASK = (1 << 20) - 1;
+    private static final int PRODUCERS = 8;
+
+    private DedupCache cache;
+    private long[] prefixes;
+    private long[] presentHigh;
+    private long[] present;
+    private long[] absent;
+    private long next;
+    private int i;
+
+    @Setup
+    public void setup() {
+        cache = new DedupCache(CAPACITY, Duration.ofHours(1));
+        SplittableRandom random = new SplittableRandom(11);
+        prefixes = new long[PRODUCERS];
+        long[] starts = new long[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            prefixes[p] = random.nextLong();
+            starts[p] = random.nextLong();
+        }
+        long[] all = new long[2 * CAPACITY];
+        for (int k = 0; k < all.length; k++) {
+            all[k] = starts[k % PRODUCERS] + k / PRODUCERS;
+            cache.add(prefixes[k % PRODUCERS], all[k]);
+        }
+        presentHigh = new long[MASK + 1];
+        present = new long[MASK + 1];
+        absent = new long[MASK + 1];
+        for (int k = 0; k <= MASK; k++) {
+            int j = all.length - 1 - random.nextInt(CAPACITY / 2);
+            presentHigh[k] = prefixes[j % PRODUCERS];
+            present[k] = all[j];
+            absent[k] = random.nextLong();
+        }
+        next = random.nextLong();
+    }
+
+    @Benchmark
+    public boolean hit() {
+        int k = i++ & MASK;
+        return cache.contains(presentHigh[k], present[k]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        int k = i++ & MASK;
+        return cache.contains(prefixes[k % PRODUCERS], absent[k]);
+    }
+
+    @Benchmark
+    public boolean checkThenAddNew() {
+        long id = next++;
+        boolean duplicate = cache.contains(prefixes[0], id);
+        if (!duplicate) cache.add(prefixes[0], id);
+        return duplicate;
+    }
+}
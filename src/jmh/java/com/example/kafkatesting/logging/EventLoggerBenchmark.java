@@ -0,0 +1,82 @@
+package com.example.kafkatesting.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The logging ConsumerTwo's record listener does per healthy record: the
+ * printf pair it used before EventLogger against the received/processed
+ * events at their default 1-in-100 sampling. Both write formatted lines to a
+ * null stream, so console speed is left out and the difference is what is
+ * formatted and written at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventLoggerBenchmark {
+
+    private final String key = "key-1";
+    private final String payload = "payload-ok";
+
+    private PrintStream out;
+    private EventLogger events;
+    private long count;
+
+    @Setup
+    public void setUp() {
+        out = new PrintStream(OutputStream.nullOutputStream());
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger - %msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> sink = new OutputStreamAppender<>();
+        sink.setContext(context);
+        sink.setEncoder(encoder);
+        sink.setOutputStream(OutputStream.nullOutputStream());
+        sink.start();
+        // the parent of every EventLogger logger, which logback-spring.xml routes to the async appender
+        ch.qos.logback.classic.Logger parent = context.getLogger("events");
+        parent.detachAndStopAllAppenders();
+        parent.setAdditive(false);
+        parent.setLevel(Level.INFO);
+        parent.addAppender(sink);
+
+        events = new EventLogger(new StandardEnvironment());
+    }
+
+    @Benchmark
+    public void printfPerRecord() {
+        out.printf("ConsumerTwo received key=%s payload=%s%n", key, payload);
+        out.printf("ConsumerTwo processed successfully (count=%d) key=%s%n", ++count, key);
+    }
+
+    @Benchmark
+    public void sampledEvents() {
+        events.log(EventType.RECEIVED, "ConsumerTwo received key={} payload={}", key, payload);
+        events.log(EventType.PROCESSED, "ConsumerTwo processed successfully (count={}) key={}", ++count, key);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.kafkatesting.producers;
+
+import com.example.kafkatesting.codec.BinaryEventCodec;
+import com.example.kafkatesting.codec.EventDeserializer;
+import com.example.kafkatesting.codec.EventSerializer;
+import com.example.kafkatesting.codec.JsonEventCodec;
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.events.OrderStatus;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize + deserialize round trip of one OrderEvent's worth of data:
+ * - string: the fields as delimited text through String(De)Serializer, the
+ *   path the services use today (no parsing back into fields)
+ * - stringParsed: the same, plus splitting the text back into an OrderEvent,
+ *   which a consumer of the text needs to get at the fields
+ * - byteArray: the same text as raw bytes, the floor for any serializer
+ * - springJson: spring-kafka's Json(De)Serializer (no type headers)
+ * - jsonCodec / binaryCodec: EventSerializer + EventDeserializer with each
+ *   EventCodec, decoding from a ByteBuffer like the consumer does
+ *
+ * Bytes on the wire per codec are printed at setup. For allocation per
+ * record run with the GC profiler:
+ * gradle jmh -PjmhArgs="PayloadSerialization -prof gc" (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    private static final String TOPIC = "topic-two-events";
+
+    /** Length of the region field, to vary the record size. */
+    @Param({"8", "512"})
+    public int size;
+
+    private final StringSerializer stringSerializer = new StringSerializer();
+    private final StringDeserializer stringDeserializer = new StringDeserializer();
+    private final ByteArraySerializer bytesSerializer = new ByteArraySerializer();
+    private final ByteArrayDeserializer bytesDeserializer = new ByteArrayDeserializer();
+    private final JsonSerializer<OrderEvent> springJsonSerializer = new JsonSerializer<OrderEvent>().noTypeInfo();
+    private final JsonDeserializer<OrderEvent> springJsonDeserializer = new JsonDeserializer<>(OrderEvent.class, false);
+    private final EventSerializer jsonSerializer = new EventSerializer(new JsonEventCodec());
+    private final EventSerializer binarySerializer = new EventSerializer(new BinaryEventCodec());
+    private final EventDeserializer eventDeserializer = new EventDeserializer();
+    private final RecordHeaders headers = new RecordHeaders();
+
+    private String text;
+    private byte[] bytes;
+    private OrderEvent event;
+
+    @Setup
+    public void setUp() {
+        event = new OrderEvent("order-42", OrderStatus.SHIPPED, "r".repeat(size), 12_999, System.currentTimeMillis());
+        text = String.join("|", event.orderId(), event.status().name(), event.region(),
+                Long.toString(event.amountCents()), Long.toString(event.timestamp()));
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+        System.out.printf("%nwire bytes (region=%d): string=%d springJson=%d jsonCodec=%d binaryCodec=%d%n", size,
+                stringSerializer.serialize(TOPIC, text).length,
+                springJsonSerializer.serialize(TOPIC, event).length,
+                jsonSerializer.serialize(TOPIC, event).length,
+                binarySerializer.serialize(TOPIC, event).length);
+    }
+
+    @Benchmark
+    public String string() {
+        return stringDeserializer.deserialize(TOPIC, stringSerializer.serialize(TOPIC, text));
+    }
+
+    @Benchmark
+    public OrderEvent stringParsed() {
+        String s = stringDeserializer.deserialize(TOPIC, stringSerializer.serialize(TOPIC, text));
+        String[] f = s.split("\\|");
+        return new OrderEvent(f[0], OrderStatus.valueOf(f[1]), f[2], Long.parseLong(f[3]), Long.parseLong(f[4]));
+    }
+
+    @Benchmark
+    public byte[] byteArray() {
+        return bytesDeserializer.deserialize(TOPIC, bytesSerializer.serialize(TOPIC, bytes));
+    }
+
+    @Benchmark
+    public OrderEvent springJson() {
+        return springJsonDeserializer.deserialize(TOPIC, springJsonSerializer.serialize(TOPIC, event));
+    }
+
+    @Benchmark
+    public OrderEvent jsonCodec() {
+        return eventDeserializer.deserialize(TOPIC, headers, ByteBuffer.wrap(jsonSerializer.serialize(TOPIC, event)));
+    }
+
+    @Benchmark
+    public OrderEvent binaryCodec() {
+        return eventDeserializer.deserialize(TOPIC, headers, ByteBuffer.wrap(binarySerializer.serialize(TOPIC, event)));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.kafkatesting.producers;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.logging.EventType;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.quota.TenantFlowControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer send + completion callback against an auto-completing MockProducer,
+ * so the numbers are the client-side cost only: the bare template send, the
+ * service's shared sampled-logging callback, and a capturing per-send lambda.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerCallbackBenchmark {
+
+    /** A shared producer like the factory hands out: close is a no-op, history is trimmed. */
+    static final class ReusableMockProducer extends MockProducer<String, String> {
+        ReusableMockProducer() {
+            super(true, new StringSerializer(), new StringSerializer());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(Duration timeout) {
+        }
+    }
+
+    private final ReusableMockProducer producer = new ReusableMockProducer();
+    private KafkaTemplate<String, String> template;
+    private ProducerOneService service;
+    private EventLogger events;
+    private long sends;
+
+    @Setup
+    public void setUp() {
+        template = new KafkaTemplate<>(new MockProducerFactory<>(() -> producer));
+        events = new EventLogger(new StandardEnvironment());
+        KafkaMetrics metrics = new KafkaMetrics(new SimpleMeterRegistry());
+        TenantFlowControl flowControl = new TenantFlowControl(template, metrics, TenantFlowControl.Settings.DISABLED);
+        ClaimCheck claimCheck = new ClaimCheck(null, metrics, 0, 0);
+        BulkSender bulkSender = new BulkSender(template, metrics, claimCheck, flowControl, 1 << 20, true);
+        service = new ProducerOneService(bulkSender, events, claimCheck, flowControl);
+    }
+
+    @Benchmark
+    public CompletableFuture<SendResult<String, String>> templateSendNoCallback() {
+        trim();
+        return template.send("topic-one", "order-42", "order-42 shipped");
+    }
+
+    @Benchmark
+    public CompletableFuture<SendResult<String, String>> serviceSendSharedCallback() {
+        trim();
+        return service.send("order-42", "order-42 shipped");
+    }
+
+    @Benchmark
+    public CompletableFuture<SendResult<String, String>> capturingLambdaCallback() {
+        trim();
+        String key = "order-42";
+        CompletableFuture<SendResult<String, String>> future = template.send("topic-one", key, "order-42 shipped");
+        future.whenComplete((result, ex) -> {
+            if (ex == null) {
+                events.log(EventType.SENT, "Sent message key={} offset={}",
+                        key, result.getRecordMetadata().offset());
+            }
+        });
+        return future;
+    }
+
+    private void trim() {
+        // MockProducer keeps every sent record; drop them before they dominate the heap
+        if ((++sends & 4095) == 0) {
+            producer.clear();
+        }
+    }
+}
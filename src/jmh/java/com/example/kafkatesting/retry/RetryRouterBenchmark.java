@@ -0,0 +1,96 @@
+package com.example.kafkatesting.retry;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header handling on the ConsumerTwo retry path: extractRetryCount (a String and
+ * an Optional per call) and the header rebuild in nextHop. Records carry the
+ * origin headers the producer interceptor stamps, like real traffic does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetryRouterBenchmark {
+
+    private final RetryRouter router = new RetryRouter();
+
+    private ConsumerRecord<String, String> fresh;
+    private ConsumerRecord<String, String> retried;
+
+    @Setup
+    public void setUp() {
+        fresh = record(KafkaTopics.TOPIC_TWO, null);
+        retried = record(KafkaTopics.TOPIC_TWO_RETRY_1S, "1");
+    }
+
+    @Benchmark
+    public Optional<Integer> extractRetryCountAbsent() {
+        return router.extractRetryCount(fresh.headers());
+    }
+
+    @Benchmark
+    public Optional<Integer> extractRetryCountPresent() {
+        return router.extractRetryCount(retried.headers());
+    }
+
+    /** Reference: parse the ASCII digits in place, no String or Optional. */
+    @Benchmark
+    public int parseRetryCountInPlace() {
+        Header header = retried.headers().lastHeader(RetryRouter.RETRY_HEADER);
+        if (header == null) {
+            return 0;
+        }
+        int n = 0;
+        for (byte b : header.value()) {
+            if (b < '0' || b > '9') {
+                return 0;
+            }
+            n = n * 10 + (b - '0');
+        }
+        return n;
+    }
+
+    @Benchmark
+    public ProducerRecord<String, String> nextHopFirstRetry() {
+        return router.nextHop(fresh, fresh.value());
+    }
+
+    @Benchmark
+    public ProducerRecord<String, String> nextHopSecondRetry() {
+        return router.nextHop(retried, retried.value());
+    }
+
+    private static ConsumerRecord<String, String> record(String topic, String retryCount) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(TraceHeaders.ORIGIN_TIMESTAMP, TraceHeaders.encode(System.currentTimeMillis()));
+        headers.add(TraceHeaders.ORIGIN_ID, TraceHeaders.encode(TraceHeaders.nextOriginId()));
+        if (retryCount != null) {
+            headers.add(RetryRouter.RETRY_HEADER, retryCount.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ConsumerRecord<>(topic, 0, 0L, System.currentTimeMillis(), TimestampType.CREATE_TIME,
+                8, 24, "order-42", "please fail this payload", headers, Optional.empty());
+    }
+}
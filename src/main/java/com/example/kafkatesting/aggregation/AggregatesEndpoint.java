@@ -0,0 +1,34 @@
+package com.example.kafkatesting.aggregation;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/aggregates: state of each assigned partition's window store;
+ * /actuator/aggregates/{key}: one key's window aggregates.
+ */
+@Component
+@Endpoint(id = "aggregates")
+public class AggregatesEndpoint {
+
+    private final WindowedAggregator aggregator;
+
+    public AggregatesEndpoint(WindowedAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> status() {
+        return aggregator.status();
+    }
+
+    @ReadOperation
+    public List<WindowAggregate> key(@Selector String key) {
+        return aggregator.aggregates(key);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.kafkatesting.aggregation;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Feeds topic-two to {@link WindowedAggregator} in its own group, one
+ * transaction per poll. Active when app.kafka.aggregation.enabled=true.
+ */
+@Component
+public class AggregationListener {
+
+    public static final String LISTENER_ID = "topic-two-aggregates";
+
+    private final WindowedAggregator aggregator;
+
+    public AggregationListener(WindowedAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = KafkaTopics.TOPIC_TWO, groupId = KafkaTopics.TOPIC_GROUP_TWO_AGGREGATES,
+            containerFactory = "aggregationListenerFactory", autoStartup = "${app.kafka.aggregation.enabled:false}")
+    public void aggregate(List<ConsumerRecord<String, String>> records) {
+        aggregator.process(records);
+    }
+}
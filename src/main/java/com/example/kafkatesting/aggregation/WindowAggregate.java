@@ -0,0 +1,7 @@
+package com.example.kafkatesting.aggregation;
+
+import java.time.Instant;
+
+/** One key's aggregates over one window, as returned by queries. */
+public record WindowAggregate(String window, Instant start, Instant end, long count, long sum, long min, long max) {
+}
@@ -0,0 +1,35 @@
+package com.example.kafkatesting.aggregation;
+
+import java.time.Duration;
+
+/**
+ * Event-time windows of {@code size}, one starting every {@code advance}:
+ * tumbling when the two are equal, hopping (overlapping) when advance is
+ * smaller. Windows are aligned to the epoch.
+ */
+public record WindowSpec(String name, long sizeMillis, long advanceMillis) {
+
+    public WindowSpec {
+        if (advanceMillis <= 0 || sizeMillis < advanceMillis) {
+            throw new IllegalArgumentException("window " + name + ": need 0 < advance <= size");
+        }
+    }
+
+    public static WindowSpec tumbling(String name, Duration size) {
+        return new WindowSpec(name, size.toMillis(), size.toMillis());
+    }
+
+    public static WindowSpec hopping(String name, Duration size, Duration advance) {
+        return new WindowSpec(name, size.toMillis(), advance.toMillis());
+    }
+
+    /** Most windows one timestamp falls into. */
+    public int maxWindowsPerRecord() {
+        return (int) ((sizeMillis + advanceMillis - 1) / advanceMillis);
+    }
+
+    /** Start of the latest window containing {@code timestamp}; earlier ones are {@code advance} apart. */
+    public long lastStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, advanceMillis);
+    }
+}
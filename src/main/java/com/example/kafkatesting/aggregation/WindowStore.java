@@ -0,0 +1,281 @@
+package com.example.kafkatesting.aggregation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Window aggregates (count, sum, min, max) of one input partition, keyed by
+ * primitives: window id, 64-bit key hash and window start.
+ *
+ * Entries live in slot arrays of an open-addressing table with linear probing
+ * (no object per entry): identity at keys[2s], keys[2s+1] and windows[s],
+ * aggregates at values[4s..4s+3], about 41 bytes per slot. The table doubles
+ * above half full. Updated entries are remembered as dirty until
+ * {@link #drainDirty} hands them to the changelog, so a key updated many times
+ * in one batch is written once.
+ *
+ * Not thread-safe: WindowedAggregator updates it from the listener thread and
+ * synchronizes on it for queries and snapshots.
+ */
+final class WindowStore {
+
+    /** Receives one entry: window id, key hash, window start and its aggregates. */
+    @FunctionalInterface
+    interface EntryVisitor {
+        void accept(int window, long keyHash, long start, long count, long sum, long min, long max);
+    }
+
+    private static final byte EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private byte[] windows;
+    private long[] values;
+    private boolean[] dirty;
+    private int[] dirtySlots;
+    private int dirtyCount;
+    private int size;
+    private int mask;
+
+    WindowStore() {
+        this(MIN_CAPACITY);
+    }
+
+    WindowStore(int expectedEntries) {
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedEntries * 2 - 1)) << 1));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int dirtyCount() {
+        return dirtyCount;
+    }
+
+    /** Fold one value into the entry's aggregates (creating it) and mark it dirty. */
+    void add(int window, long keyHash, long start, long value) {
+        int slot = find(window, keyHash, start);
+        if (slot < 0) {
+            slot = insert(~slot, window, keyHash, start, 1, value, value, value);
+        } else {
+            int v = 4 * slot;
+            values[v]++;
+            values[v + 1] += value;
+            values[v + 2] = Math.min(values[v + 2], value);
+            values[v + 3] = Math.max(values[v + 3], value);
+        }
+        markDirty(slot);
+    }
+
+    /** Set an entry's aggregates as they are, without marking it dirty (changelog restore). */
+    void put(int window, long keyHash, long start, long count, long sum, long min, long max) {
+        int slot = find(window, keyHash, start);
+        if (slot < 0) {
+            insert(~slot, window, keyHash, start, count, sum, min, max);
+        } else {
+            setValues(slot, count, sum, min, max);
+        }
+    }
+
+    /** Remove an entry. Only valid while nothing is dirty: removal moves entries between slots. */
+    boolean remove(int window, long keyHash, long start) {
+        if (dirtyCount > 0) throw new IllegalStateException("drain dirty entries before removing");
+        int slot = find(window, keyHash, start);
+        if (slot < 0) return false;
+        delete(slot);
+        return true;
+    }
+
+    /** Visit the entries updated since the last drain, then forget that they were. */
+    void drainDirty(EntryVisitor visitor) {
+        for (int i = 0; i < dirtyCount; i++) {
+            int slot = dirtySlots[i];
+            dirty[slot] = false;
+            visit(slot, visitor);
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Remove every entry whose window started before {@code cutoffs[window]},
+     * visiting each before it goes. Returns the number removed.
+     */
+    int evict(long[] cutoffs, EntryVisitor removed) {
+        if (dirtyCount > 0) throw new IllegalStateException("drain dirty entries before evicting");
+        // collect first: deleting while scanning shifts later entries past the cursor
+        int[] doomed = new int[16];
+        int n = 0;
+        for (int slot = 0; slot < windows.length; slot++) {
+            if (windows[slot] != EMPTY && keys[2 * slot + 1] < cutoffs[windows[slot]]) {
+                if (n == doomed.length) doomed = Arrays.copyOf(doomed, n * 2);
+                doomed[n++] = slot;
+            }
+        }
+        long[] identities = new long[3 * n];
+        for (int i = 0; i < n; i++) {
+            int slot = doomed[i];
+            visit(slot, removed);
+            identities[3 * i] = windows[slot];
+            identities[3 * i + 1] = keys[2 * slot];
+            identities[3 * i + 2] = keys[2 * slot + 1];
+        }
+        for (int i = 0; i < n; i++) {
+            delete(find((int) identities[3 * i], identities[3 * i + 1], identities[3 * i + 2]));
+        }
+        return n;
+    }
+
+    /** Visit every entry of one key, in no particular order. */
+    void forKey(long keyHash, EntryVisitor visitor) {
+        for (int slot = 0; slot < windows.length; slot++) {
+            if (windows[slot] != EMPTY && keys[2 * slot] == keyHash) {
+                visit(slot, visitor);
+            }
+        }
+    }
+
+    void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot < windows.length; slot++) {
+            if (windows[slot] != EMPTY) {
+                visit(slot, visitor);
+            }
+        }
+    }
+
+    /** Entry count, then each entry as window id, key hash, start, count, sum, min, max. */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        for (int slot = 0; slot < windows.length; slot++) {
+            if (windows[slot] != EMPTY) {
+                out.writeByte(windows[slot]);
+                out.writeLong(keys[2 * slot]);
+                out.writeLong(keys[2 * slot + 1]);
+                for (int v = 4 * slot; v < 4 * slot + 4; v++) {
+                    out.writeLong(values[v]);
+                }
+            }
+        }
+    }
+
+    /** Read entries written by {@link #writeTo} into this store. */
+    void readFrom(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) throw new IOException("negative entry count " + n);
+        for (int i = 0; i < n; i++) {
+            int window = in.readByte();
+            long keyHash = in.readLong();
+            long start = in.readLong();
+            put(window, keyHash, start, in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    private void visit(int slot, EntryVisitor visitor) {
+        int v = 4 * slot;
+        visitor.accept(windows[slot], keys[2 * slot], keys[2 * slot + 1],
+                values[v], values[v + 1], values[v + 2], values[v + 3]);
+    }
+
+    // slot of the entry, or ~slot of the empty slot where it would go
+    private int find(int window, long keyHash, long start) {
+        int slot = (int) mix(window, keyHash, start) & mask;
+        while (windows[slot] != EMPTY) {
+            if (keys[2 * slot] == keyHash && keys[2 * slot + 1] == start && windows[slot] == window) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private int insert(int slot, int window, long keyHash, long start, long count, long sum, long min, long max) {
+        if (size + 1 > windows.length >> 1) {
+            grow();
+            slot = ~find(window, keyHash, start);
+        }
+        windows[slot] = (byte) window;
+        keys[2 * slot] = keyHash;
+        keys[2 * slot + 1] = start;
+        setValues(slot, count, sum, min, max);
+        size++;
+        return slot;
+    }
+
+    private void setValues(int slot, long count, long sum, long min, long max) {
+        int v = 4 * slot;
+        values[v] = count;
+        values[v + 1] = sum;
+        values[v + 2] = min;
+        values[v + 3] = max;
+    }
+
+    private void markDirty(int slot) {
+        if (!dirty[slot]) {
+            dirty[slot] = true;
+            if (dirtyCount == dirtySlots.length) dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+            dirtySlots[dirtyCount++] = slot;
+        }
+    }
+
+    // backward-shift deletion: pull later entries of the probe run into the gap
+    private void delete(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (windows[next] != EMPTY) {
+            int home = (int) mix(windows[next], keys[2 * next], keys[2 * next + 1]) & mask;
+            // move next into the gap unless its home lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                windows[gap] = windows[next];
+                keys[2 * gap] = keys[2 * next];
+                keys[2 * gap + 1] = keys[2 * next + 1];
+                System.arraycopy(values, 4 * next, values, 4 * gap, 4);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        windows[gap] = EMPTY;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldWindows = windows;
+        long[] oldValues = values;
+        boolean[] oldDirty = dirty;
+        allocate(oldWindows.length * 2);
+        for (int old = 0; old < oldWindows.length; old++) {
+            if (oldWindows[old] == EMPTY) continue;
+            int v = 4 * old;
+            int slot = insert(~find(oldWindows[old], oldKeys[2 * old], oldKeys[2 * old + 1]), oldWindows[old],
+                    oldKeys[2 * old], oldKeys[2 * old + 1], oldValues[v], oldValues[v + 1], oldValues[v + 2], oldValues[v + 3]);
+            if (oldDirty[old]) {
+                markDirty(slot);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[2 * capacity];
+        windows = new byte[capacity];
+        Arrays.fill(windows, EMPTY);
+        values = new long[4 * capacity];
+        dirty = new boolean[capacity];
+        dirtySlots = new int[Math.max(16, dirtySlots == null ? 0 : dirtySlots.length)];
+        dirtyCount = 0;
+        size = 0;
+        mask = capacity - 1;
+    }
+
+    // murmur3 fmix64 over the combined identity
+    private static long mix(int window, long keyHash, long start) {
+        long h = keyHash ^ (start * 0x9E3779B97F4A7C15L) ^ window;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,456 @@
+package com.example.kafkatesting.aggregation;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-key window aggregates of topic-two: count, sum, min and max of the payload
+ * length, over a tumbling and a hopping window by record timestamp. Each
+ * assigned partition has its own {@link WindowStore}. A claim-checked payload
+ * counts with its real length, taken from its length header.
+ *
+ * Every batch runs in the listener container's Kafka transaction: the entries it
+ * changed are written (absolute values, one record per entry) to the compacted
+ * topic-two-aggregates-changelog together with the input offsets, and expired
+ * windows are deleted there with tombstones. The changelog therefore always
+ * matches the committed input position.
+ *
+ * Each partition's store is checkpointed to app.kafka.aggregation.state-dir
+ * every checkpoint-interval and when the partition is revoked, with the
+ * changelog offset it covers. On assignment the store is rebuilt from that
+ * snapshot plus the changelog tail (or the whole changelog without a
+ * snapshot), never by re-reading topic-two. A rolled-back batch may have
+ * changed the stores already, so they are rebuilt the same way before the
+ * batch is read again.
+ *
+ * Changing the window settings needs a fresh state dir and changelog topic:
+ * entries are identified by window id and start.
+ */
+@Component
+public class WindowedAggregator implements ConsumerAwareRebalanceListener, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WindowedAggregator.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x57414747; // "WAGG"
+    private static final int SNAPSHOT_VERSION = 1;
+    // changelog key: input partition, window id, key hash, window start
+    static final int KEY_BYTES = 4 + 1 + 8 + 8;
+    // changelog value: count, sum, min, max, stream time
+    static final int VALUE_BYTES = 5 * 8;
+
+    private final WindowSpec[] windows;
+    private final long retentionMillis;
+    private final long evictEveryMillis;
+    private final Path stateDir;
+    private final long checkpointIntervalNanos;
+    private final DefaultKafkaConsumerFactory<byte[], byte[]> restoreConsumers;
+    private final DefaultKafkaProducerFactory<byte[], byte[]> producerFactory;
+    private final KafkaTemplate<byte[], byte[]> template;
+    private final KafkaTransactionManager<byte[], byte[]> transactionManager;
+    private final ClaimCheck claimCheck;
+    private final Map<Integer, PartitionState> partitions = new ConcurrentHashMap<>();
+    private final LongAdder aggregated = new LongAdder();
+    private final LongAdder lateDropped = new LongAdder();
+    private volatile int changelogPartitions;
+    private volatile boolean rolledBack;
+
+    public WindowedAggregator(ProducerFactory<String, String> bootProducerFactory,
+                              ConsumerFactory<String, String> bootConsumerFactory,
+                              KafkaMetrics metrics,
+                              ClaimCheck claimCheck,
+                              @Value("${app.kafka.aggregation.tumbling:1m}") Duration tumbling,
+                              @Value("${app.kafka.aggregation.hopping.size:5m}") Duration hoppingSize,
+                              @Value("${app.kafka.aggregation.hopping.advance:1m}") Duration hoppingAdvance,
+                              @Value("${app.kafka.aggregation.retention:1h}") Duration retention,
+                              @Value("${app.kafka.aggregation.state-dir:}") String stateDir,
+                              @Value("${app.kafka.aggregation.checkpoint-interval:30s}") Duration checkpointInterval,
+                              @Value("${app.kafka.aggregation.transaction-id-prefix:aggregation-tx-}") String transactionIdPrefix,
+                              @Value("${app.kafka.consumer.instance-id:${HOSTNAME:local}}") String instanceId) {
+        this.windows = new WindowSpec[] {
+                WindowSpec.tumbling("tumbling", tumbling),
+                WindowSpec.hopping("hopping", hoppingSize, hoppingAdvance)};
+        this.retentionMillis = retention.toMillis();
+        this.evictEveryMillis = Math.min(tumbling.toMillis(), hoppingAdvance.toMillis());
+        this.stateDir = stateDir.isBlank() ? null : Path.of(stateDir);
+        this.checkpointIntervalNanos = checkpointInterval.toNanos();
+        this.claimCheck = claimCheck;
+
+        Map<String, Object> consumerProps = new HashMap<>(bootConsumerFactory.getConfigurationProperties());
+        consumerProps.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        this.restoreConsumers = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new ByteArrayDeserializer(), new ByteArrayDeserializer());
+
+        // no origin headers on changelog records: they are state, not events
+        Map<String, Object> producerProps = new HashMap<>(bootProducerFactory.getConfigurationProperties());
+        producerProps.remove(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG);
+        this.producerFactory = new DefaultKafkaProducerFactory<>(producerProps,
+                new ByteArraySerializer(), new ByteArraySerializer());
+        producerFactory.setTransactionIdPrefix(transactionIdPrefix + instanceId + "-");
+        this.transactionManager = new KafkaTransactionManager<>(producerFactory);
+        this.template = new KafkaTemplate<>(producerFactory);
+
+        metrics.bindAggregation(this::entries, lateDropped);
+    }
+
+    /** Transaction manager for the aggregation listener container. */
+    public KafkaTransactionManager<byte[], byte[]> transactionManager() {
+        return transactionManager;
+    }
+
+    /**
+     * Fold one poll into the stores and write the changed entries to the
+     * changelog; runs inside the container's transaction.
+     */
+    public void process(List<ConsumerRecord<String, String>> records) {
+        if (rolledBack) {
+            rolledBack = false;
+            log.warn("Aggregation batch rolled back, rebuilding {} partition store(s)", partitions.size());
+            partitions.replaceAll((p, s) -> restore(p));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        rolledBack = true;
+                    }
+                }
+            });
+        }
+        // the previous batch is committed, so its changelog offsets are final
+        long now = System.nanoTime();
+        for (PartitionState state : partitions.values()) {
+            if (now - state.lastCheckpoint >= checkpointIntervalNanos) {
+                checkpoint(state);
+            }
+        }
+        for (ConsumerRecord<String, String> record : records) {
+            aggregate(partitions.computeIfAbsent(record.partition(), this::restore), record);
+        }
+        for (PartitionState state : partitions.values()) {
+            flush(state);
+        }
+        aggregated.add(records.size());
+    }
+
+    private void aggregate(PartitionState state, ConsumerRecord<String, String> record) {
+        long ts = record.timestamp();
+        long keyHash = keyHash(record.key());
+        long value = claimCheck.length(record);
+        boolean counted = false;
+        synchronized (state.store) {
+            state.streamTime = Math.max(state.streamTime, ts);
+            for (int w = 0; w < windows.length; w++) {
+                WindowSpec spec = windows[w];
+                // newest window first; once one is past retention, the older ones are too
+                for (long start = spec.lastStart(ts); start > ts - spec.sizeMillis(); start -= spec.advanceMillis()) {
+                    if (start + spec.sizeMillis() + retentionMillis <= state.streamTime) break;
+                    state.store.add(w, keyHash, start, value);
+                    counted = true;
+                }
+            }
+        }
+        if (!counted) {
+            lateDropped.increment();
+        }
+    }
+
+    // changed entries, then tombstones for windows past retention
+    private void flush(PartitionState state) {
+        synchronized (state.store) {
+            long streamTime = state.streamTime;
+            if (streamTime == Long.MIN_VALUE) return;
+            state.store.drainDirty((w, keyHash, start, count, sum, min, max) ->
+                    send(state, w, keyHash, start, value(count, sum, min, max, streamTime)));
+            if (streamTime >= state.nextEviction) {
+                long[] cutoffs = new long[windows.length];
+                for (int w = 0; w < windows.length; w++) {
+                    cutoffs[w] = streamTime - windows[w].sizeMillis() - retentionMillis + 1;
+                }
+                state.store.evict(cutoffs, (w, keyHash, start, count, sum, min, max) ->
+                        send(state, w, keyHash, start, null));
+                state.nextEviction = streamTime + evictEveryMillis;
+            }
+        }
+    }
+
+    private void send(PartitionState state, int window, long keyHash, long start, byte[] value) {
+        byte[] key = ByteBuffer.allocate(KEY_BYTES).putInt(state.partition).put((byte) window)
+                .putLong(keyHash).putLong(start).array();
+        template.send(new ProducerRecord<>(KafkaTopics.TOPIC_TWO_AGGREGATES_CHANGELOG,
+                        state.partition % changelogPartitions, key, value))
+                .whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        state.changelogNext.accumulateAndGet(result.getRecordMetadata().offset() + 1, Math::max);
+                    }
+                });
+    }
+
+    private static byte[] value(long count, long sum, long min, long max, long streamTime) {
+        return ByteBuffer.allocate(VALUE_BYTES).putLong(count).putLong(sum).putLong(min).putLong(max)
+                .putLong(streamTime).array();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> assigned) {
+        for (TopicPartition tp : assigned) {
+            partitions.computeIfAbsent(tp.partition(), this::restore);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        for (TopicPartition tp : revoked) {
+            PartitionState state = partitions.remove(tp.partition());
+            if (state != null && !rolledBack) {
+                checkpoint(state);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+        for (TopicPartition tp : lost) {
+            partitions.remove(tp.partition());
+        }
+    }
+
+    /** Snapshot (if any) plus the committed changelog from the offset it covers. */
+    private PartitionState restore(int partition) {
+        long started = System.nanoTime();
+        PartitionState state = new PartitionState(partition);
+        long from = loadSnapshot(state);
+        int applied = 0;
+        try (Consumer<byte[], byte[]> consumer = restoreConsumers.createConsumer()) {
+            List<PartitionInfo> infos = consumer.partitionsFor(KafkaTopics.TOPIC_TWO_AGGREGATES_CHANGELOG);
+            if (infos == null || infos.isEmpty()) {
+                throw new IllegalStateException(KafkaTopics.TOPIC_TWO_AGGREGATES_CHANGELOG + " does not exist");
+            }
+            changelogPartitions = infos.size();
+            TopicPartition tp = new TopicPartition(KafkaTopics.TOPIC_TWO_AGGREGATES_CHANGELOG, partition % changelogPartitions);
+            consumer.assign(List.of(tp));
+            consumer.seek(tp, from);
+            // read_committed: the end is the last stable offset
+            long end = consumer.endOffsets(List.of(tp)).get(tp);
+            while (consumer.position(tp) < end) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    if (apply(state, record)) {
+                        applied++;
+                    }
+                }
+            }
+            state.changelogNext.set(Math.max(from, end));
+        }
+        state.nextEviction = state.streamTime;
+        log.info("Restored aggregation store of {}-{}: {} entries, {} changelog records from offset {} in {}ms",
+                KafkaTopics.TOPIC_TWO, partition, state.store.size(), applied, from,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return state;
+    }
+
+    private boolean apply(PartitionState state, ConsumerRecord<byte[], byte[]> record) {
+        ByteBuffer key = ByteBuffer.wrap(record.key());
+        if (record.key().length != KEY_BYTES || key.getInt() != state.partition) {
+            return false;
+        }
+        int window = key.get();
+        if (window >= windows.length) {
+            return false;
+        }
+        long keyHash = key.getLong();
+        long start = key.getLong();
+        if (record.value() == null) {
+            state.store.remove(window, keyHash, start);
+        } else {
+            ByteBuffer v = ByteBuffer.wrap(record.value());
+            state.store.put(window, keyHash, start, v.getLong(), v.getLong(), v.getLong(), v.getLong());
+            state.streamTime = Math.max(state.streamTime, v.getLong());
+        }
+        return true;
+    }
+
+    // returns the changelog offset to continue from: 0 without a usable snapshot
+    private long loadSnapshot(PartitionState state) {
+        Path file = snapshotFile(state.partition);
+        if (file == null || !Files.exists(file)) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readInt() != state.partition) {
+                throw new IOException("not an aggregation snapshot of partition " + state.partition);
+            }
+            int count = in.readInt();
+            boolean sameWindows = count == windows.length;
+            for (int w = 0; w < count; w++) {
+                long size = in.readLong();
+                long advance = in.readLong();
+                sameWindows &= w < windows.length && size == windows[w].sizeMillis() && advance == windows[w].advanceMillis();
+            }
+            if (!sameWindows) {
+                log.warn("Ignoring aggregation snapshot {}: written with other window settings", file);
+                return 0;
+            }
+            long offset = in.readLong();
+            state.streamTime = in.readLong();
+            state.store.readFrom(in);
+            return offset;
+        } catch (IOException e) {
+            // the changelog alone rebuilds the same state, just slower
+            log.warn("Ignoring unreadable aggregation snapshot {}", file, e);
+            state.streamTime = Long.MIN_VALUE;
+            state.store = new WindowStore();
+            return 0;
+        }
+    }
+
+    private void checkpoint(PartitionState state) {
+        state.lastCheckpoint = System.nanoTime();
+        Path file = snapshotFile(state.partition);
+        if (file == null) return;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(stateDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(state.partition);
+                out.writeInt(windows.length);
+                for (WindowSpec spec : windows) {
+                    out.writeLong(spec.sizeMillis());
+                    out.writeLong(spec.advanceMillis());
+                }
+                synchronized (state.store) {
+                    out.writeLong(state.changelogNext.get());
+                    out.writeLong(state.streamTime);
+                    state.store.writeTo(out);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to checkpoint aggregation store of partition {} to {}", state.partition, file, e);
+        }
+    }
+
+    private Path snapshotFile(int partition) {
+        return stateDir == null ? null : stateDir.resolve(KafkaTopics.TOPIC_TWO + "-" + partition + ".state");
+    }
+
+    /** The key's aggregates in every window still retained, by window and start. */
+    public List<WindowAggregate> aggregates(String key) {
+        long keyHash = keyHash(key);
+        List<WindowAggregate> result = new ArrayList<>();
+        for (PartitionState state : partitions.values()) {
+            synchronized (state.store) {
+                state.store.forKey(keyHash, (w, hash, start, count, sum, min, max) -> result.add(new WindowAggregate(
+                        windows[w].name(), Instant.ofEpochMilli(start), Instant.ofEpochMilli(start + windows[w].sizeMillis()),
+                        count, sum, min, max)));
+            }
+        }
+        result.sort(Comparator.comparing(WindowAggregate::window).thenComparing(WindowAggregate::start));
+        return result;
+    }
+
+    /** Per partition: entries, stream time and the changelog offset the next checkpoint covers. */
+    public Map<String, Map<String, Object>> status() {
+        Map<String, Map<String, Object>> status = new LinkedHashMap<>();
+        partitions.values().stream().sorted(Comparator.comparingInt(s -> s.partition)).forEach(state -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            synchronized (state.store) {
+                entry.put("entries", state.store.size());
+                entry.put("streamTime", state.streamTime == Long.MIN_VALUE ? null : Instant.ofEpochMilli(state.streamTime));
+            }
+            entry.put("changelogOffset", state.changelogNext.get());
+            status.put(KafkaTopics.TOPIC_TWO + "-" + state.partition, entry);
+        });
+        return status;
+    }
+
+    /** Records folded into the stores; a rolled-back batch counts again when re-read. */
+    public long getAggregatedCount() {
+        return aggregated.sum();
+    }
+
+    private long entries() {
+        long n = 0;
+        for (PartitionState state : partitions.values()) {
+            n += state.store.size();
+        }
+        return n;
+    }
+
+    // FNV-1a over the UTF-16 chars; the store mixes it further
+    static long keyHash(String key) {
+        if (key == null) return 0;
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    @Override
+    public void destroy() {
+        producerFactory.destroy();
+    }
+
+    private static final class PartitionState {
+        final int partition;
+        final AtomicLong changelogNext = new AtomicLong();
+        WindowStore store = new WindowStore();
+        long streamTime = Long.MIN_VALUE;
+        long nextEviction;
+        long lastCheckpoint = System.nanoTime();
+
+        PartitionState(int partition) {
+            this.partition = partition;
+        }
+    }
+}
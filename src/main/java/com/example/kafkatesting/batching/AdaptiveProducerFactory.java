@@ -0,0 +1,275 @@
+package com.example.kafkatesting.batching;
+
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.Uuid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Producer factory behind the shared KafkaTemplate when
+ * app.kafka.producer.adaptive.enabled=true: the Boot producer configs with the
+ * batching settings of one {@link ProducerProfile} at a time, switched by the
+ * {@link ProducerAutoTuner}.
+ *
+ * Each profile in use is a generation: a DefaultKafkaProducerFactory with its
+ * own shared producer. Producers handed out lease their generation until they
+ * are closed (the template closes its producer after every send, BulkSender
+ * after a batch or stream). A switch makes the new generation current at once;
+ * the old one is only closed, flushing what it still holds, after its last
+ * lease is returned, so no send is lost. Records of one key sent just before
+ * and just after a switch can still reach the broker out of order, as with a
+ * producer restart.
+ *
+ * {@link #getConfigurationProperties()} returns the Boot configs without any
+ * profile, so the factories derived from them keep their own batching.
+ * Transactions are not supported.
+ */
+public class AdaptiveProducerFactory<K, V> implements ProducerFactory<K, V>, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveProducerFactory.class);
+
+    private final Map<String, Object> configs;
+    private final Consumer<DefaultKafkaProducerFactory<K, V>> customizer;
+    private final List<ProducerProfile> profiles;
+    private final Queue<Generation<K, V>> retired = new ConcurrentLinkedQueue<>();
+    private volatile Generation<K, V> current;
+
+    /**
+     * @param configs    Boot producer configs, already customized
+     * @param customizer applied to each generation's factory (Boot's producer factory customizers)
+     * @param profiles   ordered from latency to throughput
+     */
+    public AdaptiveProducerFactory(Map<String, Object> configs, Consumer<DefaultKafkaProducerFactory<K, V>> customizer,
+                                   List<ProducerProfile> profiles, ProducerProfile initial) {
+        if (!profiles.contains(initial)) {
+            throw new IllegalArgumentException("initial producer profile " + initial.name() + " is not one of " + profiles);
+        }
+        this.configs = Map.copyOf(configs);
+        this.customizer = customizer;
+        this.profiles = List.copyOf(profiles);
+        this.current = generation(initial);
+    }
+
+    private Generation<K, V> generation(ProducerProfile profile) {
+        Map<String, Object> props = new HashMap<>(configs);
+        props.putAll(profile.configs());
+        DefaultKafkaProducerFactory<K, V> factory = new DefaultKafkaProducerFactory<>(props);
+        customizer.accept(factory);
+        return new Generation<>(profile, factory);
+    }
+
+    @Override
+    public Producer<K, V> createProducer() {
+        while (true) {
+            Generation<K, V> g = current;
+            g.leases.incrementAndGet();
+            // a switch retires the generation before it checks the leases, so either the switch
+            // sees this lease or this sees the generation retired
+            if (!g.retired) {
+                g.used = true;
+                return new LeasedProducer<>(g, g.factory.createProducer());
+            }
+            g.leases.decrementAndGet();
+        }
+    }
+
+    public List<ProducerProfile> getProfiles() {
+        return profiles;
+    }
+
+    public ProducerProfile getProfile() {
+        return current.profile;
+    }
+
+    /**
+     * Make {@code profile} current. The previous generation stops handing out
+     * producers and is closed by {@link #closeRetired()} once its leases drain.
+     */
+    public synchronized void switchTo(ProducerProfile profile) {
+        Generation<K, V> previous = current;
+        if (previous.profile.equals(profile)) {
+            return;
+        }
+        current = generation(profile);
+        previous.retired = true;
+        retired.add(previous);
+    }
+
+    /**
+     * Close the retired generations no producer is leased from any more; a
+     * close flushes the records still buffered. Blocks while flushing, so the
+     * tuner calls it from its own thread.
+     */
+    public void closeRetired() {
+        for (Generation<K, V> g : retired) {
+            if (g.leases.get() == 0 && retired.remove(g)) {
+                g.factory.destroy();
+                log.debug("closed retired producer generation {}", g.profile.name());
+            }
+        }
+    }
+
+    /** Generations switched away from whose producers are still in use. */
+    public int getRetiredCount() {
+        return retired.size();
+    }
+
+    /**
+     * Client metrics of the current generation's producer, or an empty map if
+     * it has not sent anything yet (asking would create it).
+     */
+    public Map<MetricName, ? extends Metric> currentMetrics() {
+        Generation<K, V> g = current;
+        if (!g.used) {
+            return Map.of();
+        }
+        try (Producer<K, V> producer = createProducer()) {
+            return producer.metrics();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getConfigurationProperties() {
+        return configs;
+    }
+
+    @Override
+    public void reset() {
+        current.factory.reset();
+    }
+
+    @Override
+    public Duration getPhysicalCloseTimeout() {
+        return current.factory.getPhysicalCloseTimeout();
+    }
+
+    @Override
+    public void destroy() {
+        List<Generation<K, V>> all = new ArrayList<>(retired);
+        retired.clear();
+        all.add(current);
+        all.forEach(g -> g.factory.destroy());
+    }
+
+    private static final class Generation<K, V> {
+        private final ProducerProfile profile;
+        private final DefaultKafkaProducerFactory<K, V> factory;
+        private final AtomicInteger leases = new AtomicInteger();
+        private volatile boolean retired;
+        private volatile boolean used;
+
+        private Generation(ProducerProfile profile, DefaultKafkaProducerFactory<K, V> factory) {
+            this.profile = profile;
+            this.factory = factory;
+        }
+    }
+
+    /** The generation's shared producer; closing it returns the lease, the producer stays open. */
+    private static final class LeasedProducer<K, V> implements Producer<K, V> {
+        private final Generation<K, V> generation;
+        private final Producer<K, V> delegate;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private LeasedProducer(Generation<K, V> generation, Producer<K, V> delegate) {
+            this.generation = generation;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+            return delegate.send(record);
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+            return delegate.send(record, callback);
+        }
+
+        @Override
+        public void flush() {
+            delegate.flush();
+        }
+
+        @Override
+        public List<PartitionInfo> partitionsFor(String topic) {
+            return delegate.partitionsFor(topic);
+        }
+
+        @Override
+        public Map<MetricName, ? extends Metric> metrics() {
+            return delegate.metrics();
+        }
+
+        @Override
+        public Uuid clientInstanceId(Duration timeout) {
+            return delegate.clientInstanceId(timeout);
+        }
+
+        @Override
+        public void initTransactions() {
+            throw new UnsupportedOperationException("the adaptive producer factory does not support transactions");
+        }
+
+        @Override
+        public void beginTransaction() {
+            throw new UnsupportedOperationException("the adaptive producer factory does not support transactions");
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {
+            throw new UnsupportedOperationException("the adaptive producer factory does not support transactions");
+        }
+
+        @Override
+        public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets, ConsumerGroupMetadata groupMetadata) {
+            throw new UnsupportedOperationException("the adaptive producer factory does not support transactions");
+        }
+
+        @Override
+        public void commitTransaction() {
+            throw new UnsupportedOperationException("the adaptive producer factory does not support transactions");
+        }
+
+        @Override
+        public void abortTransaction() {
+            throw new UnsupportedOperationException("the adaptive producer factory does not support transactions");
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                generation.leases.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void close(Duration timeout) {
+            close();
+        }
+    }
+}
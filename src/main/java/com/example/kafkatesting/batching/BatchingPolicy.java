@@ -0,0 +1,135 @@
+package com.example.kafkatesting.batching;
+
+import java.time.Duration;
+
+/**
+ * Profile decision for the adaptive producer, fed one {@link Sample} per tuner
+ * tick. Profiles are ordered from the most latency-oriented (index 0) to the
+ * most throughput-oriented; the policy moves one step at a time.
+ *
+ * The sender is behind when batches fill up (fill-high) or records wait in the
+ * accumulator well past linger.ms (twice it, and at least a millisecond), i.e.
+ * for a free in-flight request: then larger batches, with fewer requests, cut
+ * latency rather than add to it. Over the
+ * latency SLO (mean or max) the policy steps towards throughput if the sender
+ * is behind and towards latency otherwise, where the shorter linger helps.
+ * Within the SLO it steps towards throughput while the sender is behind and
+ * latency stays under headroom x SLO, and towards latency when the rate drops
+ * under low-rate, where linger only adds delay. A profile left because the
+ * sender fell behind is not stepped back to until the rate is under half of
+ * what it was then, which keeps it from flapping between a profile that is
+ * too slow and one just over the SLO.
+ *
+ * A step needs changeTicks consecutive ticks asking for it, and nothing
+ * changes for cooldownTicks after one, which also lets the new producer's
+ * metrics fill in.
+ */
+public class BatchingPolicy {
+
+    /**
+     * @param latencySlo    bound on the mean send-to-ack time (queue time plus request latency)
+     * @param maxLatencySlo bound on the maximum of the same
+     * @param fillHigh      batch fill ratio (average batch / batch.size) at which batches count as full
+     * @param lowRate       records per second under which the producer counts as idle
+     * @param headroom      share of the SLOs latency must stay under to step towards throughput
+     */
+    public record Settings(Duration latencySlo, Duration maxLatencySlo, double fillHigh, double lowRate,
+                           double headroom, int changeTicks, int cooldownTicks) {
+    }
+
+    /**
+     * One tick's view of the current producer, from its client metrics.
+     *
+     * @param recordsPerSecond record-send-rate
+     * @param fillRatio        batch-size-avg over the profile's batch.size
+     * @param queueMillis      record-queue-time-avg: time in the accumulator, linger included
+     * @param requestMillis    request-latency-avg
+     * @param maxLatencyMillis record-queue-time-max + request-latency-max
+     * @param compressionRate  compression-rate-avg (compressed / uncompressed size)
+     * @param lingerMillis     the profile's linger.ms
+     */
+    public record Sample(double recordsPerSecond, double fillRatio, double queueMillis, double requestMillis,
+                         double maxLatencyMillis, double compressionRate, double lingerMillis) {
+
+        public double latencyMillis() {
+            return queueMillis + requestMillis;
+        }
+    }
+
+    private final Settings settings;
+    // per profile: the send rate at which it was left because the sender fell behind, 0 if it wasn't
+    private double[] behindRate = new double[0];
+    private int upStreak;
+    private int downStreak;
+    private int cooldown;
+
+    public BatchingPolicy(Settings settings) {
+        this.settings = settings;
+    }
+
+    /** The profile index to use next, out of {@code profiles}; {@code current} is the one in use. */
+    public int decide(Sample s, int current, int profiles) {
+        if (behindRate.length != profiles) {
+            behindRate = new double[profiles];
+        }
+        int step = step(s, current, profiles);
+        if (cooldown > 0) {
+            cooldown--;
+            upStreak = 0;
+            downStreak = 0;
+            return current;
+        }
+        if (step > 0) {
+            downStreak = 0;
+            if (++upStreak >= settings.changeTicks()) {
+                if (behind(s)) {
+                    behindRate[current] = s.recordsPerSecond();
+                }
+                return changed(current + 1);
+            }
+        } else if (step < 0) {
+            upStreak = 0;
+            if (++downStreak >= settings.changeTicks()) {
+                return changed(current - 1);
+            }
+        } else {
+            upStreak = 0;
+            downStreak = 0;
+        }
+        return current;
+    }
+
+    private int step(Sample s, int current, int profiles) {
+        boolean up = current < profiles - 1;
+        boolean down = current > 0
+                && (behindRate[current - 1] == 0 || s.recordsPerSecond() < behindRate[current - 1] / 2);
+        double slo = settings.latencySlo().toMillis();
+        double maxSlo = settings.maxLatencySlo().toMillis();
+
+        if (s.latencyMillis() > slo || s.maxLatencyMillis() > maxSlo) {
+            if (behind(s)) {
+                return up ? 1 : 0;
+            }
+            return down ? -1 : 0;
+        }
+        if (s.recordsPerSecond() < settings.lowRate()) {
+            return down ? -1 : 0;
+        }
+        if (behind(s) && up && s.latencyMillis() < settings.headroom() * slo
+                && s.maxLatencyMillis() < settings.headroom() * maxSlo) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private boolean behind(Sample s) {
+        return s.fillRatio() >= settings.fillHigh() || s.queueMillis() > 2 * s.lingerMillis() + 1;
+    }
+
+    private int changed(int profile) {
+        upStreak = 0;
+        downStreak = 0;
+        cooldown = settings.cooldownTicks();
+        return profile;
+    }
+}
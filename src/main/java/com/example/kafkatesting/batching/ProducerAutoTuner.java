@@ -0,0 +1,135 @@
+package com.example.kafkatesting.batching;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves the shared producer between the {@link AdaptiveProducerFactory}'s
+ * profiles (see {@link BatchingPolicy}).
+ *
+ * Every app.kafka.producer.adaptive.interval it reads the current producer's
+ * client metrics (send rate, batch size, queue time, request latency and
+ * compression rate, averaged by the client over metrics.sample.window.ms
+ * windows), switches profile when the policy says so, and closes the
+ * generations switched away from once their producers are returned.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.producer.adaptive.enabled", havingValue = "true")
+public class ProducerAutoTuner implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ProducerAutoTuner.class);
+    private static final String GROUP = "producer-metrics";
+
+    private final AdaptiveProducerFactory<?, ?> factory;
+    private final BatchingPolicy policy;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder switches = new LongAdder();
+    private volatile BatchingPolicy.Sample lastSample;
+
+    public ProducerAutoTuner(AdaptiveProducerFactory<?, ?> factory,
+                             KafkaMetrics metrics,
+                             @Value("${app.kafka.producer.adaptive.interval:10s}") Duration interval,
+                             @Value("${app.kafka.producer.adaptive.latency-slo:50ms}") Duration latencySlo,
+                             @Value("${app.kafka.producer.adaptive.max-latency-slo:500ms}") Duration maxLatencySlo,
+                             @Value("${app.kafka.producer.adaptive.fill-high:0.8}") double fillHigh,
+                             @Value("${app.kafka.producer.adaptive.low-rate:100}") double lowRate,
+                             @Value("${app.kafka.producer.adaptive.headroom:0.5}") double headroom,
+                             @Value("${app.kafka.producer.adaptive.change-ticks:3}") int changeTicks,
+                             @Value("${app.kafka.producer.adaptive.cooldown-ticks:3}") int cooldownTicks) {
+        this.factory = factory;
+        this.policy = new BatchingPolicy(new BatchingPolicy.Settings(latencySlo, maxLatencySlo, fillHigh,
+                lowRate, headroom, changeTicks, cooldownTicks));
+        metrics.bindProducerTuning(() -> factory.getProfiles().indexOf(factory.getProfile()), switches,
+                factory::getRetiredCount);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "producer-auto-tuner");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::tick, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    void tick() {
+        try {
+            factory.closeRetired();
+            Map<MetricName, ? extends Metric> clientMetrics = factory.currentMetrics();
+            if (clientMetrics.isEmpty()) {
+                return;
+            }
+            ProducerProfile profile = factory.getProfile();
+            BatchingPolicy.Sample sample = new BatchingPolicy.Sample(
+                    value(clientMetrics, "record-send-rate"),
+                    value(clientMetrics, "batch-size-avg") / profile.batchSize(),
+                    value(clientMetrics, "record-queue-time-avg"),
+                    value(clientMetrics, "request-latency-avg"),
+                    value(clientMetrics, "record-queue-time-max") + value(clientMetrics, "request-latency-max"),
+                    value(clientMetrics, "compression-rate-avg"),
+                    profile.lingerMs());
+            lastSample = sample;
+
+            List<ProducerProfile> profiles = factory.getProfiles();
+            int current = profiles.indexOf(profile);
+            int next = policy.decide(sample, current, profiles.size());
+            if (next != current) {
+                log.info("producer profile {} -> {} (rate={}/s, fill={}, queue={}ms, request={}ms, max={}ms, compression={})",
+                        profile.name(), profiles.get(next).name(), Math.round(sample.recordsPerSecond()),
+                        String.format("%.2f", sample.fillRatio()), Math.round(sample.queueMillis()),
+                        Math.round(sample.requestMillis()), Math.round(sample.maxLatencyMillis()),
+                        String.format("%.2f", sample.compressionRate()));
+                factory.switchTo(profiles.get(next));
+                switches.increment();
+            }
+        } catch (Exception e) {
+            log.warn("producer auto-tuner tick failed", e);
+        }
+    }
+
+    // metrics without samples in the window read NaN
+    private static double value(Map<MetricName, ? extends Metric> metrics, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> e : metrics.entrySet()) {
+            if (e.getKey().name().equals(name) && e.getKey().group().equals(GROUP)) {
+                Object v = e.getValue().metricValue();
+                if (v instanceof Number n && !Double.isNaN(n.doubleValue()) && !Double.isInfinite(n.doubleValue())) {
+                    return n.doubleValue();
+                }
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /** The metrics the last decision was made on, or null before the first. */
+    public BatchingPolicy.Sample getLastSample() {
+        return lastSample;
+    }
+
+    public long getSwitchCount() {
+        return switches.sum();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
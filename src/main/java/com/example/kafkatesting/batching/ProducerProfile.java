@@ -0,0 +1,37 @@
+package com.example.kafkatesting.batching;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+
+/**
+ * Batching settings of one producer generation of the {@link AdaptiveProducerFactory}.
+ * Everything else (acks, idempotence, in-flight requests, interceptors, the
+ * partitioner) comes from the Boot producer configs.
+ */
+public record ProducerProfile(String name, int lingerMs, int batchSize, String compression) {
+
+    /** No linger and small batches: a record leaves as soon as the sender can take it. */
+    public static final ProducerProfile LATENCY = new ProducerProfile("latency", 0, 16384, "lz4");
+    /** A few ms of linger into mid-size batches. */
+    public static final ProducerProfile BALANCED = new ProducerProfile("balanced", 5, 65536, "lz4");
+    /** Large, long-lingering batches compressed with zstd, for bulk loads. */
+    public static final ProducerProfile THROUGHPUT = new ProducerProfile("throughput", 25, 262144, "zstd");
+
+    /** Name used in app.kafka.producer.adaptive.profiles / initial. */
+    public static ProducerProfile forName(String name) {
+        return switch (name) {
+            case "latency" -> LATENCY;
+            case "balanced" -> BALANCED;
+            case "throughput" -> THROUGHPUT;
+            default -> throw new IllegalArgumentException(
+                    "unknown producer profile '" + name + "', expected latency, balanced or throughput");
+        };
+    }
+
+    Map<String, Object> configs() {
+        return Map.of(ProducerConfig.LINGER_MS_CONFIG, lingerMs,
+                ProducerConfig.BATCH_SIZE_CONFIG, batchSize,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+    }
+}
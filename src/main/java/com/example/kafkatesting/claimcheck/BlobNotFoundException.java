@@ -0,0 +1,12 @@
+package com.example.kafkatesting.claimcheck;
+
+/**
+ * A claim-check reference the blob store cannot resolve: unknown or malformed,
+ * or written to a store this instance does not share.
+ */
+public class BlobNotFoundException extends RuntimeException {
+
+    public BlobNotFoundException(String reference, Throwable cause) {
+        super("claim-check blob not found: " + reference, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.kafkatesting.claimcheck;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Where {@link ClaimCheck} keeps payloads too large to send inline. Define a
+ * BlobStore bean to replace the default {@link FileBlobStore}; producers and
+ * consumers of a topic must see the same store. Implementations are thread-safe.
+ */
+public interface BlobStore {
+
+    /** Reference of a stored payload, and whether the store already held the same content. */
+    record Stored(String reference, boolean deduplicated) {
+    }
+
+    Stored put(byte[] content);
+
+    /**
+     * The content behind a reference, positioned at its start.
+     *
+     * @throws BlobNotFoundException if the store has no such blob
+     */
+    ByteBuffer get(String reference);
+}
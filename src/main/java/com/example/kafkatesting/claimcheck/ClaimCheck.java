@@ -0,0 +1,253 @@
+package com.example.kafkatesting.claimcheck;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Claim check for large text payloads. A payload over the threshold (UTF-8
+ * bytes) is put into the {@link BlobStore} and the record carries an empty
+ * value plus the blob reference in the x-claim-check header and the payload's
+ * length in x-claim-check-length; smaller ones go inline as before.
+ *
+ * Consumers resolve the reference only when they need the payload, through an
+ * LRU cache bounded by the bytes of the strings it holds. Retry and DLQ hops
+ * copy the header with the rest, so a failed record moves between tiers as a
+ * reference and is resolved again (mostly from the cache) where it is read.
+ * Stages that only need the size read the length header instead, and records
+ * derived from a checked-in one with the payload inline drop both headers.
+ */
+@Component
+public class ClaimCheck {
+
+    public static final String HEADER = "x-claim-check";
+
+    /** Length in chars of a checked-in payload, as decimal text. */
+    public static final String LENGTH_HEADER = "x-claim-check-length";
+
+    private final BlobStore store;
+    private final int threshold;
+    private final long cacheMaxBytes;
+
+    // access order: iteration starts at the least recently used payload
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The store is the BlobStore bean if there is one, else a {@link FileBlobStore}
+     * in app.kafka.claim-check.dir; without either, payloads always go inline.
+     */
+    @Autowired
+    public ClaimCheck(ObjectProvider<BlobStore> blobStore, KafkaMetrics metrics,
+                      @Value("${app.kafka.claim-check.threshold:262144}") int threshold,
+                      @Value("${app.kafka.claim-check.dir:}") String dir,
+                      @Value("${app.kafka.claim-check.cache.max-bytes:67108864}") long cacheMaxBytes) {
+        this(blobStore.getIfAvailable(() -> dir.isBlank() ? null : new FileBlobStore(Path.of(dir))),
+                metrics, threshold, cacheMaxBytes);
+    }
+
+    /** A null store, or a threshold of 0, sends every payload inline. */
+    public ClaimCheck(BlobStore store, KafkaMetrics metrics, int threshold, long cacheMaxBytes) {
+        this.store = store;
+        this.threshold = store == null ? 0 : threshold;
+        this.cacheMaxBytes = cacheMaxBytes;
+        metrics.bindClaimCheck(this);
+    }
+
+    /**
+     * The record to send: the payload inline, or an empty value with a claim-check
+     * header once its UTF-8 form is over the threshold.
+     */
+    public ProducerRecord<String, String> record(String topic, String key, String payload) {
+        Headers headers = checkIn(payload);
+        return headers == null
+                ? new ProducerRecord<>(topic, key, payload)
+                : new ProducerRecord<>(topic, null, key, "", headers);
+    }
+
+    /**
+     * For senders that build their own records: null if {@code payload} goes
+     * inline, else it is stored and these are the headers of a record whose
+     * value is empty.
+     */
+    public Headers checkIn(String payload) {
+        // at most 3 UTF-8 bytes per char: most payloads are decided without encoding them
+        if (threshold <= 0 || payload == null || (long) payload.length() * 3 <= threshold) {
+            return null;
+        }
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= threshold) {
+            return null;
+        }
+        BlobStore.Stored blob = store.put(bytes);
+        stored.increment();
+        if (blob.deduplicated()) {
+            deduplicated.increment();
+        }
+        // the sender reads this payload back from the cache if it also consumes the topic
+        cache(blob.reference(), payload);
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(HEADER, blob.reference().getBytes(StandardCharsets.UTF_8));
+        headers.add(LENGTH_HEADER, Integer.toString(payload.length()).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    /**
+     * The payload of a consumed record: {@code inline} (its value) unless the
+     * record carries a claim-check reference.
+     *
+     * @throws BlobNotFoundException if the referenced blob is not in the store
+     */
+    public String resolve(ConsumerRecord<?, ?> record, String inline) {
+        String reference = reference(record.headers());
+        return reference == null ? inline : load(reference);
+    }
+
+    /**
+     * Length in chars of a consumed record's payload. A checked-in payload is
+     * only loaded if the record has no length header (sent before it existed).
+     *
+     * @throws BlobNotFoundException if it has to be loaded and is not in the store
+     */
+    public long length(ConsumerRecord<?, String> record) {
+        String reference = reference(record.headers());
+        if (reference == null) {
+            return record.value() == null ? 0 : record.value().length();
+        }
+        Header length = record.headers().lastHeader(LENGTH_HEADER);
+        if (length != null) {
+            try {
+                return Long.parseLong(new String(length.value(), StandardCharsets.UTF_8));
+            } catch (NumberFormatException e) {
+                // fall through to the payload itself
+            }
+        }
+        return load(reference).length();
+    }
+
+    /**
+     * The payload for a log argument: resolved only if the message is actually
+     * formatted, so sampled-out events never touch the store.
+     */
+    public Object lazyPayload(ConsumerRecord<?, String> record) {
+        String reference = reference(record.headers());
+        return reference == null ? record.value() : new LazyPayload(reference);
+    }
+
+    /** A copy of the headers without the claim-check reference and length, for a record that carries the payload inline. */
+    public static Headers withoutReference(Headers headers) {
+        RecordHeaders copy = new RecordHeaders();
+        for (Header h : headers) {
+            if (!HEADER.equals(h.key()) && !LENGTH_HEADER.equals(h.key())) {
+                copy.add(h);
+            }
+        }
+        return copy;
+    }
+
+    /** The claim-check reference carried in the headers, or null. */
+    public static String reference(Headers headers) {
+        Header header = headers.lastHeader(HEADER);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private String load(String reference) {
+        synchronized (cache) {
+            String payload = cache.get(reference);
+            if (payload != null) {
+                hits.increment();
+                return payload;
+            }
+        }
+        misses.increment();
+        if (store == null) {
+            throw new BlobNotFoundException(reference, null);
+        }
+        // decoded straight from the mapped file; concurrent misses on one blob may both read it
+        String payload = StandardCharsets.UTF_8.decode(store.get(reference)).toString();
+        cache(reference, payload);
+        return payload;
+    }
+
+    private void cache(String reference, String payload) {
+        long size = weight(payload);
+        if (size > cacheMaxBytes) {
+            return;
+        }
+        synchronized (cache) {
+            String previous = cache.put(reference, payload);
+            if (previous != null) {
+                cachedBytes -= weight(previous);
+            }
+            cachedBytes += size;
+            Iterator<Map.Entry<String, String>> eldest = cache.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+                cachedBytes -= weight(eldest.next().getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    // Latin-1 strings take a byte per char, others two; this counts the worst case
+    private static long weight(String payload) {
+        return 2L * payload.length();
+    }
+
+    public long getStoredCount() {
+        return stored.sum();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    private final class LazyPayload {
+        private final String reference;
+
+        LazyPayload(String reference) {
+            this.reference = reference;
+        }
+
+        @Override
+        public String toString() {
+            try {
+                return load(reference);
+            } catch (RuntimeException e) {
+                return "<" + reference + " unavailable: " + e.getMessage() + ">";
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.kafkatesting.claimcheck;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Content-addressed blob store on the local file system.
+ *
+ * A blob is named by the SHA-256 of its content ("sha256-" + 64 hex digits)
+ * and kept at dir/&lt;first two digits&gt;/&lt;the other 62&gt;, so storing the
+ * same payload again only hashes it. New blobs are written to a temporary
+ * file and moved into place atomically: a reader sees a whole blob or none.
+ * Reads map the file read-only instead of copying it onto the heap; the
+ * mapping outlives the file channel and is released with the buffer.
+ * Blobs are never deleted here; retention is left to whatever cleans dir.
+ */
+public final class FileBlobStore implements BlobStore {
+
+    private static final String PREFIX = "sha256-";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path dir;
+
+    public FileBlobStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot create blob store dir " + dir, e);
+        }
+    }
+
+    @Override
+    public Stored put(byte[] content) {
+        String hex = HEX.formatHex(sha256(content));
+        Path file = file(hex);
+        if (Files.exists(file)) {
+            return new Stored(PREFIX + hex, true);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling("." + hex + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            Files.write(tmp, content);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // stored concurrently by another writer: same content
+                Files.deleteIfExists(tmp);
+                return new Stored(PREFIX + hex, true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot store blob " + hex, e);
+        }
+        return new Stored(PREFIX + hex, false);
+    }
+
+    @Override
+    public ByteBuffer get(String reference) {
+        String hex = hexOf(reference);
+        try (FileChannel channel = FileChannel.open(file(hex), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            throw new BlobNotFoundException(reference, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read blob " + reference, e);
+        }
+    }
+
+    private Path file(String hex) {
+        return dir.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+    }
+
+    // only well-formed references get near the file system
+    private static String hexOf(String reference) {
+        if (reference == null || reference.length() != PREFIX.length() + 64 || !reference.startsWith(PREFIX)) {
+            throw new BlobNotFoundException(reference, null);
+        }
+        String hex = reference.substring(PREFIX.length());
+        for (int i = 0; i < hex.length(); i++) {
+            if (Character.digit(hex.charAt(i), 16) < 0 || Character.isUpperCase(hex.charAt(i))) {
+                throw new BlobNotFoundException(reference, null);
+            }
+        }
+        return hex;
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
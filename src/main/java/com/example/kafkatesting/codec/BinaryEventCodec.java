@@ -0,0 +1,162 @@
+package com.example.kafkatesting.codec;
+
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.events.OrderStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of {@link OrderEvent}:
+ * [magic][status ordinal][timestamp, 8 bytes][amountCents, zigzag varint]
+ * [orderId][region], strings as a varint of length + 1 (0 = null) and UTF-8.
+ *
+ * Encoding writes into a per-thread scratch buffer that is reused across
+ * calls (Kafka serializes on the sending thread) and copies out only the
+ * bytes written. Decoding reads a heap ByteBuffer's array in place and copies
+ * a direct one into the scratch buffer once.
+ */
+public final class BinaryEventCodec implements EventCodec {
+
+    public static final String NAME = "binary";
+
+    /** First byte of every binary event; JSON starts with '{', so the two can't be confused. */
+    static final byte MAGIC = (byte) 0xB1;
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final int INITIAL_SCRATCH = 256;
+    private static final int SHORT_STRING = 32;
+
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[INITIAL_SCRATCH]);
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(OrderEvent event) {
+        byte[] buf = ensure(scratch.get(), 2 + 8 + 10 + maxLength(event.orderId()) + maxLength(event.region()));
+        int at = 0;
+        buf[at++] = MAGIC;
+        buf[at++] = (byte) (event.status() == null ? -1 : event.status().ordinal());
+        long ts = event.timestamp();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[at++] = (byte) (ts >>> shift);
+        }
+        at = putVarLong(buf, at, (event.amountCents() << 1) ^ (event.amountCents() >> 63));
+        at = putString(buf, at, event.orderId());
+        at = putString(buf, at, event.region());
+        return Arrays.copyOf(buf, at);
+    }
+
+    @Override
+    public OrderEvent decode(ByteBuffer data) {
+        if (data.hasArray()) {
+            return decode(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit());
+        }
+        // direct buffer: one copy into the scratch buffer, then the same array decoder
+        int length = data.remaining();
+        byte[] buf = ensure(scratch.get(), length);
+        data.get(data.position(), buf, 0, length);
+        return decode(buf, 0, length);
+    }
+
+    private static OrderEvent decode(byte[] in, int at, int end) {
+        if (at + 10 > end || in[at] != MAGIC) {
+            throw new IllegalArgumentException("not a binary OrderEvent");
+        }
+        int status = in[at + 1];
+        long ts = 0;
+        for (int i = at + 2; i < at + 10; i++) {
+            ts = (ts << 8) | (in[i] & 0xFF);
+        }
+        Cursor c = new Cursor(in, at + 10, end);
+        long zigzag = c.varLong();
+        long amount = (zigzag >>> 1) ^ -(zigzag & 1);
+        String orderId = c.string();
+        String region = c.string();
+        return new OrderEvent(orderId, status < 0 ? null : STATUSES[status], region, amount, ts);
+    }
+
+    private byte[] ensure(byte[] buf, int needed) {
+        if (buf.length >= needed) return buf;
+        byte[] grown = new byte[Math.max(needed, buf.length * 2)];
+        scratch.set(grown);
+        return grown;
+    }
+
+    // varint length prefix (up to 5 bytes) + up to 3 UTF-8 bytes per char
+    private static int maxLength(String s) {
+        return s == null ? 1 : 5 + 3 * s.length();
+    }
+
+    private static int putString(byte[] buf, int at, String s) {
+        if (s == null) {
+            buf[at++] = 0;
+            return at;
+        }
+        int n = s.length();
+        if (n <= SHORT_STRING) {
+            // short ids and codes: copy ASCII chars straight into the scratch buffer
+            boolean ascii = true;
+            for (int i = 0; i < n && ascii; i++) {
+                ascii = s.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                at = putVarLong(buf, at, n + 1);
+                for (int i = 0; i < n; i++) {
+                    buf[at++] = (byte) s.charAt(i);
+                }
+                return at;
+            }
+        }
+        // longer text: the JDK's vectorized encoder beats a char loop despite the temporary array
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        at = putVarLong(buf, at, utf8.length + 1);
+        System.arraycopy(utf8, 0, buf, at, utf8.length);
+        return at + utf8.length;
+    }
+
+    private static int putVarLong(byte[] buf, int at, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[at++] = (byte) value;
+        return at;
+    }
+
+    // read position over an encoded event; escape analysis keeps it off the heap
+    private static final class Cursor {
+        private final byte[] in;
+        private final int end;
+        private int at;
+
+        private Cursor(byte[] in, int at, int end) {
+            this.in = in;
+            this.at = at;
+            this.end = end;
+        }
+
+        private long varLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64 && at < end; shift += 7) {
+                byte b = in[at++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+
+        private String string() {
+            int length = (int) varLong() - 1;
+            if (length < 0) return null;
+            if (at + length > end) throw new IllegalArgumentException("truncated string");
+            String s = new String(in, at, length, StandardCharsets.UTF_8);
+            at += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.kafkatesting.codec;
+
+import com.example.kafkatesting.events.OrderEvent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of {@link OrderEvent} values. Implementations are thread-safe.
+ */
+public interface EventCodec {
+
+    /** Name used in app.kafka.events.codec. */
+    String name();
+
+    byte[] encode(OrderEvent event);
+
+    /** Decode from the buffer's position to its limit. */
+    OrderEvent decode(ByteBuffer data);
+
+    static EventCodec forName(String name) {
+        return switch (name) {
+            case JsonEventCodec.NAME -> new JsonEventCodec();
+            case BinaryEventCodec.NAME -> new BinaryEventCodec();
+            default -> throw new IllegalArgumentException("unknown event codec '" + name + "', expected json or binary");
+        };
+    }
+}
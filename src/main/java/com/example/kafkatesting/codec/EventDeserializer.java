@@ -0,0 +1,36 @@
+package com.example.kafkatesting.codec;
+
+import com.example.kafkatesting.events.OrderEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Kafka value deserializer for {@link OrderEvent}. The format is taken from
+ * the first byte rather than from configuration, so consumers read both
+ * binary and JSON events while producers switch app.kafka.events.codec.
+ */
+public class EventDeserializer implements Deserializer<OrderEvent> {
+
+    private final BinaryEventCodec binary = new BinaryEventCodec();
+    private final JsonEventCodec json = new JsonEventCodec();
+
+    @Override
+    public OrderEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : decode(ByteBuffer.wrap(data));
+    }
+
+    // the consumer hands over a view of the fetched records, no copy to a byte[] first
+    @Override
+    public OrderEvent deserialize(String topic, Headers headers, ByteBuffer data) {
+        return data == null ? null : decode(data);
+    }
+
+    private OrderEvent decode(ByteBuffer data) {
+        if (data.remaining() > 0 && data.get(data.position()) == BinaryEventCodec.MAGIC) {
+            return binary.decode(data);
+        }
+        return json.decode(data);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.kafkatesting.codec;
+
+import com.example.kafkatesting.events.OrderEvent;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer for {@link OrderEvent} through an {@link EventCodec}.
+ */
+public class EventSerializer implements Serializer<OrderEvent> {
+
+    private final EventCodec codec;
+
+    public EventSerializer(EventCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(String topic, OrderEvent event) {
+        return event == null ? null : codec.encode(event);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.kafkatesting.codec;
+
+import com.example.kafkatesting.events.OrderEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JSON through one ObjectReader/ObjectWriter pair resolved once for
+ * OrderEvent, so no per-call type lookup; Jackson recycles its own
+ * encoding buffers per thread.
+ */
+public final class JsonEventCodec implements EventCodec {
+
+    public static final String NAME = "json";
+
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    public JsonEventCodec() {
+        ObjectMapper mapper = new ObjectMapper();
+        this.reader = mapper.readerFor(OrderEvent.class);
+        this.writer = mapper.writerFor(OrderEvent.class);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(OrderEvent event) {
+        try {
+            return writer.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The event as JSON text, for the text retry and DLQ topics. */
+    public String encodeToString(OrderEvent event) {
+        try {
+            return writer.writeValueAsString(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public OrderEvent decode(ByteBuffer data) {
+        try {
+            if (data.hasArray()) {
+                return reader.readValue(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            }
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,15 +1,57 @@
 package com.example.kafkatesting.configs;
 
+import com.example.kafkatesting.aggregation.WindowedAggregator;
+import com.example.kafkatesting.batching.AdaptiveProducerFactory;
+import com.example.kafkatesting.batching.ProducerProfile;
+import com.example.kafkatesting.codec.EventCodec;
+import com.example.kafkatesting.codec.EventDeserializer;
 import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.partitioning.HotKeyPartitioner;
+import com.example.kafkatesting.partitioning.KeySkewMonitor;
+import com.example.kafkatesting.pipeline.NotificationProducer;
+import com.example.kafkatesting.processing.CommitCoalescer;
+import com.example.kafkatesting.processing.HandOffBuffers;
+import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.SslConfigs;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.KafkaConnectionDetails;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.autoconfigure.kafka.SslBundleSslEngineFactory;
+import org.springframework.boot.ssl.SslBundle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.listener.ContainerProperties;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 public class KafkaConfig {
+
+    private final boolean staticMembership;
+    private final String instanceId;
+
+    public KafkaConfig(@Value("${app.kafka.consumer.static-membership:false}") boolean staticMembership,
+                       @Value("${app.kafka.consumer.instance-id:${HOSTNAME:local}}") String instanceId) {
+        this.staticMembership = staticMembership;
+        this.instanceId = instanceId;
+    }
+
     @Bean
     public NewTopic topicOne() {
         return new NewTopic(KafkaTopics.TOPIC_ONE, 3, (short) 3);
@@ -20,25 +62,238 @@ public class KafkaConfig {
         return new NewTopic(KafkaTopics.TOPIC_TWO, 3, (short) 3);
     }
 
+    @Bean
+    public NewTopic topicTwoEvents() {
+        return new NewTopic(KafkaTopics.TOPIC_TWO_EVENTS, 3, (short) 3);
+    }
+
+    // Wire format for OrderEvents sent by ProducerTwoService.sendEvent (app.kafka.events.codec)
+    @Bean
+    public EventCodec eventCodec(@Value("${app.kafka.events.codec:binary}") String codec) {
+        return EventCodec.forName(codec);
+    }
+
+    // Delayed retry tiers for topic-two, same layout as the main topic
+    @Bean
+    public NewTopic topicTwoRetry1s() {
+        return new NewTopic(KafkaTopics.TOPIC_TWO_RETRY_1S, 3, (short) 3);
+    }
+
+    @Bean
+    public NewTopic topicTwoRetry10s() {
+        return new NewTopic(KafkaTopics.TOPIC_TWO_RETRY_10S, 3, (short) 3);
+    }
+
+    @Bean
+    public NewTopic topicTwoRetry60s() {
+        return new NewTopic(KafkaTopics.TOPIC_TWO_RETRY_60S, 3, (short) 3);
+    }
+
+    @Bean
+    public NewTopic topicNotification() {
+        return new NewTopic(KafkaTopics.TOPIC_NOTIFICATION, 3, (short) 3);
+    }
+
+    // State of WindowedAggregator: one record per window aggregate, so compaction keeps the latest
+    // value and tombstones drop expired windows. Partitioned like topic-two.
+    @Bean
+    public NewTopic topicTwoAggregatesChangelog() {
+        return new NewTopic(KafkaTopics.TOPIC_TWO_AGGREGATES_CHANGELOG, 3, (short) 3)
+                .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+    }
+
+    // replicated like the main topics: the DLQ is the only copy of a dead-lettered event.
+    // Older releases declared it 1/1: StartupWarmup grows such a topic to 3 partitions at startup,
+    // its replication factor stays 1 (and is logged) until it is raised with a partition reassignment
     @Bean
     public NewTopic topicTwoDlq() {
-        return new NewTopic(KafkaTopics.TOPIC_DLQ, 1, (short) 1);
+        return new NewTopic(KafkaTopics.TOPIC_DLQ, 3, (short) 3);
     }
 
 
     // Custom listener factory for manual ack consumer
     @Bean("manualAckListenerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, String> manualAckListenerFactory(ConsumerFactory<String, String> consumerFactory) {
+    public ConcurrentKafkaListenerContainerFactory<String, String> manualAckListenerFactory(ConsumerFactory<String, String> consumerFactory,
+                                                                                             CommitCoalescer commits) {
         ConcurrentKafkaListenerContainerFactory<String, String> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
 
-        // manual acknowledgment: user calls ack.acknowledge()
+        // manual acknowledgment through the CommitCoalescer: records are acked once their
+        // retry/DLQ sends are done, coalesced per partition; revoked partitions are flushed
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(commits);
 
         // tune concurrency if you want parallel consumers
         factory.setConcurrency(1);
 
+        return withMembership(factory);
+    }
+
+    // Batch listener factory for manual ack consumer: whole poll per call, one ack per batch
+    @Bean("batchManualAckListenerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchManualAckListenerFactory(ConsumerFactory<String, String> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+
+        // manual acknowledgment: listener calls ack.acknowledge() once per batch, after its retry/DLQ
+        // sends are acked; a failed send is thrown as BatchListenerFailedException instead
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+
+        factory.setConcurrency(1);
+
+        return withMembership(factory);
+    }
+
+    // Listener factory for hand-off listeners (ConsumerTwo parallel mode, TopicOneListener
+    // hand-off mode): the poll thread only hands records to the keyed worker pool
+    // through a bounded HandOffBuffer, which pauses/resumes the container and acks
+    // the highest contiguous completed offset per partition. One poll thread is
+    // enough, the worker pool (app.kafka.parallel.workers) does the processing.
+    @Bean("parallelManualAckListenerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> parallelManualAckListenerFactory(ConsumerFactory<String, String> consumerFactory,
+                                                                                                     HandOffBuffers handOffBuffers) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(handOffBuffers);
+        factory.setConcurrency(1);
+        return withMembership(factory);
+    }
+
+    // Listener factory for typed OrderEvent listeners: the Boot consumer settings with an
+    // EventDeserializer for values (reads binary and JSON). Not exposed as a ConsumerFactory
+    // bean, which would replace Boot's String consumer factory.
+    @Bean("eventListenerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEvent> eventListenerFactory(ConsumerFactory<String, String> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, OrderEvent> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(consumerFactory.getConfigurationProperties(),
+                new StringDeserializer(), new EventDeserializer()));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setConcurrency(1);
+        return withMembership(factory);
+    }
+
+    // Batch listener factory for NotificationPipeline: one poll is one transaction (or one
+    // at-least-once commit), bounded by count (max.poll.records) and time: the broker answers a
+    // fetch once min-bytes are ready or max-wait has passed. Records already fetched are returned
+    // at once, so under load batches fill to max-records; when idle they close after max-wait.
+    // read_committed skips aborted records of transactional upstream producers.
+    @Bean("notificationListenerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> notificationListenerFactory(
+            ConsumerFactory<String, String> consumerFactory, NotificationProducer producer,
+            @Value("${app.kafka.notification.batch.max-records:500}") int maxRecords,
+            @Value("${app.kafka.notification.batch.max-wait:100ms}") Duration maxWait,
+            @Value("${app.kafka.notification.batch.min-bytes:65536}") int minBytes) {
+        Map<String, Object> props = new HashMap<>(consumerFactory.getConfigurationProperties());
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxRecords);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, (int) maxWait.toMillis());
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, minBytes);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer()));
+        factory.setBatchListener(true);
+        // offsets are committed by the container after each batch, inside the transaction if there is one
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        if (producer.transactionManager() != null) {
+            factory.getContainerProperties().setKafkaAwareTransactionManager(producer.transactionManager());
+        }
+        factory.setConcurrency(1);
+        return withMembership(factory);
+    }
+
+    // Batch listener factory for WindowedAggregator: each poll is one transaction holding the
+    // changelog writes and the input offsets; the aggregator restores and checkpoints partition
+    // stores on rebalance.
+    @Bean("aggregationListenerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> aggregationListenerFactory(
+            ConsumerFactory<String, String> consumerFactory, WindowedAggregator aggregator) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.getContainerProperties().setKafkaAwareTransactionManager(aggregator.transactionManager());
+        factory.getContainerProperties().setConsumerRebalanceListener(aggregator);
+        factory.setConcurrency(1);
+        return withMembership(factory);
+    }
+
+    // Listener factory for the delayed retry tiers: one record per call so a
+    // not-yet-due record can be nacked, which pauses the tier until it is due.
+    // Due records are acked through the CommitCoalescer like the main topic's.
+    @Bean("retryTierListenerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> retryTierListenerFactory(ConsumerFactory<String, String> consumerFactory,
+                                                                                             CommitCoalescer commits) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(commits);
+        factory.setConcurrency(1);
+        return withMembership(factory);
+    }
+
+    // Every producer built on Boot's producer configs (the shared template and the factories
+    // derived from it) partitions through HotKeyPartitioner, which reports sends to the
+    // KeySkewMonitor passed along in the configs. Keyed placement stays murmur2, so enabling
+    // it moves no keys unless app.kafka.partitioner.spread-topics lists the topic.
+    @Bean
+    @ConditionalOnProperty(name = "app.kafka.partitioner.enabled", havingValue = "true", matchIfMissing = true)
+    public DefaultKafkaProducerFactoryCustomizer hotKeyPartitioner(KeySkewMonitor monitor) {
+        return factory -> factory.updateConfigs(Map.of(
+                ProducerConfig.PARTITIONER_CLASS_CONFIG, HotKeyPartitioner.class,
+                KeySkewMonitor.CONFIG, monitor));
+    }
+
+    // Adaptive batching for the shared template (ProducerOneService, ProducerTwoService, the
+    // retry/DLQ sends): the Boot producer configs, built and customized the way Boot builds its
+    // factory, plus the linger/batch/compression of one profile at a time, switched by the
+    // ProducerAutoTuner. Being a ProducerFactory bean, it takes the place of Boot's factory.
+    @Bean
+    @ConditionalOnProperty(name = "app.kafka.producer.adaptive.enabled", havingValue = "true")
+    public AdaptiveProducerFactory<?, ?> adaptiveProducerFactory(
+            KafkaProperties properties, KafkaConnectionDetails connectionDetails,
+            ObjectProvider<DefaultKafkaProducerFactoryCustomizer> customizers,
+            @Value("${app.kafka.producer.adaptive.profiles:latency,balanced,throughput}") String[] profiles,
+            @Value("${app.kafka.producer.adaptive.initial:balanced}") String initial) {
+        if (properties.getProducer().getTransactionIdPrefix() != null) {
+            throw new IllegalStateException(
+                    "app.kafka.producer.adaptive.enabled does not support spring.kafka.producer.transaction-id-prefix");
+        }
+        Map<String, Object> props = properties.buildProducerProperties();
+        KafkaConnectionDetails.Configuration connection = connectionDetails.getProducer();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, connection.getBootstrapServers());
+        if (connection.getSecurityProtocol() != null && !connection.getSecurityProtocol().isEmpty()) {
+            props.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, connection.getSecurityProtocol());
+        }
+        if (connection.getSslBundle() != null) {
+            props.put(SslConfigs.SSL_ENGINE_FACTORY_CLASS_CONFIG, SslBundleSslEngineFactory.class);
+            props.put(SslBundle.class.getName(), connection.getSslBundle());
+        }
+        DefaultKafkaProducerFactory<Object, Object> base = new DefaultKafkaProducerFactory<>(props);
+        customizers.orderedStream().forEach(c -> c.customize(base));
+        return new AdaptiveProducerFactory<Object, Object>(base.getConfigurationProperties(),
+                factory -> customizers.orderedStream().forEach(c -> c.customize(factory)),
+                Arrays.stream(profiles).map(String::trim).filter(s -> !s.isEmpty()).map(ProducerProfile::forName).toList(),
+                ProducerProfile.forName(initial.trim()));
+    }
+
+    // Static group membership (fast-recovery profile): every container joins with a
+    // stable group.instance.id (instance id + listener id; the container appends its
+    // "-n" child suffix), so a consumer that comes back within session.timeout.ms
+    // gets its partitions back without a group rebalance.
+    private <V> ConcurrentKafkaListenerContainerFactory<String, V> withMembership(
+            ConcurrentKafkaListenerContainerFactory<String, V> factory) {
+        if (staticMembership) {
+            factory.setContainerCustomizer(container -> container.getContainerProperties().getKafkaConsumerProperties()
+                    .setProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, instanceId + "-" + container.getListenerId()));
+        }
         return factory;
     }
 }
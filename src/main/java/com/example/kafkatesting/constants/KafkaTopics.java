@@ -1,5 +1,7 @@
 package com.example.kafkatesting.constants;
 
+import java.util.List;
+
 public final class KafkaTopics {
 
     private KafkaTopics() {
@@ -16,12 +18,30 @@ public final class KafkaTopics {
     public static final String TOPIC_GROUP_TWO = "group-two";
     public static final String TOPIC_TWO_PREFIX = "consumer-two-";
 
+    // Typed OrderEvents (binary or JSON codec) for ProducerTwoService.sendEvent and OrderEventConsumer
+    public static final String TOPIC_TWO_EVENTS = "topic-two-events";
+    public static final String TOPIC_GROUP_TWO_EVENTS = "group-two-events";
+
+    // Windowed aggregates of topic-two (WindowedAggregator): own group, compacted changelog of its state
+    public static final String TOPIC_GROUP_TWO_AGGREGATES = "group-two-aggregates";
+    public static final String TOPIC_TWO_AGGREGATES_CHANGELOG = "topic-two-aggregates-changelog";
+
+    // Delayed retry tiers for topic-two (1s, 10s, 60s), drained by ConsumerTwo's retry listeners
+    public static final String TOPIC_TWO_RETRY_1S = "topic-two-retry-1s";
+    public static final String TOPIC_TWO_RETRY_10S = "topic-two-retry-10s";
+    public static final String TOPIC_TWO_RETRY_60S = "topic-two-retry-60s";
+    public static final String TOPIC_TWO_RETRY_PREFIX = "consumer-two-retry-";
+
     // dead-letter queue (DLQ)
     public static final String TOPIC_DLQ = "topic-dlq";
     public static final String TOPIC_DLQ_GROUP = "group-dlq";
 
-    /** Example: notification events */
+    // Notifications enriched from topic-one by NotificationPipeline (transactional, read them read_committed)
     public static final String TOPIC_NOTIFICATION = "topic-notification";
+    public static final String TOPIC_GROUP_NOTIFICATION = "group-notification";
 
-
+    // Every topic above; each has a NewTopic bean in KafkaConfig, checked by StartupWarmup
+    public static final List<String> ALL_TOPICS = List.of(TOPIC_ONE, TOPIC_TWO, TOPIC_TWO_EVENTS,
+            TOPIC_TWO_AGGREGATES_CHANGELOG, TOPIC_TWO_RETRY_1S, TOPIC_TWO_RETRY_10S, TOPIC_TWO_RETRY_60S,
+            TOPIC_DLQ, TOPIC_NOTIFICATION);
 }
\ No newline at end of file
@@ -1,22 +1,55 @@
 package com.example.kafkatesting.consumers;
 
+import com.example.kafkatesting.claimcheck.ClaimCheck;
 import com.example.kafkatesting.constants.KafkaTopics;
-import org.springframework.kafka.annotation.KafkaListener;
+import com.example.kafkatesting.dispatch.RecordHandler;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.logging.EventType;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.tracing.EndToEndLatency;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * topic-one handler; records arrive through {@link TopicOneListener}.
+ */
 @Component
-public class ConsumerOne {
-    private final AtomicInteger counter = new AtomicInteger(0);
+public class ConsumerOne implements RecordHandler {
 
-    @KafkaListener(topics = KafkaTopics.TOPIC_ONE, groupId = KafkaTopics.TOPIC_GROUP_ONE, clientIdPrefix = KafkaTopics.TOPIC_ONE_PREFIX)
-    public void consume(String message) {
-        int c = counter.incrementAndGet();
-        System.out.println("ConsumerOne received: " + message + " (count=" + c + ")");
+    // striped: in hand-off mode many workers increment it at once
+    private final LongAdder counter = new LongAdder();
+    private final EventLogger events;
+    private final EndToEndLatency e2eLatency;
+    private final ClaimCheck claimCheck;
+
+    public ConsumerOne(EventLogger events, KafkaMetrics metrics, EndToEndLatency e2eLatency, ClaimCheck claimCheck) {
+        this.events = events;
+        this.e2eLatency = e2eLatency;
+        this.claimCheck = claimCheck;
+        metrics.bindRecordCounter("consumer-one", counter);
+    }
+
+    @Override
+    public String name() {
+        return "consumer-one";
+    }
+
+    @Override
+    public String topic() {
+        return KafkaTopics.TOPIC_ONE;
+    }
+
+    @Override
+    public void handle(ConsumerRecord<String, String> record) {
+        counter.increment();
+        // a claim-checked payload is only fetched if this event is logged
+        events.log(EventType.RECEIVED, "ConsumerOne received: {} (count={})", claimCheck.lazyPayload(record), counter);
+        e2eLatency.record(record, 0);
     }
 
     public int getCounter() {
-        return counter.get();
+        return counter.intValue();
     }
 }
@@ -1,18 +1,48 @@
 package com.example.kafkatesting.consumers;
 
+import com.example.kafkatesting.claimcheck.ClaimCheck;
 import com.example.kafkatesting.constants.KafkaTopics;
-import org.springframework.kafka.annotation.KafkaListener;
+import com.example.kafkatesting.dispatch.RecordHandler;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.logging.EventType;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Second topic-one handler, fed from the same fetch as {@link ConsumerOne}.
+ */
 @Component
-public class ConsumerOneCopy {
-    private final AtomicInteger counter = new AtomicInteger(0);
+public class ConsumerOneCopy implements RecordHandler {
+    private final LongAdder counter = new LongAdder();
+    private final EventLogger events;
+    private final ClaimCheck claimCheck;
 
-    @KafkaListener(topics = KafkaTopics.TOPIC_ONE, groupId = KafkaTopics.TOPIC_GROUP_ONE, clientIdPrefix = KafkaTopics.TOPIC_ONE_PREFIX)
-    public void consume(String message) {
-        int c = counter.incrementAndGet();
-        System.out.println("ConsumerOne received: " + message + " (count=" + c + ")");
+    public ConsumerOneCopy(EventLogger events, KafkaMetrics metrics, ClaimCheck claimCheck) {
+        this.events = events;
+        this.claimCheck = claimCheck;
+        metrics.bindRecordCounter("consumer-one-copy", counter);
+    }
+
+    @Override
+    public String name() {
+        return "consumer-one-copy";
+    }
+
+    @Override
+    public String topic() {
+        return KafkaTopics.TOPIC_ONE;
+    }
+
+    @Override
+    public void handle(ConsumerRecord<String, String> record) {
+        counter.increment();
+        events.log(EventType.RECEIVED, "ConsumerOneCopy received: {} (count={})", claimCheck.lazyPayload(record), counter);
+    }
+
+    public int getCounter() {
+        return counter.intValue();
     }
 }
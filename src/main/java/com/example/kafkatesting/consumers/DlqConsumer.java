@@ -1,15 +1,44 @@
 package com.example.kafkatesting.consumers;
 
 import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.dlq.DlqStore;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.logging.EventType;
+import com.example.kafkatesting.retry.RetryRouter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.List;
+
 @Component
 public class DlqConsumer {
 
-    @KafkaListener(topics = KafkaTopics.TOPIC_DLQ, groupId = KafkaTopics.TOPIC_DLQ_GROUP)
-    public void handleDlq(String payload) {
-        System.err.println("DLQ received: " + payload);
-        // alerting / store for manual inspection / push to error DB
+    public static final String LISTENER_ID = "dlq-store";
+
+    private final DlqStore store;
+    private final EventLogger events;
+
+    public DlqConsumer(DlqStore store, EventLogger events) {
+        this.store = store;
+        this.events = events;
+    }
+
+    /**
+     * Appends each poll to the local DLQ store (one disk flush per batch) and
+     * acks only after the flush, so a crash redelivers rather than loses records.
+     */
+    @KafkaListener(id = LISTENER_ID, topics = KafkaTopics.TOPIC_DLQ, groupId = KafkaTopics.TOPIC_DLQ_GROUP, containerFactory = "batchManualAckListenerFactory")
+    public void handleDlq(List<ConsumerRecord<String, String>> records, Acknowledgment ack) throws IOException {
+        for (ConsumerRecord<String, String> record : records) {
+            events.log(EventType.DLQ_RECEIVED, "DLQ received key={} from {} after {} retries: {}",
+                    record.key(), RetryRouter.readString(record.headers(), RetryRouter.ORIGINAL_TOPIC_HEADER),
+                    RetryRouter.readString(record.headers(), RetryRouter.RETRY_HEADER),
+                    RetryRouter.readString(record.headers(), RetryRouter.EXCEPTION_MESSAGE_HEADER));
+        }
+        store.store(records);
+        ack.acknowledge();
     }
-}
\ No newline at end of file
+}
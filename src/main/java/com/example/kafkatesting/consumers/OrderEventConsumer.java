@@ -0,0 +1,91 @@
+package com.example.kafkatesting.consumers;
+
+import com.example.kafkatesting.codec.JsonEventCodec;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.events.OrderStatus;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.logging.EventType;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.retry.RetryRouter;
+import com.example.kafkatesting.tracing.EndToEndLatency;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Typed listener for topic-two-events. Values arrive decoded (binary or JSON),
+ * so processing reads fields instead of scanning a payload string.
+ *
+ * The delay tiers carry text payloads for ConsumerTwo, so a failed event goes
+ * straight to the DLQ as JSON with the usual failure headers; a DLQ replay
+ * sends it back here (the deserializer reads JSON too).
+ */
+@Component
+public class OrderEventConsumer {
+
+    public static final String LISTENER_ID = "order-events";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final RetryRouter retryRouter;
+    private final EventLogger events;
+    private final KafkaMetrics metrics;
+    private final EndToEndLatency e2eLatency;
+    private final JsonEventCodec json = new JsonEventCodec();
+    private final Timer processTimer;
+    private final LongAdder processed = new LongAdder();
+
+    public OrderEventConsumer(KafkaTemplate<String, String> kafkaTemplate, RetryRouter retryRouter, EventLogger events,
+                              KafkaMetrics metrics, EndToEndLatency e2eLatency) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryRouter = retryRouter;
+        this.events = events;
+        this.metrics = metrics;
+        this.e2eLatency = e2eLatency;
+        this.processTimer = metrics.processingTimer(LISTENER_ID);
+        metrics.bindRecordCounter(LISTENER_ID, processed);
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = KafkaTopics.TOPIC_TWO_EVENTS, groupId = KafkaTopics.TOPIC_GROUP_TWO_EVENTS, containerFactory = "eventListenerFactory")
+    public void listen(ConsumerRecord<String, OrderEvent> record, Acknowledgment ack) {
+        OrderEvent event = record.value();
+        events.log(EventType.RECEIVED, "OrderEventConsumer received order={} status={}", record.key(), event.status());
+        long start = System.nanoTime();
+        try {
+            process(event);
+            processed.increment();
+            e2eLatency.record(record, 0);
+            events.log(EventType.PROCESSED, "OrderEventConsumer processed order={}", record.key());
+        } catch (Exception ex) {
+            events.log(EventType.PROCESS_FAILED, "OrderEventConsumer processing failed for order={}: {}", record.key(), ex.getMessage());
+            metrics.deadLettered();
+            e2eLatency.record(record, 0);
+            kafkaTemplate.send(retryRouter.deadLetter(record, json.encodeToString(event), ex)).whenComplete((res, ex2) -> {
+                if (ex2 != null) {
+                    metrics.republishFailed();
+                    events.log(EventType.REPUBLISH_FAILED, "Failed to dead-letter order={}: {}", record.key(), ex2.getMessage());
+                }
+            });
+        } finally {
+            processTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        ack.acknowledge();
+    }
+
+    // place business logic here; FAILED simulates a processing error like "fail" in a text payload
+    private void process(OrderEvent event) {
+        if (event.status() == OrderStatus.FAILED) {
+            throw new IllegalStateException("simulated processing error for order " + event.orderId());
+        }
+    }
+
+    public int getProcessedCount() {
+        return processed.intValue();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.kafkatesting.consumers;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.dispatch.FanOutDispatcher;
+import com.example.kafkatesting.processing.HandOffBuffer;
+import com.example.kafkatesting.processing.HandOffBuffers;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+/**
+ * The single topic-one consumer: each record is fetched once and fanned out to
+ * every topic-one {@link com.example.kafkatesting.dispatch.RecordHandler}
+ * (ConsumerOne, ConsumerOneCopy, ...), so adding a handler adds no consumer,
+ * fetch or deserialization.
+ */
+@Component
+public class TopicOneListener implements ConsumerSeekAware {
+
+    public static final String RECORD_LISTENER_ID = "topic-one-record";
+    public static final String HAND_OFF_LISTENER_ID = "consumer-one-hand-off";
+
+    private final FanOutDispatcher dispatcher;
+    private final HandOffBuffer handOff;
+    // seek callback of the container whose poll thread is calling, to rewind a record whose work failed
+    private final ThreadLocal<ConsumerSeekCallback> seeks = new ThreadLocal<>();
+
+    public TopicOneListener(FanOutDispatcher dispatcher, HandOffBuffers handOffBuffers) {
+        this.dispatcher = dispatcher;
+        this.handOff = handOffBuffers.forListener(HAND_OFF_LISTENER_ID);
+    }
+
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        seeks.set(callback);
+    }
+
+    @Override
+    public void unregisterSeekCallback() {
+        seeks.remove();
+    }
+
+    /**
+     * Handlers run one after the other on the poll thread. Active when
+     * app.kafka.consumer-one.listener-mode=record.
+     */
+    @KafkaListener(id = RECORD_LISTENER_ID, topics = KafkaTopics.TOPIC_ONE, groupId = KafkaTopics.TOPIC_GROUP_ONE, clientIdPrefix = KafkaTopics.TOPIC_ONE_PREFIX,
+            autoStartup = "#{'${app.kafka.consumer-one.listener-mode:record}' == 'record'}")
+    public void consume(ConsumerRecord<String, String> record) {
+        dispatcher.dispatch(record);
+    }
+
+    /**
+     * Hand-off variant: the poll thread queues one task per handler in the bounded
+     * hand-off buffer and returns; handlers run in parallel on the worker pool
+     * (each in per-key order) and the record is acked once all of them are done,
+     * including any dead-letter send. If that send fails, the partition is
+     * sought back to the record and it is handed off again.
+     * Active when app.kafka.consumer-one.listener-mode=hand-off.
+     */
+    @KafkaListener(id = HAND_OFF_LISTENER_ID, topics = KafkaTopics.TOPIC_ONE, groupId = KafkaTopics.TOPIC_GROUP_ONE, containerFactory = "parallelManualAckListenerFactory", clientIdPrefix = KafkaTopics.TOPIC_ONE_PREFIX,
+            autoStartup = "#{'${app.kafka.consumer-one.listener-mode:record}' == 'hand-off'}")
+    public void consumeHandOff(ConsumerRecord<String, String> record, Acknowledgment ack) {
+        handOff.dispatch(record, ack, seeks.get(), dispatcher.tasks(record));
+    }
+}
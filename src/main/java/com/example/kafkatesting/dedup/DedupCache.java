@@ -0,0 +1,292 @@
+package com.example.kafkatesting.dedup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded set of recently seen 128-bit event ids (two longs, high and low)
+ * with TTL and LRU eviction.
+ *
+ * Entries live in primitive arrays (no object per id): an open-addressing
+ * index with linear probing over interleaved id/time and LRU-link arrays, about
+ * 44 bytes per entry, allocated up front. The set is split into lock-striped
+ * segments chosen by the high bits of the id's hash. When a segment is full
+ * its least recently used entry is evicted; entries older than the TTL count
+ * as absent and are dropped as they are met.
+ */
+public final class DedupCache {
+
+    private static final int SNAPSHOT_MAGIC = 0x44445550; // "DDUP"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    public DedupCache(int capacity, Duration ttl) {
+        this(capacity, ttl, System::currentTimeMillis);
+    }
+
+    DedupCache(int capacity, Duration ttl, LongSupplier clock) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        // ~4k entries per segment, at most 64 segments
+        int count = Integer.highestOneBit(Math.max(1, Math.min(64, capacity / 4096)));
+        this.segments = new Segment[count];
+        int perSegment = (capacity + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /** Whether the id was added within the TTL. A hit counts as a use for LRU. */
+    public boolean contains(long high, long low) {
+        long h = hash(high, low);
+        return segmentFor(h).contains(high, low, (int) h, clock.getAsLong(), ttlMillis);
+    }
+
+    /** Add the id, or refresh its time if present. */
+    public void add(long high, long low) {
+        long h = hash(high, low);
+        segmentFor(h).add(high, low, (int) h, clock.getAsLong(), ttlMillis);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                size += s.size;
+            }
+        }
+        return size;
+    }
+
+    /** Entries evicted to make room (not counting TTL expiry). */
+    public long evictions() {
+        long total = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                total += s.evictions;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write all live entries, oldest first per segment, to {@code file}
+     * (through a temp file and an atomic rename).
+     */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            for (Segment s : segments) {
+                synchronized (s) {
+                    out.writeInt(s.size);
+                    for (int e = s.tail; e != -1; e = s.links[2 * e]) {
+                        out.writeLong(s.entries[3 * e]);
+                        out.writeLong(s.entries[3 * e + 1]);
+                        out.writeLong(s.entries[3 * e + 2]);
+                    }
+                }
+            }
+            out.writeInt(-1);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Add the entries of a snapshot written by {@link #save}, keeping their
+     * original times; expired ones are skipped. Returns the number loaded.
+     */
+    public int load(Path file) throws IOException {
+        int loaded = 0;
+        long now = clock.getAsLong();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a dedup snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                // version 1 held 64-bit x-origin-id values, which are not event ids
+                throw new IOException("unsupported dedup snapshot version " + version + ": " + file);
+            }
+            for (int n = in.readInt(); n != -1; n = in.readInt()) {
+                for (int i = 0; i < n; i++) {
+                    long high = in.readLong();
+                    long low = in.readLong();
+                    long time = in.readLong();
+                    if (now - time <= ttlMillis) {
+                        long h = hash(high, low);
+                        segmentFor(h).add(high, low, (int) h, time, ttlMillis);
+                        loaded++;
+                    }
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private Segment segmentFor(long h) {
+        return segments.length == 1 ? segments[0] : segments[(int) (h >>> segmentShift)];
+    }
+
+    // murmur3 fmix64: the low half is a sequence per producer JVM, so spread it; the
+    // multiply by an odd constant keeps ids with the same high half from colliding
+    private static long hash(long high, long low) {
+        long h = high ^ (low * 0x9e3779b97f4a7c15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+        private final int capacity;
+        // id (high, low) and time of entry e at [3e], [3e+1] and [3e+2], so a lookup
+        // touches one cache line, rarely two
+        private final long[] entries;
+        // LRU list, prev and next of entry e at [2e] and [2e+1]: head is the most
+        // recently used entry, tail the least
+        private final int[] links;
+        private final int[] index; // slot -> entry, -1 = empty
+        private final int indexMask;
+        private final int[] free;
+        private int freeCount;
+        private int head = -1;
+        private int tail = -1;
+        private int size;
+        private long evictions;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.entries = new long[capacity * 3];
+            this.links = new int[capacity * 2];
+            int slots = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.index = new int[slots];
+            Arrays.fill(index, -1);
+            this.indexMask = slots - 1;
+            this.free = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                free[i] = capacity - 1 - i;
+            }
+            this.freeCount = capacity;
+        }
+
+        private synchronized boolean contains(long high, long low, int h, long now, long ttl) {
+            int slot = find(high, low, h);
+            if (slot < 0) return false;
+            int e = index[slot];
+            if (now - entries[3 * e + 2] > ttl) {
+                remove(e);
+                return false;
+            }
+            moveToHead(e);
+            return true;
+        }
+
+        private synchronized void add(long high, long low, int h, long time, long ttl) {
+            int slot = find(high, low, h);
+            if (slot >= 0) {
+                int e = index[slot];
+                entries[3 * e + 2] = Math.max(entries[3 * e + 2], time);
+                moveToHead(e);
+                return;
+            }
+            // drop expired entries from the old end first, then evict LRU if still full
+            while (tail != -1 && time - entries[3 * tail + 2] > ttl) {
+                remove(tail);
+            }
+            if (size == capacity) {
+                remove(tail);
+                evictions++;
+            }
+            int e = free[--freeCount];
+            entries[3 * e] = high;
+            entries[3 * e + 1] = low;
+            entries[3 * e + 2] = time;
+            int s = h & indexMask;
+            while (index[s] != -1) {
+                s = (s + 1) & indexMask;
+            }
+            index[s] = e;
+            linkHead(e);
+            size++;
+        }
+
+        private int find(long high, long low, int h) {
+            int s = h & indexMask;
+            while (true) {
+                int e = index[s];
+                if (e == -1) return -1;
+                if (entries[3 * e + 1] == low && entries[3 * e] == high) return s;
+                s = (s + 1) & indexMask;
+            }
+        }
+
+        private void remove(int e) {
+            long high = entries[3 * e];
+            long low = entries[3 * e + 1];
+            deleteSlot(find(high, low, (int) hash(high, low)));
+            unlink(e);
+            free[freeCount++] = e;
+            size--;
+        }
+
+        // backward-shift deletion keeps linear probing chains intact without tombstones
+        private void deleteSlot(int hole) {
+            int j = hole;
+            while (true) {
+                j = (j + 1) & indexMask;
+                int e = index[j];
+                if (e == -1) break;
+                int ideal = (int) hash(entries[3 * e], entries[3 * e + 1]) & indexMask;
+                boolean stays = hole <= j ? (hole < ideal && ideal <= j) : (hole < ideal || ideal <= j);
+                if (!stays) {
+                    index[hole] = e;
+                    hole = j;
+                }
+            }
+            index[hole] = -1;
+        }
+
+        private void moveToHead(int e) {
+            if (head == e) return;
+            unlink(e);
+            linkHead(e);
+        }
+
+        private void linkHead(int e) {
+            links[2 * e] = -1;
+            links[2 * e + 1] = head;
+            if (head != -1) links[2 * head] = e;
+            head = e;
+            if (tail == -1) tail = e;
+        }
+
+        private void unlink(int e) {
+            int p = links[2 * e];
+            int n = links[2 * e + 1];
+            if (p != -1) links[2 * p + 1] = n; else head = n;
+            if (n != -1) links[2 * n] = p; else tail = p;
+        }
+    }
+}
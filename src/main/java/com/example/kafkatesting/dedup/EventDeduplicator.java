@@ -0,0 +1,112 @@
+package com.example.kafkatesting.dedup;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotent-consumer check in front of business processing. The event id is
+ * the producer-assigned 128-bit x-event-id header, which stays the same across
+ * redeliveries, retry-tier republishing and DLQ replays; records without it
+ * are never treated as duplicates. An id is remembered only after its record
+ * was processed successfully, so a failed attempt is still retried.
+ * With app.kafka.dedup.enabled=false no cache is allocated at all.
+ *
+ * If app.kafka.dedup.snapshot-path is set, the cache is loaded from it on
+ * startup and written back periodically and on shutdown, so a restart keeps
+ * the ids seen within the TTL without re-reading the topic.
+ */
+@Component
+public class EventDeduplicator implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EventDeduplicator.class);
+
+    // null when disabled: a full-size cache is tens of MB of arrays
+    private final DedupCache cache;
+    private final Path snapshot;
+    private final ScheduledExecutorService snapshots;
+
+    public EventDeduplicator(KafkaMetrics metrics,
+                             @Value("${app.kafka.dedup.enabled:true}") boolean enabled,
+                             @Value("${app.kafka.dedup.capacity:1000000}") int capacity,
+                             @Value("${app.kafka.dedup.ttl:1h}") Duration ttl,
+                             @Value("${app.kafka.dedup.snapshot-path:}") String snapshotPath,
+                             @Value("${app.kafka.dedup.snapshot-interval:5m}") Duration snapshotInterval) {
+        this.cache = enabled ? new DedupCache(capacity, ttl) : null;
+        this.snapshot = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        if (cache != null) {
+            metrics.bindDedup(cache);
+        }
+
+        if (cache != null && snapshot != null) {
+            loadSnapshot();
+            snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "dedup-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = snapshotInterval.toMillis();
+            snapshots.scheduleWithFixedDelay(this::saveSnapshot, millis, millis, TimeUnit.MILLISECONDS);
+        } else {
+            snapshots = null;
+        }
+    }
+
+    /** True if a record with the same event id was already processed within the TTL. */
+    public boolean isDuplicate(ConsumerRecord<?, ?> record) {
+        if (cache == null) return false;
+        byte[] id = TraceHeaders.readEventId(record.headers());
+        return id != null && cache.contains(TraceHeaders.get(id, 0), TraceHeaders.get(id, 8));
+    }
+
+    /** Remember the record's event id; call after successful processing. */
+    public void markProcessed(ConsumerRecord<?, ?> record) {
+        if (cache == null) return;
+        byte[] id = TraceHeaders.readEventId(record.headers());
+        if (id != null) {
+            cache.add(TraceHeaders.get(id, 0), TraceHeaders.get(id, 8));
+        }
+    }
+
+    private void loadSnapshot() {
+        if (!Files.exists(snapshot)) return;
+        try {
+            long start = System.nanoTime();
+            int loaded = cache.load(snapshot);
+            log.info("Loaded {} dedup entries from {} in {}ms", loaded, snapshot,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            // a corrupt snapshot only costs deduplication of old events, not startup
+            log.warn("Ignoring unreadable dedup snapshot {}", snapshot, e);
+        }
+    }
+
+    void saveSnapshot() {
+        try {
+            cache.save(snapshot);
+        } catch (IOException e) {
+            log.warn("Failed to write dedup snapshot {}", snapshot, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+            saveSnapshot();
+        }
+    }
+}
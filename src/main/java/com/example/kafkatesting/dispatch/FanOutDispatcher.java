@@ -0,0 +1,192 @@
+package com.example.kafkatesting.dispatch;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.retry.RetryRouter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the {@link RecordHandler} beans, grouped by topic. A topic's
+ * listener fetches each record once and passes it here; every handler of the
+ * topic gets it, either one after the other on the calling thread
+ * ({@link #dispatch}) or as one task per handler for the hand-off buffer
+ * ({@link #tasks}), where handlers run in parallel.
+ *
+ * Each handler is isolated: its exceptions are caught and logged here, and
+ * the record is retried for that handler alone, up to max-attempts times
+ * with retry-backoff between them. If it still fails it is dead-lettered for
+ * that handler: sent to the DLQ with an x-handler header, and the record is
+ * only done once that send is acked. A replayed DLQ record that carries
+ * x-handler goes to that handler only. Progress is tracked per handler as
+ * handled/failed counts and the highest offset it finished per partition.
+ */
+@Component
+public class FanOutDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(FanOutDispatcher.class);
+
+    /** Name of the handler a dead-lettered record failed in. */
+    public static final String HANDLER_HEADER = "x-handler";
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final Map<String, List<Registration>> byTopic = new LinkedHashMap<>();
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final RetryRouter retryRouter;
+    private final KafkaMetrics metrics;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    public FanOutDispatcher(List<RecordHandler> handlers, KafkaTemplate<String, String> kafkaTemplate,
+                            RetryRouter retryRouter, KafkaMetrics metrics,
+                            @Value("${app.kafka.handlers.max-attempts:3}") int maxAttempts,
+                            @Value("${app.kafka.handlers.retry-backoff:100ms}") Duration retryBackoff) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryRouter = retryRouter;
+        this.metrics = metrics;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        for (RecordHandler handler : handlers) {
+            Registration registration = new Registration(handler);
+            byTopic.computeIfAbsent(handler.topic(), t -> new ArrayList<>()).add(registration);
+            metrics.bindHandler(handler.name(), registration.handled, registration.failed);
+        }
+    }
+
+    /**
+     * Run every handler of the record's topic in turn on the calling thread, and
+     * wait for any dead-letter sends. Throws if one of them failed, so the
+     * container's error handler delivers the record again.
+     */
+    public void dispatch(ConsumerRecord<String, String> record) {
+        List<Registration> registrations = handlersFor(record);
+        CompletableFuture<?>[] done = new CompletableFuture<?>[registrations.size()];
+        for (int i = 0; i < done.length; i++) {
+            done[i] = registrations.get(i).run(record);
+        }
+        CompletableFuture.allOf(done).join();
+    }
+
+    /**
+     * One task per handler of the record's topic, for parallel execution. Each
+     * returns the future of its dead-letter send, or a completed one.
+     */
+    public List<Supplier<CompletableFuture<?>>> tasks(ConsumerRecord<String, String> record) {
+        List<Registration> registrations = handlersFor(record);
+        List<Supplier<CompletableFuture<?>>> tasks = new ArrayList<>(registrations.size());
+        for (Registration registration : registrations) {
+            tasks.add(() -> registration.run(record));
+        }
+        return tasks;
+    }
+
+    /**
+     * Per handler: handled and failed counts and, per partition, the highest
+     * offset it has finished.
+     */
+    public Map<String, Map<String, Object>> progress() {
+        Map<String, Map<String, Object>> out = new TreeMap<>();
+        byTopic.values().forEach(registrations -> registrations.forEach(r -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("topic", r.handler.topic());
+            stats.put("handled", r.handled.sum());
+            stats.put("failed", r.failed.sum());
+            stats.put("positions", new TreeMap<>(r.positions));
+            out.put(r.handler.name(), stats);
+        }));
+        return out;
+    }
+
+    private List<Registration> handlersFor(ConsumerRecord<String, String> record) {
+        List<Registration> registrations = byTopic.getOrDefault(record.topic(), List.of());
+        String only = RetryRouter.readString(record.headers(), HANDLER_HEADER);
+        if (only == null) {
+            return registrations;
+        }
+        // a DLQ replay of one handler's failure
+        return registrations.stream().filter(r -> r.handler.name().equals(only)).toList();
+    }
+
+    private final class Registration {
+        private final RecordHandler handler;
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        // partition -> highest finished offset
+        private final ConcurrentHashMap<Integer, Long> positions = new ConcurrentHashMap<>();
+
+        private Registration(RecordHandler handler) {
+            this.handler = handler;
+        }
+
+        private CompletableFuture<?> run(ConsumerRecord<String, String> record) {
+            Exception failure = null;
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                try {
+                    handler.handle(record);
+                    handled.increment();
+                    finished(record);
+                    return DONE;
+                } catch (Exception e) {
+                    failure = e;
+                    log.warn("Handler {} failed for key={} {}-{}@{} (attempt {} of {}): {}", handler.name(),
+                            record.key(), record.topic(), record.partition(), record.offset(), attempt, maxAttempts,
+                            e.toString());
+                }
+                if (attempt < maxAttempts && !backOff()) {
+                    break;
+                }
+            }
+            failed.increment();
+            return deadLetter(record, failure);
+        }
+
+        // the inline value: a claim-checked record keeps its reference header
+        private CompletableFuture<?> deadLetter(ConsumerRecord<String, String> record, Exception failure) {
+            ProducerRecord<String, String> dead = retryRouter.deadLetter(record, record.value(), failure);
+            dead.headers().remove(HANDLER_HEADER);
+            dead.headers().add(HANDLER_HEADER, handler.name().getBytes(StandardCharsets.UTF_8));
+            metrics.deadLettered();
+            return kafkaTemplate.send(dead).whenComplete((r, ex) -> {
+                if (ex == null) {
+                    finished(record);
+                } else {
+                    metrics.republishFailed();
+                    log.warn("Handler {} could not dead-letter key={} {}-{}@{}: {}", handler.name(), record.key(),
+                            record.topic(), record.partition(), record.offset(), ex.toString());
+                }
+            });
+        }
+
+        private void finished(ConsumerRecord<String, String> record) {
+            positions.merge(record.partition(), record.offset(), Math::max);
+        }
+
+        private boolean backOff() {
+            try {
+                TimeUnit.NANOSECONDS.sleep(retryBackoff.toNanos());
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
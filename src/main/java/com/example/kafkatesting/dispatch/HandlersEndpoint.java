@@ -0,0 +1,26 @@
+package com.example.kafkatesting.dispatch;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/handlers: per-handler progress of the fan-out dispatcher.
+ */
+@Component
+@Endpoint(id = "handlers")
+public class HandlersEndpoint {
+
+    private final FanOutDispatcher dispatcher;
+
+    public HandlersEndpoint(FanOutDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> handlers() {
+        return dispatcher.progress();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.kafkatesting.dispatch;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * An in-process consumer of one topic. Every handler registered for a topic
+ * receives every record of it from a single listener container through the
+ * {@link FanOutDispatcher}, instead of running its own consumer and fetch.
+ */
+public interface RecordHandler {
+
+    /** Unique name, used in logs, metrics and the progress report. */
+    String name();
+
+    String topic();
+
+    /**
+     * Process one record. An exception is contained to this handler: the record
+     * is retried for this handler only and then dead-lettered with its name in
+     * x-handler; other handlers do not see it.
+     */
+    void handle(ConsumerRecord<String, String> record) throws Exception;
+}
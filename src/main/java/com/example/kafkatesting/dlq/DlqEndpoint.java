@@ -0,0 +1,67 @@
+package com.example.kafkatesting.dlq;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/dlq: look up stored DLQ entries and replay them to the topic they failed on.
+ *
+ * GET selects by key, by store time range (epoch millis from/to), or the most
+ * recent hour when neither is given; POST replays the same selection at
+ * {@code rate} records per second; DELETE cancels a running replay.
+ */
+@Component
+@Endpoint(id = "dlq")
+public class DlqEndpoint {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final long DEFAULT_WINDOW_MILLIS = 3_600_000L;
+
+    private final DlqStore store;
+    private final DlqReplayer replayer;
+
+    public DlqEndpoint(DlqStore store, DlqReplayer replayer) {
+        this.store = store;
+        this.replayer = replayer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> entries(@Nullable String key, @Nullable Long from, @Nullable Long to, @Nullable Integer limit) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("enabled", store.isEnabled());
+        view.put("stored", store.entries());
+        view.put("replay", replayer.status());
+        view.put("entries", select(key, from, to, limit).stream().map(DlqEntry::describe).toList());
+        return view;
+    }
+
+    @WriteOperation
+    public Map<String, Object> replay(@Nullable String key, @Nullable Long from, @Nullable Long to,
+                                      @Nullable Integer limit, double rate) {
+        return replayer.start(select(key, from, to, limit), rate);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> cancel() {
+        replayer.cancel();
+        return replayer.status();
+    }
+
+    private List<DlqEntry> select(String key, Long from, Long to, Integer limit) {
+        int max = limit == null ? DEFAULT_LIMIT : limit;
+        if (key != null) {
+            return store.byKey(key, max);
+        }
+        long end = to == null ? System.currentTimeMillis() : to;
+        long start = from == null ? end - DEFAULT_WINDOW_MILLIS : from;
+        return store.byTime(start, end, max);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.kafkatesting.dlq;
+
+import com.example.kafkatesting.retry.RetryRouter;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One dead-lettered record as stored in the {@link DlqSegmentLog}: its position
+ * in the log, the time it was stored, and the DLQ record's key, value and headers.
+ */
+public record DlqEntry(long position, long timestamp, String key, String value, Headers headers) {
+
+    public String header(String name) {
+        return RetryRouter.readString(headers, name);
+    }
+
+    /**
+     * JSON-friendly view for the actuator endpoint; 8-byte headers (x-origin-*) are
+     * shown as numbers and the event id as a UUID-formatted string.
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> headerView = new LinkedHashMap<>();
+        for (Header h : headers) {
+            byte[] v = h.value();
+            if (v == null) {
+                headerView.put(h.key(), null);
+            } else if (h.key().startsWith("x-origin-") && v.length == 8) {
+                long n = 0;
+                for (byte b : v) n = (n << 8) | (b & 0xFF);
+                headerView.put(h.key(), n);
+            } else if (h.key().equals(TraceHeaders.EVENT_ID) && v.length == 16) {
+                headerView.put(h.key(), new UUID(TraceHeaders.get(v, 0), TraceHeaders.get(v, 8)).toString());
+            } else {
+                headerView.put(h.key(), new String(v, StandardCharsets.UTF_8));
+            }
+        }
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("position", position);
+        view.put("timestamp", timestamp);
+        view.put("key", key);
+        view.put("value", value);
+        view.put("headers", headerView);
+        return view;
+    }
+}
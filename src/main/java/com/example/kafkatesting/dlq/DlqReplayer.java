@@ -0,0 +1,158 @@
+package com.example.kafkatesting.dlq;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.retry.RetryRouter;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Republishes selected DLQ entries to the topic they first failed on
+ * (x-original-topic, topic-two if absent) at a fixed rate, one replay at a
+ * time on a background thread.
+ *
+ * A replayed record starts over: the retry count, failure and original
+ * coordinate headers are removed and the origin timestamp is restamped at
+ * replay, so it gets the full retry budget and its end-to-end latency counts
+ * from the replay. The event id is kept, so the dedup cache skips an entry
+ * that is replayed again after it was processed successfully.
+ */
+@Component
+public class DlqReplayer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DlqReplayer.class);
+    private static final Set<String> DROPPED_HEADERS = Set.of(
+            RetryRouter.RETRY_HEADER,
+            RetryRouter.ORIGINAL_TOPIC_HEADER,
+            RetryRouter.ORIGINAL_PARTITION_HEADER,
+            RetryRouter.ORIGINAL_OFFSET_HEADER,
+            RetryRouter.EXCEPTION_CLASS_HEADER,
+            RetryRouter.EXCEPTION_MESSAGE_HEADER,
+            TraceHeaders.ORIGIN_TIMESTAMP);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final double maxRate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "dlq-replay");
+        t.setDaemon(true);
+        return t;
+    });
+    private Replay current;
+
+    public DlqReplayer(KafkaTemplate<String, String> kafkaTemplate,
+                       @Value("${app.kafka.dlq.replay.max-rate:1000}") double maxRate) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * Start replaying {@code entries} at {@code ratePerSecond} (capped at
+     * app.kafka.dlq.replay.max-rate). Fails if a replay is still running.
+     */
+    public synchronized Map<String, Object> start(List<DlqEntry> entries, double ratePerSecond) {
+        if (current != null && !current.done) {
+            throw new IllegalStateException("a replay is already running: " + current.describe());
+        }
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        Replay replay = new Replay(entries, Math.min(ratePerSecond, maxRate));
+        current = replay;
+        executor.execute(() -> run(replay));
+        log.info("Replaying {} DLQ entries at {}/s", entries.size(), replay.rate);
+        return replay.describe();
+    }
+
+    /** Stop the running replay after the record in flight. */
+    public synchronized void cancel() {
+        if (current != null) current.cancelled = true;
+    }
+
+    public synchronized Map<String, Object> status() {
+        return current == null ? Map.of("state", "idle") : current.describe();
+    }
+
+    static ProducerRecord<String, String> toReplay(DlqEntry entry) {
+        String topic = entry.header(RetryRouter.ORIGINAL_TOPIC_HEADER);
+        RecordHeaders headers = new RecordHeaders();
+        for (Header h : entry.headers()) {
+            if (!DROPPED_HEADERS.contains(h.key())) {
+                headers.add(h);
+            }
+        }
+        return new ProducerRecord<>(topic == null ? KafkaTopics.TOPIC_TWO : topic, null, entry.key(), entry.value(), headers);
+    }
+
+    // open-loop pacing: record i is due at start + i / rate, so a slow send doesn't lower the average rate
+    private void run(Replay replay) {
+        long intervalNanos = (long) (1_000_000_000L / replay.rate);
+        long start = System.nanoTime();
+        for (int i = 0; i < replay.entries.size() && !replay.cancelled; i++) {
+            long wait = start + i * intervalNanos - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            kafkaTemplate.send(toReplay(replay.entries.get(i))).whenComplete((res, ex) -> {
+                if (ex == null) {
+                    replay.sent.incrementAndGet();
+                } else {
+                    replay.failed.incrementAndGet();
+                    log.warn("DLQ replay send failed: {}", ex.getMessage());
+                }
+            });
+            replay.dispatched.incrementAndGet();
+        }
+        replay.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        replay.done = true;
+        log.info("DLQ replay {}: {} of {} dispatched in {}ms", replay.cancelled ? "cancelled" : "finished",
+                replay.dispatched.get(), replay.entries.size(), replay.elapsedMillis);
+    }
+
+    @Override
+    public void destroy() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private static final class Replay {
+        private final List<DlqEntry> entries;
+        private final double rate;
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile long elapsedMillis;
+
+        private Replay(List<DlqEntry> entries, double rate) {
+            this.entries = entries;
+            this.rate = rate;
+        }
+
+        private Map<String, Object> describe() {
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("state", !done ? "running" : cancelled ? "cancelled" : "finished");
+            view.put("selected", entries.size());
+            view.put("rate", rate);
+            view.put("dispatched", dispatched.get());
+            view.put("sent", sent.get());
+            view.put("failed", failed.get());
+            if (done) view.put("elapsedMillis", elapsedMillis);
+            return view;
+        }
+    }
+}
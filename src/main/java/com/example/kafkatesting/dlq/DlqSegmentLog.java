@@ -0,0 +1,414 @@
+package com.example.kafkatesting.dlq;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of dead-lettered records in memory-mapped segment files.
+ *
+ * Each segment is a file of segmentBytes, mapped once and filled front to
+ * back; a record is [int length][int crc32c][body], and a zero length marks
+ * the end of the written data. Appends only copy into the mapping, and
+ * {@link #flush} forces the active segment to disk once per batch. A
+ * position is the segment's base position plus the offset in it, so
+ * positions grow across segments and stay valid until the segment is
+ * dropped by retention (oldest first, beyond maxSegments).
+ *
+ * Two in-memory indexes are rebuilt by scanning the segments on open: key to
+ * positions, and a sparse time index (one entry every {@link #INDEX_INTERVAL}
+ * bytes) over the store time, which is kept non-decreasing so a time range
+ * is a binary search plus a short scan. A torn record at the end of the
+ * last segment (crash mid-append) fails its length or crc check and is
+ * dropped on open.
+ */
+public final class DlqSegmentLog implements Closeable {
+
+    static final int INDEX_INTERVAL = 4096;
+    private static final String SUFFIX = ".dlq";
+    private static final int RECORD_HEADER = 8;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final LongSupplier clock;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Positions> keyIndex = new HashMap<>();
+    private final CRC32C crc = new CRC32C();
+    private long entries;
+    private long lastTimestamp;
+
+    public DlqSegmentLog(Path dir, int segmentBytes, int maxSegments) throws IOException {
+        this(dir, segmentBytes, maxSegments, System::currentTimeMillis);
+    }
+
+    DlqSegmentLog(Path dir, int segmentBytes, int maxSegments, LongSupplier clock) throws IOException {
+        if (segmentBytes < INDEX_INTERVAL) throw new IllegalArgumentException("segmentBytes must be at least " + INDEX_INTERVAL);
+        if (maxSegments < 1) throw new IllegalArgumentException("maxSegments must be positive");
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.clock = clock;
+        Files.createDirectories(dir);
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(SUFFIX))
+                    .forEach(n -> bases.add(Long.parseLong(n.substring(0, n.length() - SUFFIX.length()))));
+        }
+        bases.sort(null);
+        for (long base : bases) {
+            Segment s = new Segment(base, segmentFile(base), segmentBytes);
+            segments.add(s);
+            recover(s);
+        }
+        if (segments.isEmpty()) {
+            segments.add(new Segment(0, segmentFile(0), segmentBytes));
+        }
+    }
+
+    /**
+     * Append a record; returns its position. Not durable until {@link #flush}.
+     */
+    public synchronized long append(String key, String value, Headers headers) throws IOException {
+        long timestamp = Math.max(lastTimestamp, clock.getAsLong());
+        byte[] k = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        byte[] v = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        Header[] hs = headers == null ? new Header[0] : headers.toArray();
+        int bodyLength = 8 + 4 + length(k) + 4 + length(v) + 2;
+        for (Header h : hs) {
+            bodyLength += 2 + h.key().getBytes(StandardCharsets.UTF_8).length + 4 + length(h.value());
+        }
+        int recordLength = RECORD_HEADER + bodyLength;
+        if (recordLength > segmentBytes) {
+            throw new IllegalArgumentException("record of " + recordLength + " bytes does not fit a segment of " + segmentBytes);
+        }
+
+        Segment s = active();
+        if (s.size + recordLength > segmentBytes) {
+            s = roll();
+        }
+        MappedByteBuffer map = s.map;
+        int start = s.size;
+        int at = start + RECORD_HEADER;
+        map.putLong(at, timestamp);
+        at = putBytes(map, at + 8, k);
+        at = putBytes(map, at, v);
+        map.putShort(at, (short) hs.length);
+        at += 2;
+        for (Header h : hs) {
+            byte[] hk = h.key().getBytes(StandardCharsets.UTF_8);
+            map.putShort(at, (short) hk.length);
+            map.put(at + 2, hk);
+            at = putBytes(map, at + 2 + hk.length, h.value());
+        }
+        map.putInt(start + 4, checksum(map, start + RECORD_HEADER, bodyLength));
+        // the length goes last: until it is written, a reader (or recovery) sees the end of the log here
+        map.putInt(start, bodyLength);
+
+        long position = s.base + start;
+        s.indexTime(timestamp, start);
+        s.size = start + recordLength;
+        if (key != null) {
+            keyIndex.computeIfAbsent(key, x -> new Positions()).add(position);
+        }
+        entries++;
+        lastTimestamp = timestamp;
+        return position;
+    }
+
+    /** Force appended records of the active segment to disk. */
+    public synchronized void flush() {
+        active().map.force();
+    }
+
+    /** The entry at {@code position}, or null if there is none (or it was dropped by retention). */
+    public synchronized DlqEntry read(long position) {
+        Segment s = segmentFor(position);
+        if (s == null) return null;
+        long offset = position - s.base;
+        return offset < s.size && isRecordAt(s, (int) offset) ? decode(s, (int) offset) : null;
+    }
+
+    /** The last {@code limit} entries with this key, oldest first. */
+    public synchronized List<DlqEntry> byKey(String key, int limit) {
+        Positions positions = keyIndex.get(key);
+        List<DlqEntry> result = new ArrayList<>();
+        if (positions == null) return result;
+        for (int i = Math.max(0, positions.size - limit); i < positions.size; i++) {
+            DlqEntry e = read(positions.values[i]);
+            if (e != null) result.add(e);
+        }
+        return result;
+    }
+
+    /** Up to {@code limit} entries stored in [from, to] (epoch millis), oldest first. */
+    public synchronized List<DlqEntry> byTime(long from, long to, int limit) {
+        List<DlqEntry> result = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.indexCount == 0 || s.lastTimestamp < from) continue;
+            if (s.indexTimes[0] > to) break;
+            for (int offset = s.floorOffset(from); offset < s.size; offset = next(s, offset)) {
+                long timestamp = s.map.getLong(offset + RECORD_HEADER);
+                if (timestamp > to) return result;
+                if (timestamp >= from) {
+                    result.add(decode(s, offset));
+                    if (result.size() >= limit) return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized long entries() {
+        return entries;
+    }
+
+    /** Bytes of record data currently in the log. */
+    public synchronized long bytes() {
+        long bytes = 0;
+        for (Segment s : segments) bytes += s.size;
+        return bytes;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment s : segments) {
+            s.map.force();
+            s.channel.close();
+        }
+    }
+
+    private Segment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment roll() throws IOException {
+        Segment previous = active();
+        previous.map.force();
+        long base = previous.base + previous.size;
+        Segment s = new Segment(base, segmentFile(base), segmentBytes);
+        segments.add(s);
+        while (segments.size() > maxSegments) {
+            drop(segments.remove(0));
+        }
+        return s;
+    }
+
+    // retention: the mapping itself is released when it is garbage collected
+    private void drop(Segment s) throws IOException {
+        s.channel.close();
+        Files.deleteIfExists(s.file);
+        entries -= s.entryCount;
+        long firstKept = segments.get(0).base;
+        Iterator<Positions> it = keyIndex.values().iterator();
+        while (it.hasNext()) {
+            Positions p = it.next();
+            p.dropBelow(firstKept);
+            if (p.size == 0) it.remove();
+        }
+    }
+
+    // the last segment starting at or before the position
+    private Segment segmentFor(long position) {
+        int lo = 0, hi = segments.size() - 1;
+        Segment found = null;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Segment s = segments.get(mid);
+            if (s.base <= position) {
+                found = s;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // scan a segment from the start, stopping at the zero terminator or the first bad record
+    private void recover(Segment s) {
+        int offset = 0;
+        while (offset + RECORD_HEADER <= segmentBytes) {
+            int length = s.map.getInt(offset);
+            if (length == 0) break;
+            // subtracted: a torn length near Integer.MAX_VALUE must not overflow the bound
+            if (length < 0 || length > segmentBytes - offset - RECORD_HEADER
+                    || s.map.getInt(offset + 4) != checksum(s.map, offset + RECORD_HEADER, length)) {
+                // torn tail: clear it so later appends are not followed by stale bytes
+                for (int i = offset; i < segmentBytes; i++) s.map.put(i, (byte) 0);
+                break;
+            }
+            long timestamp = s.map.getLong(offset + RECORD_HEADER);
+            s.indexTime(timestamp, offset);
+            int keyLength = s.map.getInt(offset + RECORD_HEADER + 8);
+            if (keyLength >= 0) {
+                byte[] key = new byte[keyLength];
+                s.map.get(offset + RECORD_HEADER + 12, key);
+                keyIndex.computeIfAbsent(new String(key, StandardCharsets.UTF_8), x -> new Positions()).add(s.base + offset);
+            }
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            entries++;
+            offset += RECORD_HEADER + length;
+        }
+        s.size = offset;
+    }
+
+    // a position from outside (endpoint, replay request) may not point at a record start
+    private boolean isRecordAt(Segment s, int offset) {
+        if (offset < 0 || offset + RECORD_HEADER > s.size) return false;
+        int length = s.map.getInt(offset);
+        return length > 0 && length <= s.size - offset - RECORD_HEADER
+                && s.map.getInt(offset + 4) == checksum(s.map, offset + RECORD_HEADER, length);
+    }
+
+    private DlqEntry decode(Segment s, int offset) {
+        MappedByteBuffer map = s.map;
+        int at = offset + RECORD_HEADER;
+        long timestamp = map.getLong(at);
+        at += 8;
+        byte[] k = getBytes(map, at);
+        at += 4 + length(k);
+        byte[] v = getBytes(map, at);
+        at += 4 + length(v);
+        int headerCount = map.getShort(at);
+        at += 2;
+        RecordHeaders headers = new RecordHeaders();
+        for (int i = 0; i < headerCount; i++) {
+            byte[] hk = new byte[map.getShort(at)];
+            map.get(at + 2, hk);
+            at += 2 + hk.length;
+            byte[] hv = getBytes(map, at);
+            at += 4 + length(hv);
+            headers.add(new String(hk, StandardCharsets.UTF_8), hv);
+        }
+        return new DlqEntry(s.base + offset, timestamp,
+                k == null ? null : new String(k, StandardCharsets.UTF_8),
+                v == null ? null : new String(v, StandardCharsets.UTF_8),
+                headers);
+    }
+
+    private static int next(Segment s, int offset) {
+        return offset + RECORD_HEADER + s.map.getInt(offset);
+    }
+
+    private int checksum(MappedByteBuffer map, int offset, int length) {
+        crc.reset();
+        crc.update(map.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static int putBytes(MappedByteBuffer map, int at, byte[] bytes) {
+        if (bytes == null) {
+            map.putInt(at, -1);
+            return at + 4;
+        }
+        map.putInt(at, bytes.length);
+        map.put(at + 4, bytes);
+        return at + 4 + bytes.length;
+    }
+
+    private static byte[] getBytes(MappedByteBuffer map, int at) {
+        int length = map.getInt(at);
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        map.get(at + 4, bytes);
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private Path segmentFile(long base) {
+        return dir.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+        private int size;
+        private int entryCount;
+        // sparse time index: store time and offset of the first record at or after every INDEX_INTERVAL bytes
+        private long[] indexTimes = new long[16];
+        private int[] indexOffsets = new int[16];
+        private int indexCount;
+        private long lastTimestamp;
+
+        private Segment(long base, Path file, int segmentBytes) throws IOException {
+            this.base = base;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+
+        private void indexTime(long timestamp, int offset) {
+            entryCount++;
+            lastTimestamp = timestamp;
+            if (indexCount > 0 && offset - indexOffsets[indexCount - 1] < INDEX_INTERVAL) return;
+            if (indexCount == indexTimes.length) {
+                indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+            }
+            indexTimes[indexCount] = timestamp;
+            indexOffsets[indexCount] = offset;
+            indexCount++;
+        }
+
+        // offset of the last indexed record stored before {@code timestamp}, to scan forward from
+        private int floorOffset(long timestamp) {
+            int lo = 0, hi = indexCount - 1, found = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indexTimes[mid] < timestamp) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return indexOffsets[found];
+        }
+    }
+
+    private static final class Positions {
+        private long[] values = new long[4];
+        private int size;
+
+        private void add(long position) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = position;
+        }
+
+        private void dropBelow(long position) {
+            int from = 0;
+            while (from < size && values[from] < position) from++;
+            System.arraycopy(values, from, values, 0, size - from);
+            size -= from;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.kafkatesting.dlq;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Local store of dead-lettered records for inspection and replay, backed by a
+ * {@link DlqSegmentLog} in app.kafka.dlq.store.dir.
+ *
+ * The directory is locked while the store is open; if another instance (or
+ * another application context in the same JVM) holds it, or the directory is
+ * empty or unusable, the store stays disabled and DLQ records are only logged.
+ */
+@Component
+public class DlqStore implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DlqStore.class);
+
+    private final DlqSegmentLog segmentLog;
+    private final FileChannel lockChannel;
+
+    public DlqStore(KafkaMetrics metrics,
+                    @Value("${app.kafka.dlq.store.dir:}") String dir,
+                    @Value("${app.kafka.dlq.store.segment-bytes:67108864}") int segmentBytes,
+                    @Value("${app.kafka.dlq.store.max-segments:16}") int maxSegments) {
+        DlqSegmentLog opened = null;
+        FileChannel lock = null;
+        if (!dir.isBlank()) {
+            Path path = Path.of(dir);
+            try {
+                Files.createDirectories(path);
+                lock = FileChannel.open(path.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (tryLock(lock) == null) {
+                    log.warn("DLQ store {} is in use by another instance, DLQ records will only be logged", path);
+                    lock.close();
+                    lock = null;
+                } else {
+                    long start = System.nanoTime();
+                    opened = new DlqSegmentLog(path, segmentBytes, maxSegments);
+                    log.info("Opened DLQ store {} with {} entries in {}ms", path, opened.entries(),
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            } catch (IOException e) {
+                log.warn("Could not open DLQ store {}, DLQ records will only be logged", path, e);
+                closeQuietly(lock);
+                lock = null;
+            }
+        }
+        this.segmentLog = opened;
+        this.lockChannel = lock;
+        if (opened != null) {
+            metrics.bindDlqStore(opened);
+        }
+    }
+
+    public boolean isEnabled() {
+        return segmentLog != null;
+    }
+
+    /** Append a polled batch and force it to disk once; the caller acks afterwards. */
+    public void store(List<ConsumerRecord<String, String>> records) throws IOException {
+        if (segmentLog == null || records.isEmpty()) return;
+        for (ConsumerRecord<String, String> record : records) {
+            segmentLog.append(record.key(), record.value(), record.headers());
+        }
+        segmentLog.flush();
+    }
+
+    public DlqEntry read(long position) {
+        return segmentLog == null ? null : segmentLog.read(position);
+    }
+
+    public List<DlqEntry> byKey(String key, int limit) {
+        return segmentLog == null ? List.of() : segmentLog.byKey(key, limit);
+    }
+
+    public List<DlqEntry> byTime(long from, long to, int limit) {
+        return segmentLog == null ? List.of() : segmentLog.byTime(from, to, limit);
+    }
+
+    public long entries() {
+        return segmentLog == null ? 0 : segmentLog.entries();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (segmentLog != null) {
+            segmentLog.close();
+        }
+        closeQuietly(lockChannel);
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by this JVM, e.g. a second application context in tests
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing to release beyond the channel
+        }
+    }
+}
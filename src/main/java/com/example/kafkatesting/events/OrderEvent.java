@@ -0,0 +1,8 @@
+package com.example.kafkatesting.events;
+
+/**
+ * Typed event on topic-two-events, encoded by the configured
+ * {@link com.example.kafkatesting.codec.EventCodec}. The record key is the order id.
+ */
+public record OrderEvent(String orderId, OrderStatus status, String region, long amountCents, long timestamp) {
+}
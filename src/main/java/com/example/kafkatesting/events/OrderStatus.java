@@ -0,0 +1,11 @@
+package com.example.kafkatesting.events;
+
+public enum OrderStatus {
+    CREATED,
+    PAID,
+    SHIPPED,
+    DELIVERED,
+    CANCELLED,
+    // processing an event in this state fails, like a String payload containing "fail"
+    FAILED
+}
@@ -0,0 +1,79 @@
+package com.example.kafkatesting.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled, parameterized logging for per-message events.
+ *
+ * Messages use SLF4J placeholders and are only formatted when the event is
+ * both sampled and enabled for its logger. The "events" loggers are routed
+ * through an asynchronous appender (see logback-spring.xml), so the calling
+ * thread never waits on console I/O. Sampling is random per call and does
+ * not touch shared state.
+ */
+@Component
+public class EventLogger {
+
+    public static final String LOGGER_PREFIX = "events.";
+
+    private final Logger[] loggers = new Logger[EventType.values().length];
+    private final int[] sampleRates = new int[EventType.values().length];
+
+    public EventLogger(Environment env) {
+        for (EventType type : EventType.values()) {
+            loggers[type.ordinal()] = LoggerFactory.getLogger(LOGGER_PREFIX + type.key());
+            sampleRates[type.ordinal()] = env.getProperty("app.logging.events.sample-rate." + type.key(),
+                    Integer.class, type.defaultSampleRate());
+        }
+    }
+
+    /**
+     * True if this call should log an event of the given type. Use it to guard
+     * call sites whose arguments are themselves costly to compute.
+     */
+    public boolean isEnabled(EventType type) {
+        int rate = sampleRates[type.ordinal()];
+        if (rate <= 0) return false;
+        if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) return false;
+        Logger logger = loggers[type.ordinal()];
+        return switch (type.level()) {
+            case ERROR -> logger.isErrorEnabled();
+            case WARN -> logger.isWarnEnabled();
+            case INFO -> logger.isInfoEnabled();
+            case DEBUG -> logger.isDebugEnabled();
+            case TRACE -> logger.isTraceEnabled();
+        };
+    }
+
+    public void log(EventType type, String message, Object arg) {
+        if (isEnabled(type)) write(type, message, arg);
+    }
+
+    public void log(EventType type, String message, Object arg1, Object arg2) {
+        if (isEnabled(type)) write(type, message, arg1, arg2);
+    }
+
+    public void log(EventType type, String message, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(type)) write(type, message, arg1, arg2, arg3);
+    }
+
+    public void log(EventType type, String message, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(type)) write(type, message, arg1, arg2, arg3, arg4);
+    }
+
+    private void write(EventType type, String message, Object... args) {
+        Logger logger = loggers[type.ordinal()];
+        switch (type.level()) {
+            case ERROR -> logger.error(message, args);
+            case WARN -> logger.warn(message, args);
+            case INFO -> logger.info(message, args);
+            case DEBUG -> logger.debug(message, args);
+            case TRACE -> logger.trace(message, args);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.kafkatesting.logging;
+
+import org.slf4j.event.Level;
+
+/**
+ * Per-message events on the produce/consume hot paths. Each type has its own
+ * logger (under "events.") and sample rate, so successes can be thinned out
+ * while every failure is still logged.
+ */
+public enum EventType {
+
+    SENT("producer.sent", Level.INFO, 100),
+    SEND_FAILED("producer.send-failed", Level.ERROR, 1),
+    RECEIVED("consumer.received", Level.INFO, 100),
+    PROCESSED("consumer.processed", Level.INFO, 100),
+    PROCESS_FAILED("consumer.process-failed", Level.WARN, 1),
+    DUPLICATE_SKIPPED("consumer.duplicate-skipped", Level.INFO, 1),
+    BATCH("consumer.batch", Level.INFO, 10),
+    RETRY_SCHEDULED("retry.scheduled", Level.INFO, 1),
+    DEAD_LETTERED("retry.dead-lettered", Level.ERROR, 1),
+    REPUBLISH_FAILED("retry.republish-failed", Level.ERROR, 1),
+    DLQ_RECEIVED("dlq.received", Level.ERROR, 1);
+
+    private final String key;
+    private final Level level;
+    private final int defaultSampleRate;
+
+    EventType(String key, Level level, int defaultSampleRate) {
+        this.key = key;
+        this.level = level;
+        this.defaultSampleRate = defaultSampleRate;
+    }
+
+    /** Suffix of the logger name and of the app.logging.events.sample-rate.* property. */
+    public String key() {
+        return key;
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    /** Log 1 in N events of this type; 1 logs every event, 0 disables the type. */
+    public int defaultSampleRate() {
+        return defaultSampleRate;
+    }
+}
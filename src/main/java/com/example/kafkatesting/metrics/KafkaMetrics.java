@@ -0,0 +1,335 @@
+package com.example.kafkatesting.metrics;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.dedup.DedupCache;
+import com.example.kafkatesting.dlq.DlqSegmentLog;
+import com.example.kafkatesting.processing.CommitCoalescer;
+import com.example.kafkatesting.processing.HandOffBuffer;
+import com.example.kafkatesting.retry.RetryTier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Application metrics for producers, listeners, retries and the DLQ, exported
+ * through the Prometheus actuator endpoint.
+ *
+ * Meters are registered once (per topic or listener) and cached, so recording
+ * is a map lookup at most and allocates nothing per event. Per-partition
+ * consumer lag comes from the Kafka client metrics that Spring Boot binds to
+ * the consumer factory (kafka_consumer_fetch_manager_records_lag).
+ */
+@Component
+public class KafkaMetrics {
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, SendMeters> sendMeters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> sendFailures = new ConcurrentHashMap<>();
+    private final Counter[] retriesByAttempt;
+    private final Counter deadLettered;
+    private final Counter republishFailed;
+    private final Counter duplicatesSkipped;
+
+    public KafkaMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.retriesByAttempt = new Counter[RetryTier.maxRetries() + 1];
+        for (int attempt = 1; attempt <= RetryTier.maxRetries(); attempt++) {
+            retriesByAttempt[attempt] = Counter.builder("app.kafka.retry.scheduled")
+                    .description("Failed records republished to a retry tier, by attempt number")
+                    .tag("attempt", Integer.toString(attempt))
+                    .tag("tier", RetryTier.forAttempt(attempt).topic())
+                    .register(registry);
+        }
+        this.deadLettered = Counter.builder("app.kafka.dlq.sent")
+                .description("Records sent to the DLQ after exhausting retries")
+                .register(registry);
+        this.republishFailed = Counter.builder("app.kafka.republish.failed")
+                .description("Retry or DLQ sends that failed")
+                .register(registry);
+        this.duplicatesSkipped = Counter.builder("app.kafka.dedup.skipped")
+                .description("Records skipped because their event id was already processed")
+                .register(registry);
+    }
+
+    // the latency timer of a topic, and the latency of its first acked send (-1 until then)
+    private record SendMeters(Timer latency, AtomicLong firstMillis) {
+    }
+
+    /** Send-to-ack latency of one record, in milliseconds. */
+    public void recordSend(String topic, long latencyMillis) {
+        SendMeters meters = sendMeters.computeIfAbsent(topic, this::sendMeters);
+        AtomicLong first = meters.firstMillis();
+        if (first.get() < 0) {
+            first.compareAndSet(-1, latencyMillis);
+        }
+        meters.latency().record(latencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private SendMeters sendMeters(String topic) {
+        AtomicLong first = new AtomicLong(-1);
+        Gauge.builder("app.kafka.send.first.latency", first, AtomicLong::get)
+                .description("Send-to-ack time of the first record sent to the topic since startup, -1 before it")
+                .baseUnit("milliseconds")
+                .tag("topic", topic)
+                .register(registry);
+        return new SendMeters(Timer.builder("app.kafka.send.latency")
+                .description("Time from send() to broker acknowledgement")
+                .tag("topic", topic)
+                .publishPercentileHistogram()
+                .register(registry), first);
+    }
+
+    /** Duration of one startup warm-up phase; recorded once per start. */
+    public void recordStartupPhase(String phase, long nanos) {
+        Timer.builder("app.kafka.startup.phase")
+                .description("Time spent in a Kafka warm-up phase before the application reported ready")
+                .tag("phase", phase)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSendFailure(String topic) {
+        sendFailures.computeIfAbsent(topic, t -> Counter.builder("app.kafka.send.failed")
+                        .tag("topic", t)
+                        .register(registry))
+                .increment();
+    }
+
+    /** Processing-time timer for a listener; callers keep the instance and record into it. */
+    public Timer processingTimer(String listener) {
+        return Timer.builder("app.kafka.process.duration")
+                .description("Time spent processing one record")
+                .tag("listener", listener)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Records per batch (per transaction for transactional listeners); callers keep the instance. */
+    public DistributionSummary batchSizeSummary(String listener) {
+        return DistributionSummary.builder("app.kafka.batch.records")
+                .description("Records handled in one listener batch")
+                .tag("listener", listener)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Expose a listener's striped record counter. */
+    public void bindRecordCounter(String listener, LongAdder counter) {
+        FunctionCounter.builder("app.kafka.records.processed", counter, LongAdder::sum)
+                .description("Records processed successfully")
+                .tag("listener", listener)
+                .register(registry);
+    }
+
+    /** Outcome counters of one fan-out handler. */
+    public void bindHandler(String handler, LongAdder handled, LongAdder failed) {
+        FunctionCounter.builder("app.kafka.handler.records", handled, LongAdder::sum)
+                .description("Records a fan-out handler finished, by result")
+                .tag("handler", handler)
+                .tag("result", "success")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.handler.records", failed, LongAdder::sum)
+                .tag("handler", handler)
+                .tag("result", "failure")
+                .register(registry);
+    }
+
+    public void retryScheduled(int attempt) {
+        if (attempt > 0 && attempt < retriesByAttempt.length) {
+            retriesByAttempt[attempt].increment();
+        }
+    }
+
+    public void deadLettered() {
+        deadLettered.increment();
+    }
+
+    public void republishFailed() {
+        republishFailed.increment();
+    }
+
+    public void duplicateSkipped() {
+        duplicatesSkipped.increment();
+    }
+
+    public void bindDedup(DedupCache cache) {
+        Gauge.builder("app.kafka.dedup.size", cache, DedupCache::size)
+                .description("Event ids remembered by the dedup cache")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.dedup.evictions", cache, DedupCache::evictions)
+                .description("Event ids evicted from the full dedup cache before their TTL")
+                .register(registry);
+    }
+
+    public void bindClaimCheck(ClaimCheck claimCheck) {
+        FunctionCounter.builder("app.kafka.claim-check.stored", claimCheck, ClaimCheck::getStoredCount)
+                .description("Payloads sent as a blob store reference instead of inline")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.claim-check.deduplicated", claimCheck, ClaimCheck::getDeduplicatedCount)
+                .description("Claim-checked payloads the blob store already held")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.claim-check.cache", claimCheck, ClaimCheck::getCacheHits)
+                .description("Claim-check references resolved, by cache result")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.claim-check.cache", claimCheck, ClaimCheck::getCacheMisses)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("app.kafka.claim-check.cache.bytes", claimCheck, ClaimCheck::getCachedBytes)
+                .description("Payload bytes held by the claim-check cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public void bindAggregation(LongSupplier entries, LongAdder lateDropped) {
+        Gauge.builder("app.kafka.aggregation.entries", entries, LongSupplier::getAsLong)
+                .description("Window aggregates held by the assigned partitions' stores")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.aggregation.late", lateDropped, LongAdder::sum)
+                .description("Records dropped because all their windows were past retention")
+                .register(registry);
+    }
+
+    public void bindDlqStore(DlqSegmentLog log) {
+        Gauge.builder("app.kafka.dlq.stored", log, DlqSegmentLog::entries)
+                .description("DLQ records in the local store")
+                .register(registry);
+        Gauge.builder("app.kafka.dlq.stored.bytes", log, DlqSegmentLog::bytes)
+                .description("Bytes of DLQ records in the local store")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public void bindHandOff(HandOffBuffer buffer) {
+        String listener = buffer.getListenerId();
+        Gauge.builder("app.kafka.handoff.depth", buffer, HandOffBuffer::getDepth)
+                .description("Records handed off to workers and not yet finished")
+                .tag("listener", listener)
+                .register(registry);
+        Gauge.builder("app.kafka.handoff.bytes", buffer, HandOffBuffer::getBytes)
+                .baseUnit("bytes")
+                .tag("listener", listener)
+                .register(registry);
+        Gauge.builder("app.kafka.handoff.paused", buffer, b -> b.isPaused() ? 1 : 0)
+                .tag("listener", listener)
+                .register(registry);
+        FunctionCounter.builder("app.kafka.handoff.pauses", buffer, HandOffBuffer::getPauseCount)
+                .tag("listener", listener)
+                .register(registry);
+        FunctionCounter.builder("app.kafka.handoff.held", buffer, HandOffBuffer::getFailedCount)
+                .description("Handed-off records whose work failed; their partition is read again from them")
+                .tag("listener", listener)
+                .register(registry);
+        FunctionCounter.builder("app.kafka.handoff.paused.time", buffer, b -> b.getPausedMillis() / 1000.0)
+                .description("Total time the listener container was paused by the hand-off buffer")
+                .baseUnit("seconds")
+                .tag("listener", listener)
+                .register(registry);
+    }
+
+    public void bindCommits(CommitCoalescer commits) {
+        FunctionCounter.builder("app.kafka.commit.acks", commits, CommitCoalescer::getCommitCount)
+                .description("Coalesced offset acknowledgments handed to the listener containers")
+                .register(registry);
+        Gauge.builder("app.kafka.commit.pending", commits, CommitCoalescer::getPendingCount)
+                .description("Records whose offsets cannot be committed yet (still running, sending, or behind one that is)")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.commit.held", commits, CommitCoalescer::getFailedCount)
+                .description("Records whose retry/DLQ send failed; their partition is read again from them")
+                .register(registry);
+    }
+
+    public void bindKeySkew(IntSupplier hotKeys, LongAdder spread) {
+        Gauge.builder("app.kafka.partitioner.hot.keys", hotKeys, IntSupplier::getAsInt)
+                .description("Keys over the hot-key share of their topic in the current window")
+                .strongReference(true)
+                .register(registry);
+        FunctionCounter.builder("app.kafka.partitioner.spread", spread, LongAdder::sum)
+                .description("Records of hot keys sent to the least loaded partition instead of their hash partition")
+                .register(registry);
+    }
+
+    /** Send rates of one partition over the partitioner's last window. */
+    public void bindPartitionLoad(String topic, int partition, DoubleSupplier records, DoubleSupplier bytes) {
+        String p = Integer.toString(partition);
+        Gauge.builder("app.kafka.partition.send.records", records, DoubleSupplier::getAsDouble)
+                .description("Records per second sent to the partition")
+                .tag("topic", topic)
+                .tag("partition", p)
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("app.kafka.partition.send.bytes", bytes, DoubleSupplier::getAsDouble)
+                .description("Key and value bytes per second sent to the partition")
+                .baseUnit("bytes")
+                .tag("topic", topic)
+                .tag("partition", p)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /** Profile of the adaptive shared producer, by index from latency to throughput. */
+    public void bindProducerTuning(IntSupplier profile, LongAdder switches, IntSupplier retired) {
+        Gauge.builder("app.kafka.producer.profile", profile, IntSupplier::getAsInt)
+                .description("Index of the adaptive producer's profile in app.kafka.producer.adaptive.profiles")
+                .strongReference(true)
+                .register(registry);
+        FunctionCounter.builder("app.kafka.producer.profile.switches", switches, LongAdder::sum)
+                .description("Profile switches made by the producer auto-tuner")
+                .register(registry);
+        Gauge.builder("app.kafka.producer.profile.retired", retired, IntSupplier::getAsInt)
+                .description("Producers switched away from that still have sends to finish")
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /** Send outcomes and queue depth of one tenant of the producer flow control. */
+    public void bindTenantQuota(String tenant, LongAdder admitted, LongAdder rejected, IntSupplier queued) {
+        FunctionCounter.builder("app.kafka.quota.records", admitted, LongAdder::sum)
+                .description("Records of a tenant handed to the producer, or rejected over its quota")
+                .tag("tenant", tenant)
+                .tag("result", "admitted")
+                .register(registry);
+        FunctionCounter.builder("app.kafka.quota.records", rejected, LongAdder::sum)
+                .tag("tenant", tenant)
+                .tag("result", "rejected")
+                .register(registry);
+        Gauge.builder("app.kafka.quota.queued", queued, IntSupplier::getAsInt)
+                .description("Records of a tenant waiting for its quota")
+                .tag("tenant", tenant)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    public void bindFlowControl(DoubleSupplier factor) {
+        Gauge.builder("app.kafka.quota.factor", factor, DoubleSupplier::getAsDouble)
+                .description("Share of the configured tenant rates in force, below 1 while the producer is throttled or short of buffer")
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /** Current consumer count and group lag of a container managed by the autoscaler. */
+    public void bindAutoscaleTarget(String listener, IntSupplier concurrency, LongSupplier lag) {
+        Gauge.builder("app.kafka.autoscale.concurrency", concurrency, IntSupplier::getAsInt)
+                .description("Consumers the listener container runs")
+                .tag("listener", listener)
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("app.kafka.autoscale.lag", lag, LongSupplier::getAsLong)
+                .description("Group lag on the container's topics at the last autoscaler tick")
+                .tag("listener", listener)
+                .strongReference(true)
+                .register(registry);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.kafkatesting.metrics;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.LoggingProducerListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Producer listener for the auto-configured KafkaTemplate (replaces Boot's
+ * default LoggingProducerListener and keeps its error logging).
+ *
+ * Latency is taken from the record's create timestamp, which the producer
+ * stamps at send() time, so one shared listener can time every send without
+ * capturing a start time per record.
+ */
+@Component
+public class MetricsProducerListener extends LoggingProducerListener<Object, Object> {
+
+    private final KafkaMetrics metrics;
+
+    public MetricsProducerListener(KafkaMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onSuccess(ProducerRecord<Object, Object> record, RecordMetadata metadata) {
+        if (metadata.hasTimestamp()) {
+            metrics.recordSend(metadata.topic(), System.currentTimeMillis() - metadata.timestamp());
+        }
+    }
+
+    @Override
+    public void onError(ProducerRecord<Object, Object> record, RecordMetadata metadata, Exception exception) {
+        metrics.recordSendFailure(record.topic());
+        super.onError(record, metadata, exception);
+    }
+}
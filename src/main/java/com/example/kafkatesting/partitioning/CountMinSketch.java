@@ -0,0 +1,56 @@
+package com.example.kafkatesting.partitioning;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch over 64-bit key hashes: {@link #DEPTH} rows of counters,
+ * an estimate is the smallest of a key's counters, so it never undercounts
+ * and overcounts by at most total / width with high probability.
+ *
+ * Counters are atomic, so concurrent producer threads add without locking.
+ * The row indexes come from the two halves of the hash (double hashing), so
+ * the caller hashes the key once.
+ */
+final class CountMinSketch {
+
+    static final int DEPTH = 4;
+
+    private final AtomicLongArray counts;
+    private final int width;
+    private final int mask;
+
+    /** width is rounded up to a power of two. */
+    CountMinSketch(int width) {
+        this.width = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.counts = new AtomicLongArray(DEPTH * this.width);
+    }
+
+    /** Count one occurrence and return the key's estimate including it. */
+    long add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counts.incrementAndGet(row * width + ((h1 + row * h2) & mask)));
+        }
+        return min;
+    }
+
+    long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counts.get(row * width + ((h1 + row * h2) & mask)));
+        }
+        return min;
+    }
+
+    /** Reset every counter; adds racing with this may survive it, which only overcounts. */
+    void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.kafkatesting.partitioning;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kafka producer partitioner (partitioner.class) that places keyed records
+ * exactly like the default partitioner (murmur2 of the key bytes modulo the
+ * partition count) and reports every send to the {@link KeySkewMonitor} it
+ * finds in its configs ({@link KeySkewMonitor#CONFIG}). Hot keys of the
+ * monitor's spread-topics go to the least loaded available partition instead.
+ *
+ * Records without a key stick to one random available partition until about
+ * batch.size bytes went there, which is what the built-in partitioner does to
+ * fill batches. Without a monitor in the configs it only partitions.
+ */
+public class HotKeyPartitioner implements Partitioner {
+
+    private final ConcurrentHashMap<String, Sticky> sticky = new ConcurrentHashMap<>();
+    // set by onNewBatch: the producer asks again for the same record, which was already counted
+    private final ThreadLocal<Boolean> repeat = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private KeySkewMonitor monitor;
+    private int batchSize = 16384;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        if (configs.get(KeySkewMonitor.CONFIG) instanceof KeySkewMonitor m) {
+            monitor = m;
+        }
+        Object size = configs.get(ProducerConfig.BATCH_SIZE_CONFIG);
+        if (size != null) {
+            batchSize = Math.max(1, Integer.parseInt(size.toString()));
+        }
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionsForTopic(topic).size();
+        boolean count = !repeat.get();
+        if (!count) {
+            repeat.set(Boolean.FALSE);
+        }
+        int size = (keyBytes == null ? 0 : keyBytes.length) + (valueBytes == null ? 0 : valueBytes.length);
+        if (keyBytes == null) {
+            int partition = stickyPartition(topic, size, cluster, partitions);
+            if (monitor != null && count) {
+                monitor.load(topic, partitions).add(partition, size);
+            }
+            return partition;
+        }
+
+        int hash = Utils.murmur2(keyBytes);
+        int partition = Utils.toPositive(hash) % partitions;
+        if (monitor != null && count) {
+            PartitionLoad load = monitor.load(topic, partitions);
+            if (monitor.isHot(topic, hash, keyBytes, load) && monitor.spreads(topic)) {
+                partition = monitor.spread(load, cluster.availablePartitionsForTopic(topic), partition);
+            }
+            load.add(partition, size);
+        } else if (monitor != null && monitor.spreads(topic)) {
+            PartitionLoad load = monitor.load(topic, partitions);
+            if (monitor.isHot(topic, hash, load)) {
+                partition = load.leastLoaded(cluster.availablePartitionsForTopic(topic), partition);
+            }
+        }
+        return partition;
+    }
+
+    private int stickyPartition(String topic, int size, Cluster cluster, int partitions) {
+        Sticky s = sticky.computeIfAbsent(topic, t -> new Sticky());
+        int partition = s.partition;
+        if (partition < 0 || partition >= partitions || s.bytes.addAndGet(size) > batchSize) {
+            List<PartitionInfo> available = cluster.availablePartitionsForTopic(topic);
+            partition = available.isEmpty()
+                    ? ThreadLocalRandom.current().nextInt(partitions)
+                    : available.get(ThreadLocalRandom.current().nextInt(available.size())).partition();
+            s.partition = partition;
+            s.bytes.set(size);
+        }
+        return partition;
+    }
+
+    /**
+     * Called by the producer on the sending thread when the record's batch was
+     * full and a new one is needed; it then calls {@link #partition} again for
+     * the same record, which must not be counted twice.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public void onNewBatch(String topic, Cluster cluster, int prevPartition) {
+        repeat.set(Boolean.TRUE);
+        Sticky s = sticky.get(topic);
+        if (s != null && s.partition == prevPartition) {
+            s.partition = -1;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static final class Sticky {
+        private volatile int partition = -1;
+        private final AtomicLong bytes = new AtomicLong();
+    }
+}
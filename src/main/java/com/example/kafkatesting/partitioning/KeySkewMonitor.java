@@ -0,0 +1,225 @@
+package com.example.kafkatesting.partitioning;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.common.PartitionInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Send-side view of key skew, fed by {@link HotKeyPartitioner} from every
+ * producer built on Boot's producer configs.
+ *
+ * Per topic it counts records and bytes per partition; per key it keeps a
+ * count-min sketch estimate over the current and the last full window. A key
+ * is hot when it has at least hot-min-records of them and at least hot-share
+ * of its topic's records. Hot keys of the spread-topics are sent to the
+ * least loaded partition instead of their hash partition, which gives up
+ * their per-key order: only list topics whose consumers don't need it (the
+ * retry tiers, for instance).
+ *
+ * Windows roll lazily, on the first send or read after one has passed.
+ */
+@Component
+public class KeySkewMonitor {
+
+    /** Producer config entry through which the partitioner finds this monitor. */
+    public static final String CONFIG = "app.kafka.partitioner.monitor";
+
+    private static final int SKETCH_WIDTH = 4096;
+    private static final int MAX_HOT_KEYS = 32;
+
+    private final KafkaMetrics metrics;
+    private final long windowNanos;
+    private final double hotShare;
+    private final long hotMinRecords;
+    private final Set<String> spreadTopics;
+
+    private final ConcurrentHashMap<String, PartitionLoad> loads = new ConcurrentHashMap<>();
+    private final Set<String> boundPartitions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile CountMinSketch current = new CountMinSketch(SKETCH_WIDTH);
+    private volatile CountMinSketch previous = new CountMinSketch(SKETCH_WIDTH);
+    // hot keys seen in the current window, and those of the last full one
+    private final ConcurrentHashMap<Long, HotKey> hotKeys = new ConcurrentHashMap<>();
+    private volatile List<HotKey> lastHotKeys = List.of();
+    private final LongAdder spread = new LongAdder();
+
+    public KeySkewMonitor(KafkaMetrics metrics,
+                          @Value("${app.kafka.partitioner.window:1s}") Duration window,
+                          @Value("${app.kafka.partitioner.hot-share:0.1}") double hotShare,
+                          @Value("${app.kafka.partitioner.hot-min-records:100}") long hotMinRecords,
+                          @Value("${app.kafka.partitioner.spread-topics:}") String[] spreadTopics) {
+        this.metrics = metrics;
+        this.windowNanos = window.toNanos();
+        this.hotShare = hotShare;
+        this.hotMinRecords = hotMinRecords;
+        this.spreadTopics = Arrays.stream(spreadTopics).map(String::trim).filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        metrics.bindKeySkew(hotKeys::size, spread);
+    }
+
+    boolean spreads(String topic) {
+        return spreadTopics.contains(topic);
+    }
+
+    /** The topic's load counters, grown if the topic gained partitions. */
+    PartitionLoad load(String topic, int partitions) {
+        maybeRoll();
+        PartitionLoad load = loads.get(topic);
+        if (load == null || load.partitions() < partitions) {
+            load = loads.compute(topic, (t, l) -> l != null && l.partitions() >= partitions ? l : new PartitionLoad(partitions));
+            for (int p = 0; p < partitions; p++) {
+                if (boundPartitions.add(topic + "-" + p)) {
+                    int partition = p;
+                    metrics.bindPartitionLoad(topic, partition, () -> recordRate(topic, partition),
+                            () -> byteRate(topic, partition));
+                }
+            }
+        }
+        return load;
+    }
+
+    /**
+     * Count one record of the key ({@code keyHash} is its murmur2 hash, the one
+     * the partition comes from) and tell whether the key is currently hot.
+     */
+    boolean isHot(String topic, int keyHash, byte[] keyBytes, PartitionLoad load) {
+        long h = sketchHash(topic, keyHash);
+        long count = current.add(h) + previous.estimate(h);
+        if (!isHot(count, load)) {
+            return false;
+        }
+        HotKey hot = hotKeys.get(h);
+        if (hot == null && hotKeys.size() < MAX_HOT_KEYS) {
+            hot = new HotKey(topic, new String(keyBytes, StandardCharsets.UTF_8));
+            HotKey raced = hotKeys.putIfAbsent(h, hot);
+            if (raced != null) hot = raced;
+        }
+        if (hot != null) {
+            hot.estimate = count;
+        }
+        return true;
+    }
+
+    /** Whether the key is hot, without counting a record of it. */
+    boolean isHot(String topic, int keyHash, PartitionLoad load) {
+        long h = sketchHash(topic, keyHash);
+        return isHot(current.estimate(h) + previous.estimate(h), load);
+    }
+
+    private boolean isHot(long count, PartitionLoad load) {
+        return count >= hotMinRecords && count >= hotShare * load.recentTotal();
+    }
+
+    /** The least loaded available partition for a hot key of a spread topic. */
+    int spread(PartitionLoad load, List<PartitionInfo> available, int hashPartition) {
+        spread.increment();
+        return load.leastLoaded(available, hashPartition);
+    }
+
+    private void maybeRoll() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        long elapsed = now - start;
+        if (elapsed < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        double seconds = elapsed / 1e9;
+        loads.values().forEach(l -> l.roll(seconds));
+        CountMinSketch stale = previous;
+        stale.clear();
+        previous = current;
+        current = stale;
+        lastHotKeys = List.copyOf(hotKeys.values());
+        hotKeys.clear();
+    }
+
+    private double recordRate(String topic, int partition) {
+        maybeRoll();
+        PartitionLoad load = loads.get(topic);
+        return load == null ? 0 : load.recordRate(partition);
+    }
+
+    private double byteRate(String topic, int partition) {
+        maybeRoll();
+        PartitionLoad load = loads.get(topic);
+        return load == null ? 0 : load.byteRate(partition);
+    }
+
+    /** Per topic: record and byte rates per partition over the last window, and its hot keys. */
+    public Map<String, Map<String, Object>> status() {
+        maybeRoll();
+        // hot in the last window or this one, whichever counted more
+        Map<String, HotKey> hot = new LinkedHashMap<>();
+        for (HotKey k : lastHotKeys) {
+            hot.put(k.topic + "/" + k.key, k);
+        }
+        for (HotKey k : hotKeys.values()) {
+            hot.merge(k.topic + "/" + k.key, k, (a, b) -> a.estimate >= b.estimate ? a : b);
+        }
+        Map<String, List<HotKey>> hotByTopic = new LinkedHashMap<>();
+        hot.values().stream().sorted(Comparator.comparingLong((HotKey k) -> k.estimate).reversed())
+                .forEach(k -> hotByTopic.computeIfAbsent(k.topic, t -> new ArrayList<>()).add(k));
+
+        Map<String, Map<String, Object>> status = new TreeMap<>();
+        loads.forEach((topic, load) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            List<Map<String, Object>> partitions = new ArrayList<>();
+            for (int p = 0; p < load.partitions(); p++) {
+                Map<String, Object> partition = new LinkedHashMap<>();
+                partition.put("partition", p);
+                partition.put("recordsPerSecond", Math.round(load.recordRate(p)));
+                partition.put("bytesPerSecond", Math.round(load.byteRate(p)));
+                partitions.add(partition);
+            }
+            entry.put("partitions", partitions);
+            entry.put("hotKeys", hotByTopic.getOrDefault(topic, List.of()).stream()
+                    .map(k -> Map.of("key", k.key, "recentRecords", k.estimate)).toList());
+            entry.put("spreadsHotKeys", spreads(topic));
+            status.put(topic, entry);
+        });
+        return status;
+    }
+
+    /** Records of hot keys sent to a partition other than their hash partition. */
+    public long getSpreadCount() {
+        return spread.sum();
+    }
+
+    // topic and key murmur2 through murmur3 fmix64: the sketch rows take the two halves of this
+    private static long sketchHash(String topic, int keyHash) {
+        long h = ((long) topic.hashCode() << 32) | (keyHash & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class HotKey {
+        private final String topic;
+        private final String key;
+        private volatile long estimate;
+
+        private HotKey(String topic, String key) {
+            this.topic = topic;
+            this.key = key;
+        }
+    }
+}
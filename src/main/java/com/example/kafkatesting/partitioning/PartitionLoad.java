@@ -0,0 +1,84 @@
+package com.example.kafkatesting.partitioning;
+
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records and bytes sent to each partition of one topic: counted for the
+ * current window, and as per-second rates of the last full window.
+ */
+final class PartitionLoad {
+
+    private final AtomicLongArray records;
+    private final AtomicLongArray bytes;
+    private final AtomicLong total = new AtomicLong();
+    private volatile long previousTotal;
+    private volatile double[] recordRates;
+    private volatile double[] byteRates;
+
+    PartitionLoad(int partitions) {
+        records = new AtomicLongArray(partitions);
+        bytes = new AtomicLongArray(partitions);
+        recordRates = new double[partitions];
+        byteRates = new double[partitions];
+    }
+
+    int partitions() {
+        return records.length();
+    }
+
+    void add(int partition, long size) {
+        records.incrementAndGet(partition);
+        bytes.addAndGet(partition, size);
+        total.incrementAndGet();
+    }
+
+    /** Records of this topic in the current and the last full window. */
+    long recentTotal() {
+        return total.get() + previousTotal;
+    }
+
+    /**
+     * The available partition with the fewest bytes so far this window, or
+     * {@code fallback} if none is available.
+     */
+    int leastLoaded(List<PartitionInfo> available, int fallback) {
+        int best = fallback;
+        long bestBytes = Long.MAX_VALUE;
+        for (PartitionInfo info : available) {
+            int p = info.partition();
+            if (p < bytes.length() && bytes.get(p) < bestBytes) {
+                bestBytes = bytes.get(p);
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    /** Close the window of {@code seconds}: publish its rates and start counting afresh. */
+    void roll(double seconds) {
+        int n = records.length();
+        double[] r = new double[n];
+        double[] b = new double[n];
+        for (int p = 0; p < n; p++) {
+            r[p] = records.getAndSet(p, 0) / seconds;
+            b[p] = bytes.getAndSet(p, 0) / seconds;
+        }
+        recordRates = r;
+        byteRates = b;
+        previousTotal = total.getAndSet(0);
+    }
+
+    double recordRate(int partition) {
+        double[] r = recordRates;
+        return partition < r.length ? r[partition] : 0;
+    }
+
+    double byteRate(int partition) {
+        double[] b = byteRates;
+        return partition < b.length ? b[partition] : 0;
+    }
+}
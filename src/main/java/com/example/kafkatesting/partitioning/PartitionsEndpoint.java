@@ -0,0 +1,27 @@
+package com.example.kafkatesting.partitioning;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/partitions: send rates per partition and the current hot keys of
+ * every topic the producers wrote to.
+ */
+@Component
+@Endpoint(id = "partitions")
+public class PartitionsEndpoint {
+
+    private final KeySkewMonitor monitor;
+
+    public PartitionsEndpoint(KeySkewMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> status() {
+        return monitor.status();
+    }
+}
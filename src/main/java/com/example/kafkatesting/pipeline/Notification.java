@@ -0,0 +1,9 @@
+package com.example.kafkatesting.pipeline;
+
+/**
+ * Value written to topic-notification for one topic-one record: the message plus
+ * where it came from and when, so a reader needs nothing from the source topic.
+ */
+public record Notification(String key, String message, String priority, String source,
+                           long originTimestamp, long enrichedAt) {
+}
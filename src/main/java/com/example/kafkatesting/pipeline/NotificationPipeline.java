@@ -0,0 +1,79 @@
+package com.example.kafkatesting.pipeline;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline stage topic-one -> topic-notification. Each poll of its own consumer
+ * group is one batch: every record is transformed ({@link NotificationTransformer})
+ * and sent, then the batch is committed.
+ *
+ * <ul>
+ *   <li>exactly-once (default): the container runs each batch in a Kafka transaction
+ *       that holds the sends and the group's offsets, so a crash or failed send aborts
+ *       both and the batch is read again. Read topic-notification with
+ *       isolation.level=read_committed to see committed batches only.</li>
+ *   <li>at-least-once: plain sends, the batch waits for their acks before the
+ *       container commits offsets. A failure resends the whole batch, so readers may
+ *       see duplicates. Kept as the baseline the transactional mode is measured against.</li>
+ * </ul>
+ *
+ * Batch size (records per transaction) is bounded by count and time through the
+ * listener factory's fetch settings (app.kafka.notification.batch.*); sends
+ * go through {@link NotificationProducer}.
+ */
+@Component
+public class NotificationPipeline {
+
+    public static final String LISTENER_ID = "notification-pipeline";
+
+    private final NotificationProducer producer;
+    private final NotificationTransformer transformer;
+    private final DistributionSummary batchSizes;
+    private final LongAdder processed = new LongAdder();
+
+    public NotificationPipeline(NotificationProducer producer, KafkaMetrics metrics, ClaimCheck claimCheck) {
+        this.producer = producer;
+        this.transformer = new NotificationTransformer(claimCheck);
+        this.batchSizes = metrics.batchSizeSummary(LISTENER_ID);
+        metrics.bindRecordCounter(LISTENER_ID, processed);
+    }
+
+    /**
+     * One poll per call. In exactly-once mode the sends join the transaction the
+     * container began for this batch, and the container commits it with the offsets
+     * when this returns; the commit flushes the sends. In at-least-once mode this
+     * waits for the acks, so the container's offset commit follows them.
+     */
+    @KafkaListener(id = LISTENER_ID, topics = KafkaTopics.TOPIC_ONE, groupId = KafkaTopics.TOPIC_GROUP_NOTIFICATION,
+            containerFactory = "notificationListenerFactory", autoStartup = "${app.kafka.notification.enabled:false}")
+    public void transform(List<ConsumerRecord<String, String>> records) {
+        if (producer.isTransactional()) {
+            for (ConsumerRecord<String, String> record : records) {
+                producer.send(transformer.apply(record));
+            }
+        } else {
+            CompletableFuture<?>[] sends = new CompletableFuture<?>[records.size()];
+            for (int i = 0; i < sends.length; i++) {
+                sends[i] = producer.send(transformer.apply(records.get(i)));
+            }
+            CompletableFuture.allOf(sends).join();
+        }
+        batchSizes.record(records.size());
+        processed.add(records.size());
+    }
+
+    /** Records transformed; a batch that is rolled back and read again counts twice. */
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+}
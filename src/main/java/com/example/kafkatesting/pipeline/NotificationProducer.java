@@ -0,0 +1,79 @@
+package com.example.kafkatesting.pipeline;
+
+import com.example.kafkatesting.metrics.MetricsProducerListener;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Producer side of {@link NotificationPipeline}. With delivery=exactly-once its
+ * factory is transactional and the transaction manager it exposes is handed to
+ * the pipeline's listener container, so the container's transactions and this
+ * template's sends share producers.
+ *
+ * Uses the Boot producer settings. Neither factory nor template is a bean: a
+ * ProducerFactory bean would replace Boot's auto-configured one, and a
+ * transactional Boot template would make every other send transactional.
+ */
+@Component
+public class NotificationProducer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationProducer.class);
+
+    private final DefaultKafkaProducerFactory<String, String> producerFactory;
+    private final KafkaTemplate<String, String> template;
+    private final KafkaTransactionManager<String, String> transactionManager;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public NotificationProducer(ProducerFactory<String, String> bootProducerFactory, MetricsProducerListener producerListener,
+                                @Value("${app.kafka.notification.delivery:exactly-once}") String delivery,
+                                @Value("${app.kafka.notification.transaction-id-prefix:notification-tx-}") String transactionIdPrefix,
+                                @Value("${app.kafka.consumer.instance-id:${HOSTNAME:local}}") String instanceId) {
+        this.producerFactory = new DefaultKafkaProducerFactory<>(bootProducerFactory.getConfigurationProperties(),
+                new StringSerializer(), new StringSerializer());
+        switch (delivery) {
+            case "exactly-once" -> {
+                // unique per instance; the factory appends a counter per producer
+                producerFactory.setTransactionIdPrefix(transactionIdPrefix + instanceId + "-");
+                this.transactionManager = new KafkaTransactionManager<>(producerFactory);
+            }
+            case "at-least-once" -> this.transactionManager = null;
+            default -> throw new IllegalArgumentException(
+                    "app.kafka.notification.delivery must be exactly-once or at-least-once, was " + delivery);
+        }
+        this.template = new KafkaTemplate<>(producerFactory);
+        this.template.setProducerListener((ProducerListener) producerListener);
+        log.info("Notification pipeline delivery={}", delivery);
+    }
+
+    public boolean isTransactional() {
+        return transactionManager != null;
+    }
+
+    /** Transaction manager for the listener container, or null in at-least-once mode. */
+    public KafkaTransactionManager<String, String> transactionManager() {
+        return transactionManager;
+    }
+
+    /** Joins the caller's transaction when transactional (there must be one). */
+    public CompletableFuture<SendResult<String, String>> send(ProducerRecord<String, String> record) {
+        return template.send(record);
+    }
+
+    @Override
+    public void destroy() {
+        producerFactory.destroy();
+    }
+}
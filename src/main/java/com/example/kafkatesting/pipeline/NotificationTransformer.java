@@ -0,0 +1,58 @@
+package com.example.kafkatesting.pipeline;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+/**
+ * Turns a topic-one record into a {@link Notification} record for topic-notification:
+ * trims the message, classifies its priority and records the source position and
+ * origin time. The key and headers are kept, so notifications stay ordered per key
+ * and the origin headers measure end-to-end latency through the pipeline. A
+ * claim-checked message is resolved; the notification carries it inline and
+ * drops the claim-check headers.
+ */
+public class NotificationTransformer {
+
+    private final ObjectWriter writer = new ObjectMapper().writerFor(Notification.class);
+    private final ClaimCheck claimCheck;
+
+    public NotificationTransformer(ClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    public ProducerRecord<String, String> apply(ConsumerRecord<String, String> record) {
+        String payload = claimCheck.resolve(record, record.value());
+        String message = payload == null ? "" : payload.strip();
+        Notification notification = new Notification(record.key(), message, priority(message),
+                record.topic() + "-" + record.partition() + "@" + record.offset(),
+                TraceHeaders.readLong(record.headers(), TraceHeaders.ORIGIN_TIMESTAMP, record.timestamp()),
+                System.currentTimeMillis());
+        return new ProducerRecord<>(KafkaTopics.TOPIC_NOTIFICATION, null, record.key(), write(notification),
+                ClaimCheck.withoutReference(record.headers()));
+    }
+
+    // "urgent" anywhere in the message, ASCII case-insensitive, without a lower-cased copy
+    static String priority(String message) {
+        int n = message.length() - 6;
+        for (int i = 0; i <= n; i++) {
+            if ((message.charAt(i) | 0x20) == 'u' && message.regionMatches(true, i, "urgent", 0, 6)) {
+                return "high";
+            }
+        }
+        return "normal";
+    }
+
+    private String write(Notification notification) {
+        try {
+            return writer.writeValueAsString(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("cannot serialize notification " + notification.key(), e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.kafkatesting.processing;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offset commits for manual-ack record listeners whose work may finish after
+ * the listener returns (an async retry or DLQ send).
+ *
+ * A record is registered on the poll thread and completed once all of its
+ * work is done, including the send; only then may its offset be committed.
+ * Per partition the highest contiguously completed record is acknowledged
+ * when max-records completions have piled up since the last commit, or at the
+ * next max-delay tick, instead of once per poll. Acknowledging from the tick
+ * or a producer callback thread is fine in AckMode.MANUAL: the container
+ * queues the ack and commits it on its next loop.
+ *
+ * A record whose send failed is never committed past: the listener container
+ * is asked to seek its partition back to it, and it and the records after it
+ * are read again (those fetched before the seek took effect are ignored, so
+ * nothing piles up behind it). Revoked partitions are flushed first, the container commits what
+ * was acknowledged right after the callback; a stopping container leaves the
+ * group, which revokes its partitions too.
+ */
+@Component
+public class CommitCoalescer implements ConsumerAwareRebalanceListener, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitCoalescer.class);
+
+    private final PartitionOffsetTracker offsets = new PartitionOffsetTracker();
+    private final ConcurrentHashMap<TopicPartition, PartitionCommits> partitions = new ConcurrentHashMap<>();
+    private final int maxRecords;
+    private final ScheduledExecutorService ticker;
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public CommitCoalescer(KafkaMetrics metrics,
+                           @Value("${app.kafka.commit.max-records:500}") int maxRecords,
+                           @Value("${app.kafka.commit.max-delay:1s}") Duration maxDelay) {
+        this.maxRecords = Math.max(1, maxRecords);
+        metrics.bindCommits(this);
+        if (maxDelay.isZero()) {
+            ticker = null;
+        } else {
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "commit-coalescer");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = Math.max(1, maxDelay.toMillis());
+            ticker.scheduleWithFixedDelay(this::flushAll, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Register a record on the poll thread, in offset order per partition, once
+     * its listener has run. Pass the handle to {@link #complete} or {@link #fail}.
+     * {@code seeks} is the seek callback of the container that delivered the record.
+     */
+    public Pending register(ConsumerRecord<?, ?> record, Acknowledgment ack, ConsumerSeekCallback seeks) {
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        PartitionCommits state = partitions.computeIfAbsent(tp, PartitionCommits::new);
+        return new Pending(state, offsets.register(record, ack), seeks);
+    }
+
+    /** The record's work is done: it may be committed once every earlier record of its partition is. */
+    public void complete(Pending pending) {
+        PartitionCommits state = pending.state;
+        synchronized (state) {
+            if (state.revoked) return;
+            // under the partition lock, so a later safe ack is never replaced by an earlier one
+            Acknowledgment safe = offsets.complete(pending.offset);
+            if (safe != null) {
+                state.safe = safe;
+            }
+            if (++state.completed >= maxRecords || ticker == null) {
+                commit(state);
+            }
+        }
+    }
+
+    /**
+     * The record's send failed: its partition is committed up to it and its
+     * container seeks back to it, so it is processed and sent again.
+     */
+    public void fail(Pending pending, Throwable cause) {
+        failures.increment();
+        PartitionCommits state = pending.state;
+        synchronized (state) {
+            if (state.revoked) return;
+            // false if a failure before it already rewound the partition
+            if (offsets.rewind(pending.offset)) {
+                long offset = pending.offset.offset();
+                log.warn("Send of {}@{} failed ({}); seeking back to it", state.partition, offset, cause.getMessage());
+                pending.seeks.seek(state.partition.topic(), state.partition.partition(), offset);
+            }
+            // still commit what precedes the failed record
+            commit(state);
+        }
+    }
+
+    /** Acknowledge the safe offset of every partition that has one pending. */
+    public void flushAll() {
+        for (PartitionCommits state : partitions.values()) {
+            synchronized (state) {
+                commit(state);
+            }
+        }
+    }
+
+    private void flush(Collection<TopicPartition> tps, boolean commit) {
+        for (TopicPartition tp : tps) {
+            PartitionCommits state = partitions.remove(tp);
+            if (state == null) continue;
+            synchronized (state) {
+                if (commit) {
+                    commit(state);
+                }
+                state.revoked = true;
+            }
+        }
+        offsets.revoke(tps);
+    }
+
+    // caller holds the partition lock
+    private void commit(PartitionCommits state) {
+        if (state.safe == null || state.revoked) return;
+        state.safe.acknowledge();
+        state.safe = null;
+        state.completed = 0;
+        commits.increment();
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        flush(partitions, true);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        // already owned by another member: committing would fail, the new owner reads them again
+        flush(partitions, false);
+    }
+
+    /** Acknowledgments handed to the container; each becomes (part of) one offset commit. */
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    /** Registered records not yet contiguously completed. */
+    public int getPendingCount() {
+        return offsets.pendingCount();
+    }
+
+    public long getFailedCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public void destroy() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private static final class PartitionCommits {
+        private final TopicPartition partition;
+        // acknowledgment of the highest contiguously completed record, not yet handed to the container
+        private Acknowledgment safe;
+        private int completed;
+        private boolean revoked;
+
+        private PartitionCommits(TopicPartition partition) {
+            this.partition = partition;
+        }
+    }
+
+    public static final class Pending {
+        private final PartitionCommits state;
+        private final PartitionOffsetTracker.Pending offset;
+        private final ConsumerSeekCallback seeks;
+
+        private Pending(PartitionCommits state, PartitionOffsetTracker.Pending offset, ConsumerSeekCallback seeks) {
+            this.state = state;
+            this.offset = offset;
+            this.seeks = seeks;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.kafkatesting.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Bounded hand-off between a listener's poll thread and the worker pool.
+ *
+ * The buffer is sized in records and in bytes. When either passes its
+ * high-water mark the listener container is paused (it keeps polling, so the
+ * group does not rebalance, but fetches nothing); once both drop below the
+ * low-water mark it is resumed. A pause takes effect on the next poll, so
+ * the buffer can overshoot by at most one poll (max.poll.records).
+ *
+ * Work that finishes asynchronously (a retry or DLQ send) is dispatched as a
+ * future: the record is done when the future completes. If it fails, the
+ * partition is never acknowledged past it: the container is asked to seek
+ * back to it, and it and the records after it are read and handed off again.
+ */
+public class HandOffBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(HandOffBuffer.class);
+
+    private final String listenerId;
+    private final KafkaListenerEndpointRegistry registry;
+    private final KeyedParallelProcessor processor;
+    private final PartitionOffsetTracker offsets = new PartitionOffsetTracker();
+
+    private final int highRecords;
+    private final long highBytes;
+    private final int lowRecords;
+    private final long lowBytes;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong pauseCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong pausedNanos = new AtomicLong();
+    private volatile boolean paused;
+    private long pausedAt;
+
+    HandOffBuffer(String listenerId, KafkaListenerEndpointRegistry registry, KeyedParallelProcessor processor,
+                  int maxRecords, long maxBytes, double lowWaterRatio) {
+        this.listenerId = listenerId;
+        this.registry = registry;
+        this.processor = processor;
+        this.highRecords = maxRecords;
+        this.highBytes = maxBytes;
+        this.lowRecords = (int) (maxRecords * lowWaterRatio);
+        this.lowBytes = (long) (maxBytes * lowWaterRatio);
+    }
+
+    /**
+     * Called on the poll thread: account for the record, pause if over the
+     * high-water mark, and run {@code work} on the keyed worker pool. The record
+     * is acknowledged once it and every earlier record of its partition are done.
+     * {@code seeks} is the seek callback of the container that delivered the record.
+     */
+    public void dispatch(ConsumerRecord<?, ?> record, Acknowledgment ack, ConsumerSeekCallback seeks, Runnable work) {
+        long size = accept(record);
+        PartitionOffsetTracker.Pending pending = offsets.register(record, ack);
+        processor.submit(record.key(), work).whenComplete((r, e) -> finish(pending, size));
+    }
+
+    /**
+     * Like {@link #dispatch(ConsumerRecord, Acknowledgment, ConsumerSeekCallback, Runnable)},
+     * for work that is only done when the future it returns completes. The key's
+     * next record may start before then. If the future fails (or the work throws),
+     * the partition is sought back to this record and it is handed off again.
+     */
+    public void dispatch(ConsumerRecord<?, ?> record, Acknowledgment ack, ConsumerSeekCallback seeks,
+                         Supplier<? extends CompletableFuture<?>> work) {
+        long size = accept(record);
+        PartitionOffsetTracker.Pending pending = offsets.register(record, ack);
+        processor.submit(record.key(), () -> started(work).whenComplete((r, e) -> settle(record, pending, seeks, size, e)));
+    }
+
+    /**
+     * Fan-out variant: each of {@code works} runs as its own keyed task (its own
+     * lane of the record's key), so they run in parallel with each other while
+     * each lane keeps per-key order. The record counts once against the limits
+     * and is acknowledged when all of their futures have completed; if one
+     * fails, the record is read again as in the single-task variant.
+     */
+    public void dispatch(ConsumerRecord<?, ?> record, Acknowledgment ack, ConsumerSeekCallback seeks,
+                         List<? extends Supplier<? extends CompletableFuture<?>>> works) {
+        if (works.size() <= 1) {
+            dispatch(record, ack, seeks, works.isEmpty() ? () -> CompletableFuture.completedFuture(null) : works.get(0));
+            return;
+        }
+        long size = accept(record);
+        PartitionOffsetTracker.Pending pending = offsets.register(record, ack);
+        AtomicInteger remaining = new AtomicInteger(works.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Object key = record.key();
+        for (int lane = 0; lane < works.size(); lane++) {
+            Supplier<? extends CompletableFuture<?>> work = works.get(lane);
+            processor.submit(key == null ? null : new Lane(key, lane), () -> started(work).whenComplete((r, e) -> {
+                if (e != null) {
+                    failure.compareAndSet(null, e);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    settle(record, pending, seeks, size, failure.get());
+                }
+            }));
+        }
+    }
+
+    private long accept(ConsumerRecord<?, ?> record) {
+        long size = sizeOf(record);
+        int d = depth.incrementAndGet();
+        long b = bytes.addAndGet(size);
+        if (!paused && (d > highRecords || b > highBytes)) {
+            pause();
+        }
+        return size;
+    }
+
+    private static CompletableFuture<?> started(Supplier<? extends CompletableFuture<?>> work) {
+        try {
+            return work.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void settle(ConsumerRecord<?, ?> record, PartitionOffsetTracker.Pending pending, ConsumerSeekCallback seeks,
+                        long size, Throwable failure) {
+        if (failure == null) {
+            finish(pending, size);
+            return;
+        }
+        failedCount.incrementAndGet();
+        // false if a failure before it already rewound the partition
+        if (offsets.rewind(pending)) {
+            log.warn("Hand-off {} seeks {}-{} back to offset {}, whose work failed ({})", listenerId,
+                    record.topic(), record.partition(), record.offset(), failure.toString());
+            seeks.seek(record.topic(), record.partition(), record.offset());
+        }
+        release(size);
+    }
+
+    private void finish(PartitionOffsetTracker.Pending pending, long size) {
+        Acknowledgment safe = offsets.complete(pending);
+        if (safe != null) {
+            safe.acknowledge();
+        }
+        release(size);
+    }
+
+    private void release(long size) {
+        int left = depth.decrementAndGet();
+        long leftBytes = bytes.addAndGet(-size);
+        if (paused && belowLowWater(left, leftBytes)) {
+            resume();
+        }
+    }
+
+    private boolean belowLowWater(int records, long size) {
+        return records <= lowRecords && size <= lowBytes;
+    }
+
+    private record Lane(Object key, int lane) {
+    }
+
+    void partitionsRevoked(Collection<TopicPartition> revoked) {
+        offsets.revoke(revoked);
+    }
+
+    private synchronized void pause() {
+        if (paused) return;
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        if (container == null) return;
+        container.pause();
+        paused = true;
+        pausedAt = System.nanoTime();
+        pauseCount.incrementAndGet();
+        log.info("Hand-off {} paused (depth={} bytes={})", listenerId, depth.get(), bytes.get());
+        // the workers may have drained below the low-water mark while the container was pausing,
+        // seeing paused == false: nothing else would resume it
+        if (belowLowWater(depth.get(), bytes.get())) {
+            resume();
+        }
+    }
+
+    private synchronized void resume() {
+        if (!paused) return;
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        if (container != null) {
+            container.resume();
+        }
+        paused = false;
+        pausedNanos.addAndGet(System.nanoTime() - pausedAt);
+        log.info("Hand-off {} resumed (depth={} bytes={})", listenerId, depth.get(), bytes.get());
+    }
+
+    private static long sizeOf(ConsumerRecord<?, ?> record) {
+        return Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize());
+    }
+
+    public String getListenerId() {
+        return listenerId;
+    }
+
+    /** Records handed off and not yet finished. */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /** Serialized key+value bytes of the records in {@link #getDepth()}. */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public long getPauseCount() {
+        return pauseCount.get();
+    }
+
+    /** Records whose work failed; their partition was sought back to them. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** Total time spent paused, including the current pause. */
+    public synchronized long getPausedMillis() {
+        long total = pausedNanos.get();
+        if (paused) total += System.nanoTime() - pausedAt;
+        return total / 1_000_000;
+    }
+}
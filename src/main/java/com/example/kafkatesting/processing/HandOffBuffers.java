@@ -0,0 +1,67 @@
+package com.example.kafkatesting.processing;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates one {@link HandOffBuffer} per listener id, all sharing the keyed
+ * worker pool and the configured limits. Registered as the rebalance listener
+ * of the hand-off container factory so revoked partitions stop being tracked.
+ */
+@Component
+public class HandOffBuffers implements ConsumerAwareRebalanceListener {
+
+    private final ConcurrentHashMap<String, HandOffBuffer> buffers = new ConcurrentHashMap<>();
+    private final KafkaListenerEndpointRegistry registry;
+    private final KeyedParallelProcessor processor;
+    private final KafkaMetrics metrics;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final double lowWaterRatio;
+
+    public HandOffBuffers(@Lazy KafkaListenerEndpointRegistry registry,
+                          KeyedParallelProcessor processor,
+                          KafkaMetrics metrics,
+                          @Value("${app.kafka.hand-off.max-records:1000}") int maxRecords,
+                          @Value("${app.kafka.hand-off.max-bytes:8388608}") long maxBytes,
+                          @Value("${app.kafka.hand-off.low-water-ratio:0.5}") double lowWaterRatio) {
+        this.registry = registry;
+        this.processor = processor;
+        this.metrics = metrics;
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.lowWaterRatio = lowWaterRatio;
+    }
+
+    public HandOffBuffer forListener(String listenerId) {
+        return buffers.computeIfAbsent(listenerId, id -> {
+            HandOffBuffer buffer = new HandOffBuffer(id, registry, processor, maxRecords, maxBytes, lowWaterRatio);
+            metrics.bindHandOff(buffer);
+            return buffer;
+        });
+    }
+
+    public List<HandOffBuffer> all() {
+        return List.copyOf(buffers.values());
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        buffers.values().forEach(b -> b.partitionsRevoked(partitions));
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        buffers.values().forEach(b -> b.partitionsRevoked(partitions));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.kafkatesting.processing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs record handlers on a worker pool with per-key ordering: tasks for the
+ * same key are chained one after another, tasks for different keys run
+ * concurrently. Tasks without a key are not ordered against anything.
+ *
+ * Offsets are not tracked here; see {@link HandOffBuffer}, which only
+ * acknowledges the highest contiguous completed offset per partition.
+ */
+@Component
+public class KeyedParallelProcessor implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyedParallelProcessor.class);
+
+    // tail of the task chain per in-flight key; removed once the chain drains
+    private final ConcurrentHashMap<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    public KeyedParallelProcessor(@Value("${app.kafka.parallel.workers:16}") int workerCount) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory threads = r -> {
+            Thread t = new Thread(r, "keyed-worker-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.workers = Executors.newFixedThreadPool(workerCount, threads);
+    }
+
+    /**
+     * Schedule a task after any earlier task with the same key.
+     * The returned future completes (normally) when the task has run.
+     */
+    public CompletableFuture<Void> submit(Object key, Runnable task) {
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                // a failing task must not break the chain for later records of the key
+                log.error("Keyed task failed for key={}", key, e);
+            }
+        };
+        if (key == null) {
+            return CompletableFuture.runAsync(guarded, workers);
+        }
+
+        CompletableFuture<Void> next = tails.compute(key, (k, tail) ->
+                tail == null ? CompletableFuture.runAsync(guarded, workers) : tail.thenRunAsync(guarded, workers));
+        next.whenComplete((r, e) -> tails.remove(key, next));
+        return next;
+    }
+
+    /** Number of keys that currently have queued or running work. */
+    public int activeKeys() {
+        return tails.size();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
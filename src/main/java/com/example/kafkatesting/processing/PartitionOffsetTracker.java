@@ -0,0 +1,132 @@
+package com.example.kafkatesting.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks handed-off records per partition in offset order so that only the
+ * highest contiguous completed offset is ever acknowledged. Records may
+ * complete in any order; a gap (a record still running) holds back the
+ * acknowledgement of everything after it.
+ *
+ * A record whose work failed is rewound: it and everything registered after
+ * it are dropped, and records of the partition are ignored until it is
+ * registered again (the caller seeks back to it), so a failure never leaves
+ * completions piling up behind a gap that cannot close.
+ */
+public class PartitionOffsetTracker {
+
+    private final ConcurrentHashMap<TopicPartition, PartitionState> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Register a record on the poll thread, before handing it off.
+     * Records of a partition must be registered in offset order.
+     */
+    public Pending register(ConsumerRecord<?, ?> record, Acknowledgment ack) {
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        PartitionState state = partitions.computeIfAbsent(tp, k -> new PartitionState());
+        Pending pending = new Pending(state, record.offset(), ack);
+        synchronized (state) {
+            if (state.rewoundTo >= 0) {
+                if (record.offset() > state.rewoundTo) {
+                    // fetched before the seek back took effect: read again after it
+                    pending.dropped = true;
+                    return pending;
+                }
+                state.rewoundTo = -1;
+            }
+            state.inFlight.addLast(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Mark a record as done. Returns the acknowledgment of the highest record
+     * that is now contiguously complete, or null if the safe offset did not move.
+     */
+    public Acknowledgment complete(Pending pending) {
+        PartitionState state = pending.state;
+        synchronized (state) {
+            pending.done = true;
+            if (state.revoked || pending.dropped) return null;
+            Pending last = null;
+            while (!state.inFlight.isEmpty() && state.inFlight.peekFirst().done) {
+                last = state.inFlight.pollFirst();
+            }
+            return last == null ? null : last.ack;
+        }
+    }
+
+    /**
+     * The record's work failed: drop it and every later record of its partition,
+     * which will be read again from its offset. Returns false if it was already
+     * dropped by an earlier rewind or a revoke, so there is nothing to seek.
+     */
+    public boolean rewind(Pending failed) {
+        PartitionState state = failed.state;
+        synchronized (state) {
+            if (state.revoked || failed.dropped) return false;
+            Pending last;
+            do {
+                last = state.inFlight.pollLast();
+                if (last != null) last.dropped = true;
+            } while (last != null && last != failed);
+            state.rewoundTo = failed.offset;
+            return true;
+        }
+    }
+
+    /** Drop state for partitions this consumer no longer owns; late completions are ignored. */
+    public void revoke(Collection<TopicPartition> revoked) {
+        for (TopicPartition tp : revoked) {
+            PartitionState state = partitions.remove(tp);
+            if (state != null) {
+                synchronized (state) {
+                    state.revoked = true;
+                    state.inFlight.clear();
+                }
+            }
+        }
+    }
+
+    /** Records handed off but not yet contiguously completed, across all partitions. */
+    public int pendingCount() {
+        int n = 0;
+        for (PartitionState state : partitions.values()) {
+            synchronized (state) {
+                n += state.inFlight.size();
+            }
+        }
+        return n;
+    }
+
+    private static final class PartitionState {
+        private final ArrayDeque<Pending> inFlight = new ArrayDeque<>();
+        private boolean revoked;
+        // offset of the last rewind until the record is registered again, else -1
+        private long rewoundTo = -1;
+    }
+
+    public static final class Pending {
+        private final PartitionState state;
+        private final long offset;
+        private final Acknowledgment ack;
+        private boolean done;
+        private boolean dropped;
+
+        private Pending(PartitionState state, long offset, Acknowledgment ack) {
+            this.state = state;
+            this.offset = offset;
+            this.ack = ack;
+        }
+
+        long offset() {
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.kafkatesting.producers;
+
+import java.util.List;
+
+/**
+ * Aggregated outcome of a bulk send: how many records the brokers acknowledged
+ * and, for the ones that failed, their position in the input and the cause.
+ */
+public final class BulkSendResult {
+
+    public record Failure(long index, String key, Exception exception) {
+    }
+
+    private final long sent;
+    private final List<Failure> failures;
+
+    BulkSendResult(long sent, List<Failure> failures) {
+        this.sent = sent;
+        this.failures = failures;
+    }
+
+    /** Records acknowledged by the brokers. */
+    public long getSentCount() {
+        return sent;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkSendResult{sent=" + sent + ", failed=" + failures.size() + "}";
+    }
+}
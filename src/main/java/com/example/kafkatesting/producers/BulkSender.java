@@ -0,0 +1,262 @@
+package com.example.kafkatesting.producers;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.quota.QuotaExceededException;
+import com.example.kafkatesting.quota.TenantFlowControl;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * High-throughput send path behind {@link ProducerOneService#sendBatch} and
+ * {@link ProducerTwoService#sendBatch}.
+ *
+ * Records go straight to the shared producer from the template's factory. Each
+ * record doubles as its own completion callback, so there is no per-record
+ * future or lambda, and the caller gets one aggregated future per call.
+ * A payload over the {@link ClaimCheck} threshold is checked in first and the
+ * record carries its reference, as on the single-record paths.
+ * In-flight bytes (UTF-8 key, value and headers of the record as sent) are
+ * capped by a budget shared by all bulk calls: above it a send either blocks
+ * until earlier records are acknowledged or is rejected, depending on
+ * app.kafka.producer.bulk.block-when-full.
+ *
+ * Before that, each record is admitted by its tenant's quota in
+ * {@link TenantFlowControl} (the key prefix is the tenant): the caller waits
+ * for it, or the record fails with QuotaExceededException when the quota
+ * rejects instead of queueing.
+ */
+@Component
+public class BulkSender {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkSender.class);
+
+    private static final int STREAM_WINDOW = 256;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaMetrics metrics;
+    private final ClaimCheck claimCheck;
+    private final TenantFlowControl flowControl;
+    private final Semaphore budget;
+    private final int maxInFlightBytes;
+    private final boolean blockWhenFull;
+
+    public BulkSender(KafkaTemplate<String, String> kafkaTemplate,
+                      KafkaMetrics metrics,
+                      ClaimCheck claimCheck,
+                      TenantFlowControl flowControl,
+                      @Value("${app.kafka.producer.bulk.max-in-flight-bytes:33554432}") int maxInFlightBytes,
+                      @Value("${app.kafka.producer.bulk.block-when-full:true}") boolean blockWhenFull) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.claimCheck = claimCheck;
+        this.flowControl = flowControl;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.blockWhenFull = blockWhenFull;
+        this.budget = new Semaphore(maxInFlightBytes);
+    }
+
+    public CompletableFuture<BulkSendResult> sendBatch(String topic, Collection<KeyValue> records) {
+        Batch batch = new Batch(topic);
+        Producer<String, String> producer = kafkaTemplate.getProducerFactory().createProducer();
+        try {
+            long index = 0;
+            for (KeyValue kv : records) {
+                if (!batch.send(producer, kv, index++)) break;
+            }
+        } finally {
+            producer.close(); // shared producer: close is a no-op, in-flight sends continue
+            batch.submissionDone();
+        }
+        return batch.completion;
+    }
+
+    /**
+     * Stream records from a publisher. Items are requested in windows and each
+     * one waits for its tenant's quota and byte budget before it is sent, so a
+     * fast publisher is throttled by broker acknowledgements rather than
+     * buffered in memory.
+     */
+    public CompletableFuture<BulkSendResult> send(String topic, Flow.Publisher<KeyValue> publisher) {
+        Batch batch = new Batch(topic);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Producer<String, String> producer;
+            private Flow.Subscription subscription;
+            private long index;
+            private boolean stopped;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription = s;
+                producer = kafkaTemplate.getProducerFactory().createProducer();
+                s.request(STREAM_WINDOW);
+            }
+
+            @Override
+            public void onNext(KeyValue kv) {
+                if (stopped) return;
+                if (!batch.send(producer, kv, index++)) {
+                    stopped = true;
+                    subscription.cancel();
+                    finish();
+                } else if (index % STREAM_WINDOW == 0) {
+                    subscription.request(STREAM_WINDOW);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                batch.streamError = t;
+                finish();
+            }
+
+            @Override
+            public void onComplete() {
+                finish();
+            }
+
+            private void finish() {
+                if (producer == null) return;
+                producer.close();
+                producer = null;
+                batch.submissionDone();
+            }
+        });
+        return batch.completion;
+    }
+
+    /** Bytes currently reserved by unacknowledged bulk sends. */
+    public int getInFlightBytes() {
+        return maxInFlightBytes - budget.availablePermits();
+    }
+
+    private final class Batch {
+        private final String topic;
+        private final CompletableFuture<BulkSendResult> completion = new CompletableFuture<>();
+        // starts at 1 for the submitting caller so completion can't fire before submission ends
+        private final AtomicLong pending = new AtomicLong(1);
+        private final LongAdder sent = new LongAdder();
+        private final ConcurrentLinkedQueue<BulkSendResult.Failure> failures = new ConcurrentLinkedQueue<>();
+        private volatile Throwable streamError;
+
+        private Batch(String topic) {
+            this.topic = topic;
+        }
+
+        /** Returns false when the caller should stop submitting (interrupted). */
+        private boolean send(Producer<String, String> producer, KeyValue kv, long index) {
+            Slot slot;
+            try {
+                slot = new Slot(this, topic, kv, claimCheck.checkIn(kv.value()), index, maxInFlightBytes);
+            } catch (RuntimeException e) {
+                // the blob store failed: this record is not sent, the rest of the batch is
+                failures.add(new BulkSendResult.Failure(index, kv.key(), e));
+                return true;
+            }
+            int bytes = slot.bytes;
+            try {
+                flowControl.acquire(slot);
+            } catch (QuotaExceededException e) {
+                failures.add(new BulkSendResult.Failure(index, kv.key(), e));
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add(new BulkSendResult.Failure(index, kv.key(), e));
+                return false;
+            }
+            try {
+                if (blockWhenFull) {
+                    budget.acquire(bytes);
+                } else if (!budget.tryAcquire(bytes)) {
+                    failures.add(new BulkSendResult.Failure(index, kv.key(),
+                            new RejectedExecutionException("bulk in-flight byte budget exhausted")));
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add(new BulkSendResult.Failure(index, kv.key(), e));
+                return false;
+            }
+
+            pending.incrementAndGet();
+            try {
+                producer.send(slot, slot);
+            } catch (Exception e) {
+                slot.onCompletion(null, e);
+            }
+            return true;
+        }
+
+        private void completed(Slot slot, RecordMetadata metadata, Exception exception) {
+            budget.release(slot.bytes);
+            if (exception == null) {
+                sent.increment();
+                // the template's producer listener doesn't see these sends, so time them here
+                if (metadata.hasTimestamp()) {
+                    metrics.recordSend(topic, System.currentTimeMillis() - metadata.timestamp());
+                }
+            } else {
+                metrics.recordSendFailure(topic);
+                failures.add(new BulkSendResult.Failure(slot.index, slot.key(), exception));
+            }
+            if (pending.decrementAndGet() == 0) finish();
+        }
+
+        private void submissionDone() {
+            if (pending.decrementAndGet() == 0) finish();
+        }
+
+        private void finish() {
+            if (streamError != null) {
+                completion.completeExceptionally(streamError);
+                return;
+            }
+            BulkSendResult result = new BulkSendResult(sent.sum(), new ArrayList<>(failures));
+            if (result.isSuccess()) {
+                log.info("Bulk send to {} completed: sent={}", topic, result.getSentCount());
+            } else {
+                log.warn("Bulk send to {} completed: sent={} failed={}",
+                        topic, result.getSentCount(), result.getFailures().size());
+            }
+            completion.complete(result);
+        }
+    }
+
+    /** The record is its own callback: one allocation per record instead of record + future + lambda. */
+    private static final class Slot extends ProducerRecord<String, String> implements Callback {
+        private final Batch batch;
+        private final long index;
+        private final int bytes;
+
+        /** {@code checkedIn}: the claim-check headers if the payload was checked in, else null. */
+        private Slot(Batch batch, String topic, KeyValue kv, Headers checkedIn, long index, int maxBytes) {
+            super(topic, null, kv.key(), checkedIn == null ? kv.value() : "", checkedIn);
+            this.batch = batch;
+            this.index = index;
+            this.bytes = (int) Math.min(maxBytes, TenantFlowControl.sizeOf(this));
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            batch.completed(this, metadata, exception);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.kafkatesting.producers;
+
+/**
+ * One key/payload pair for the bulk send API.
+ */
+public record KeyValue(String key, String value) {
+}
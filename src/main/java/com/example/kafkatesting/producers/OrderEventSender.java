@@ -0,0 +1,55 @@
+package com.example.kafkatesting.producers;
+
+import com.example.kafkatesting.codec.EventCodec;
+import com.example.kafkatesting.codec.EventSerializer;
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.metrics.MetricsProducerListener;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends typed {@link OrderEvent}s with the configured {@link EventCodec}.
+ *
+ * Its template uses the Boot producer settings (including the origin headers
+ * interceptor) with an EventSerializer for values. Neither the template nor its
+ * factory is a bean, so Boot's String KafkaTemplate stays auto-configured.
+ */
+@Component
+public class OrderEventSender implements DisposableBean {
+
+    private final DefaultKafkaProducerFactory<String, OrderEvent> producerFactory;
+    private final KafkaTemplate<String, OrderEvent> template;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public OrderEventSender(ProducerFactory<String, String> bootProducerFactory, EventCodec codec,
+                            MetricsProducerListener producerListener) {
+        this.producerFactory = new DefaultKafkaProducerFactory<>(bootProducerFactory.getConfigurationProperties(),
+                new StringSerializer(), new EventSerializer(codec));
+        this.template = new KafkaTemplate<>(producerFactory);
+        this.template.setProducerListener((ProducerListener) producerListener);
+    }
+
+    public CompletableFuture<SendResult<String, OrderEvent>> send(String topic, OrderEvent event) {
+        return template.send(topic, event.orderId(), event);
+    }
+
+    /** Partitions of the topic as this sender's producer sees them, fetching its metadata if needed. */
+    public List<PartitionInfo> partitionsFor(String topic) {
+        return template.partitionsFor(topic);
+    }
+
+    @Override
+    public void destroy() {
+        producerFactory.destroy();
+    }
+}
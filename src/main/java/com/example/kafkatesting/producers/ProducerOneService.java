@@ -1,37 +1,87 @@
 package com.example.kafkatesting.producers;
 
+import com.example.kafkatesting.claimcheck.ClaimCheck;
 import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.logging.EventType;
+import com.example.kafkatesting.quota.TenantFlowControl;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.KafkaProducerException;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
 
 @Service
 public class ProducerOneService {
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final BulkSender bulkSender;
+    private final EventLogger events;
+    private final ClaimCheck claimCheck;
+    private final TenantFlowControl flowControl;
+
+    // one shared callback: key and metadata come from the result, nothing is captured per send
+    private final BiConsumer<SendResult<String, String>, Throwable> logOutcome;
 
     @Autowired
-    public ProducerOneService(KafkaTemplate<String, String> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public ProducerOneService(BulkSender bulkSender, EventLogger events, ClaimCheck claimCheck,
+                              TenantFlowControl flowControl) {
+        this.bulkSender = bulkSender;
+        this.events = events;
+        this.claimCheck = claimCheck;
+        this.flowControl = flowControl;
+        this.logOutcome = this::logOutcome;
     }
 
+    /**
+     * Send one record; a payload over app.kafka.claim-check.threshold goes to the
+     * blob store and the record carries its reference. The tenant for flow
+     * control is the key prefix (see {@link TenantFlowControl}).
+     */
     public CompletableFuture<SendResult<String, String>> send(String key, String payload) {
-        CompletableFuture<SendResult<String, String>> future =
-                kafkaTemplate.send(KafkaTopics.TOPIC_ONE, key, payload);
-
-        // Add callback/side-effect logging
-        future.whenComplete((result, ex) -> {
-            if (ex == null) {
-                RecordMetadata meta = result.getRecordMetadata();
-                System.out.printf("✅ Sent message key=%s to topic=%s partition=%d offset=%d%n",
-                        key, meta.topic(), meta.partition(), meta.offset());
-            } else {
-                System.err.printf("❌ Failed to send message key=%s due to %s%n", key, ex.getMessage());
-            }
-        });
+        return logged(flowControl.send(claimCheck.record(KafkaTopics.TOPIC_ONE, key, payload)));
+    }
+
+    /** {@link #send(String, String)} on behalf of the given tenant. */
+    public CompletableFuture<SendResult<String, String>> send(String tenant, String key, String payload) {
+        return logged(flowControl.send(TenantFlowControl.withTenant(
+                claimCheck.record(KafkaTopics.TOPIC_ONE, key, payload), tenant)));
+    }
+
+    private CompletableFuture<SendResult<String, String>> logged(CompletableFuture<SendResult<String, String>> future) {
+        // Add callback/side-effect logging (sampled for successes)
+        future.whenComplete(logOutcome);
         return future;
     }
+
+    /**
+     * Send many records with one aggregated completion. No per-record future or
+     * logging callback; failures are reported per record in the result.
+     * Payloads always go inline; each record counts against its tenant's quota.
+     */
+    public CompletableFuture<BulkSendResult> sendBatch(Collection<KeyValue> records) {
+        return bulkSender.sendBatch(KafkaTopics.TOPIC_ONE, records);
+    }
+
+    /**
+     * Stream records from a publisher, throttled by the tenant quotas and the
+     * in-flight byte budget.
+     */
+    public CompletableFuture<BulkSendResult> send(Flow.Publisher<KeyValue> records) {
+        return bulkSender.send(KafkaTopics.TOPIC_ONE, records);
+    }
+
+    private void logOutcome(SendResult<String, String> result, Throwable ex) {
+        if (ex == null) {
+            RecordMetadata meta = result.getRecordMetadata();
+            events.log(EventType.SENT, "Sent message key={} to topic={} partition={} offset={}",
+                    result.getProducerRecord().key(), meta.topic(), meta.partition(), meta.offset());
+        } else {
+            Object key = ex instanceof KafkaProducerException kpe ? kpe.getFailedProducerRecord().key() : null;
+            events.log(EventType.SEND_FAILED, "Failed to send message key={} due to {}", key, ex.getMessage());
+        }
+    }
 }
@@ -1,28 +1,70 @@
 package com.example.kafkatesting.producers;
 
+import com.example.kafkatesting.claimcheck.ClaimCheck;
 import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.quota.TenantFlowControl;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 @Service
 public class ProducerTwoService {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final BulkSender bulkSender;
+    private final OrderEventSender eventSender;
+    private final ClaimCheck claimCheck;
+    private final TenantFlowControl flowControl;
 
     @Autowired
-    public ProducerTwoService(KafkaTemplate<String, String> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public ProducerTwoService(BulkSender bulkSender, OrderEventSender eventSender, ClaimCheck claimCheck,
+                              TenantFlowControl flowControl) {
+        this.bulkSender = bulkSender;
+        this.eventSender = eventSender;
+        this.claimCheck = claimCheck;
+        this.flowControl = flowControl;
     }
 
+    // a payload over app.kafka.claim-check.threshold is sent as a blob store reference;
+    // the send goes through the key prefix's tenant quota (TenantFlowControl)
     public CompletableFuture<SendResult<String, String>> sendAsync(String key, String payload) {
-        return kafkaTemplate.send(KafkaTopics.TOPIC_TWO, key, payload);
+        return flowControl.send(claimCheck.record(KafkaTopics.TOPIC_TWO, key, payload));
+    }
+
+    public CompletableFuture<SendResult<String, String>> sendAsync(String tenant, String key, String payload) {
+        return flowControl.send(TenantFlowControl.withTenant(claimCheck.record(KafkaTopics.TOPIC_TWO, key, payload), tenant));
     }
 
     public void sendSync(String key, String payload) throws Exception {
-        kafkaTemplate.send(KafkaTopics.TOPIC_TWO, key, payload).get(); // blocking
+        sendAsync(key, payload).get(); // blocking
+    }
+
+    /**
+     * Send a typed event to topic-two-events, keyed by order id and encoded
+     * with app.kafka.events.codec.
+     */
+    public CompletableFuture<SendResult<String, OrderEvent>> sendEvent(OrderEvent event) {
+        return eventSender.send(KafkaTopics.TOPIC_TWO_EVENTS, event);
+    }
+
+    /**
+     * Send many records with one aggregated completion. No per-record future or
+     * logging callback; failures are reported per record in the result.
+     * Payloads always go inline; each record counts against its tenant's quota.
+     */
+    public CompletableFuture<BulkSendResult> sendBatch(Collection<KeyValue> records) {
+        return bulkSender.sendBatch(KafkaTopics.TOPIC_TWO, records);
+    }
+
+    /**
+     * Stream records from a publisher, throttled by the tenant quotas and the
+     * in-flight byte budget.
+     */
+    public CompletableFuture<BulkSendResult> send(Flow.Publisher<KeyValue> records) {
+        return bulkSender.send(KafkaTopics.TOPIC_TWO, records);
     }
 }
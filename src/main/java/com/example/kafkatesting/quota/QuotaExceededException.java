@@ -0,0 +1,27 @@
+package com.example.kafkatesting.quota;
+
+import java.time.Duration;
+
+/**
+ * A send rejected by {@link TenantFlowControl}: the tenant is over its rate and
+ * may not queue (app.kafka.quota.over-limit=reject, or its queue is full).
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    private final String tenant;
+    private final Duration retryAfter;
+
+    public QuotaExceededException(String tenant, Duration retryAfter, String reason) {
+        super("tenant " + tenant + " over its send quota (" + reason + "), retry after " + retryAfter.toMillis() + " ms");
+        this.tenant = tenant;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
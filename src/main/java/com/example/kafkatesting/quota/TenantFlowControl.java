@@ -0,0 +1,432 @@
+package com.example.kafkatesting.quota;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-tenant flow control in front of the shared template, so one caller's
+ * burst cannot fill buffer.memory (where every send() blocks) or run the
+ * client into broker quotas for everyone.
+ *
+ * The tenant of a record is its x-tenant header, else the key up to the key
+ * separator ("acme:order-1" is acme's), else "default". Each tenant has a
+ * {@link TokenBucket} over record bytes at its rate; beyond max-tenants new
+ * names share the "other" bucket. Within its rate a send goes straight to the
+ * template: one CAS, no lock. Over it, the send is either rejected with
+ * {@link QuotaExceededException} or queued in the tenant's own queue, which a
+ * single drain thread empties round-robin, one record per tenant per pass, as
+ * each bucket allows. While a tenant has queued records its new sends queue
+ * behind them, so per-key order holds. The bulk paths, which send to the
+ * producer themselves, take each record from the same bucket through
+ * {@link #acquire}: the calling thread waits instead of a queue.
+ *
+ * Every adapt-interval the producer's produce-throttle-time-avg and free
+ * buffer.memory are read: while the brokers throttle or the buffer is under
+ * buffer-low-water free, all rates are halved (down to 5%), after that they
+ * recover by a tenth of their configured rate per interval. Tenants keep their
+ * shares, and the slowdown happens in the queues rather than inside send().
+ */
+@Component
+public class TenantFlowControl implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantFlowControl.class);
+    private static final String GROUP = "producer-metrics";
+
+    public static final String TENANT_HEADER = "x-tenant";
+    public static final String DEFAULT_TENANT = "default";
+    public static final String OTHER_TENANT = "other";
+
+    static final double MIN_FACTOR = 0.05;
+    static final double RECOVERY_STEP = 0.1;
+
+    public enum OverLimit {
+        QUEUE, REJECT;
+
+        public static OverLimit forName(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Rates are record bytes (UTF-8 key and value, and headers) per second; a
+     * tenant may burst its rate x burst at once.
+     */
+    public record Settings(boolean enabled, OverLimit overLimit, String keySeparator, double defaultRate,
+                           Map<String, Double> tenantRates, Duration burst, int maxTenants, int maxQueued,
+                           Duration adaptInterval, double bufferLowWater) {
+
+        public static final Settings DISABLED = new Settings(false, OverLimit.QUEUE, ":", 1, Map.of(),
+                Duration.ZERO, 1, 0, Duration.ZERO, 0);
+    }
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaMetrics metrics;
+    private final Settings settings;
+    private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final Thread drainer;
+    private final ScheduledExecutorService adapter;
+    private volatile double factor = 1;
+    private volatile boolean running = true;
+
+    @Autowired
+    public TenantFlowControl(KafkaTemplate<String, String> kafkaTemplate, KafkaMetrics metrics,
+                             @Value("${app.kafka.quota.enabled:false}") boolean enabled,
+                             @Value("${app.kafka.quota.over-limit:queue}") String overLimit,
+                             @Value("${app.kafka.quota.key-separator::}") String keySeparator,
+                             @Value("${app.kafka.quota.default-rate:5242880}") double defaultRate,
+                             @Value("${app.kafka.quota.tenant-rates:}") String tenantRates,
+                             @Value("${app.kafka.quota.burst:200ms}") Duration burst,
+                             @Value("${app.kafka.quota.max-tenants:1000}") int maxTenants,
+                             @Value("${app.kafka.quota.max-queued:10000}") int maxQueued,
+                             @Value("${app.kafka.quota.adapt-interval:1s}") Duration adaptInterval,
+                             @Value("${app.kafka.quota.buffer-low-water:0.25}") double bufferLowWater) {
+        this(kafkaTemplate, metrics, new Settings(enabled, OverLimit.forName(overLimit), keySeparator, defaultRate,
+                parseRates(tenantRates), burst, maxTenants, maxQueued, adaptInterval, bufferLowWater));
+    }
+
+    public TenantFlowControl(KafkaTemplate<String, String> kafkaTemplate, KafkaMetrics metrics, Settings settings) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.settings = settings;
+        if (!settings.enabled()) {
+            drainer = null;
+            adapter = null;
+            return;
+        }
+        metrics.bindFlowControl(() -> factor);
+        drainer = new Thread(this::drain, "tenant-flow-control");
+        drainer.setDaemon(true);
+        drainer.start();
+        long millis = settings.adaptInterval().toMillis();
+        if (millis > 0) {
+            adapter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "tenant-flow-adapt");
+                t.setDaemon(true);
+                return t;
+            });
+            adapter.scheduleWithFixedDelay(this::adapt, millis, millis, TimeUnit.MILLISECONDS);
+        } else {
+            adapter = null;
+        }
+    }
+
+    /**
+     * Send through the record's tenant's quota. The future fails with
+     * {@link QuotaExceededException} if the send was rejected.
+     */
+    public CompletableFuture<SendResult<String, String>> send(ProducerRecord<String, String> record) {
+        if (!settings.enabled()) {
+            return kafkaTemplate.send(record);
+        }
+        Tenant tenant = tenant(tenantOf(record));
+        long bytes = sizeOf(record);
+        // a tenant with queued records queues new ones behind them
+        if (tenant.queued.get() == 0) {
+            long wait = tenant.bucket.tryAcquire(bytes, System.nanoTime());
+            if (wait == 0) {
+                tenant.admitted.increment();
+                return kafkaTemplate.send(record);
+            }
+            if (settings.overLimit() == OverLimit.REJECT) {
+                return reject(tenant, wait, "rate");
+            }
+        }
+        if (tenant.queued.get() >= settings.maxQueued()) {
+            // roughly until the queue ahead has drained
+            long drainNanos = (long) (tenant.queued.get() * (double) bytes * 1e9 / tenant.bucket.getRate());
+            return reject(tenant, drainNanos, "queue full");
+        }
+        Pending pending = new Pending(record, bytes, new CompletableFuture<>());
+        tenant.queued.incrementAndGet();
+        tenant.queue.add(pending);
+        // every time: the drainer may have found this queue empty between the two lines above
+        LockSupport.unpark(drainer);
+        return pending.result();
+    }
+
+    /**
+     * Admit a record the caller sends to the producer itself: takes its bytes
+     * from its tenant's bucket, waiting on the calling thread until they are
+     * there, or throws {@link QuotaExceededException} when over-limit is reject.
+     */
+    public void acquire(ProducerRecord<String, String> record) throws InterruptedException {
+        if (!settings.enabled()) {
+            return;
+        }
+        Tenant tenant = tenant(tenantOf(record));
+        long bytes = sizeOf(record);
+        long wait;
+        while ((wait = tenant.bucket.tryAcquire(bytes, System.nanoTime())) > 0) {
+            if (settings.overLimit() == OverLimit.REJECT) {
+                tenant.rejected.increment();
+                throw new QuotaExceededException(tenant.name, Duration.ofNanos(wait), "rate");
+            }
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        tenant.admitted.increment();
+    }
+
+    /** The record with its tenant set in the x-tenant header. */
+    public static ProducerRecord<String, String> withTenant(ProducerRecord<String, String> record, String tenant) {
+        record.headers().remove(TENANT_HEADER);
+        record.headers().add(TENANT_HEADER, tenant.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    String tenantOf(ProducerRecord<String, String> record) {
+        Header header = record.headers().lastHeader(TENANT_HEADER);
+        if (header != null) {
+            return new String(header.value(), StandardCharsets.UTF_8);
+        }
+        String key = record.key();
+        int end = key == null ? -1 : key.indexOf(settings.keySeparator());
+        return end > 0 ? key.substring(0, end) : DEFAULT_TENANT;
+    }
+
+    private Tenant tenant(String name) {
+        Tenant tenant = tenants.get(name);
+        if (tenant != null) {
+            return tenant;
+        }
+        if (tenants.size() >= settings.maxTenants() && !settings.tenantRates().containsKey(name)) {
+            name = OTHER_TENANT;
+        }
+        return tenants.computeIfAbsent(name, this::newTenant);
+    }
+
+    private Tenant newTenant(String name) {
+        double rate = settings.tenantRates().getOrDefault(name, settings.defaultRate());
+        Tenant tenant = new Tenant(name, rate, new TokenBucket(rate * factor,
+                (long) (rate * settings.burst().toNanos() / 1e9)));
+        metrics.bindTenantQuota(name, tenant.admitted, tenant.rejected, tenant.queued::get);
+        return tenant;
+    }
+
+    private CompletableFuture<SendResult<String, String>> reject(Tenant tenant, long waitNanos, String reason) {
+        tenant.rejected.increment();
+        return CompletableFuture.failedFuture(new QuotaExceededException(tenant.name,
+                Duration.ofNanos(Math.max(0, waitNanos)), reason));
+    }
+
+    // one record per tenant per pass, then sleep until the earliest head is due or a queue starts
+    private void drain() {
+        while (running) {
+            long earliest;
+            boolean progress;
+            do {
+                earliest = Long.MAX_VALUE;
+                progress = false;
+                long now = System.nanoTime();
+                for (Tenant tenant : tenants.values()) {
+                    Pending head = tenant.queue.peek();
+                    if (head == null) {
+                        continue;
+                    }
+                    long wait = tenant.bucket.tryAcquire(head.bytes(), now);
+                    if (wait == 0) {
+                        tenant.queue.poll();
+                        forward(head);
+                        // counted down only once handed to the template: a direct send can't overtake it
+                        tenant.queued.decrementAndGet();
+                        tenant.admitted.increment();
+                        progress = true;
+                    } else {
+                        earliest = Math.min(earliest, wait);
+                    }
+                }
+            } while (progress && running);
+            if (earliest == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, earliest);
+            }
+        }
+    }
+
+    private void forward(Pending pending) {
+        CompletableFuture<SendResult<String, String>> result = pending.result();
+        try {
+            kafkaTemplate.send(pending.record()).whenComplete((r, ex) -> {
+                if (ex == null) {
+                    result.complete(r);
+                } else {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    void adapt() {
+        try {
+            Map<MetricName, ? extends Metric> clientMetrics = kafkaTemplate.metrics();
+            double total = value(clientMetrics, "buffer-total-bytes");
+            double free = total > 0 ? value(clientMetrics, "buffer-available-bytes") / total : 1;
+            double throttle = value(clientMetrics, "produce-throttle-time-avg");
+            double current = factor;
+            double next = nextFactor(current, throttle, free, settings.bufferLowWater());
+            if (next != current) {
+                factor = next;
+                tenants.values().forEach(t -> t.bucket.setRate(t.rate * next));
+                if (next < current) {
+                    log.info("tenant send rates down to {}% (throttle={}ms, free buffer={}%)",
+                            Math.round(next * 100), Math.round(throttle), Math.round(free * 100));
+                } else if (next == 1) {
+                    log.info("tenant send rates back to 100%");
+                }
+            }
+        } catch (Exception e) {
+            log.warn("tenant flow control adapt failed", e);
+        }
+    }
+
+    /** Multiplicative decrease while throttled or short of buffer, additive recovery otherwise. */
+    static double nextFactor(double factor, double throttleMillis, double bufferFree, double bufferLowWater) {
+        if (throttleMillis > 0 || bufferFree < bufferLowWater) {
+            return Math.max(MIN_FACTOR, factor / 2);
+        }
+        return Math.min(1, factor + RECOVERY_STEP);
+    }
+
+    // metrics without samples in the window read NaN
+    private static double value(Map<MetricName, ? extends Metric> metrics, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> e : metrics.entrySet()) {
+            if (e.getKey().name().equals(name) && e.getKey().group().equals(GROUP)) {
+                Object v = e.getValue().metricValue();
+                if (v instanceof Number n && !Double.isNaN(n.doubleValue()) && !Double.isInfinite(n.doubleValue())) {
+                    return n.doubleValue();
+                }
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /** UTF-8 bytes of a record's key, value and headers: what it is charged against a quota. */
+    public static long sizeOf(ProducerRecord<String, String> record) {
+        long size = utf8Length(record.key()) + utf8Length(record.value());
+        for (Header header : record.headers()) {
+            size += utf8Length(header.key()) + (header.value() == null ? 0 : header.value().length);
+        }
+        return size;
+    }
+
+    /** UTF-8 encoded length of {@code s} (0 for null), counted without encoding it. */
+    public static long utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        long length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                // a surrogate pair is 4 bytes for 2 chars, everything else here 3 for 1
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length += 1;
+            }
+        }
+        return length;
+    }
+
+    // "acme=1048576, globex=524288"
+    static Map<String, Double> parseRates(String rates) {
+        Map<String, Double> parsed = new HashMap<>();
+        for (String entry : rates.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("app.kafka.quota.tenant-rates entry is not tenant=bytesPerSecond: " + entry);
+            }
+            parsed.put(entry.substring(0, eq).trim(), Double.parseDouble(entry.substring(eq + 1).trim()));
+        }
+        return Map.copyOf(parsed);
+    }
+
+    /** Current share of the configured rates, 1 when the producer is not under pressure. */
+    public double getFactor() {
+        return factor;
+    }
+
+    public int getQueued(String tenant) {
+        Tenant t = tenants.get(tenant);
+        return t == null ? 0 : t.queued.get();
+    }
+
+    /** Stops the drain thread and sends whatever is still queued, without waiting for the quotas. */
+    @Override
+    public void destroy() {
+        if (!settings.enabled()) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        if (adapter != null) {
+            adapter.shutdownNow();
+        }
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Tenant tenant : tenants.values()) {
+            Pending pending;
+            while ((pending = tenant.queue.poll()) != null) {
+                forward(pending);
+                tenant.queued.decrementAndGet();
+            }
+        }
+    }
+
+    private record Pending(ProducerRecord<String, String> record, long bytes,
+                           CompletableFuture<SendResult<String, String>> result) {
+    }
+
+    private static final class Tenant {
+        private final String name;
+        private final double rate;
+        private final TokenBucket bucket;
+        private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Tenant(String name, double rate, TokenBucket bucket) {
+            this.name = name;
+            this.rate = rate;
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.kafkatesting.quota;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket over bytes, kept as a single "theoretical arrival
+ * time" (the generic cell rate algorithm): each admitted byte pushes it
+ * 1/rate further into the future, and a send is admitted while it stays
+ * within burst/rate of now. One CAS per admitted send, nothing to refill.
+ *
+ * A send larger than the burst is charged as a full burst, so it waits for
+ * an empty bucket instead of never fitting.
+ */
+final class TokenBucket {
+
+    private final AtomicLong arrival = new AtomicLong(Long.MIN_VALUE / 2);
+    private final long burstBytes;
+    // rate x flow-control factor; swapped whole when either changes
+    private volatile double nanosPerByte;
+
+    TokenBucket(double bytesPerSecond, long burstBytes) {
+        this.burstBytes = Math.max(1, burstBytes);
+        setRate(bytesPerSecond);
+    }
+
+    void setRate(double bytesPerSecond) {
+        this.nanosPerByte = 1e9 / Math.max(1, bytesPerSecond);
+    }
+
+    double getRate() {
+        return 1e9 / nanosPerByte;
+    }
+
+    /**
+     * Take {@code bytes} from the bucket if they are there.
+     *
+     * @return 0 if taken, else the nanos until they would be
+     */
+    long tryAcquire(long bytes, long nowNanos) {
+        double perByte = nanosPerByte;
+        long cost = (long) (Math.min(bytes, burstBytes) * perByte);
+        long tolerance = (long) (burstBytes * perByte);
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, nowNanos) + cost;
+            long ahead = next - nowNanos;
+            if (ahead > tolerance) {
+                return ahead - tolerance;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.kafkatesting.retry;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Decides where a failed topic-two record goes next: the next delay tier
+ * with an incremented x-retry-count header, or the DLQ once all tiers are used.
+ *
+ * Every hop also carries where the record was first consumed (x-original-*,
+ * stamped on the first failure and kept afterwards) and the last failure
+ * (x-exception-*), so a DLQ record explains itself without the logs.
+ */
+@Component
+public class RetryRouter {
+
+    public static final String RETRY_HEADER = "x-retry-count";
+    public static final String ORIGINAL_TOPIC_HEADER = "x-original-topic";
+    public static final String ORIGINAL_PARTITION_HEADER = "x-original-partition";
+    public static final String ORIGINAL_OFFSET_HEADER = "x-original-offset";
+    public static final String EXCEPTION_CLASS_HEADER = "x-exception-class";
+    public static final String EXCEPTION_MESSAGE_HEADER = "x-exception-message";
+
+    private static final int MAX_EXCEPTION_MESSAGE = 1024;
+
+    /**
+     * Build the next hop for a record whose processing failed.
+     */
+    public ProducerRecord<String, String> nextHop(ConsumerRecord<String, String> record, String payload) {
+        return nextHop(record, payload, null);
+    }
+
+    /**
+     * Build the next hop for a record whose processing failed with {@code cause}.
+     * On the DLQ hop x-retry-count is the number of retries that were made.
+     */
+    public ProducerRecord<String, String> nextHop(ConsumerRecord<String, String> record, String payload, Exception cause) {
+        int retries = extractRetryCount(record.headers()).orElse(0);
+        RetryTier tier = RetryTier.forAttempt(retries + 1);
+        if (tier == null) {
+            return deadLetter(record, payload, cause);
+        }
+        return new ProducerRecord<>(
+                tier.topic(),
+                null,               // partition (let the partitioner decide)
+                record.key(),
+                payload,
+                hopHeaders(record, cause, retries + 1)
+        );
+    }
+
+    /**
+     * Send a failed record straight to the DLQ, as text, with the same headers
+     * as a DLQ hop after the retry tiers (used by listeners without delay tiers).
+     */
+    public ProducerRecord<String, String> deadLetter(ConsumerRecord<String, ?> record, String payload, Exception cause) {
+        int retries = extractRetryCount(record.headers()).orElse(0);
+        return new ProducerRecord<>(KafkaTopics.TOPIC_DLQ, null, record.key(), payload, hopHeaders(record, cause, retries));
+    }
+
+    private RecordHeaders hopHeaders(ConsumerRecord<String, ?> record, Exception cause, int retryCount) {
+        RecordHeaders newHeaders = new RecordHeaders();
+        // copy existing headers except the ones replaced below
+        Headers existing = record.headers();
+        existing.forEach(h -> {
+            if (!RETRY_HEADER.equals(h.key())
+                    && !EXCEPTION_CLASS_HEADER.equals(h.key())
+                    && !EXCEPTION_MESSAGE_HEADER.equals(h.key())) {
+                newHeaders.add(h);
+            }
+        });
+        if (existing.lastHeader(ORIGINAL_TOPIC_HEADER) == null) {
+            // first failure: this record is where the event was originally consumed
+            newHeaders.add(new RecordHeader(ORIGINAL_TOPIC_HEADER, utf8(record.topic())));
+            newHeaders.add(new RecordHeader(ORIGINAL_PARTITION_HEADER, utf8(Integer.toString(record.partition()))));
+            newHeaders.add(new RecordHeader(ORIGINAL_OFFSET_HEADER, utf8(Long.toString(record.offset()))));
+        }
+        if (cause != null) {
+            newHeaders.add(new RecordHeader(EXCEPTION_CLASS_HEADER, utf8(cause.getClass().getName())));
+            String message = cause.getMessage();
+            if (message != null) {
+                if (message.length() > MAX_EXCEPTION_MESSAGE) message = message.substring(0, MAX_EXCEPTION_MESSAGE);
+                newHeaders.add(new RecordHeader(EXCEPTION_MESSAGE_HEADER, utf8(message)));
+            }
+        }
+        // add/update retry header
+        newHeaders.add(new RecordHeader(RETRY_HEADER, utf8(Integer.toString(retryCount))));
+        return newHeaders;
+    }
+
+    /**
+     * Milliseconds until a record on a retry tier topic is due, based on the
+     * time it was republished; zero or negative means it can run now.
+     */
+    public long millisUntilDue(ConsumerRecord<?, ?> record, RetryTier tier) {
+        return record.timestamp() + tier.delay().toMillis() - System.currentTimeMillis();
+    }
+
+    /** Last value of a UTF-8 string header, or null if absent. */
+    public static String readString(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Optional<Integer> extractRetryCount(Headers headers) {
+        Header header = headers.lastHeader(RETRY_HEADER);
+        if (header == null) return Optional.empty();
+        try {
+            String val = new String(header.value(), StandardCharsets.UTF_8);
+            return Optional.of(Integer.parseInt(val));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.kafkatesting.retry;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+
+import java.time.Duration;
+
+/**
+ * Delay tiers for topic-two retries. Attempt N goes to the N-th tier;
+ * once every tier has been tried the record goes to the DLQ.
+ */
+public enum RetryTier {
+
+    ONE_SECOND(KafkaTopics.TOPIC_TWO_RETRY_1S, Duration.ofSeconds(1)),
+    TEN_SECONDS(KafkaTopics.TOPIC_TWO_RETRY_10S, Duration.ofSeconds(10)),
+    SIXTY_SECONDS(KafkaTopics.TOPIC_TWO_RETRY_60S, Duration.ofSeconds(60));
+
+    private static final RetryTier[] TIERS = values();
+
+    private final String topic;
+    private final Duration delay;
+
+    RetryTier(String topic, Duration delay) {
+        this.topic = topic;
+        this.delay = delay;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public Duration delay() {
+        return delay;
+    }
+
+    /** 1-based retry attempt served by this tier. */
+    public int attempt() {
+        return ordinal() + 1;
+    }
+
+    /** Number of retries before a record is dead-lettered. */
+    public static int maxRetries() {
+        return TIERS.length;
+    }
+
+    /** Tier for the given 1-based retry attempt, or null when retries are exhausted. */
+    public static RetryTier forAttempt(int attempt) {
+        if (attempt < 1 || attempt > TIERS.length) return null;
+        return TIERS[attempt - 1];
+    }
+
+    /** Tier that owns the given topic, or null for non-retry topics. */
+    public static RetryTier forTopic(String topic) {
+        for (RetryTier tier : TIERS) {
+            if (tier.topic.equals(topic)) return tier;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.kafkatesting.scaling;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the number of consumers of the configured listener containers from
+ * group lag and listener processing time (see {@link ScalingPolicy}).
+ *
+ * Every app.kafka.autoscale.interval it reads the topics' end offsets and the
+ * group's committed offsets through the admin client, and the time spent in
+ * the listener from Spring Kafka's listener timers (spring.kafka.listener).
+ * Lag is summed per partition from where the group resumes it: its committed
+ * offset, or for a partition without one (e.g. just added) where the group's
+ * auto.offset.reset policy would start it.
+ * A new concurrency takes effect by stopping the container, changing it and
+ * starting it again; the group rebalances once per change. When a container
+ * already has one consumer per partition and lag keeps growing, its topics are
+ * grown (doubled, up to app.kafka.autoscale.max-partitions). More partitions
+ * move existing keys to other partitions, so per-key order only holds for
+ * records produced after the change.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.autoscale.enabled", havingValue = "true")
+public class ConcurrencyAutoscaler implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyAutoscaler.class);
+    private static final String LISTENER_TIMER = "spring.kafka.listener";
+    private static final long ADMIN_TIMEOUT_SECONDS = 10;
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final KafkaAdmin kafkaAdmin;
+    private final MeterRegistry meterRegistry;
+    private final KafkaMetrics metrics;
+    private final List<String> listenerIds;
+    private final ScalingPolicy.Settings settings;
+    private final int maxPartitions;
+    private final boolean resetToEarliest;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private Admin admin;
+
+    public ConcurrencyAutoscaler(KafkaListenerEndpointRegistry registry,
+                                 KafkaAdmin kafkaAdmin,
+                                 MeterRegistry meterRegistry,
+                                 KafkaMetrics metrics,
+                                 @Value("${app.kafka.autoscale.listeners:consumer-two-record,consumer-two-batch}") String[] listenerIds,
+                                 @Value("${app.kafka.autoscale.interval:5s}") Duration interval,
+                                 @Value("${app.kafka.autoscale.min-concurrency:1}") int minConcurrency,
+                                 @Value("${app.kafka.autoscale.target-utilization:0.7}") double targetUtilization,
+                                 @Value("${app.kafka.autoscale.drain-target:30s}") Duration drainTarget,
+                                 @Value("${app.kafka.autoscale.scale-up-ticks:2}") int scaleUpTicks,
+                                 @Value("${app.kafka.autoscale.scale-down-ticks:6}") int scaleDownTicks,
+                                 @Value("${app.kafka.autoscale.cooldown-ticks:3}") int cooldownTicks,
+                                 @Value("${app.kafka.autoscale.partition-growth-ticks:12}") int partitionGrowthTicks,
+                                 @Value("${app.kafka.autoscale.max-partitions:0}") int maxPartitions,
+                                 @Value("${spring.kafka.consumer.auto-offset-reset:latest}") String offsetReset) {
+        this.registry = registry;
+        this.kafkaAdmin = kafkaAdmin;
+        this.meterRegistry = meterRegistry;
+        this.metrics = metrics;
+        this.listenerIds = Arrays.stream(listenerIds).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.settings = new ScalingPolicy.Settings(minConcurrency, targetUtilization, drainTarget,
+                scaleUpTicks, scaleDownTicks, cooldownTicks, partitionGrowthTicks);
+        this.maxPartitions = maxPartitions;
+        this.resetToEarliest = "earliest".equalsIgnoreCase(offsetReset.trim());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "concurrency-autoscaler");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::tick, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    void tick() {
+        for (String id : listenerIds) {
+            try {
+                MessageListenerContainer container = registry.getListenerContainer(id);
+                // stopped containers (e.g. the batch listener in record mode) are left alone
+                if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent && container.isRunning()) {
+                    scale(id, concurrent);
+                }
+            } catch (Exception e) {
+                log.warn("autoscaler tick failed for listener {}", id, e);
+            }
+        }
+    }
+
+    private void scale(String id, ConcurrentMessageListenerContainer<?, ?> container) throws Exception {
+        String group = container.getGroupId();
+        List<String> topics = Arrays.asList(container.getContainerProperties().getTopics());
+        Map<String, TopicDescription> described =
+                admin().describeTopics(topics).allTopicNames().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        described.values().forEach(d -> d.partitions().forEach(p ->
+                latest.put(new TopicPartition(d.name(), p.partition()), OffsetSpec.latest())));
+
+        Map<TopicPartition, Long> ends = offsets(latest);
+        Map<TopicPartition, OffsetAndMetadata> committedOffsets = admin().listConsumerGroupOffsets(group)
+                .partitionsToOffsetAndMetadata().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Map<TopicPartition, Long> positions = positions(ends, committedOffsets);
+        long end = 0;
+        long committed = 0;
+        long lag = 0;
+        for (Map.Entry<TopicPartition, Long> e : ends.entrySet()) {
+            long position = positions.get(e.getKey());
+            end += e.getValue();
+            committed += position;
+            lag += Math.max(0, e.getValue() - position);
+        }
+        double busy = meterRegistry.find(LISTENER_TIMER).timers().stream()
+                .filter(t -> String.valueOf(t.getId().getTag("name")).startsWith(id + "-"))
+                .mapToDouble(t -> t.totalTime(TimeUnit.SECONDS)).sum();
+
+        Target target = targets.computeIfAbsent(id, k -> {
+            Target t = new Target(new ScalingPolicy(settings));
+            metrics.bindAutoscaleTarget(k, container::getConcurrency, () -> t.lag);
+            return t;
+        });
+        long now = System.nanoTime();
+        if (target.lastNanos != 0) {
+            ScalingPolicy.Sample sample = new ScalingPolicy.Sample(
+                    (now - target.lastNanos) / 1e9, lag, end - target.lastEnd, committed - target.lastCommitted,
+                    busy - target.lastBusy, container.getConcurrency(), latest.size());
+            ScalingPolicy.Decision decision = target.policy.decide(sample);
+            if (decision.growPartitions()) {
+                growPartitions(id, described);
+            }
+            if (decision.concurrency() != container.getConcurrency()) {
+                log.info("listener {}: concurrency {} -> {} (lag={}, partitions={})",
+                        id, container.getConcurrency(), decision.concurrency(), lag, latest.size());
+                container.stop();
+                container.setConcurrency(decision.concurrency());
+                container.start();
+            }
+        }
+        target.lastNanos = now;
+        target.lastEnd = end;
+        target.lastCommitted = committed;
+        target.lastBusy = busy;
+        target.lag = lag;
+    }
+
+    // where the group resumes each partition: its committed offset, else where auto.offset.reset starts it
+    private Map<TopicPartition, Long> positions(Map<TopicPartition, Long> ends,
+                                                Map<TopicPartition, OffsetAndMetadata> committedOffsets) throws Exception {
+        Map<TopicPartition, Long> positions = new HashMap<>();
+        Map<TopicPartition, OffsetSpec> uncommitted = new HashMap<>();
+        ends.forEach((tp, end) -> {
+            OffsetAndMetadata offset = committedOffsets.get(tp);
+            if (offset != null) {
+                positions.put(tp, offset.offset());
+            } else if (resetToEarliest) {
+                uncommitted.put(tp, OffsetSpec.earliest());
+            } else {
+                positions.put(tp, end);
+            }
+        });
+        if (!uncommitted.isEmpty()) {
+            positions.putAll(offsets(uncommitted));
+        }
+        return positions;
+    }
+
+    private Map<TopicPartition, Long> offsets(Map<TopicPartition, OffsetSpec> specs) throws Exception {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        admin().listOffsets(specs).all().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .forEach((tp, info) -> offsets.put(tp, info.offset()));
+        return offsets;
+    }
+
+    private void growPartitions(String id, Map<String, TopicDescription> described) throws Exception {
+        Map<String, NewPartitions> increases = new HashMap<>();
+        described.forEach((topic, d) -> {
+            int current = d.partitions().size();
+            int next = Math.min(maxPartitions, current * 2);
+            if (next > current) {
+                increases.put(topic, NewPartitions.increaseTo(next));
+            }
+        });
+        if (increases.isEmpty()) {
+            return;
+        }
+        log.warn("listener {}: lag keeps growing at full concurrency, growing partitions {}", id, increases.keySet());
+        admin().createPartitions(increases).all().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // only touched from the scheduler thread
+    private Admin admin() {
+        if (admin == null) {
+            admin = Admin.create(kafkaAdmin.getConfigurationProperties());
+        }
+        return admin;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (admin != null) {
+            admin.close(Duration.ofSeconds(1));
+        }
+    }
+
+    private static final class Target {
+        private final ScalingPolicy policy;
+        private long lastNanos;
+        private long lastEnd;
+        private long lastCommitted;
+        private double lastBusy;
+        private volatile long lag;
+
+        private Target(ScalingPolicy policy) {
+            this.policy = policy;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.kafkatesting.scaling;
+
+import java.time.Duration;
+
+/**
+ * Concurrency decision for one listener container, fed one {@link Sample} per
+ * autoscaler tick.
+ *
+ * The wanted concurrency is the work arriving per second, plus the backlog
+ * spread over the drain target, times the time one record takes, divided by
+ * the target utilization of a consumer thread; it is clamped to
+ * [min-concurrency, partitions]. Hysteresis keeps it from flapping: scaling up
+ * needs scaleUpTicks consecutive ticks asking for more, scaling down needs the
+ * (longer) scaleDownTicks and goes one consumer at a time, and nothing changes
+ * for cooldownTicks after a change. When the container already runs one
+ * consumer per partition and the lag keeps growing for partitionGrowthTicks,
+ * the decision asks for more partitions.
+ */
+public class ScalingPolicy {
+
+    public record Settings(int minConcurrency, double targetUtilization, Duration drainTarget,
+                           int scaleUpTicks, int scaleDownTicks, int cooldownTicks, int partitionGrowthTicks) {
+    }
+
+    /**
+     * One tick's observations; deltas are since the previous tick.
+     *
+     * @param seconds     length of the interval
+     * @param lag         current group lag on the container's topics
+     * @param arrived     records appended to the topics in the interval
+     * @param processed   records committed by the group in the interval
+     * @param busySeconds time spent in the listener in the interval, all consumers together
+     * @param concurrency consumers the container runs now
+     * @param partitions  partitions of the container's topics
+     */
+    public record Sample(double seconds, long lag, long arrived, long processed, double busySeconds,
+                         int concurrency, int partitions) {
+    }
+
+    public record Decision(int concurrency, boolean growPartitions) {
+    }
+
+    private final Settings settings;
+    private double secondsPerRecord = -1;
+    private long previousLag = -1;
+    private int upStreak;
+    private int downStreak;
+    private int growthStreak;
+    private int cooldown;
+
+    public ScalingPolicy(Settings settings) {
+        this.settings = settings;
+    }
+
+    public Decision decide(Sample s) {
+        if (s.processed() > 0 && s.busySeconds() > 0) {
+            secondsPerRecord = s.busySeconds() / s.processed();
+        }
+        int wanted = clamp(wanted(s), s);
+
+        boolean lagGrowing = previousLag >= 0 && s.lag() > previousLag;
+        previousLag = s.lag();
+        growthStreak = lagGrowing && s.concurrency() >= s.partitions() ? growthStreak + 1 : 0;
+        boolean grow = settings.partitionGrowthTicks() > 0 && growthStreak >= settings.partitionGrowthTicks();
+        if (grow) {
+            growthStreak = 0;
+        }
+
+        if (cooldown > 0) {
+            cooldown--;
+            upStreak = 0;
+            downStreak = 0;
+            return new Decision(s.concurrency(), grow);
+        }
+        if (wanted > s.concurrency()) {
+            downStreak = 0;
+            if (++upStreak >= settings.scaleUpTicks()) {
+                return changed(wanted, grow);
+            }
+        } else if (wanted < s.concurrency()) {
+            upStreak = 0;
+            if (++downStreak >= settings.scaleDownTicks()) {
+                return changed(s.concurrency() - 1, grow);
+            }
+        } else {
+            upStreak = 0;
+            downStreak = 0;
+        }
+        return new Decision(s.concurrency(), grow);
+    }
+
+    private int wanted(Sample s) {
+        if (secondsPerRecord < 0) {
+            // no processing time measured yet: lean on the lag trend alone
+            return previousLag >= 0 && s.lag() > previousLag ? s.concurrency() + 1 : s.concurrency();
+        }
+        double drainSeconds = Math.max(0.001, settings.drainTarget().toMillis() / 1000.0);
+        double recordsPerSecond = s.arrived() / Math.max(0.001, s.seconds()) + s.lag() / drainSeconds;
+        return (int) Math.ceil(recordsPerSecond * secondsPerRecord / settings.targetUtilization());
+    }
+
+    private int clamp(int wanted, Sample s) {
+        return Math.max(settings.minConcurrency(), Math.min(Math.max(1, s.partitions()), wanted));
+    }
+
+    private Decision changed(int concurrency, boolean grow) {
+        upStreak = 0;
+        downStreak = 0;
+        cooldown = settings.cooldownTicks();
+        return new Decision(concurrency, grow);
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.kafkatesting.startup;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.producers.OrderEventSender;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.InvalidPartitionsException;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms the Kafka clients up before the application reports ready, so the
+ * first sends after a (rolling) start don't wait on admin round trips, metadata
+ * fetches or group joins.
+ *
+ * <ol>
+ *   <li>topics: once all beans exist, before any listener container starts,
+ *   every NewTopic bean is created in one admin request (the controller creates
+ *   them concurrently; existing ones are kept) and then checked against its
+ *   declaration in one describe round. An existing topic with fewer partitions
+ *   than declared is grown to the declared count (more is fine, the autoscaler
+ *   may have added some); keys of that topic map to other partitions from then
+ *   on. A replication factor that differs is only logged, since changing it
+ *   needs a partition reassignment. A declared config that differs fails the
+ *   start, and every partition must have a leader. This replaces KafkaAdmin's
+ *   own provisioning, which is switched off.</li>
+ *   <li>metadata: the shared producer, and the OrderEvent producer for its topic,
+ *   load the metadata of every topic, one thread per topic so the requests
+ *   coalesce. Creating the producer also fetches its idempotent producer id.</li>
+ *   <li>listeners: each running listener container is given up to
+ *   listener-timeout for its first partition assignment. Containers still
+ *   without partitions are only logged: other members of their group may hold
+ *   them all.</li>
+ * </ol>
+ *
+ * Steps 2 and 3 run as an ApplicationRunner, and Boot publishes the readiness
+ * state ACCEPTING_TRAFFIC only after the runners returned.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class StartupWarmup implements SmartInitializingSingleton, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+    private static final long RETRY_MILLIS = 100;
+
+    private final KafkaAdmin kafkaAdmin;
+    private final List<NewTopic> topics;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OrderEventSender eventSender;
+    private final KafkaListenerEndpointRegistry registry;
+    private final KafkaMetrics metrics;
+    private final Duration timeout;
+    private final Duration listenerTimeout;
+    private long topicsNanos;
+
+    public StartupWarmup(KafkaAdmin kafkaAdmin,
+                         ObjectProvider<NewTopic> topics,
+                         KafkaTemplate<String, String> kafkaTemplate,
+                         OrderEventSender eventSender,
+                         KafkaListenerEndpointRegistry registry,
+                         KafkaMetrics metrics,
+                         @Value("${app.kafka.warmup.timeout:60s}") Duration timeout,
+                         @Value("${app.kafka.warmup.listener-timeout:30s}") Duration listenerTimeout) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.topics = topics.orderedStream().toList();
+        this.kafkaTemplate = kafkaTemplate;
+        this.eventSender = eventSender;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.timeout = timeout;
+        this.listenerTimeout = listenerTimeout;
+
+        List<String> declared = this.topics.stream().map(NewTopic::name).toList();
+        List<String> undeclared = KafkaTopics.ALL_TOPICS.stream().filter(t -> !declared.contains(t)).toList();
+        if (!undeclared.isEmpty()) {
+            throw new IllegalStateException("no NewTopic bean for " + undeclared);
+        }
+        // set before KafkaAdmin's own afterSingletonsInstantiated, which would otherwise create them first
+        kafkaAdmin.setAutoCreate(false);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        try (Admin admin = Admin.create(kafkaAdmin.getConfigurationProperties())) {
+            long deadline = start + timeout.toNanos();
+            int created = createTopics(admin, deadline);
+            validateTopics(admin, deadline);
+            topicsNanos = System.nanoTime() - start;
+            metrics.recordStartupPhase("topics", topicsNanos);
+            log.info("Provisioned {} topics ({} created) in {} ms", topics.size(), created,
+                    TimeUnit.NANOSECONDS.toMillis(topicsNanos));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Kafka topic provisioning failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Kafka topic provisioning did not finish within " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while provisioning Kafka topics", e);
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.nanoTime();
+        int partitions = prefetchMetadata(start + timeout.toNanos());
+        long metadataDone = System.nanoTime();
+        metrics.recordStartupPhase("metadata", metadataDone - start);
+
+        List<String> unassigned = awaitAssignments(metadataDone + listenerTimeout.toNanos());
+        long listenersDone = System.nanoTime();
+        metrics.recordStartupPhase("listeners", listenersDone - metadataDone);
+        if (!unassigned.isEmpty()) {
+            log.warn("Listener containers without partitions after {}: {}", listenerTimeout, unassigned);
+        }
+        log.info("Kafka warm-up done: topics {} ms, producer metadata {} ms ({} partitions), listeners {} ms;"
+                        + " ready {} ms after JVM start",
+                TimeUnit.NANOSECONDS.toMillis(topicsNanos), TimeUnit.NANOSECONDS.toMillis(metadataDone - start),
+                partitions, TimeUnit.NANOSECONDS.toMillis(listenersDone - metadataDone),
+                ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    // one request for all topics; an existing topic is left as it is and validated below
+    private int createTopics(Admin admin, long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+        int created = 0;
+        for (Map.Entry<String, KafkaFuture<Void>> result : admin.createTopics(topics).values().entrySet()) {
+            try {
+                result.getValue().get(remaining(deadline), TimeUnit.NANOSECONDS);
+                created++;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof TopicExistsException)) {
+                    throw e;
+                }
+            }
+        }
+        return created;
+    }
+
+    // descriptions and configs are requested together; a new topic may take a moment to be
+    // known to every broker and to get its leaders, so those two are retried until the deadline
+    private void validateTopics(Admin admin, long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+        List<String> names = topics.stream().map(NewTopic::name).toList();
+        List<ConfigResource> configured = topics.stream()
+                .filter(t -> t.configs() != null && !t.configs().isEmpty())
+                .map(t -> new ConfigResource(ConfigResource.Type.TOPIC, t.name()))
+                .toList();
+        boolean warned = false;
+        while (true) {
+            KafkaFuture<Map<String, TopicDescription>> described = admin.describeTopics(names).allTopicNames();
+            KafkaFuture<Map<ConfigResource, Config>> configs = configured.isEmpty()
+                    ? KafkaFuture.completedFuture(Map.of())
+                    : admin.describeConfigs(configured).all();
+            List<String> pending = new ArrayList<>();
+            try {
+                Map<String, TopicDescription> descriptions = described.get(remaining(deadline), TimeUnit.NANOSECONDS);
+                Map<ConfigResource, Config> actualConfigs = configs.get(remaining(deadline), TimeUnit.NANOSECONDS);
+                List<String> mismatches = new ArrayList<>();
+                List<String> replication = new ArrayList<>();
+                Map<String, NewPartitions> increases = new HashMap<>();
+                for (NewTopic topic : topics) {
+                    TopicDescription description = descriptions.get(topic.name());
+                    Config config = actualConfigs.get(new ConfigResource(ConfigResource.Type.TOPIC, topic.name()));
+                    mismatches.addAll(mismatches(topic, config));
+                    replication.addAll(replicationMismatches(topic, description));
+                    if (missingPartitions(topic, description)) {
+                        increases.put(topic.name(), NewPartitions.increaseTo(topic.numPartitions()));
+                        pending.add(topic.name() + " is short of partitions");
+                    } else if (!hasLeaders(description)) {
+                        pending.add(topic.name() + " has partitions without a leader");
+                    }
+                }
+                if (!mismatches.isEmpty()) {
+                    throw new IllegalStateException("Kafka topics differ from their declarations: " + mismatches);
+                }
+                if (!replication.isEmpty() && !warned) {
+                    log.warn("Kafka topics with a replication factor other than declared, left as they are"
+                            + " (change it with a partition reassignment): {}", replication);
+                    warned = true;
+                }
+                if (!increases.isEmpty()) {
+                    addPartitions(admin, increases, deadline);
+                }
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof UnknownTopicOrPartitionException)) {
+                    throw e;
+                }
+                pending.add(e.getCause().getMessage());
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (remaining(deadline) <= TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS)) {
+                throw new TimeoutException("topics not ready: " + pending);
+            }
+            Thread.sleep(RETRY_MILLIS);
+        }
+    }
+
+    // an existing topic declared with more partitions: grow it; another instance starting at the
+    // same time may get there first, which is just as good
+    private void addPartitions(Admin admin, Map<String, NewPartitions> increases, long deadline)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        for (Map.Entry<String, KafkaFuture<Void>> result : admin.createPartitions(increases).values().entrySet()) {
+            try {
+                result.getValue().get(remaining(deadline), TimeUnit.NANOSECONDS);
+                log.warn("Grew topic {} to its declared {} partitions", result.getKey(),
+                        increases.get(result.getKey()).totalCount());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof InvalidPartitionsException)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /** Whether an existing topic has fewer partitions than declared. */
+    static boolean missingPartitions(NewTopic declared, TopicDescription actual) {
+        return declared.numPartitions() > 0 && actual.partitions().size() < declared.numPartitions();
+    }
+
+    /** Partitions whose replica count differs from the declared replication factor (the first one per topic). */
+    static List<String> replicationMismatches(NewTopic declared, TopicDescription actual) {
+        if (declared.replicationFactor() > 0) {
+            for (TopicPartitionInfo p : actual.partitions()) {
+                if (p.replicas().size() != declared.replicationFactor()) {
+                    return List.of(declared.name() + ": partition " + p.partition() + " has " + p.replicas().size()
+                            + " replicas, declared " + declared.replicationFactor());
+                }
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Declared configs that differ from the broker's view of the topic; empty if
+     * they match. Partition count and replication factor are handled separately.
+     */
+    static List<String> mismatches(NewTopic declared, Config config) {
+        List<String> problems = new ArrayList<>();
+        String name = declared.name();
+        if (declared.configs() != null) {
+            declared.configs().forEach((key, value) -> {
+                ConfigEntry entry = config == null ? null : config.get(key);
+                String actualValue = entry == null ? null : entry.value();
+                if (!value.equals(actualValue)) {
+                    problems.add(name + ": " + key + "=" + actualValue + ", declared " + value);
+                }
+            });
+        }
+        return problems;
+    }
+
+    private static boolean hasLeaders(TopicDescription description) {
+        return description.partitions().stream().allMatch(p -> p.leader() != null && !p.leader().isEmpty());
+    }
+
+    // partitionsFor blocks on the producer's metadata; from one thread per topic the pending
+    // topics go out together in the next metadata request instead of one round trip each
+    private int prefetchMetadata(long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+        ExecutorService pool = Executors.newFixedThreadPool(topics.size() + 1, r -> {
+            Thread t = new Thread(r, "kafka-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Integer>> fetches = new ArrayList<>();
+            for (NewTopic topic : topics) {
+                fetches.add(pool.submit(() -> kafkaTemplate.partitionsFor(topic.name()).size()));
+            }
+            Future<Integer> events = pool.submit(() -> eventSender.partitionsFor(KafkaTopics.TOPIC_TWO_EVENTS).size());
+            int partitions = 0;
+            for (Future<Integer> fetch : fetches) {
+                partitions += fetch.get(remaining(deadline), TimeUnit.NANOSECONDS);
+            }
+            events.get(remaining(deadline), TimeUnit.NANOSECONDS);
+            return partitions;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<String> awaitAssignments(long deadline) throws InterruptedException {
+        List<MessageListenerContainer> waiting = new ArrayList<>();
+        for (MessageListenerContainer container : registry.getAllListenerContainers()) {
+            if (container.isRunning()) {
+                waiting.add(container);
+            }
+        }
+        while (true) {
+            waiting.removeIf(StartupWarmup::isAssigned);
+            if (waiting.isEmpty() || System.nanoTime() >= deadline) {
+                return waiting.stream().map(MessageListenerContainer::getListenerId).toList();
+            }
+            Thread.sleep(RETRY_MILLIS);
+        }
+    }
+
+    private static boolean isAssigned(MessageListenerContainer container) {
+        Collection<?> assigned = container.getAssignedPartitions();
+        return assigned != null && !assigned.isEmpty();
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.kafkatesting.tracing;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency (origin send to finished processing) per topic and retry
+ * depth, kept in HdrHistograms.
+ *
+ * Listeners record into a wait-free {@link Recorder}; reads swap out the
+ * interval histogram and fold it into a cumulative one, so recording never
+ * contends with reporting. Percentiles are available through the
+ * "e2elatency" actuator endpoint and, if app.tracing.e2e.report-interval is
+ * positive, in a periodic log report.
+ */
+@Component
+public class EndToEndLatency implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EndToEndLatency.class);
+    // latencies above an hour are clamped
+    private static final long MAX_TRACKABLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int DEPTH_CACHE = 8;
+
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+    // topic -> series by retry depth, so the hot path doesn't build a key string per record
+    private final ConcurrentHashMap<String, Series[]> depthCache = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reporter;
+
+    public EndToEndLatency(@Value("${app.tracing.e2e.report-interval:60s}") Duration reportInterval) {
+        if (reportInterval.isZero() || reportInterval.isNegative()) {
+            reporter = null;
+        } else {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "e2e-latency-report");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = reportInterval.toMillis();
+            reporter.scheduleAtFixedRate(this::report, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Record a finished record. Records without an origin timestamp (produced
+     * by clients without the interceptor) are skipped.
+     */
+    public void record(ConsumerRecord<?, ?> record, int retryDepth) {
+        long origin = TraceHeaders.readLong(record.headers(), TraceHeaders.ORIGIN_TIMESTAMP, -1);
+        if (origin < 0) return;
+        long latency = Math.min(MAX_TRACKABLE_MILLIS, Math.max(0, System.currentTimeMillis() - origin));
+        seriesFor(record.topic(), retryDepth).recorder.recordValue(latency);
+    }
+
+    private Series seriesFor(String topic, int retryDepth) {
+        Series[] byDepth = depthCache.get(topic);
+        if (byDepth != null && retryDepth < byDepth.length && byDepth[retryDepth] != null) {
+            return byDepth[retryDepth];
+        }
+        Series s = series.computeIfAbsent(topic + "|" + retryDepth, k -> new Series(topic, retryDepth));
+        if (retryDepth < DEPTH_CACHE) {
+            depthCache.computeIfAbsent(topic, t -> new Series[DEPTH_CACHE])[retryDepth] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Cumulative percentiles in milliseconds: topic -> retry depth -> stats.
+     */
+    public Map<String, Map<Integer, Map<String, Object>>> snapshot() {
+        Map<String, Map<Integer, Map<String, Object>>> out = new TreeMap<>();
+        for (Series s : series.values()) {
+            Histogram h = s.drain();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", h.getTotalCount());
+            stats.put("p50", h.getValueAtPercentile(50));
+            stats.put("p99", h.getValueAtPercentile(99));
+            stats.put("p999", h.getValueAtPercentile(99.9));
+            stats.put("max", h.getMaxValue());
+            out.computeIfAbsent(s.topic, t -> new TreeMap<>()).put(s.retryDepth, stats);
+        }
+        return out;
+    }
+
+    /**
+     * Copy of the cumulative histogram for one topic and retry depth, or null if
+     * nothing was recorded there yet. Two copies can be subtracted to get the
+     * latencies of a time window.
+     */
+    public Histogram histogram(String topic, int retryDepth) {
+        Series s = series.get(topic + "|" + retryDepth);
+        return s == null ? null : s.drain();
+    }
+
+    void report() {
+        try {
+            snapshot().forEach((topic, depths) -> depths.forEach((depth, stats) ->
+                    log.info("e2e latency topic={} retryDepth={} count={} p50={}ms p99={}ms p999={}ms max={}ms",
+                            topic, depth, stats.get("count"), stats.get("p50"), stats.get("p99"),
+                            stats.get("p999"), stats.get("max"))));
+        } catch (Exception e) {
+            log.warn("e2e latency report failed", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (reporter != null) reporter.shutdownNow();
+    }
+
+    private static final class Series {
+        private final String topic;
+        private final int retryDepth;
+        private final Recorder recorder = new Recorder(MAX_TRACKABLE_MILLIS, 3);
+        private final Histogram cumulative = new Histogram(MAX_TRACKABLE_MILLIS, 3);
+        private Histogram interval;
+
+        private Series(String topic, int retryDepth) {
+            this.topic = topic;
+            this.retryDepth = retryDepth;
+        }
+
+        private synchronized Histogram drain() {
+            interval = recorder.getIntervalHistogram(interval);
+            cumulative.add(interval);
+            return cumulative.copy();
+        }
+    }
+}
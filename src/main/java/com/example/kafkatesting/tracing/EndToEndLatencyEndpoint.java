@@ -0,0 +1,26 @@
+package com.example.kafkatesting.tracing;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/e2elatency: end-to-end latency percentiles (ms) per topic and retry depth.
+ */
+@Component
+@Endpoint(id = "e2elatency")
+public class EndToEndLatencyEndpoint {
+
+    private final EndToEndLatency latency;
+
+    public EndToEndLatencyEndpoint(EndToEndLatency latency) {
+        this.latency = latency;
+    }
+
+    @ReadOperation
+    public Map<String, Map<Integer, Map<String, Object>>> latency() {
+        return latency.snapshot();
+    }
+}
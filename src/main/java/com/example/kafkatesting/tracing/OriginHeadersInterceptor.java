@@ -0,0 +1,43 @@
+package com.example.kafkatesting.tracing;
+
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Headers;
+
+import java.util.Map;
+
+/**
+ * Kafka producer interceptor (interceptor.classes) that adds the origin
+ * timestamp, trace id and event id to records that don't carry them yet. Records republished
+ * by ConsumerTwo copy the original headers, so they keep their origin.
+ */
+public class OriginHeadersInterceptor implements ProducerInterceptor<Object, Object> {
+
+    @Override
+    public ProducerRecord<Object, Object> onSend(ProducerRecord<Object, Object> record) {
+        Headers headers = record.headers();
+        if (headers.lastHeader(TraceHeaders.ORIGIN_TIMESTAMP) == null) {
+            headers.add(TraceHeaders.ORIGIN_TIMESTAMP, TraceHeaders.encode(System.currentTimeMillis()));
+        }
+        if (headers.lastHeader(TraceHeaders.ORIGIN_ID) == null) {
+            headers.add(TraceHeaders.ORIGIN_ID, TraceHeaders.encode(TraceHeaders.nextOriginId()));
+        }
+        if (headers.lastHeader(TraceHeaders.EVENT_ID) == null) {
+            headers.add(TraceHeaders.EVENT_ID, TraceHeaders.nextEventId());
+        }
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
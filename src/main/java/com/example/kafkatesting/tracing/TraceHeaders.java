@@ -0,0 +1,96 @@
+package com.example.kafkatesting.tracing;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Origin headers stamped on every record when it is first produced and carried
+ * unchanged through retry republishes, so consumers can measure end-to-end
+ * latency from the original send and recognise an event they already processed.
+ */
+public final class TraceHeaders {
+
+    private TraceHeaders() {
+        // Prevent instantiation
+    }
+
+    /** Epoch millis of the original send, 8-byte big-endian long. */
+    public static final String ORIGIN_TIMESTAMP = "x-origin-ts";
+
+    /**
+     * Producer-assigned trace id of the original event, 8-byte big-endian long.
+     * Good for following a record through its hops, not for telling events
+     * apart: use {@link #EVENT_ID} for that.
+     */
+    public static final String ORIGIN_ID = "x-origin-id";
+
+    /**
+     * Identity of the original event, 16 bytes: a random 64-bit prefix per
+     * producer JVM followed by a 64-bit sequence. Kept through retries and DLQ
+     * replays; it is the deduplication key.
+     */
+    public static final String EVENT_ID = "x-event-id";
+
+    // random per-JVM high bits + sequence from a random start
+    private static final long ID_BASE = ThreadLocalRandom.current().nextLong() & 0xFFFFFF0000000000L;
+    private static final AtomicLong SEQUENCE = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
+    // seeded from SecureRandom once, so two JVMs share a prefix with probability 2^-64
+    private static final long EVENT_ID_PREFIX = new SecureRandom().nextLong();
+    private static final AtomicLong EVENT_SEQUENCE = new AtomicLong(new SecureRandom().nextLong());
+
+    public static long nextOriginId() {
+        return ID_BASE | (SEQUENCE.incrementAndGet() & 0x000000FFFFFFFFFFL);
+    }
+
+    /** A new {@link #EVENT_ID} value; no SecureRandom call per record, unlike a random UUID. */
+    public static byte[] nextEventId() {
+        byte[] bytes = new byte[16];
+        put(bytes, 0, EVENT_ID_PREFIX);
+        put(bytes, 8, EVENT_SEQUENCE.incrementAndGet());
+        return bytes;
+    }
+
+    public static byte[] encode(long value) {
+        byte[] bytes = new byte[8];
+        put(bytes, 0, value);
+        return bytes;
+    }
+
+    /** Decode a long header, or return {@code absent} if the header is missing or malformed. */
+    public static long readLong(Headers headers, String key, long absent) {
+        Header header = headers.lastHeader(key);
+        if (header == null) return absent;
+        byte[] bytes = header.value();
+        if (bytes == null || bytes.length != 8) return absent;
+        return get(bytes, 0);
+    }
+
+    /** The record's {@link #EVENT_ID}, or null if it is missing or malformed. */
+    public static byte[] readEventId(Headers headers) {
+        Header header = headers.lastHeader(EVENT_ID);
+        if (header == null) return null;
+        byte[] bytes = header.value();
+        return bytes == null || bytes.length != 16 ? null : bytes;
+    }
+
+    /** Big-endian long at {@code offset}. */
+    public static long get(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void put(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
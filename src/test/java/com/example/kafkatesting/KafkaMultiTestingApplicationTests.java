@@ -1,26 +1,20 @@
 package com.example.kafkatesting;
 
-import com.example.kafkatesting.constants.KafkaTopics;
 import com.example.kafkatesting.consumers.ConsumerOne;
 import com.example.kafkatesting.consumers.ConsumerOneCopy;
 import com.example.kafkatesting.consumers.ConsumerTwo;
 import com.example.kafkatesting.producers.ProducerOneService;
 import com.example.kafkatesting.producers.ProducerTwoService;
-import org.apache.kafka.clients.admin.AdminClient;
-import org.apache.kafka.clients.admin.NewTopic;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -49,38 +43,6 @@ class KafkaMultiTestingApplicationTests {
     @Autowired(required = false)
     private KafkaTemplate<String, String> kafkaTemplate;
 
-    @Autowired
-    private KafkaAdmin kafkaAdmin; // used to create topics programmatically if needed
-
-    private AdminClient adminClient;
-
-    @BeforeAll
-    void beforeAll() {
-        // create an AdminClient from KafkaAdmin to create topics if brokers don't auto-create
-        Properties props = new Properties();
-        props.putAll(kafkaAdmin.getConfigurationProperties());
-        adminClient = AdminClient.create(props);
-
-        // Ensure topics exist (3 partitions). If already exist, creation is ignored.
-        List<NewTopic> topics = Arrays.asList(
-                new NewTopic(KafkaTopics.TOPIC_ONE, 3, (short) 3),
-                new NewTopic(KafkaTopics.TOPIC_TWO, 3, (short) 3),
-                new NewTopic(KafkaTopics.TOPIC_DLQ, 1, (short) 1)
-        );
-
-        try {
-            adminClient.createTopics(topics).all().get(10, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            // creation may fail if topics already exist — that's okay
-            System.out.println("Topic creation: " + e.getMessage());
-        }
-    }
-
-    @AfterAll
-    void afterAll() {
-        if (adminClient != null) adminClient.close();
-    }
-
     @BeforeEach
     void beforeEach() {
         // If your consumer beans maintain counters, reset them for deterministic tests.
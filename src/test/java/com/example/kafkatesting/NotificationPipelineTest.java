@@ -0,0 +1,124 @@
+package com.example.kafkatesting;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.pipeline.Notification;
+import com.example.kafkatesting.pipeline.NotificationPipeline;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * topic-one records through the exactly-once NotificationPipeline: each arrives
+ * on topic-notification once, enriched, for a read_committed reader, and the
+ * group's committed offsets cover every input record.
+ */
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "app.kafka.notification.enabled=true",
+        "app.kafka.notification.delivery=exactly-once",
+        "app.kafka.notification.batch.max-records=50",
+        "app.kafka.dlq.store.dir="})
+@EmbeddedKafka(count = 3, partitions = 3)
+class NotificationPipelineTest {
+
+    private static final int RECORDS = 200;
+
+    @Autowired
+    ProducerOneService producerOne;
+
+    @Autowired
+    NotificationPipeline pipeline;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    EmbeddedKafkaBroker broker;
+
+    @Test
+    void everyRecordIsTransformedOnceInTransactions() throws Exception {
+        ContainerTestUtils.waitForAssignment(registry.getListenerContainer(NotificationPipeline.LISTENER_ID), 3);
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            sends[i] = producerOne.send("k" + (i % 10), i % 20 == 0 ? "  URGENT: disk full " + i : "hello " + i);
+        }
+        CompletableFuture.allOf(sends).get(30, TimeUnit.SECONDS);
+
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> committed() == RECORDS);
+
+        Map<String, Object> props = KafkaTestUtils.consumerProps("notification-reader", "false", broker);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        ObjectMapper mapper = new ObjectMapper();
+        Set<String> sources = new HashSet<>();
+        int urgent = 0;
+        try (Consumer<String, String> reader = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            reader.subscribe(List.of(KafkaTopics.TOPIC_NOTIFICATION));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            int read = 0;
+            while (read < RECORDS && System.nanoTime() < deadline) {
+                for (ConsumerRecord<String, String> record : reader.poll(Duration.ofMillis(200))) {
+                    read++;
+                    Notification n = mapper.readValue(record.value(), Notification.class);
+                    Assertions.assertEquals(record.key(), n.key());
+                    Assertions.assertTrue(n.source().startsWith(KafkaTopics.TOPIC_ONE + "-"), n.source());
+                    Assertions.assertEquals(TraceHeaders.readLong(record.headers(), TraceHeaders.ORIGIN_TIMESTAMP, -1),
+                            n.originTimestamp());
+                    Assertions.assertTrue(sources.add(n.source()), "duplicate " + n.source());
+                    if ("high".equals(n.priority())) {
+                        urgent++;
+                        Assertions.assertTrue(n.message().startsWith("URGENT"), n.message());
+                    }
+                }
+            }
+            // nothing beyond the expected records shows up later
+            Assertions.assertTrue(reader.poll(Duration.ofSeconds(1)).isEmpty());
+        }
+        Assertions.assertEquals(RECORDS, sources.size());
+        Assertions.assertEquals(RECORDS / 20, urgent);
+        Assertions.assertEquals(RECORDS, pipeline.getProcessedCount());
+    }
+
+    private long committed() throws Exception {
+        try (Admin admin = Admin.create(kafkaAdmin.getConfigurationProperties())) {
+            Map<TopicPartition, OffsetAndMetadata> offsets = admin
+                    .listConsumerGroupOffsets(KafkaTopics.TOPIC_GROUP_NOTIFICATION)
+                    .partitionsToOffsetAndMetadata().get(10, TimeUnit.SECONDS);
+            Map<TopicPartition, OffsetAndMetadata> topicOne = new HashMap<>(offsets);
+            topicOne.keySet().removeIf(tp -> !tp.topic().equals(KafkaTopics.TOPIC_ONE));
+            return topicOne.values().stream().mapToLong(OffsetAndMetadata::offset).sum();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.kafkatesting;
+
+import com.example.kafkatesting.consumers.OrderEventConsumer;
+import com.example.kafkatesting.dlq.DlqEntry;
+import com.example.kafkatesting.dlq.DlqStore;
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.events.OrderStatus;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import com.example.kafkatesting.retry.RetryRouter;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Typed OrderEvents through the binary codec: processed by OrderEventConsumer,
+ * and a failed one dead-lettered as JSON with its failure headers.
+ */
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "app.kafka.events.codec=binary",
+        "app.kafka.dlq.store.dir=${java.io.tmpdir}/order-event-flow-test/dlq-${random.uuid}"})
+@EmbeddedKafka(count = 3, partitions = 3)
+class OrderEventFlowTest {
+
+    @Autowired
+    ProducerTwoService producerTwo;
+
+    @Autowired
+    OrderEventConsumer consumer;
+
+    @Autowired
+    DlqStore dlqStore;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Test
+    void typedEventsAreProcessedAndFailuresDeadLettered() throws Exception {
+        ContainerTestUtils.waitForAssignment(registry.getListenerContainer(OrderEventConsumer.LISTENER_ID), 3);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            producerTwo.sendEvent(new OrderEvent("order-" + i, OrderStatus.PAID, "eu-west", i * 100L, now)).get();
+        }
+        producerTwo.sendEvent(new OrderEvent("order-bad", OrderStatus.FAILED, "eu-west", 1, now)).get();
+
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> consumer.getProcessedCount() == 100);
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> !dlqStore.byKey("order-bad", 1).isEmpty());
+
+        List<DlqEntry> dead = dlqStore.byKey("order-bad", 1);
+        Assertions.assertTrue(dead.get(0).value().contains("\"status\":\"FAILED\""), dead.get(0).value());
+        Assertions.assertEquals("topic-two-events", dead.get(0).header(RetryRouter.ORIGINAL_TOPIC_HEADER));
+        Assertions.assertEquals("0", dead.get(0).header(RetryRouter.RETRY_HEADER));
+    }
+}
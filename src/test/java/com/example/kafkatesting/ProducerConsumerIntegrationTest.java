@@ -93,9 +93,9 @@ public class ProducerConsumerIntegrationTest {
 
         producerTwo.sendAsync(key, payload);
 
-        // Wait for processing attempts and final DLQ send
+        // Wait for processing attempts (1s + 10s + 60s retry tiers) and final DLQ send
         Awaitility.await()
-                .atMost(30, TimeUnit.SECONDS)
+                .atMost(120, TimeUnit.SECONDS)
                 .pollInterval(Duration.ofSeconds(1))
                 .untilAsserted(() -> {
                     // Poll DLQ to see final message
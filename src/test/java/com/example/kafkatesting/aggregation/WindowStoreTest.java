@@ -0,0 +1,120 @@
+package com.example.kafkatesting.aggregation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class WindowStoreTest {
+
+    @Test
+    void aggregatesCountSumMinMaxPerEntry() {
+        WindowStore store = new WindowStore();
+        store.add(0, 7, 1000, 5);
+        store.add(0, 7, 1000, 2);
+        store.add(0, 7, 1000, 9);
+        store.add(1, 7, 1000, 4); // other window, same key and start
+        List<long[]> seen = new ArrayList<>();
+        store.forKey(7, (w, k, start, count, sum, min, max) -> seen.add(new long[] {w, count, sum, min, max}));
+        seen.sort((a, b) -> Long.compare(a[0], b[0]));
+        Assertions.assertArrayEquals(new long[] {0, 3, 16, 2, 9}, seen.get(0));
+        Assertions.assertArrayEquals(new long[] {1, 1, 4, 4, 4}, seen.get(1));
+    }
+
+    @Test
+    void drainsEachUpdatedEntryOnceAcrossGrowth() {
+        WindowStore store = new WindowStore();
+        for (int round = 0; round < 3; round++) {
+            for (long key = 0; key < 1000; key++) {
+                store.add(0, key, 0, 1);
+            }
+        }
+        Assertions.assertEquals(1000, store.size());
+        Map<Long, Long> drained = new HashMap<>();
+        store.drainDirty((w, k, start, count, sum, min, max) -> Assertions.assertNull(drained.put(k, count)));
+        Assertions.assertEquals(1000, drained.size());
+        Assertions.assertTrue(drained.values().stream().allMatch(c -> c == 3));
+        Assertions.assertEquals(0, store.dirtyCount());
+
+        store.add(0, 5, 0, 1);
+        List<Long> again = new ArrayList<>();
+        store.drainDirty((w, k, start, count, sum, min, max) -> again.add(k));
+        Assertions.assertEquals(List.of(5L), again);
+    }
+
+    @Test
+    void evictsWindowsBeforeCutoffAndKeepsTheRestFindable() {
+        WindowStore store = new WindowStore();
+        Random random = new Random(42);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            int window = random.nextInt(2);
+            long key = random.nextInt(200);
+            long start = random.nextInt(20) * 1000L;
+            store.add(window, key, start, 1);
+            expected.merge(window + "/" + key + "/" + start, 1L, Long::sum);
+        }
+        store.drainDirty((w, k, start, count, sum, min, max) -> { });
+
+        List<String> removed = new ArrayList<>();
+        int n = store.evict(new long[] {10_000, 5_000},
+                (w, k, start, count, sum, min, max) -> removed.add(w + "/" + k + "/" + start));
+        Assertions.assertEquals(removed.size(), n);
+        for (String id : removed) {
+            String[] parts = id.split("/");
+            long cutoff = parts[0].equals("0") ? 10_000 : 5_000;
+            Assertions.assertTrue(Long.parseLong(parts[2]) < cutoff, id);
+            Assertions.assertNotNull(expected.remove(id), id);
+        }
+        Assertions.assertEquals(expected.size(), store.size());
+        // every surviving entry is still reachable through its probe sequence
+        for (Map.Entry<String, Long> e : expected.entrySet()) {
+            String[] parts = e.getKey().split("/");
+            store.put(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]), e.getValue(), 0, 0, 0);
+        }
+        Assertions.assertEquals(expected.size(), store.size());
+    }
+
+    @Test
+    void removeRequiresDrainedStore() {
+        WindowStore store = new WindowStore();
+        store.add(0, 1, 0, 1);
+        Assertions.assertThrows(IllegalStateException.class, () -> store.remove(0, 1, 0));
+        store.drainDirty((w, k, start, count, sum, min, max) -> { });
+        Assertions.assertTrue(store.remove(0, 1, 0));
+        Assertions.assertFalse(store.remove(0, 1, 0));
+        Assertions.assertEquals(0, store.size());
+    }
+
+    @Test
+    void snapshotRoundTrip() throws Exception {
+        WindowStore store = new WindowStore();
+        for (long key = 0; key < 300; key++) {
+            store.add((int) (key % 2), key * 31, key * 1000, key);
+            store.add((int) (key % 2), key * 31, key * 1000, -key);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        store.writeTo(new DataOutputStream(bytes));
+
+        WindowStore copy = new WindowStore();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assertions.assertEquals(300, copy.size());
+        Assertions.assertEquals(0, copy.dirtyCount());
+        copy.forKey(31 * 7, (w, k, start, count, sum, min, max) -> {
+            Assertions.assertEquals(1, w);
+            Assertions.assertEquals(7000, start);
+            Assertions.assertEquals(2, count);
+            Assertions.assertEquals(0, sum);
+            Assertions.assertEquals(-7, min);
+            Assertions.assertEquals(7, max);
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.kafkatesting.aggregation;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.constants.KafkaTopics;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Window aggregates survive restarts without re-reading topic-two: restored from
+ * the changelog alone, and from a snapshot plus the changelog written after it.
+ */
+class WindowedAggregatorTest {
+
+    // minute-aligned, so the tumbling window of T+1s..T+59s starts at T
+    private static final long T = 1_700_000_040_000L;
+
+    private static EmbeddedKafkaKraftBroker cluster;
+
+    @TempDir
+    Path stateDir;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void restoresFromChangelogAndFromSnapshotPlusTail() throws Exception {
+        try (ConfigurableApplicationContext ctx = start(stateDir.toString())) {
+            WindowedAggregator aggregator = ctx.getBean(WindowedAggregator.class);
+            send(ctx, "a", "xx", T + 1_000);
+            send(ctx, "a", "xxxx", T + 2_000);
+            send(ctx, "b", "x", T + 70_000);
+            Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> aggregator.getAggregatedCount() == 3);
+            assertTumbling(aggregator, "a", 2, 6, 2, 4);
+            // a timestamp falls into size/advance = 5 hopping windows
+            Assertions.assertEquals(5, aggregator.aggregates("a").stream().filter(w -> w.window().equals("hopping")).count());
+        }
+        try (Stream<Path> files = Files.list(stateDir)) {
+            Assertions.assertEquals(3, files.filter(f -> f.getFileName().toString().endsWith(".state")).count());
+        }
+
+        // no state dir: everything from the changelog
+        try (ConfigurableApplicationContext ctx = start("")) {
+            WindowedAggregator aggregator = ctx.getBean(WindowedAggregator.class);
+            assertTumbling(aggregator, "a", 2, 6, 2, 4);
+            assertTumbling(aggregator, "b", 1, 1, 1, 1);
+            send(ctx, "a", "x", T + 3_000);
+            Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> aggregator.getAggregatedCount() == 1);
+            assertTumbling(aggregator, "a", 3, 7, 1, 4);
+        }
+
+        // the first snapshot plus the changelog written since
+        try (ConfigurableApplicationContext ctx = start(stateDir.toString())) {
+            WindowedAggregator aggregator = ctx.getBean(WindowedAggregator.class);
+            assertTumbling(aggregator, "a", 3, 7, 1, 4);
+            Assertions.assertEquals(0, aggregator.getAggregatedCount());
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String dir) {
+        // command-line args: builder properties() are defaults, which application.properties overrides
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(KafkaMultiTestingApplication.class).run(
+                "--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                "--spring.main.web-application-type=none",
+                "--app.tracing.e2e.report-interval=0s",
+                "--app.kafka.dlq.store.dir=",
+                "--app.kafka.aggregation.enabled=true",
+                "--app.kafka.aggregation.state-dir=" + dir,
+                "--app.kafka.aggregation.checkpoint-interval=1h",
+                // a timestamp in 2023 must not be past retention
+                "--app.kafka.aggregation.retention=36500d");
+        ContainerTestUtils.waitForAssignment(ctx.getBean(KafkaListenerEndpointRegistry.class)
+                .getListenerContainer(AggregationListener.LISTENER_ID), 3);
+        // stores are restored in the rebalance callback, a partition shows up once its store is ready
+        WindowedAggregator aggregator = ctx.getBean(WindowedAggregator.class);
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> aggregator.status().size() == 3);
+        return ctx;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void send(ConfigurableApplicationContext ctx, String key, String value, long timestamp) throws Exception {
+        ctx.getBean(KafkaTemplate.class).send(new ProducerRecord<>(KafkaTopics.TOPIC_TWO, null, timestamp, key, value)).get();
+    }
+
+    private static void assertTumbling(WindowedAggregator aggregator, String key, long count, long sum, long min, long max) {
+        List<WindowAggregate> tumbling = aggregator.aggregates(key).stream()
+                .filter(w -> w.window().equals("tumbling")).toList();
+        Assertions.assertEquals(1, tumbling.size(), tumbling.toString());
+        WindowAggregate w = tumbling.get(0);
+        long start = key.equals("b") ? T + 60_000 : T;
+        Assertions.assertEquals(Instant.ofEpochMilli(start), w.start());
+        Assertions.assertEquals(Instant.ofEpochMilli(start + 60_000), w.end());
+        Assertions.assertEquals(List.of(count, sum, min, max), List.of(w.count(), w.sum(), w.min(), w.max()));
+    }
+}
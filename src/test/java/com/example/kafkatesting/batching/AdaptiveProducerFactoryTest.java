@@ -0,0 +1,67 @@
+package com.example.kafkatesting.batching;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class AdaptiveProducerFactoryTest {
+
+    // producers are created but never send, so no broker is needed
+    private final List<String> customized = new ArrayList<>();
+    private final AdaptiveProducerFactory<String, String> factory = new AdaptiveProducerFactory<>(Map.of(
+            ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9",
+            ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+            ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class),
+            f -> customized.add(f.getConfigurationProperties().get(ProducerConfig.LINGER_MS_CONFIG).toString()),
+            List.of(ProducerProfile.LATENCY, ProducerProfile.BALANCED, ProducerProfile.THROUGHPUT),
+            ProducerProfile.BALANCED);
+
+    @AfterEach
+    void destroy() {
+        factory.destroy();
+    }
+
+    @Test
+    void retiredGenerationClosesOnlyAfterItsProducersAreReturned() {
+        Producer<String, String> leased = factory.createProducer();
+        factory.switchTo(ProducerProfile.THROUGHPUT);
+        Assertions.assertEquals(ProducerProfile.THROUGHPUT, factory.getProfile());
+
+        factory.closeRetired();
+        Assertions.assertEquals(1, factory.getRetiredCount());
+        // still usable while leased
+        Assertions.assertFalse(leased.metrics().isEmpty());
+
+        leased.close();
+        leased.close();
+        factory.closeRetired();
+        Assertions.assertEquals(0, factory.getRetiredCount());
+
+        try (Producer<String, String> next = factory.createProducer()) {
+            Assertions.assertFalse(next.metrics().isEmpty());
+        }
+        Assertions.assertEquals(List.of("5", "25"), customized);
+    }
+
+    @Test
+    void configurationPropertiesCarryNoProfile() {
+        Assertions.assertFalse(factory.getConfigurationProperties().containsKey(ProducerConfig.LINGER_MS_CONFIG));
+        Assertions.assertTrue(factory.currentMetrics().isEmpty());
+        factory.switchTo(ProducerProfile.BALANCED);
+        Assertions.assertEquals(0, factory.getRetiredCount());
+    }
+
+    @Test
+    void initialProfileMustBeOneOfTheProfiles() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveProducerFactory<String, String>(
+                Map.of(), f -> { }, List.of(ProducerProfile.LATENCY), ProducerProfile.THROUGHPUT));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ProducerProfile.forName("fast"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.kafkatesting.batching;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class BatchingPolicyTest {
+
+    private static final int PROFILES = 3;
+
+    // SLO 50ms mean / 500ms max, 2 ticks per step, 1 tick cooldown
+    private static BatchingPolicy policy() {
+        return new BatchingPolicy(new BatchingPolicy.Settings(Duration.ofMillis(50), Duration.ofMillis(500),
+                0.8, 100, 0.5, 2, 1));
+    }
+
+    // linger 5ms, 2ms requests
+    private static BatchingPolicy.Sample sample(double rate, double fill, double queue, double max) {
+        return new BatchingPolicy.Sample(rate, fill, queue, 2, max, 0.5, 5);
+    }
+
+    @Test
+    void stepsTowardsThroughputWhileBatchesAreFullWithinTheSlo() {
+        BatchingPolicy policy = policy();
+        BatchingPolicy.Sample bulk = sample(50_000, 0.95, 5, 40);
+        Assertions.assertEquals(0, policy.decide(bulk, 0, PROFILES));
+        Assertions.assertEquals(1, policy.decide(bulk, 0, PROFILES));
+        Assertions.assertEquals(1, policy.decide(bulk, 1, PROFILES)); // cooldown
+        Assertions.assertEquals(1, policy.decide(bulk, 1, PROFILES));
+        Assertions.assertEquals(2, policy.decide(bulk, 1, PROFILES));
+        // already at the top
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(2, policy.decide(bulk, 2, PROFILES));
+        }
+    }
+
+    @Test
+    void fullBatchesWithoutHeadroomStay() {
+        BatchingPolicy policy = policy();
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(1, policy.decide(sample(50_000, 0.95, 30, 40), 1, PROFILES));
+        }
+    }
+
+    @Test
+    void overTheSloStepsTowardsLatencyWhenLingerIsTheDelay() {
+        BatchingPolicy policy = policy();
+        // queue time is the linger itself: a shorter one helps
+        BatchingPolicy.Sample lingering = new BatchingPolicy.Sample(5_000, 0.3, 60, 2, 200, 0.5, 60);
+        policy.decide(lingering, 2, PROFILES);
+        Assertions.assertEquals(1, policy.decide(lingering, 2, PROFILES));
+    }
+
+    @Test
+    void overTheSloWithTheSenderBehindStepsTowardsThroughputAndStaysThere() {
+        BatchingPolicy policy = policy();
+        // records queue far longer than linger + a request, batches only half full
+        BatchingPolicy.Sample behind = sample(1_000, 0.5, 500, 900);
+        policy.decide(behind, 0, PROFILES);
+        Assertions.assertEquals(1, policy.decide(behind, 0, PROFILES));
+
+        // just over the SLO on linger alone, but the profile below fell behind at this rate
+        BatchingPolicy.Sample lingering = new BatchingPolicy.Sample(1_000, 0.1, 50, 4, 100, 0.5, 50);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(1, policy.decide(lingering, 1, PROFILES));
+        }
+        // at under half the rate it may go back
+        BatchingPolicy.Sample quieter = new BatchingPolicy.Sample(400, 0.1, 50, 4, 100, 0.5, 50);
+        policy.decide(quieter, 1, PROFILES);
+        Assertions.assertEquals(0, policy.decide(quieter, 1, PROFILES));
+    }
+
+    @Test
+    void lowRateStepsTowardsLatency() {
+        BatchingPolicy policy = policy();
+        policy.decide(sample(20, 0.5, 5, 20), 2, PROFILES);
+        Assertions.assertEquals(1, policy.decide(sample(20, 0.5, 5, 20), 2, PROFILES));
+        Assertions.assertEquals(1, policy.decide(sample(20, 0.5, 5, 20), 1, PROFILES)); // cooldown
+        policy.decide(sample(20, 0.5, 5, 20), 1, PROFILES);
+        Assertions.assertEquals(0, policy.decide(sample(20, 0.5, 5, 20), 1, PROFILES));
+        Assertions.assertEquals(0, policy.decide(sample(20, 0.5, 5, 20), 0, PROFILES));
+    }
+
+    @Test
+    void alternatingSignalsDoNotSwitch() {
+        BatchingPolicy policy = policy();
+        for (int i = 0; i < 6; i++) {
+            BatchingPolicy.Sample s = i % 2 == 0 ? sample(50_000, 0.95, 5, 40) : sample(20, 0.5, 5, 20);
+            Assertions.assertEquals(1, policy.decide(s, 1, PROFILES));
+        }
+    }
+}
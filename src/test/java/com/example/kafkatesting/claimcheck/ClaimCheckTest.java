@@ -0,0 +1,137 @@
+package com.example.kafkatesting.claimcheck;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.retry.RetryRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+class ClaimCheckTest {
+
+    private static final int THRESHOLD = 1024;
+
+    private static ClaimCheck claimCheck(BlobStore store, long cacheMaxBytes) {
+        return new ClaimCheck(store, new KafkaMetrics(new SimpleMeterRegistry()), THRESHOLD, cacheMaxBytes);
+    }
+
+    // the record a consumer reads for what the producer sent
+    private static ConsumerRecord<String, String> consumed(ProducerRecord<String, String> sent) {
+        return new ConsumerRecord<>(sent.topic(), 0, 0L, 0L, TimestampType.CREATE_TIME, 0, 0,
+                sent.key(), sent.value(), new RecordHeaders(sent.headers().toArray()), Optional.empty());
+    }
+
+    @Test
+    void onlyPayloadsOverTheThresholdAreCheckedIn(@TempDir Path dir) {
+        ClaimCheck claimCheck = claimCheck(new FileBlobStore(dir), 1 << 20);
+
+        ProducerRecord<String, String> small = claimCheck.record("topic-one", "k", "a".repeat(THRESHOLD));
+        Assertions.assertEquals("a".repeat(THRESHOLD), small.value());
+        Assertions.assertNull(ClaimCheck.reference(small.headers()));
+
+        // 400 chars, 1200 UTF-8 bytes
+        String wide = "€".repeat(400);
+        ProducerRecord<String, String> large = claimCheck.record("topic-one", "k", wide);
+        Assertions.assertEquals("", large.value());
+        Assertions.assertNotNull(ClaimCheck.reference(large.headers()));
+        Assertions.assertEquals(wide, claimCheck.resolve(consumed(large), large.value()));
+
+        claimCheck.record("topic-one", "k2", wide);
+        Assertions.assertEquals(2, claimCheck.getStoredCount());
+        Assertions.assertEquals(1, claimCheck.getDeduplicatedCount());
+
+        ProducerRecord<String, String> off = new ClaimCheck(null, new KafkaMetrics(new SimpleMeterRegistry()), THRESHOLD, 0)
+                .record("topic-one", "k", wide);
+        Assertions.assertEquals(wide, off.value());
+    }
+
+    @Test
+    void retryAndDlqHopsCarryTheReferenceNotThePayload(@TempDir Path dir) {
+        FileBlobStore store = new FileBlobStore(dir);
+        String payload = "fail ".repeat(1_000);
+        ProducerRecord<String, String> sent = claimCheck(store, 1 << 20).record(KafkaTopics.TOPIC_TWO, "k", payload);
+
+        RetryRouter router = new RetryRouter();
+        ConsumerRecord<String, String> record = consumed(sent);
+        for (int hop = 0; hop < 4; hop++) {
+            ProducerRecord<String, String> next = router.nextHop(record, record.value(), new IllegalStateException("boom"));
+            Assertions.assertEquals("", next.value());
+            Assertions.assertEquals(ClaimCheck.reference(sent.headers()), ClaimCheck.reference(next.headers()));
+            record = consumed(next);
+        }
+        Assertions.assertEquals(KafkaTopics.TOPIC_DLQ, record.topic());
+
+        // a consumer on another instance reads it from the shared store
+        ClaimCheck consumer = claimCheck(store, 1 << 20);
+        Assertions.assertEquals(payload, consumer.resolve(record, record.value()));
+        Assertions.assertEquals(payload, consumer.lazyPayload(record).toString());
+        Assertions.assertEquals(1, consumer.getCacheMisses());
+        Assertions.assertEquals(1, consumer.getCacheHits());
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsedBeyondItsBytes(@TempDir Path dir) {
+        FileBlobStore store = new FileBlobStore(dir);
+        ClaimCheck producer = claimCheck(store, 0);
+        ConsumerRecord<String, String> a = consumed(producer.record("t", "a", "a".repeat(2_000)));
+        ConsumerRecord<String, String> b = consumed(producer.record("t", "b", "b".repeat(2_000)));
+        ConsumerRecord<String, String> c = consumed(producer.record("t", "c", "c".repeat(2_000)));
+
+        // room for two 2000-char payloads
+        ClaimCheck consumer = claimCheck(store, 8_000);
+        consumer.resolve(a, "");
+        consumer.resolve(b, "");
+        consumer.resolve(a, "");          // b is now the least recently used
+        consumer.resolve(c, "");          // evicts b
+        Assertions.assertEquals(3, consumer.getCacheMisses());
+        Assertions.assertEquals(8_000, consumer.getCachedBytes());
+
+        consumer.resolve(a, "");
+        Assertions.assertEquals(2, consumer.getCacheHits());
+        Assertions.assertEquals("b".repeat(2_000), consumer.resolve(b, ""));
+        Assertions.assertEquals(4, consumer.getCacheMisses());
+    }
+
+    @Test
+    void missingBlobFailsResolveButNotLogging(@TempDir Path dir) {
+        ClaimCheck claimCheck = claimCheck(new FileBlobStore(dir), 1 << 20);
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(ClaimCheck.HEADER, ("sha256-" + "0".repeat(64)).getBytes());
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("t", 0, 0L, 0L, TimestampType.CREATE_TIME, 0, 0,
+                "k", "", headers, Optional.empty());
+
+        Assertions.assertThrows(BlobNotFoundException.class, () -> claimCheck.resolve(record, ""));
+        Assertions.assertTrue(claimCheck.lazyPayload(record).toString().contains("unavailable"));
+    }
+
+    @Test
+    void sizeComesFromTheLengthHeaderWithoutLoadingThePayload(@TempDir Path dir) {
+        FileBlobStore store = new FileBlobStore(dir);
+        String wide = "€".repeat(400);
+        ConsumerRecord<String, String> checked = consumed(claimCheck(store, 0).record("t", "k", wide));
+
+        ClaimCheck consumer = claimCheck(store, 1 << 20);
+        Assertions.assertEquals(400, consumer.length(checked));
+        Assertions.assertEquals(0, consumer.getCacheMisses());
+        Assertions.assertEquals(5, consumer.length(consumed(new ProducerRecord<>("t", "k", "small"))));
+
+        // sent before the length header: the payload is loaded
+        RecordHeaders old = new RecordHeaders();
+        old.add(ClaimCheck.HEADER, ClaimCheck.reference(checked.headers()).getBytes());
+        Assertions.assertEquals(400, consumer.length(consumed(new ProducerRecord<>("t", null, "k", "", old))));
+        Assertions.assertEquals(1, consumer.getCacheMisses());
+
+        Headers inline = ClaimCheck.withoutReference(checked.headers());
+        Assertions.assertNull(inline.lastHeader(ClaimCheck.HEADER));
+        Assertions.assertNull(inline.lastHeader(ClaimCheck.LENGTH_HEADER));
+    }
+}
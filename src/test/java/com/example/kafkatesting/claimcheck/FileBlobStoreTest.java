@@ -0,0 +1,49 @@
+package com.example.kafkatesting.claimcheck;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+class FileBlobStoreTest {
+
+    @Test
+    void storesByContentAndReadsBackMapped(@TempDir Path dir) throws Exception {
+        FileBlobStore store = new FileBlobStore(dir);
+        byte[] content = "x".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+
+        BlobStore.Stored first = store.put(content);
+        Assertions.assertFalse(first.deduplicated());
+        Assertions.assertTrue(first.reference().matches("sha256-[0-9a-f]{64}"), first.reference());
+
+        BlobStore.Stored again = store.put(content.clone());
+        Assertions.assertTrue(again.deduplicated());
+        Assertions.assertEquals(first.reference(), again.reference());
+        Assertions.assertNotEquals(first.reference(), store.put(new byte[]{1, 2, 3}).reference());
+
+        ByteBuffer read = store.get(first.reference());
+        Assertions.assertTrue(read.isDirect(), "reads are memory-mapped");
+        byte[] bytes = new byte[read.remaining()];
+        read.get(bytes);
+        Assertions.assertArrayEquals(content, bytes);
+
+        // two blobs, no temporary files left behind
+        try (Stream<Path> files = Files.walk(dir)) {
+            Assertions.assertEquals(2, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void rejectsUnknownAndMalformedReferences(@TempDir Path dir) {
+        FileBlobStore store = new FileBlobStore(dir);
+        Assertions.assertThrows(BlobNotFoundException.class, () -> store.get("sha256-" + "0".repeat(64)));
+        Assertions.assertThrows(BlobNotFoundException.class, () -> store.get("sha256-../../etc/passwd"));
+        Assertions.assertThrows(BlobNotFoundException.class, () -> store.get("sha256-" + "A".repeat(64)));
+        Assertions.assertThrows(BlobNotFoundException.class, () -> store.get(null));
+    }
+}
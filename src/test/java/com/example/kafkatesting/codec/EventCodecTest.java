@@ -0,0 +1,54 @@
+package com.example.kafkatesting.codec;
+
+import com.example.kafkatesting.events.OrderEvent;
+import com.example.kafkatesting.events.OrderStatus;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+class EventCodecTest {
+
+    private final OrderEvent event = new OrderEvent("order-42", OrderStatus.SHIPPED, "eu-west", 12_999, 1_760_000_000_000L);
+
+    @Test
+    void bothCodecsRoundTripThroughTheKafkaAdapters() {
+        EventDeserializer deserializer = new EventDeserializer();
+        OrderEvent odd = new OrderEvent("örder-ß-日本", null, null, -5, 0);
+        for (EventCodec codec : new EventCodec[]{new JsonEventCodec(), new BinaryEventCodec()}) {
+            EventSerializer serializer = new EventSerializer(codec);
+            Assertions.assertEquals(event, deserializer.deserialize("t", serializer.serialize("t", event)), codec.name());
+            Assertions.assertEquals(odd, deserializer.deserialize("t", serializer.serialize("t", odd)), codec.name());
+
+            // a view into a larger fetch buffer, read in place
+            byte[] encoded = codec.encode(event);
+            ByteBuffer fetched = ByteBuffer.allocateDirect(encoded.length + 10);
+            fetched.position(5);
+            fetched.put(encoded);
+            fetched.position(5).limit(5 + encoded.length);
+            Assertions.assertEquals(event, deserializer.deserialize("t", new RecordHeaders(), fetched.slice()), codec.name());
+        }
+        Assertions.assertNull(deserializer.deserialize("t", (byte[]) null));
+    }
+
+    @Test
+    void binaryIsSmallerAndReusesItsScratchBuffer() {
+        BinaryEventCodec binary = new BinaryEventCodec();
+        int json = new JsonEventCodec().encode(event).length;
+        int compact = binary.encode(event).length;
+        Assertions.assertTrue(compact * 3 < json, "binary=" + compact + " json=" + json);
+
+        // larger than the initial scratch: grows once, later small events still encode exactly
+        OrderEvent big = new OrderEvent("order-43", OrderStatus.PAID, "r".repeat(10_000), 1, 2);
+        Assertions.assertEquals(big, binary.decode(ByteBuffer.wrap(binary.encode(big))));
+        Assertions.assertEquals(compact, binary.encode(event).length);
+    }
+
+    @Test
+    void jsonTextFromTheDlqDecodesOnTheTypedTopic() {
+        String text = new JsonEventCodec().encodeToString(event);
+        Assertions.assertEquals(event, new EventDeserializer().deserialize("t", text.getBytes()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EventCodec.forName("avro"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.kafkatesting.consumers;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.dedup.EventDeduplicator;
+import com.example.kafkatesting.logging.EventLogger;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.processing.CommitCoalescer;
+import com.example.kafkatesting.processing.HandOffBuffers;
+import com.example.kafkatesting.retry.RetryRouter;
+import com.example.kafkatesting.tracing.EndToEndLatency;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ConsumerTwoTest {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, String> template = mock(KafkaTemplate.class);
+    private final Acknowledgment ack = mock(Acknowledgment.class);
+
+    private ConsumerTwo consumer() {
+        KafkaMetrics metrics = new KafkaMetrics(new SimpleMeterRegistry());
+        return new ConsumerTwo(template, new RetryRouter(), mock(HandOffBuffers.class),
+                new EventLogger(new MockEnvironment()), metrics, new EndToEndLatency(Duration.ZERO),
+                new EventDeduplicator(metrics, false, 1000, Duration.ofHours(1), "", Duration.ZERO),
+                new CommitCoalescer(metrics, 500, Duration.ZERO), new ClaimCheck(null, metrics, 0, 0));
+    }
+
+    private static List<ConsumerRecord<String, String>> batch() {
+        return List.of(
+                new ConsumerRecord<>("topic-two", 0, 10L, "k0", "ok"),
+                new ConsumerRecord<>("topic-two", 0, 11L, "k1", "please fail"),
+                new ConsumerRecord<>("topic-two", 0, 12L, "k2", "fail again"),
+                new ConsumerRecord<>("topic-two", 0, 13L, "k3", "ok"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchIsAckedOnceItsRepublishesAreAcked() throws Exception {
+        when(template.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        consumer().listenBatch(batch(), ack);
+
+        verify(template, times(2)).send(any(ProducerRecord.class));
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedRepublishLeavesTheBatchUnackedAndRedeliversFromThatRecord() {
+        CompletableFuture<SendResult<String, String>> failed = CompletableFuture.failedFuture(new IllegalStateException("broker said no"));
+        CompletableFuture<SendResult<String, String>> sent = CompletableFuture.completedFuture(mock(SendResult.class));
+        // records 1 and 2 fail processing; only record 2's hop reaches the broker
+        when(template.send(any(ProducerRecord.class))).thenReturn(failed, sent);
+
+        BatchListenerFailedException e = Assertions.assertThrows(BatchListenerFailedException.class,
+                () -> consumer().listenBatch(batch(), ack));
+
+        Assertions.assertEquals(1, e.getIndex());
+        verifyNoInteractions(ack);
+    }
+}
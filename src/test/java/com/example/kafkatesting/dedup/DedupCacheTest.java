@@ -0,0 +1,108 @@
+package com.example.kafkatesting.dedup;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+class DedupCacheTest {
+
+    private static final long PREFIX = 0x5eed_0000_0000_0001L;
+
+    @Test
+    void entriesExpireAfterTtl() {
+        AtomicLong now = new AtomicLong(1_000);
+        DedupCache cache = new DedupCache(100, Duration.ofSeconds(10), now::get);
+        cache.add(PREFIX, 42);
+        now.addAndGet(9_999);
+        Assertions.assertTrue(cache.contains(PREFIX, 42));
+        now.addAndGet(2);
+        Assertions.assertFalse(cache.contains(PREFIX, 42));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(0, cache.evictions());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        DedupCache cache = new DedupCache(3, Duration.ofHours(1), () -> 0L);
+        cache.add(PREFIX, 1);
+        cache.add(PREFIX, 2);
+        cache.add(PREFIX, 3);
+        Assertions.assertTrue(cache.contains(PREFIX, 1)); // 2 is now the oldest
+        cache.add(PREFIX, 4);
+        Assertions.assertFalse(cache.contains(PREFIX, 2));
+        Assertions.assertTrue(cache.contains(PREFIX, 1));
+        Assertions.assertTrue(cache.contains(PREFIX, 3));
+        Assertions.assertTrue(cache.contains(PREFIX, 4));
+        Assertions.assertEquals(3, cache.size());
+        Assertions.assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    void idsDifferingInEitherHalfAreDistinct() {
+        DedupCache cache = new DedupCache(100, Duration.ofHours(1), () -> 0L);
+        cache.add(1, 42);
+        Assertions.assertTrue(cache.contains(1, 42));
+        Assertions.assertFalse(cache.contains(2, 42));
+        Assertions.assertFalse(cache.contains(1, 43));
+        Assertions.assertFalse(cache.contains(42, 1));
+    }
+
+    /** Churn through many times the capacity: the cache must agree with a reference window. */
+    @Test
+    void staysConsistentUnderChurn() {
+        int capacity = 20_000;
+        DedupCache cache = new DedupCache(capacity, Duration.ofHours(1), () -> 0L);
+        Random random = new Random(7);
+        long[][] window = new long[capacity][];
+        for (int i = 0; i < 200_000; i++) {
+            long[] id = {random.nextLong(), random.nextLong()};
+            cache.add(id[0], id[1]);
+            window[i % capacity] = id;
+        }
+        // segments evict independently, so only the most recent part of the window is guaranteed
+        for (int i = 200_000 - capacity / 4; i < 200_000; i++) {
+            long[] id = window[i % capacity];
+            Assertions.assertTrue(cache.contains(id[0], id[1]));
+        }
+        int misses = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!cache.contains(random.nextLong(), random.nextLong())) misses++;
+        }
+        Assertions.assertEquals(10_000, misses);
+        Assertions.assertTrue(cache.size() <= capacity);
+    }
+
+    @Test
+    void snapshotRoundTripSkipsExpiredEntries(@TempDir Path dir) throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        // one segment, so the snapshot is in LRU order overall, not per segment
+        DedupCache cache = new DedupCache(8_000, Duration.ofSeconds(60), now::get);
+        for (long id = 0; id < 5_000; id++) {
+            cache.add(PREFIX, id);
+        }
+        now.set(30_000);
+        for (long id = 5_000; id < 8_000; id++) {
+            cache.add(PREFIX, id);
+        }
+        Path file = dir.resolve("dedup.snapshot");
+        cache.save(file);
+
+        now.set(70_000); // the first 5000 are past their TTL now
+        DedupCache restored = new DedupCache(10_000, Duration.ofSeconds(60), now::get);
+        Assertions.assertEquals(3_000, restored.load(file));
+        Assertions.assertFalse(restored.contains(PREFIX, 10));
+        Assertions.assertTrue(restored.contains(PREFIX, 5_000));
+        Assertions.assertTrue(restored.contains(PREFIX, 7_999));
+
+        // and LRU order survives: the oldest loaded entries go first
+        DedupCache small = new DedupCache(1_000, Duration.ofSeconds(60), now::get);
+        small.load(file);
+        Assertions.assertTrue(small.contains(PREFIX, 7_999));
+        Assertions.assertTrue(small.size() <= 1_000);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.kafkatesting.dedup;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class EventDeduplicatorTest {
+
+    private final EventDeduplicator dedup = new EventDeduplicator(new KafkaMetrics(new SimpleMeterRegistry()),
+            true, 1000, Duration.ofHours(1), "", Duration.ZERO);
+
+    private static ConsumerRecord<String, String> record(long originId, byte[] eventId) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("topic-two", 0, 0L, "k", "v");
+        record.headers().add(TraceHeaders.ORIGIN_ID, TraceHeaders.encode(originId));
+        if (eventId != null) {
+            record.headers().add(TraceHeaders.EVENT_ID, eventId);
+        }
+        return record;
+    }
+
+    @Test
+    void keysOnTheEventIdNotTheTraceId() {
+        byte[] eventId = TraceHeaders.nextEventId();
+        dedup.markProcessed(record(7, eventId));
+
+        Assertions.assertTrue(dedup.isDuplicate(record(8, eventId.clone())));
+        // a colliding trace id is a different event
+        Assertions.assertFalse(dedup.isDuplicate(record(7, TraceHeaders.nextEventId())));
+    }
+
+    @Test
+    void recordsWithoutAnEventIdAreNeverDuplicates() {
+        dedup.markProcessed(record(7, null));
+        Assertions.assertFalse(dedup.isDuplicate(record(7, null)));
+        Assertions.assertFalse(dedup.isDuplicate(record(7, new byte[8])));
+    }
+
+    @Test
+    void disabledDeduplicatorHasNoCache() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        EventDeduplicator disabled = new EventDeduplicator(new KafkaMetrics(meters),
+                false, 1_000_000, Duration.ofHours(1), "", Duration.ZERO);
+        byte[] eventId = TraceHeaders.nextEventId();
+        disabled.markProcessed(record(7, eventId));
+
+        Assertions.assertFalse(disabled.isDuplicate(record(7, eventId)));
+        Assertions.assertNull(meters.find("app.kafka.dedup.size").gauge());
+    }
+}
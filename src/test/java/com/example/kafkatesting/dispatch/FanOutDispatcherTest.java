@@ -0,0 +1,165 @@
+package com.example.kafkatesting.dispatch;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.retry.RetryRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.*;
+
+class FanOutDispatcherTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final MockProducer<String, String> producer =
+            spy(new MockProducer<>(true, new StringSerializer(), new StringSerializer()));
+
+    @BeforeEach
+    void shareProducer() {
+        // behave like the factory's shared producer
+        doNothing().when(producer).close();
+        doNothing().when(producer).close(any());
+    }
+
+    private static final class Collecting implements RecordHandler {
+        private final String name;
+        private final String topic;
+        private final List<String> seen = new ArrayList<>();
+        private int calls;
+
+        Collecting(String name, String topic) {
+            this.name = name;
+            this.topic = topic;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String topic() {
+            return topic;
+        }
+
+        @Override
+        public void handle(ConsumerRecord<String, String> record) {
+            calls++;
+            if (record.value().contains("boom") && name.equals("flaky")) {
+                throw new IllegalStateException("boom");
+            }
+            seen.add(record.value());
+        }
+    }
+
+    private FanOutDispatcher dispatcher(RecordHandler... handlers) {
+        return dispatcher(producer, handlers);
+    }
+
+    @SuppressWarnings("unchecked")
+    private FanOutDispatcher dispatcher(MockProducer<String, String> producer, RecordHandler... handlers) {
+        ProducerFactory<String, String> factory = mock(ProducerFactory.class);
+        when(factory.createProducer()).thenReturn(producer);
+        return new FanOutDispatcher(List.of(handlers), new KafkaTemplate<>(factory), new RetryRouter(),
+                new KafkaMetrics(meters), 3, Duration.ZERO);
+    }
+
+    @Test
+    void everyHandlerOfTheTopicSeesEveryRecordAndFailuresStayIsolated() {
+        Collecting a = new Collecting("a", "t");
+        Collecting flaky = new Collecting("flaky", "t");
+        Collecting other = new Collecting("other", "u");
+        FanOutDispatcher dispatcher = dispatcher(flaky, a, other);
+
+        dispatcher.dispatch(new ConsumerRecord<>("t", 0, 5L, "k", "one"));
+        dispatcher.dispatch(new ConsumerRecord<>("t", 0, 6L, "k", "boom"));
+        dispatcher.dispatch(new ConsumerRecord<>("t", 1, 2L, "k", "three"));
+
+        Assertions.assertEquals(List.of("one", "boom", "three"), a.seen);
+        Assertions.assertEquals(List.of("one", "three"), flaky.seen);
+        Assertions.assertTrue(other.seen.isEmpty());
+
+        Map<String, Map<String, Object>> progress = dispatcher.progress();
+        Assertions.assertEquals(3L, progress.get("a").get("handled"));
+        Assertions.assertEquals(2L, progress.get("flaky").get("handled"));
+        Assertions.assertEquals(1L, progress.get("flaky").get("failed"));
+        // the dead-lettered record is finished too
+        Assertions.assertEquals(Map.of(0, 6L, 1, 2L), progress.get("flaky").get("positions"));
+        Assertions.assertEquals(0L, progress.get("other").get("handled"));
+
+        Assertions.assertEquals(1.0, meters.get("app.kafka.handler.records")
+                .tag("handler", "flaky").tag("result", "failure").functionCounter().count());
+    }
+
+    @Test
+    void failedRecordIsRetriedThenDeadLetteredForThatHandlerOnly() {
+        Collecting a = new Collecting("a", "t");
+        Collecting flaky = new Collecting("flaky", "t");
+        FanOutDispatcher dispatcher = dispatcher(flaky, a);
+
+        dispatcher.dispatch(new ConsumerRecord<>("t", 0, 6L, "k", "boom"));
+
+        Assertions.assertEquals(3, flaky.calls);
+        Assertions.assertEquals(1, a.calls);
+        Assertions.assertEquals(1, producer.history().size());
+        ProducerRecord<String, String> dead = producer.history().get(0);
+        Assertions.assertEquals(KafkaTopics.TOPIC_DLQ, dead.topic());
+        Assertions.assertEquals("flaky", RetryRouter.readString(dead.headers(), FanOutDispatcher.HANDLER_HEADER));
+        Assertions.assertEquals("t", RetryRouter.readString(dead.headers(), RetryRouter.ORIGINAL_TOPIC_HEADER));
+        Assertions.assertEquals("boom", RetryRouter.readString(dead.headers(), RetryRouter.EXCEPTION_MESSAGE_HEADER));
+
+        // replayed onto the topic, it goes back to the handler that failed it
+        ConsumerRecord<String, String> replay = new ConsumerRecord<>("t", 0, 7L, "k", "fixed");
+        replay.headers().add(FanOutDispatcher.HANDLER_HEADER, "flaky".getBytes(StandardCharsets.UTF_8));
+        dispatcher.dispatch(replay);
+        Assertions.assertEquals(List.of("fixed"), flaky.seen);
+        Assertions.assertEquals(1, a.calls);
+    }
+
+    @Test
+    void failedDeadLetterSendIsNotSwallowed() {
+        MockProducer<String, String> manual =
+                spy(new MockProducer<>(false, new StringSerializer(), new StringSerializer()));
+        doNothing().when(manual).close();
+        doNothing().when(manual).close(any());
+        FanOutDispatcher dispatcher = dispatcher(manual, new Collecting("flaky", "t"));
+
+        CompletableFuture<?> done = dispatcher.tasks(new ConsumerRecord<>("t", 0, 6L, "k", "boom")).get(0).get();
+        Assertions.assertFalse(done.isDone());
+        manual.errorNext(new IllegalStateException("broker said no"));
+
+        Assertions.assertThrows(CompletionException.class, done::join);
+        Assertions.assertEquals(Map.of(), dispatcher.progress().get("flaky").get("positions"));
+    }
+
+    @Test
+    void tasksAreOnePerHandlerOfTheTopic() {
+        Collecting a = new Collecting("a", "t");
+        Collecting b = new Collecting("b", "t");
+        FanOutDispatcher dispatcher = dispatcher(a, b, new Collecting("c", "u"));
+
+        List<Supplier<CompletableFuture<?>>> tasks = dispatcher.tasks(new ConsumerRecord<>("t", 0, 0L, "k", "v"));
+        Assertions.assertEquals(2, tasks.size());
+        tasks.forEach(t -> Assertions.assertTrue(t.get().isDone()));
+        Assertions.assertEquals(List.of("v"), a.seen);
+        Assertions.assertEquals(List.of("v"), b.seen);
+        Assertions.assertTrue(dispatcher.tasks(new ConsumerRecord<>("none", 0, 0L, "k", "v")).isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.kafkatesting.dlq;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.retry.RetryRouter;
+import com.example.kafkatesting.tracing.OriginHeadersInterceptor;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DlqReplayerTest {
+
+    /** A record through all retry tiers to the DLQ, into the store, and replayed as a fresh event. */
+    @Test
+    void dlqHeadersSurviveStoreAndAreResetOnReplay(@TempDir Path dir) throws Exception {
+        RetryRouter router = new RetryRouter();
+        ProducerRecord<Object, Object> sent = new OriginHeadersInterceptor().onSend(new ProducerRecord<>(KafkaTopics.TOPIC_TWO, "k", "v"));
+        long originId = TraceHeaders.readLong(sent.headers(), TraceHeaders.ORIGIN_ID, -1);
+        byte[] eventId = TraceHeaders.readEventId(sent.headers());
+        ConsumerRecord<String, String> record = consumed(KafkaTopics.TOPIC_TWO, 2, 42L, sent.headers());
+        ProducerRecord<String, String> hop;
+        do {
+            hop = router.nextHop(record, record.value(), new IllegalStateException("boom"));
+            record = consumed(hop.topic(), 0, 7L, hop.headers());
+        } while (!KafkaTopics.TOPIC_DLQ.equals(hop.topic()));
+
+        Headers dlqHeaders = hop.headers();
+        Assertions.assertEquals(KafkaTopics.TOPIC_TWO, RetryRouter.readString(dlqHeaders, RetryRouter.ORIGINAL_TOPIC_HEADER));
+        Assertions.assertEquals("2", RetryRouter.readString(dlqHeaders, RetryRouter.ORIGINAL_PARTITION_HEADER));
+        Assertions.assertEquals("42", RetryRouter.readString(dlqHeaders, RetryRouter.ORIGINAL_OFFSET_HEADER));
+        Assertions.assertEquals("3", RetryRouter.readString(dlqHeaders, RetryRouter.RETRY_HEADER));
+        Assertions.assertEquals(IllegalStateException.class.getName(), RetryRouter.readString(dlqHeaders, RetryRouter.EXCEPTION_CLASS_HEADER));
+        // origin ts/id, event id, original topic/partition/offset, exception class/message, retry count: one of each after three hops
+        Assertions.assertEquals(9, dlqHeaders.toArray().length);
+
+        DlqEntry stored;
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, 64 * 1024, 2)) {
+            stored = log.read(log.append(hop.key(), hop.value(), hop.headers()));
+        }
+        Assertions.assertEquals("boom", stored.header(RetryRouter.EXCEPTION_MESSAGE_HEADER));
+
+        ProducerRecord<String, String> replay = DlqReplayer.toReplay(stored);
+        Assertions.assertEquals(KafkaTopics.TOPIC_TWO, replay.topic());
+        Assertions.assertEquals(originId, TraceHeaders.readLong(replay.headers(), TraceHeaders.ORIGIN_ID, -1));
+        Assertions.assertArrayEquals(eventId, TraceHeaders.readEventId(replay.headers()));
+        Assertions.assertNull(replay.headers().lastHeader(TraceHeaders.ORIGIN_TIMESTAMP));
+        Assertions.assertNull(replay.headers().lastHeader(RetryRouter.RETRY_HEADER));
+        Assertions.assertNull(replay.headers().lastHeader(RetryRouter.ORIGINAL_TOPIC_HEADER));
+        Assertions.assertNull(replay.headers().lastHeader(RetryRouter.EXCEPTION_CLASS_HEADER));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replaysAtTheRequestedRate() {
+        KafkaTemplate<String, String> template = mock(KafkaTemplate.class);
+        List<Long> sendTimes = new CopyOnWriteArrayList<>();
+        when(template.send(any(ProducerRecord.class))).thenAnswer(inv -> {
+            sendTimes.add(System.nanoTime());
+            return CompletableFuture.completedFuture(null);
+        });
+        List<DlqEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            entries.add(new DlqEntry(i, 0, "k" + i, "v" + i, new RecordHeaders()));
+        }
+
+        DlqReplayer replayer = new DlqReplayer(template, 1_000);
+        replayer.start(entries, 100);
+        Assertions.assertThrows(IllegalStateException.class, () -> replayer.start(entries, 100));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> "finished".equals(replayer.status().get("state")));
+        replayer.destroy();
+
+        Assertions.assertEquals(50L, replayer.status().get("sent"));
+        double seconds = (sendTimes.get(49) - sendTimes.get(0)) / 1e9;
+        // 49 intervals of 10ms
+        Assertions.assertTrue(seconds >= 0.4 && seconds < 0.8, "took " + seconds + "s");
+    }
+
+    private static ConsumerRecord<String, String> consumed(String topic, int partition, long offset, Headers headers) {
+        return new ConsumerRecord<>(topic, partition, offset, 0L, TimestampType.CREATE_TIME, 0, 0,
+                "k", "v", headers, Optional.empty());
+    }
+}
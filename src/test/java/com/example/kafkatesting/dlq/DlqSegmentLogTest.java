@@ -0,0 +1,138 @@
+package com.example.kafkatesting.dlq;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+class DlqSegmentLogTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @Test
+    void looksUpByKeyAndTimeAcrossSegments(@TempDir Path dir) throws Exception {
+        AtomicLong now = new AtomicLong(1_000);
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, SEGMENT_BYTES, 100, now::get)) {
+            for (int i = 0; i < 3_000; i++) {
+                now.incrementAndGet();
+                log.append("key-" + (i % 10), "payload-" + i, headers("x-exception-message", "boom " + i));
+            }
+            log.flush();
+            Assertions.assertTrue(log.segmentCount() > 3, "records should span several segments");
+            Assertions.assertEquals(3_000, log.entries());
+
+            List<DlqEntry> byKey = log.byKey("key-3", 5);
+            Assertions.assertEquals(5, byKey.size());
+            Assertions.assertEquals("payload-2953", byKey.get(0).value());
+            Assertions.assertEquals("payload-2993", byKey.get(4).value());
+            Assertions.assertEquals("boom 2993", byKey.get(4).header("x-exception-message"));
+
+            // store times are 1001..4000, one per record
+            List<DlqEntry> byTime = log.byTime(2_501, 2_600, 1_000);
+            Assertions.assertEquals(100, byTime.size());
+            Assertions.assertEquals("payload-1500", byTime.get(0).value());
+            Assertions.assertEquals("payload-1599", byTime.get(99).value());
+            Assertions.assertEquals(10, log.byTime(0, Long.MAX_VALUE, 10).size());
+
+            DlqEntry first = byTime.get(0);
+            Assertions.assertEquals("payload-1500", log.read(first.position()).value());
+            Assertions.assertNull(log.read(first.position() + 1), "a position inside a record is not an entry");
+        }
+    }
+
+    @Test
+    void reopensAndDropsTornTail(@TempDir Path dir) throws Exception {
+        long lastGood;
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, SEGMENT_BYTES, 4)) {
+            for (int i = 0; i < 100; i++) {
+                log.append("k" + i, "v" + i, new RecordHeaders());
+            }
+            lastGood = log.append("k-last", "v-last", new RecordHeaders());
+            long torn = log.append("k-torn", "v-torn", new RecordHeaders());
+            log.flush();
+            corruptByteAt(dir, torn + 12);
+        }
+
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, SEGMENT_BYTES, 4)) {
+            Assertions.assertEquals(101, log.entries());
+            Assertions.assertEquals("v-last", log.read(lastGood).value());
+            Assertions.assertTrue(log.byKey("k-torn", 10).isEmpty());
+            Assertions.assertEquals("v50", log.byKey("k50", 10).get(0).value());
+
+            // appends continue after the last good record
+            long next = log.append("k-new", "v-new", new RecordHeaders());
+            Assertions.assertEquals("v-new", log.read(next).value());
+        }
+    }
+
+    @Test
+    void reopensAndDropsATailWithAHugeLength(@TempDir Path dir) throws Exception {
+        long torn;
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, SEGMENT_BYTES, 4)) {
+            log.append("k0", "v0", new RecordHeaders());
+            torn = log.append("k-torn", "v-torn", new RecordHeaders());
+            log.flush();
+        }
+        // offset + header + length wraps around to a negative int
+        writeIntAt(dir, torn, Integer.MAX_VALUE - 2);
+
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, SEGMENT_BYTES, 4)) {
+            Assertions.assertEquals(1, log.entries());
+            Assertions.assertNull(log.read(torn));
+            Assertions.assertEquals("v0", log.byKey("k0", 10).get(0).value());
+            long next = log.append("k-new", "v-new", new RecordHeaders());
+            Assertions.assertEquals("v-new", log.read(next).value());
+        }
+    }
+
+    @Test
+    void retentionDropsOldestSegments(@TempDir Path dir) throws Exception {
+        String payload = "x".repeat(1_000);
+        try (DlqSegmentLog log = new DlqSegmentLog(dir, SEGMENT_BYTES, 2)) {
+            long first = log.append("old", payload, null);
+            for (int i = 0; i < 500; i++) {
+                log.append("k", payload, null);
+            }
+            Assertions.assertEquals(2, log.segmentCount());
+            try (Stream<Path> files = Files.list(dir)) {
+                Assertions.assertEquals(2, files.filter(p -> p.toString().endsWith(".dlq")).count());
+            }
+            Assertions.assertNull(log.read(first));
+            Assertions.assertTrue(log.byKey("old", 10).isEmpty());
+            Assertions.assertTrue(log.entries() < 501);
+            Assertions.assertEquals(log.entries(), log.byKey("k", 1_000).size());
+        }
+    }
+
+    private static RecordHeaders headers(String key, String value) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    // in the first (only) segment, base position 0
+    private static void writeIntAt(Path dir, long position, int value) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve(String.format("%020d.dlq", 0)).toFile(), "rw")) {
+            file.seek(position);
+            file.writeInt(value);
+        }
+    }
+
+    // the torn record is in the first (only) segment, base position 0
+    private static void corruptByteAt(Path dir, long position) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve(String.format("%020d.dlq", 0)).toFile(), "rw")) {
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xFF);
+        }
+    }
+}
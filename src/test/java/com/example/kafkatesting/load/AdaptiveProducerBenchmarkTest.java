@@ -0,0 +1,205 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.batching.AdaptiveProducerFactory;
+import com.example.kafkatesting.batching.ProducerAutoTuner;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Throughput and send-to-ack latency of the shared template with each fixed
+ * producer profile and with the auto-tuner, over a paced phase ({@link #PACED_RATE}
+ * records/s, latency-sensitive traffic) followed by a bulk phase (as fast as
+ * {@link #BULK_OUTSTANDING} unacknowledged records allow). Records are
+ * {@link #RECORD_BYTES} bytes of semi-structured text sent through
+ * ProducerOneService to topic-one. The tuner runs on a 500ms tick over 1s
+ * client metric windows so it can react within the phases.
+ * Report: build/reports/load/adaptive-producer.json.
+ */
+@Tag("load")
+class AdaptiveProducerBenchmarkTest {
+
+    private static final int PACED_RATE = 500;
+    private static final Duration PACED = Duration.ofSeconds(6);
+    private static final Duration BULK = Duration.ofSeconds(12);
+    private static final int BULK_OUTSTANDING = 4000;
+    private static final int RECORD_BYTES = 512;
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+
+    public record PhaseReport(String phase, long records, long recordsPerSecond,
+                              long p50Millis, long p99Millis, long maxMillis) {
+    }
+
+    public record ProfileReport(String setting, List<PhaseReport> phases, String finalProfile, long switches,
+                                long failed) {
+    }
+
+    private static EmbeddedKafkaKraftBroker cluster;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void fixedProfilesVersusAutoTuner() throws Exception {
+        List<ProfileReport> reports = new ArrayList<>();
+        // JIT and broker warm-up, not reported
+        run("warm-up", "--app.kafka.producer.adaptive.profiles=balanced", "--app.kafka.producer.adaptive.initial=balanced");
+        reports.add(run("latency", "--app.kafka.producer.adaptive.profiles=latency",
+                "--app.kafka.producer.adaptive.initial=latency"));
+        reports.add(run("balanced", "--app.kafka.producer.adaptive.profiles=balanced",
+                "--app.kafka.producer.adaptive.initial=balanced"));
+        reports.add(run("throughput", "--app.kafka.producer.adaptive.profiles=throughput",
+                "--app.kafka.producer.adaptive.initial=throughput"));
+        reports.add(run("adaptive", "--app.kafka.producer.adaptive.initial=latency"));
+
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("adaptive-producer.json").toFile(), reports);
+        for (ProfileReport r : reports) {
+            Assertions.assertEquals(0, r.failed(), r.setting());
+        }
+        Assertions.assertTrue(reports.get(3).switches() > 0);
+    }
+
+    private ProfileReport run(String setting, String... profileArgs) throws Exception {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                "--spring.main.web-application-type=none",
+                "--app.tracing.e2e.report-interval=0s",
+                "--app.kafka.dlq.store.dir=",
+                "--spring.kafka.producer.properties.metrics.sample.window.ms=1000",
+                "--app.kafka.producer.adaptive.enabled=true",
+                "--app.kafka.producer.adaptive.interval=500ms",
+                "--app.kafka.producer.adaptive.change-ticks=2",
+                "--app.kafka.producer.adaptive.cooldown-ticks=2"));
+        args.addAll(List.of(profileArgs));
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                .run(args.toArray(String[]::new))) {
+            ProducerOneService producerOne = ctx.getBean(ProducerOneService.class);
+            AdaptiveProducerFactory<?, ?> factory = ctx.getBean(AdaptiveProducerFactory.class);
+            ProducerAutoTuner tuner = ctx.getBean(ProducerAutoTuner.class);
+            Sender sender = new Sender(producerOne);
+
+            List<PhaseReport> phases = new ArrayList<>();
+            phases.add(sender.paced("paced"));
+            phases.add(sender.bulk("bulk"));
+            String finalProfile = factory.getProfile().name();
+            ProfileReport report = new ProfileReport(setting, phases, finalProfile, tuner.getSwitchCount(),
+                    sender.failed.get());
+            for (PhaseReport p : phases) {
+                System.out.printf("adaptive producer %-10s %-5s records=%d rate=%d/s ack p50=%dms p99=%dms max=%dms%n",
+                        setting, p.phase(), p.records(), p.recordsPerSecond(), p.p50Millis(), p.p99Millis(),
+                        p.maxMillis());
+            }
+            System.out.printf("adaptive producer %-10s final profile=%s switches=%d failed=%d%n",
+                    setting, finalProfile, report.switches(), report.failed());
+            return report;
+        }
+    }
+
+    private static final class Sender {
+        private final ProducerOneService producerOne;
+        private final SplittableRandom random = new SplittableRandom(11);
+        private final Semaphore outstanding = new Semaphore(BULK_OUTSTANDING);
+        private final AtomicLong failed = new AtomicLong();
+        private long sequence;
+
+        Sender(ProducerOneService producerOne) {
+            this.producerOne = producerOne;
+        }
+
+        PhaseReport paced(String phase) throws InterruptedException {
+            Histogram latency = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+            long interval = TimeUnit.SECONDS.toNanos(1) / PACED_RATE;
+            long total = PACED_RATE * PACED.toSeconds();
+            long start = System.nanoTime();
+            for (long i = 0; i < total; i++) {
+                long wait = start + i * interval - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                send(latency);
+            }
+            return finish(phase, latency, total, start);
+        }
+
+        PhaseReport bulk(String phase) throws InterruptedException {
+            Histogram latency = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+            long start = System.nanoTime();
+            long end = start + BULK.toNanos();
+            long total = 0;
+            while (System.nanoTime() < end) {
+                send(latency);
+                total++;
+            }
+            return finish(phase, latency, total, start);
+        }
+
+        private void send(Histogram latency) throws InterruptedException {
+            outstanding.acquire();
+            long sent = System.nanoTime();
+            producerOne.send("key-" + random.nextInt(1000), payload(sequence++)).whenComplete((r, ex) -> {
+                if (ex != null) {
+                    failed.incrementAndGet();
+                }
+                synchronized (latency) {
+                    latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent),
+                            latency.getHighestTrackableValue()));
+                }
+                outstanding.release();
+            });
+        }
+
+        private PhaseReport finish(String phase, Histogram latency, long total, long start) throws InterruptedException {
+            outstanding.acquire(BULK_OUTSTANDING);
+            outstanding.release(BULK_OUTSTANDING);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            synchronized (latency) {
+                return new PhaseReport(phase, total, Math.round(total / seconds),
+                        latency.getValueAtPercentile(50) / 1000, latency.getValueAtPercentile(99) / 1000,
+                        latency.getMaxValue() / 1000);
+            }
+        }
+
+        // order-like text: repeated field names, a few random values
+        private String payload(long seq) {
+            StringBuilder sb = new StringBuilder(RECORD_BYTES);
+            sb.append("{\"seq\":").append(seq).append(",\"items\":[");
+            while (sb.length() < RECORD_BYTES - 40) {
+                sb.append("{\"sku\":\"SKU-").append(random.nextInt(500)).append("\",\"qty\":")
+                        .append(random.nextInt(10)).append(",\"status\":\"CREATED\"},");
+            }
+            sb.setLength(sb.length() - 1);
+            return sb.append("]}").toString();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.kafka.clients.admin.Admin;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Failure injection: while ConsumerTwo's topic-two traffic flows at a steady rate,
+ * the broker coordinating group-two is stopped and later restarted. Measures the
+ * longest stretch without a producer ack and without a processed record, once with
+ * the default client settings and once with the fast-recovery profile.
+ *
+ * The cluster is the ZooKeeper-mode embedded broker: it is the one spring-kafka-test
+ * can stop and restart per broker (on fixed ports, so bootstrap addresses stay
+ * valid). Broker stops skip controlled shutdown, so partition leadership is not
+ * handed over in advance - closer to a crash than to a rolling restart.
+ */
+@Tag("load")
+class BrokerFailoverBenchmarkTest {
+
+    private static final int RATE = 500;
+    private static final Duration BEFORE_FAILURE = Duration.ofSeconds(5);
+    private static final Duration BROKER_DOWN = Duration.ofSeconds(10);
+    private static final Duration AFTER_RESTART = Duration.ofSeconds(10);
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+
+    /** Longest gaps (ms) without progress while the sender was running. */
+    public record FailoverReport(String profile, int stoppedBroker, long sent, long sendFailures,
+                                 long processed, long producerStallMillis, long consumerPauseMillis) {
+    }
+
+    private static EmbeddedKafkaZKBroker cluster;
+
+    @BeforeAll
+    static void startCluster() throws IOException {
+        cluster = new EmbeddedKafkaZKBroker(3).kafkaPorts(freePorts(3));
+        cluster.brokerProperty("controlled.shutdown.enable", "false");
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void defaultVsFastRecoveryProfile() throws Exception {
+        FailoverReport standard = run("default");
+        FailoverReport fast = run("fast-recovery");
+
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("broker-failover.json").toFile(), List.of(standard, fast));
+        System.out.printf("broker failover: producer stall default=%dms fast-recovery=%dms, "
+                        + "consumer pause default=%dms fast-recovery=%dms%n",
+                standard.producerStallMillis(), fast.producerStallMillis(),
+                standard.consumerPauseMillis(), fast.consumerPauseMillis());
+
+        for (FailoverReport report : List.of(standard, fast)) {
+            // acks=all + unbounded retries: the failover must not lose sends
+            Assertions.assertEquals(0, report.sendFailures(), report.profile());
+            Assertions.assertEquals(report.sent(), report.processed(), report.profile());
+        }
+    }
+
+    private FailoverReport run(String profile) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                .properties(
+                        "spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                        "spring.main.web-application-type=none",
+                        "app.tracing.e2e.report-interval=0s",
+                        "app.kafka.consumer.instance-id=failover-bench");
+        if (!"default".equals(profile)) {
+            builder.profiles(profile);
+        }
+        try (ConfigurableApplicationContext ctx = builder.run()) {
+            ProducerTwoService producerTwo = ctx.getBean(ProducerTwoService.class);
+            ConsumerTwo consumerTwo = ctx.getBean(ConsumerTwo.class);
+            KafkaListenerEndpointRegistry registry = ctx.getBean(KafkaListenerEndpointRegistry.class);
+            ContainerTestUtils.waitForAssignment(registry.getListenerContainer(ConsumerTwo.RECORD_LISTENER_ID), 3);
+
+            int victim;
+            try (Admin admin = Admin.create(ctx.getBean(KafkaAdmin.class).getConfigurationProperties())) {
+                victim = admin.describeConsumerGroups(List.of(KafkaTopics.TOPIC_GROUP_TWO))
+                        .all().get(10, TimeUnit.SECONDS).get(KafkaTopics.TOPIC_GROUP_TWO).coordinator().id();
+            }
+
+            AtomicLong acked = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+            ProgressGaps gaps = new ProgressGaps(acked::get, consumerTwo::getProcessedCount);
+            Thread watcher = new Thread(gaps, "failover-progress");
+            watcher.setDaemon(true);
+            watcher.start();
+
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+            long total = RATE * (BEFORE_FAILURE.toSeconds() + BROKER_DOWN.toSeconds() + AFTER_RESTART.toSeconds());
+            long stopAt = RATE * BEFORE_FAILURE.toSeconds();
+            long restartAt = stopAt + RATE * BROKER_DOWN.toSeconds();
+            long start = System.nanoTime();
+            for (long i = 0; i < total; i++) {
+                long wait = start + i * intervalNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (i == stopAt) {
+                    new Thread(() -> cluster.bounce(cluster.getBrokerAddress(victim)), "stop-broker").start();
+                } else if (i == restartAt) {
+                    new Thread(() -> restart(victim), "restart-broker").start();
+                }
+                producerTwo.sendAsync("k" + (i % 100), "steady-" + i).whenComplete((r, ex) -> {
+                    if (ex == null) {
+                        acked.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                });
+            }
+            Awaitility.await().atMost(Duration.ofMinutes(3)).pollInterval(Duration.ofMillis(50))
+                    .until(() -> acked.get() + failed.get() >= total);
+            gaps.stop();
+            Awaitility.await().atMost(Duration.ofMinutes(3)).pollInterval(Duration.ofMillis(50))
+                    .until(() -> consumerTwo.getProcessedCount() >= acked.get());
+
+            return new FailoverReport(profile, victim, acked.get(), failed.get(), consumerTwo.getProcessedCount(),
+                    gaps.longestGap(0), gaps.longestGap(1));
+        }
+    }
+
+    private static void restart(int broker) {
+        try {
+            cluster.restart(broker);
+        } catch (Exception e) {
+            throw new IllegalStateException("broker " + broker + " did not restart", e);
+        }
+    }
+
+    private static int[] freePorts(int n) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            int[] ports = new int[n];
+            for (int i = 0; i < n; i++) {
+                ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                ports[i] = socket.getLocalPort();
+            }
+            return ports;
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    /** Polls progress counters every 5ms and keeps the longest interval each went without moving. */
+    private static final class ProgressGaps implements Runnable {
+        private final LongSupplier[] counters;
+        private final long[] longest;
+        private volatile boolean running = true;
+
+        ProgressGaps(LongSupplier... counters) {
+            this.counters = counters;
+            this.longest = new long[counters.length];
+        }
+
+        @Override
+        public void run() {
+            long[] last = new long[counters.length];
+            long[] since = new long[counters.length];
+            long now = System.nanoTime();
+            for (int i = 0; i < counters.length; i++) {
+                last[i] = counters[i].getAsLong();
+                since[i] = now;
+            }
+            while (running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                now = System.nanoTime();
+                for (int i = 0; i < counters.length; i++) {
+                    long value = counters[i].getAsLong();
+                    if (value != last[i]) {
+                        last[i] = value;
+                        since[i] = now;
+                    } else {
+                        synchronized (this) {
+                            longest[i] = Math.max(longest[i], TimeUnit.NANOSECONDS.toMillis(now - since[i]));
+                        }
+                    }
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        synchronized long longestGap(int counter) {
+            return longest[counter];
+        }
+    }
+}
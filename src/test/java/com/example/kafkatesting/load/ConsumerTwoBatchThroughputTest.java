@@ -0,0 +1,90 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ConsumerTwo's single-record listener against the batch and keyed
+ * parallel listeners on an in-process 3-broker cluster. All runs use the same
+ * group, so each run picks up where the previous one committed. Every run
+ * must consume all of its records, and the batch listener must beat the
+ * record listener. The runs leave the record listener stopped, so the
+ * context is not reused by later tests.
+ */
+@Tag("load")
+@SpringBootTest(properties = "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}")
+@EmbeddedKafka(count = 3, partitions = 3)
+@DirtiesContext
+class ConsumerTwoBatchThroughputTest {
+
+    private static final int MESSAGES = 5000;
+
+    @Autowired
+    ProducerTwoService producerTwo;
+
+    @Autowired
+    ConsumerTwo consumerTwo;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Test
+    void batchListenerThroughputVsRecordListener() throws Exception {
+        MessageListenerContainer recordContainer = registry.getListenerContainer(ConsumerTwo.RECORD_LISTENER_ID);
+        MessageListenerContainer batchContainer = registry.getListenerContainer(ConsumerTwo.BATCH_LISTENER_ID);
+        Assertions.assertNotNull(recordContainer);
+        Assertions.assertNotNull(batchContainer);
+        Assertions.assertFalse(batchContainer.isRunning(), "batch listener must be off in record mode");
+
+        ContainerTestUtils.waitForAssignment(recordContainer, 3);
+        double recordRate = run("record");
+
+        recordContainer.stop();
+        batchContainer.start();
+        ContainerTestUtils.waitForAssignment(batchContainer, 3);
+        double batchRate = run("batch");
+
+        batchContainer.stop();
+        MessageListenerContainer parallelContainer = registry.getListenerContainer(ConsumerTwo.PARALLEL_LISTENER_ID);
+        parallelContainer.start();
+        ContainerTestUtils.waitForAssignment(parallelContainer, 3);
+        double parallelRate = run("parallel");
+
+        String rates = String.format("record=%.0f msg/s batch=%.0f msg/s parallel=%.0f msg/s",
+                recordRate, batchRate, parallelRate);
+        Assertions.assertTrue(batchRate > recordRate, "batch listener no faster than record listener: " + rates);
+        Assertions.assertTrue(parallelRate > recordRate / 2, "parallel listener fell far behind: " + rates);
+    }
+
+    private double run(String label) throws Exception {
+        int before = consumerTwo.getProcessedCount();
+        long start = System.nanoTime();
+
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            sends[i] = producerTwo.sendAsync(label + "-k" + (i % 64), label + "-msg-" + i);
+        }
+        CompletableFuture.allOf(sends).get(30, TimeUnit.SECONDS);
+
+        Awaitility.await().atMost(Duration.ofSeconds(60)).pollInterval(Duration.ofMillis(50))
+                .until(() -> consumerTwo.getProcessedCount() - before >= MESSAGES);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return MESSAGES / seconds;
+    }
+}
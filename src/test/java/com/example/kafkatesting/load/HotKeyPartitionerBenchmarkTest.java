@@ -0,0 +1,209 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.partitioning.KeySkewMonitor;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Skewed workload on topic-one with the default placement and with hot keys
+ * spread (app.kafka.partitioner.spread-topics=topic-one).
+ *
+ * {@link #HOT_SHARE} of {@link #RATE} records/s carry one key, the rest 100
+ * others. Each partition is read by its own consumer that spends
+ * {@link #SERVICE} per record, so a partition keeps up with about 480
+ * records/s: with the default placement the hot key's partition runs near
+ * saturation while the other two idle. Latency is origin send (x-origin-ts)
+ * to the end of the simulated work.
+ * Report: build/reports/load/hot-key-partitioner.json.
+ */
+@Tag("load")
+class HotKeyPartitionerBenchmarkTest {
+
+    private static final int RATE = 600;
+    private static final double HOT_SHARE = 0.6;
+    private static final Duration DURATION = Duration.ofSeconds(20);
+    private static final Duration SERVICE = Duration.ofMillis(2);
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+
+    public record SkewReport(String placement, long[] recordsPerPartition, long spread,
+                             long p50Millis, long p99Millis, long maxMillis) {
+    }
+
+    private static EmbeddedKafkaKraftBroker cluster;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void defaultPlacementVsSpreadHotKeys() throws Exception {
+        List<SkewReport> reports = new ArrayList<>();
+        reports.add(run("default", ""));
+        reports.add(run("spread", KafkaTopics.TOPIC_ONE));
+
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("hot-key-partitioner.json").toFile(), reports);
+        Assertions.assertEquals(0, reports.get(0).spread());
+        Assertions.assertTrue(reports.get(1).spread() > 0);
+    }
+
+    private SkewReport run(String placement, String spreadTopics) throws Exception {
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                .run("--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                        "--spring.main.web-application-type=none",
+                        "--app.tracing.e2e.report-interval=0s",
+                        "--app.kafka.dlq.store.dir=",
+                        "--app.kafka.partitioner.spread-topics=" + spreadTopics);
+             PartitionWorkers workers = new PartitionWorkers()) {
+            ProducerOneService producerOne = ctx.getBean(ProducerOneService.class);
+            workers.start();
+
+            SplittableRandom random = new SplittableRandom(7);
+            long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+            long total = RATE * DURATION.toSeconds();
+            long start = System.nanoTime();
+            for (long i = 0; i < total; i++) {
+                long wait = start + i * interval - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                String key = random.nextDouble() < HOT_SHARE ? "hot" : "key-" + random.nextInt(100);
+                producerOne.send(key, "skew-" + i);
+            }
+            Awaitility.await().atMost(Duration.ofMinutes(3)).pollInterval(Duration.ofMillis(50))
+                    .until(() -> workers.count() >= total);
+
+            long spread = ctx.getBean(KeySkewMonitor.class).getSpreadCount();
+            Histogram latency = workers.latency();
+            SkewReport report = new SkewReport(placement, workers.perPartition(), spread,
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getMaxValue());
+            System.out.printf("hot-key partitioner %-7s partitions=%s spread=%d e2e p50=%dms p99=%dms max=%dms%n",
+                    placement, Arrays.toString(report.recordsPerPartition()), spread,
+                    report.p50Millis(), report.p99Millis(), report.maxMillis());
+            return report;
+        }
+    }
+
+    /** One consumer thread per topic-one partition, from its current end, {@link #SERVICE} per record. */
+    private static final class PartitionWorkers implements AutoCloseable {
+        private final List<Thread> threads = new ArrayList<>();
+        private final List<Consumer<String, String>> consumers = new ArrayList<>();
+        private final AtomicLongArray counts = new AtomicLongArray(3);
+        private final Histogram latency = new Histogram(TimeUnit.MINUTES.toMillis(10), 3);
+        private volatile boolean running = true;
+
+        PartitionWorkers() {
+            DefaultKafkaConsumerFactory<String, String> factory = new DefaultKafkaConsumerFactory<>(
+                    KafkaTestUtils.consumerProps(cluster.getBrokersAsString(), "skew-bench", "false"),
+                    new StringDeserializer(), new StringDeserializer());
+            for (int p = 0; p < 3; p++) {
+                Consumer<String, String> consumer = factory.createConsumer();
+                TopicPartition tp = new TopicPartition(KafkaTopics.TOPIC_ONE, p);
+                consumer.assign(List.of(tp));
+                consumer.seekToEnd(List.of(tp));
+                consumer.position(tp);
+                consumers.add(consumer);
+                int partition = p;
+                Thread t = new Thread(() -> read(consumer, partition), "skew-worker-" + p);
+                t.setDaemon(true);
+                threads.add(t);
+            }
+        }
+
+        void start() {
+            threads.forEach(Thread::start);
+        }
+
+        private void read(Consumer<String, String> consumer, int partition) {
+            long service = SERVICE.toNanos();
+            while (running) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(50))) {
+                    long end = System.nanoTime() + service;
+                    while (System.nanoTime() < end) {
+                        LockSupport.parkNanos(end - System.nanoTime());
+                    }
+                    long origin = TraceHeaders.readLong(record.headers(), TraceHeaders.ORIGIN_TIMESTAMP, -1);
+                    if (origin > 0) {
+                        synchronized (latency) {
+                            latency.recordValue(Math.min(Math.max(0, System.currentTimeMillis() - origin),
+                                    latency.getHighestTrackableValue()));
+                        }
+                    }
+                    counts.incrementAndGet(partition);
+                }
+            }
+        }
+
+        long count() {
+            long n = 0;
+            for (int p = 0; p < counts.length(); p++) {
+                n += counts.get(p);
+            }
+            return n;
+        }
+
+        long[] perPartition() {
+            long[] n = new long[counts.length()];
+            for (int p = 0; p < n.length; p++) {
+                n[p] = counts.get(p);
+            }
+            return n;
+        }
+
+        Histogram latency() {
+            synchronized (latency) {
+                return latency.copy();
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            running = false;
+            for (Thread t : threads) {
+                if (t.isAlive()) {
+                    t.join(5000);
+                }
+            }
+            consumers.forEach(Consumer::close);
+        }
+    }
+}
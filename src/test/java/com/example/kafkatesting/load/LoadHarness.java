@@ -0,0 +1,207 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import com.example.kafkatesting.tracing.EndToEndLatency;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Drives a {@link LoadWorkload} through the real producer services and listeners
+ * and measures it:
+ * <ul>
+ *   <li>ack latency from the <i>intended</i> send time (open loop), so a stalled
+ *       producer shows up as latency instead of silently lowering the rate</li>
+ *   <li>end-to-end latency from {@link EndToEndLatency}, limited to this run</li>
+ *   <li>the consumer group's lag, sampled every {@link #LAG_SAMPLE_INTERVAL}</li>
+ * </ul>
+ * The run ends when the group has committed every record sent (failed ConsumerTwo
+ * records count once they are handed to a retry tier).
+ */
+public class LoadHarness {
+
+    static final Duration LAG_SAMPLE_INTERVAL = Duration.ofMillis(200);
+    private static final long MAX_LATENCY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final ProducerOneService producerOne;
+    private final ProducerTwoService producerTwo;
+    private final EndToEndLatency e2eLatency;
+    private final Admin admin;
+    private final LongSupplier processedOne;
+    private final LongSupplier processedTwo;
+
+    public LoadHarness(ProducerOneService producerOne, ProducerTwoService producerTwo, EndToEndLatency e2eLatency,
+                       Admin admin, LongSupplier processedOne, LongSupplier processedTwo) {
+        this.producerOne = producerOne;
+        this.producerTwo = producerTwo;
+        this.e2eLatency = e2eLatency;
+        this.admin = admin;
+        this.processedOne = processedOne;
+        this.processedTwo = processedTwo;
+    }
+
+    public LoadReport run(LoadWorkload workload, Duration drainTimeout) throws Exception {
+        boolean one = KafkaTopics.TOPIC_ONE.equals(workload.topic());
+        String group = one ? KafkaTopics.TOPIC_GROUP_ONE : KafkaTopics.TOPIC_GROUP_TWO;
+        LongSupplier processed = one ? processedOne : processedTwo;
+
+        String[] keys = new String[workload.keys()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key-" + i;
+        }
+        KeySampler keySampler = new KeySampler(keys.length, workload.keySkew());
+        SplittableRandom random = new SplittableRandom(42);
+        String filler = "x".repeat(workload.payloadBytes());
+
+        Recorder ackLatency = new Recorder(MAX_LATENCY_MILLIS, 3);
+        AtomicLong sendFailures = new AtomicLong();
+        Histogram e2eBefore = e2eLatency.histogram(workload.topic(), 0);
+        long processedBefore = processed.getAsLong();
+
+        List<LoadReport.LagSample> lagCurve = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> lagCurve.add(new LoadReport.LagSample(
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        lag(group, workload.topic()))),
+                0, LAG_SAMPLE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            long intervalNanos = workload.rate() == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / workload.rate();
+            CompletableFuture<?>[] sends = new CompletableFuture<?>[workload.messages()];
+            for (int i = 0; i < workload.messages(); i++) {
+                long intended = start + i * intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                String key = keys[keySampler.next(random)];
+                String payload = payload(i, random.nextDouble() < workload.failureRatio(), filler, workload.payloadBytes());
+                CompletableFuture<?> future = one ? producerOne.send(key, payload) : producerTwo.sendAsync(key, payload);
+                long from = intervalNanos == 0 ? System.nanoTime() : intended;
+                sends[i] = future.whenComplete((r, ex) -> {
+                    if (ex != null) {
+                        sendFailures.incrementAndGet();
+                    } else {
+                        ackLatency.recordValue(Math.min(MAX_LATENCY_MILLIS,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - from)));
+                    }
+                });
+            }
+            CompletableFuture.allOf(sends).handle((r, ex) -> null).get(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            long sendNanos = System.nanoTime() - start;
+
+            long target = endOffsetTotal(workload.topic());
+            long deadline = System.nanoTime() + drainTimeout.toNanos();
+            while (committedTotal(group, workload.topic()) < target) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("group " + group + " did not catch up within " + drainTimeout);
+                }
+                Thread.sleep(50);
+            }
+            long totalNanos = System.nanoTime() - start;
+
+            Histogram e2e = e2eLatency.histogram(workload.topic(), 0);
+            if (e2e != null && e2eBefore != null) {
+                e2e.subtract(e2eBefore);
+            }
+            long sent = workload.messages() - sendFailures.get();
+            List<LoadReport.LagSample> curve;
+            synchronized (lagCurve) {
+                curve = new ArrayList<>(lagCurve);
+            }
+            return new LoadReport(workload, sent, sendFailures.get(), processed.getAsLong() - processedBefore,
+                    TimeUnit.NANOSECONDS.toMillis(sendNanos), TimeUnit.NANOSECONDS.toMillis(totalNanos - sendNanos),
+                    sent / (sendNanos / 1e9), sent / (totalNanos / 1e9),
+                    LoadReport.Percentiles.of(ackLatency.getIntervalHistogram()), LoadReport.Percentiles.of(e2e),
+                    curve.stream().mapToLong(LoadReport.LagSample::lag).max().orElse(0), curve);
+        } finally {
+            sampler.shutdownNow();
+        }
+    }
+
+    private static String payload(int i, boolean fail, String filler, int size) {
+        String head = (fail ? "fail-" : "msg-") + i + "-";
+        return head.length() >= size ? head : head + filler.substring(0, size - head.length());
+    }
+
+    /** Group lag on the topic, -1 when the admin calls fail (e.g. mid-rebalance). */
+    private long lag(String group, String topic) {
+        try {
+            return Math.max(0, endOffsetTotal(topic) - committedTotal(group, topic));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /** Sum of the group's committed offsets on the topic (0 for partitions never committed). */
+    private long committedTotal(String group, String topic) {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed =
+                    admin.listConsumerGroupOffsets(group).partitionsToOffsetAndMetadata().get(10, TimeUnit.SECONDS);
+            return committed.entrySet().stream()
+                    .filter(e -> e.getKey().topic().equals(topic) && e.getValue() != null)
+                    .mapToLong(e -> e.getValue().offset())
+                    .sum();
+        } catch (Exception e) {
+            throw new IllegalStateException("could not read committed offsets of " + group, e);
+        }
+    }
+
+    /** Sum of the topic's end offsets. */
+    public long endOffsetTotal(String topic) throws Exception {
+        int partitions = admin.describeTopics(List.of(topic)).allTopicNames().get(10, TimeUnit.SECONDS)
+                .get(topic).partitions().size();
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (int p = 0; p < partitions; p++) {
+            request.put(new TopicPartition(topic, p), OffsetSpec.latest());
+        }
+        return admin.listOffsets(request).all().get(10, TimeUnit.SECONDS).values().stream()
+                .mapToLong(ListOffsetsResult.ListOffsetsResultInfo::offset)
+                .sum();
+    }
+
+    /** Zipf-distributed key index; exponent 0 is uniform. */
+    static final class KeySampler {
+        private final double[] cdf;
+
+        KeySampler(int keys, double exponent) {
+            cdf = new double[keys];
+            double sum = 0;
+            for (int i = 0; i < keys; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < keys; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int next(SplittableRandom random) {
+            int i = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.consumers.ConsumerOne;
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import com.example.kafkatesting.tracing.EndToEndLatency;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load harness on an in-process 3-broker cluster; topics come from KafkaConfig's
+ * NewTopic beans, so partitions and replication match what the app declares.
+ *
+ * Runs the built-in workloads, or a single one described by load.* system
+ * properties, e.g.
+ * <pre>gradle loadTest -Pload.rate=5000 -Pload.messages=50000 -Pload.key-skew=1.2 -Pload.failure-ratio=0.01</pre>
+ * Reports are written to build/reports/load/&lt;name&gt;.json.
+ */
+@Tag("load")
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "app.tracing.e2e.report-interval=0s"})
+@EmbeddedKafka(count = 3)
+class LoadHarnessTest {
+
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final LoadWorkload DEFAULTS =
+            new LoadWorkload("baseline", KafkaTopics.TOPIC_TWO, 2000, 10_000, 256, 1000, 0, 0);
+
+    @Autowired
+    ProducerOneService producerOne;
+
+    @Autowired
+    ProducerTwoService producerTwo;
+
+    @Autowired
+    ConsumerOne consumerOne;
+
+    @Autowired
+    ConsumerTwo consumerTwo;
+
+    @Autowired
+    EndToEndLatency e2eLatency;
+
+    @Autowired
+    KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    List<NewTopic> declaredTopics;
+
+    private Admin admin;
+    private LoadHarness harness;
+
+    @BeforeEach
+    void setUp() {
+        admin = Admin.create(kafkaAdmin.getConfigurationProperties());
+        harness = new LoadHarness(producerOne, producerTwo, e2eLatency, admin,
+                consumerOne::getCounter, consumerTwo::getProcessedCount);
+    }
+
+    @AfterEach
+    void tearDown() {
+        admin.close();
+    }
+
+    @Test
+    void runWorkloads() throws Exception {
+        assertTopicLayoutMatchesConfig();
+        awaitAssignment(KafkaTopics.TOPIC_GROUP_ONE);
+        awaitAssignment(KafkaTopics.TOPIC_GROUP_TWO);
+
+        List<LoadWorkload> workloads = new ArrayList<>();
+        LoadWorkload custom = LoadWorkload.fromProperties(System.getProperties(), DEFAULTS);
+        if (custom != null) {
+            workloads.add(custom);
+        } else {
+            workloads.add(DEFAULTS);
+            workloads.add(new LoadWorkload("skewed-with-failures", KafkaTopics.TOPIC_TWO, 2000, 10_000, 256, 1000, 1.1, 0.02));
+            workloads.add(new LoadWorkload("topic-one-unthrottled", KafkaTopics.TOPIC_ONE, 0, 20_000, 1024, 100, 0, 0));
+        }
+
+        for (LoadWorkload workload : workloads) {
+            LoadReport report = harness.run(workload, DRAIN_TIMEOUT);
+            Path file = report.writeTo(REPORT_DIR);
+            System.out.println(report.summary() + " -> " + file);
+
+            Assertions.assertEquals(0, report.sendFailures(), workload.name());
+            Assertions.assertEquals(workload.messages(), report.sent(), workload.name());
+            Assertions.assertFalse(report.lagCurve().isEmpty(), workload.name());
+            Assertions.assertTrue(report.endToEndLatency().count() > 0, workload.name());
+        }
+    }
+
+    /** All 3 partitions of the group's topic are assigned across its running containers. */
+    private void awaitAssignment(String group) {
+        Awaitility.await().atMost(Duration.ofSeconds(60)).pollInterval(Duration.ofMillis(100))
+                .until(() -> registry.getListenerContainers().stream()
+                        .filter(c -> c.isRunning() && group.equals(c.getGroupId()))
+                        .mapToInt(c -> c.getAssignedPartitions() == null ? 0 : c.getAssignedPartitions().size())
+                        .sum() == 3);
+    }
+
+    /** Every topic KafkaConfig declares exists with the declared partitions and replication. */
+    private void assertTopicLayoutMatchesConfig() throws Exception {
+        List<String> names = declaredTopics.stream().map(NewTopic::name).toList();
+        Map<String, TopicDescription> described =
+                admin.describeTopics(names).allTopicNames().get(30, TimeUnit.SECONDS);
+        for (NewTopic declared : declaredTopics) {
+            TopicDescription actual = described.get(declared.name());
+            Assertions.assertEquals(declared.numPartitions(), actual.partitions().size(), declared.name());
+            Assertions.assertEquals(declared.replicationFactor(), actual.partitions().get(0).replicas().size(), declared.name());
+        }
+    }
+}
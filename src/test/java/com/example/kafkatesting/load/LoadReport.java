@@ -0,0 +1,59 @@
+package com.example.kafkatesting.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Result of one {@link LoadWorkload} run. Latencies are in milliseconds; lag is
+ * the consumer group's committed-offset lag on the workload's topic.
+ */
+public record LoadReport(LoadWorkload workload,
+                         long sent,
+                         long sendFailures,
+                         long processed,
+                         long sendMillis,
+                         long drainMillis,
+                         double producerThroughput,
+                         double consumerThroughput,
+                         Percentiles ackLatency,
+                         Percentiles endToEndLatency,
+                         long maxLag,
+                         List<LagSample> lagCurve) {
+
+    public record Percentiles(long count, long p50, long p90, long p99, long p999, long max) {
+
+        static Percentiles of(Histogram h) {
+            if (h == null || h.getTotalCount() == 0) {
+                return new Percentiles(0, 0, 0, 0, 0, 0);
+            }
+            return new Percentiles(h.getTotalCount(), h.getValueAtPercentile(50), h.getValueAtPercentile(90),
+                    h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMaxValue());
+        }
+    }
+
+    /** Consumer lag at a point in time, in ms since the run started. */
+    public record LagSample(long atMillis, long lag) {
+    }
+
+    public String summary() {
+        return String.format(
+                "load[%s] sent=%d failed=%d processed=%d produce=%.0f msg/s consume=%.0f msg/s "
+                        + "ack p50/p99/max=%d/%d/%dms e2e p50/p99/max=%d/%d/%dms maxLag=%d drain=%dms",
+                workload.name(), sent, sendFailures, processed, producerThroughput, consumerThroughput,
+                ackLatency.p50(), ackLatency.p99(), ackLatency.max(),
+                endToEndLatency.p50(), endToEndLatency.p99(), endToEndLatency.max(), maxLag, drainMillis);
+    }
+
+    public Path writeTo(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(workload.name() + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), this);
+        return file;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+
+import java.util.Properties;
+
+/**
+ * One load-test run: what to send, how fast, and what it looks like.
+ *
+ * @param name          report name (build/reports/load/&lt;name&gt;.json)
+ * @param topic         KafkaTopics.TOPIC_ONE (ProducerOneService) or TOPIC_TWO (ProducerTwoService)
+ * @param rate          target send rate in messages/s; 0 sends as fast as the producer accepts
+ * @param messages      number of records to send
+ * @param payloadBytes  payload size, padded with filler characters
+ * @param keys          number of distinct keys
+ * @param keySkew       Zipf exponent over the keys; 0 is uniform, ~1 is a classic hot-key skew
+ * @param failureRatio  share of payloads ConsumerTwo treats as failures (routed to the retry tiers)
+ */
+public record LoadWorkload(String name, String topic, int rate, int messages, int payloadBytes,
+                           int keys, double keySkew, double failureRatio) {
+
+    public static final String PREFIX = "load.";
+
+    public LoadWorkload {
+        if (!KafkaTopics.TOPIC_ONE.equals(topic) && !KafkaTopics.TOPIC_TWO.equals(topic)) {
+            throw new IllegalArgumentException("topic must be " + KafkaTopics.TOPIC_ONE + " or " + KafkaTopics.TOPIC_TWO);
+        }
+        if (rate < 0 || messages <= 0 || payloadBytes <= 0 || keys <= 0 || keySkew < 0
+                || failureRatio < 0 || failureRatio > 1) {
+            throw new IllegalArgumentException("invalid workload: " + name);
+        }
+    }
+
+    /**
+     * A workload from load.* properties (e.g. -Dload.rate=5000), with unset values
+     * taken from the given defaults; null when no load.* property is set at all.
+     */
+    public static LoadWorkload fromProperties(Properties props, LoadWorkload defaults) {
+        if (props.stringPropertyNames().stream().noneMatch(k -> k.startsWith(PREFIX))) {
+            return null;
+        }
+        return new LoadWorkload(
+                props.getProperty(PREFIX + "name", "custom"),
+                props.getProperty(PREFIX + "topic", defaults.topic()),
+                Integer.parseInt(props.getProperty(PREFIX + "rate", String.valueOf(defaults.rate()))),
+                Integer.parseInt(props.getProperty(PREFIX + "messages", String.valueOf(defaults.messages()))),
+                Integer.parseInt(props.getProperty(PREFIX + "payload-bytes", String.valueOf(defaults.payloadBytes()))),
+                Integer.parseInt(props.getProperty(PREFIX + "keys", String.valueOf(defaults.keys()))),
+                Double.parseDouble(props.getProperty(PREFIX + "key-skew", String.valueOf(defaults.keySkew()))),
+                Double.parseDouble(props.getProperty(PREFIX + "failure-ratio", String.valueOf(defaults.failureRatio()))));
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.pipeline.NotificationPipeline;
+import com.example.kafkatesting.producers.BulkSendResult;
+import com.example.kafkatesting.producers.KeyValue;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * NotificationPipeline (topic-one -> topic-notification) with at-least-once
+ * delivery and with exactly-once at several transaction sizes (max records
+ * per batch). Per profile:
+ * <ul>
+ *   <li>drain: a backlog of {@link #BACKLOG} records is written with the stage
+ *       stopped, then started; the time from its partition assignment until a
+ *       read_committed reader has every notification gives the throughput</li>
+ *   <li>paced: {@link #RATE} records/s for {@link #PACED}; end-to-end latency is
+ *       origin send (x-origin-ts) to the read_committed reader seeing it, so
+ *       exactly-once latency includes waiting for the transaction to commit</li>
+ * </ul>
+ * Report: build/reports/load/notification-pipeline.json.
+ */
+@Tag("load")
+class NotificationPipelineBenchmarkTest {
+
+    private static final int BACKLOG = 10_000;
+    private static final int RATE = 500;
+    private static final Duration PACED = Duration.ofSeconds(5);
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+
+    /** meanBatch: records per transaction (or commit) while draining the backlog. */
+    public record PipelineReport(String delivery, int maxRecords, double drainRecordsPerSecond, double meanBatch,
+                                 long p50Millis, long p99Millis, long maxMillis) {
+    }
+
+    private static EmbeddedKafkaKraftBroker cluster;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void atLeastOnceVsTransactionSizes() throws Exception {
+        List<PipelineReport> reports = new ArrayList<>();
+        reports.add(run("at-least-once", 500));
+        for (int maxRecords : new int[] {10, 100, 500, 2000}) {
+            reports.add(run("exactly-once", maxRecords));
+        }
+
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("notification-pipeline.json").toFile(), reports);
+        for (PipelineReport r : reports) {
+            Assertions.assertTrue(r.drainRecordsPerSecond() > 0, r.toString());
+        }
+    }
+
+    private PipelineReport run(String delivery, int maxRecords) throws Exception {
+        String name = delivery + "-" + maxRecords;
+        // command-line args: builder properties() are defaults, which application.properties overrides
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                .run("--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                        "--spring.main.web-application-type=none",
+                        "--app.tracing.e2e.report-interval=0s",
+                        "--app.kafka.dlq.store.dir=",
+                        "--app.kafka.consumer.instance-id=pipeline-bench-" + name,
+                        "--app.kafka.notification.enabled=false",
+                        "--app.kafka.notification.delivery=" + delivery,
+                        "--app.kafka.notification.batch.max-records=" + maxRecords);
+             NotificationReader reader = new NotificationReader()) {
+            ProducerOneService producerOne = ctx.getBean(ProducerOneService.class);
+            MessageListenerContainer container = ctx.getBean(KafkaListenerEndpointRegistry.class)
+                    .getListenerContainer(NotificationPipeline.LISTENER_ID);
+
+            // drain: backlog first, then the stage
+            List<KeyValue> backlog = new ArrayList<>(BACKLOG);
+            for (int i = 0; i < BACKLOG; i++) {
+                backlog.add(new KeyValue("k" + (i % 100), "backlog-" + i + (i % 50 == 0 ? " urgent" : "")));
+            }
+            BulkSendResult sent = producerOne.sendBatch(backlog).get(60, TimeUnit.SECONDS);
+            Assertions.assertTrue(sent.isSuccess(), sent.toString());
+            reader.start();
+            container.start();
+            // from the assignment, so the group join is not counted
+            ContainerTestUtils.waitForAssignment(container, 3);
+            long start = System.nanoTime();
+            Awaitility.await().atMost(Duration.ofMinutes(5)).pollInterval(Duration.ofMillis(10))
+                    .until(() -> reader.count() >= BACKLOG);
+            double drainRate = BACKLOG / ((System.nanoTime() - start) / 1e9);
+            double drainBatch = ctx.getBean(MeterRegistry.class).get("app.kafka.batch.records")
+                    .tag("listener", NotificationPipeline.LISTENER_ID).summary().mean();
+
+            // paced: open loop at RATE, latency measured at the reader
+            reader.resetLatency();
+            long before = reader.count();
+            long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+            long total = RATE * PACED.toSeconds();
+            long paceStart = System.nanoTime();
+            for (long i = 0; i < total; i++) {
+                long wait = paceStart + i * interval - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                producerOne.send("k" + (i % 100), "paced-" + i);
+            }
+            // small transactions may not keep up with RATE; the backlog then shows up as latency
+            Awaitility.await().atMost(Duration.ofMinutes(3)).pollInterval(Duration.ofMillis(10))
+                    .until(() -> reader.count() >= before + total);
+
+            Histogram latency = reader.latency();
+            PipelineReport report = new PipelineReport(delivery, maxRecords, drainRate, drainBatch,
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getMaxValue());
+            System.out.printf("notification pipeline %-13s max-records=%-4d drain=%6.0f rec/s batch=%6.1f "
+                            + "e2e p50=%dms p99=%dms max=%dms%n",
+                    delivery, maxRecords, drainRate, drainBatch, report.p50Millis(), report.p99Millis(), report.maxMillis());
+            return report;
+        }
+    }
+
+    /** read_committed reader of topic-notification from its current end; origin-to-read latency in ms. */
+    private static final class NotificationReader implements AutoCloseable {
+        private final Consumer<String, String> consumer;
+        private final Thread thread;
+        private final AtomicLong count = new AtomicLong();
+        private final Histogram latency = new Histogram(TimeUnit.MINUTES.toMillis(10), 3);
+        private volatile boolean running = true;
+
+        NotificationReader() {
+            Map<String, Object> props = KafkaTestUtils.consumerProps(cluster.getBrokersAsString(), "pipeline-bench-reader", "false");
+            props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+            consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer())
+                    .createConsumer();
+            List<TopicPartition> partitions = consumer.partitionsFor(KafkaTopics.TOPIC_NOTIFICATION).stream()
+                    .map(p -> new TopicPartition(p.topic(), p.partition())).toList();
+            consumer.assign(partitions);
+            consumer.seekToEnd(partitions);
+            partitions.forEach(consumer::position);
+            thread = new Thread(this::read, "notification-reader");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        private void read() {
+            while (running) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(50))) {
+                    long origin = TraceHeaders.readLong(record.headers(), TraceHeaders.ORIGIN_TIMESTAMP, -1);
+                    if (origin > 0) {
+                        synchronized (latency) {
+                            latency.recordValue(Math.min(Math.max(0, System.currentTimeMillis() - origin),
+                                    latency.getHighestTrackableValue()));
+                        }
+                    }
+                    count.incrementAndGet();
+                }
+            }
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        void resetLatency() {
+            synchronized (latency) {
+                latency.reset();
+            }
+        }
+
+        Histogram latency() {
+            synchronized (latency) {
+                return latency.copy();
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            running = false;
+            if (thread.isAlive()) {
+                thread.join(5000);
+            }
+            consumer.close();
+        }
+    }
+}
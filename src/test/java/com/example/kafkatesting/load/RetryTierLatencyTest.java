@@ -0,0 +1,103 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures topic-two latency for healthy records while a steady stream of
+ * poison records flows, and checks that failures leave the main topic for the
+ * delayed retry tiers instead of being republished onto it. Healthy waves
+ * must not wait behind the poison records: p90 stays under
+ * {@link #WAVE_P90_LIMIT}, far below the 1s tier delay a blocked partition
+ * would add.
+ */
+@Tag("load")
+@SpringBootTest(properties = "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}")
+@EmbeddedKafka(count = 3, partitions = 3)
+class RetryTierLatencyTest {
+
+    private static final int WAVES = 20;
+    private static final int HEALTHY_PER_WAVE = 200;
+    private static final int POISON_PER_WAVE = 50;
+    private static final Duration WAVE_P90_LIMIT = Duration.ofMillis(1000);
+
+    @Autowired
+    ProducerTwoService producerTwo;
+
+    @Autowired
+    ConsumerTwo consumerTwo;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    ConsumerFactory<String, String> consumerFactory;
+
+    @Test
+    void mainTopicLatencyWithSteadyFailures() throws Exception {
+        ContainerTestUtils.waitForAssignment(registry.getListenerContainer(ConsumerTwo.RECORD_LISTENER_ID), 3);
+        ContainerTestUtils.waitForAssignment(registry.getListenerContainer("consumer-two-retry-1s"), 3);
+
+        long[] waveMillis = new long[WAVES];
+        for (int w = 0; w < WAVES; w++) {
+            int before = consumerTwo.getProcessedCount();
+            long start = System.nanoTime();
+
+            List<CompletableFuture<?>> sends = new ArrayList<>();
+            for (int i = 0; i < POISON_PER_WAVE; i++) {
+                sends.add(producerTwo.sendAsync("poison-" + i, "please-fail-" + w + "-" + i));
+            }
+            for (int i = 0; i < HEALTHY_PER_WAVE; i++) {
+                sends.add(producerTwo.sendAsync("ok-" + i, "ok-" + w + "-" + i));
+            }
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            Awaitility.await().atMost(Duration.ofSeconds(30)).pollInterval(Duration.ofMillis(5))
+                    .until(() -> consumerTwo.getProcessedCount() - before >= HEALTHY_PER_WAVE);
+            waveMillis[w] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+
+        long[] sorted = waveMillis.clone();
+        Arrays.sort(sorted);
+        long p90 = sorted[(int) (WAVES * 0.9)];
+        Assertions.assertTrue(p90 < WAVE_P90_LIMIT.toMillis(), String.format(
+                "topic-two wave latency with %d failures/wave: p50=%dms p90=%dms max=%dms",
+                POISON_PER_WAVE, sorted[WAVES / 2], p90, sorted[WAVES - 1]));
+
+        // failures are routed to the 1s tier, then (after its delay) to the 10s tier -
+        // never back onto topic-two
+        long poison = (long) WAVES * POISON_PER_WAVE;
+        Awaitility.await().atMost(Duration.ofSeconds(30)).pollInterval(Duration.ofMillis(200))
+                .until(() -> endOffsets(KafkaTopics.TOPIC_TWO_RETRY_10S) >= poison);
+        Assertions.assertEquals(poison + (long) WAVES * HEALTHY_PER_WAVE, endOffsets(KafkaTopics.TOPIC_TWO));
+        Assertions.assertEquals(poison, endOffsets(KafkaTopics.TOPIC_TWO_RETRY_1S));
+    }
+
+    private long endOffsets(String topic) {
+        try (Consumer<String, String> probe = consumerFactory.createConsumer("offset-probe", null)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            probe.partitionsFor(topic).forEach(p -> partitions.add(new TopicPartition(topic, p.partition())));
+            return probe.endOffsets(partitions).values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+}
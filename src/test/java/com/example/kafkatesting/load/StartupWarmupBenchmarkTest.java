@@ -0,0 +1,108 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.consumers.ConsumerOne;
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Start-to-ready time and the latency of the first sends right after it, with
+ * and without the startup warm-up, each on a fresh 3-broker cluster (as in a
+ * first deploy; the topics don't exist yet). After ready, one record is sent
+ * to topic-one and one to topic-two at once and timed to its ack and to its
+ * consumer. Runs alternate so JIT and OS caches favour neither setting.
+ * Report: build/reports/load/startup-warmup.json.
+ */
+@Tag("load")
+class StartupWarmupBenchmarkTest {
+
+    private static final int ROUNDS = 2;
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+
+    public record StartReport(String setting, long readyMillis, long topicOneAckMillis, long topicTwoAckMillis,
+                              long topicOneConsumedMillis, long topicTwoConsumedMillis) {
+    }
+
+    @Test
+    void coldVersusWarmStart() throws Exception {
+        // class loading and JIT, not reported
+        start(true);
+        List<StartReport> reports = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            reports.add(start(false));
+            reports.add(start(true));
+        }
+
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("startup-warmup.json").toFile(), reports);
+        for (StartReport r : reports) {
+            System.out.printf("startup %-8s ready=%dms first ack topic-one=%dms topic-two=%dms"
+                            + " first consumed topic-one=%dms topic-two=%dms%n",
+                    r.setting(), r.readyMillis(), r.topicOneAckMillis(), r.topicTwoAckMillis(),
+                    r.topicOneConsumedMillis(), r.topicTwoConsumedMillis());
+        }
+    }
+
+    private StartReport start(boolean warmup) throws Exception {
+        EmbeddedKafkaKraftBroker cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+        try {
+            long start = System.nanoTime();
+            try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                    .run("--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                            "--spring.main.web-application-type=none",
+                            "--app.tracing.e2e.report-interval=0s",
+                            "--app.kafka.dlq.store.dir=",
+                            "--app.kafka.warmup.enabled=" + warmup)) {
+                long ready = System.nanoTime();
+                ConsumerOne consumerOne = ctx.getBean(ConsumerOne.class);
+                ConsumerTwo consumerTwo = ctx.getBean(ConsumerTwo.class);
+
+                long sent = System.nanoTime();
+                CompletableFuture<Long> one = ctx.getBean(ProducerOneService.class).send("first", "first-one")
+                        .thenApply(r -> System.nanoTime());
+                CompletableFuture<Long> two = ctx.getBean(ProducerTwoService.class).sendAsync("first", "first-two")
+                        .thenApply(r -> System.nanoTime());
+                long oneConsumed = awaitFirst(consumerOne::getCounter);
+                long twoConsumed = awaitFirst(consumerTwo::getProcessedCount);
+
+                return new StartReport(warmup ? "warm-up" : "cold", millis(ready - start),
+                        millis(one.get(60, TimeUnit.SECONDS) - sent), millis(two.get(60, TimeUnit.SECONDS) - sent),
+                        millis(oneConsumed - sent), millis(twoConsumed - sent));
+            }
+        } finally {
+            cluster.destroy();
+        }
+    }
+
+    private static long awaitFirst(IntSupplier count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (count.getAsInt() == 0) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "first record not consumed within 60s");
+            Thread.sleep(1);
+        }
+        return System.nanoTime();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
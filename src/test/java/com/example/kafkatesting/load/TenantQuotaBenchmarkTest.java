@@ -0,0 +1,186 @@
+package com.example.kafkatesting.load;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.producers.ProducerOneService;
+import com.example.kafkatesting.quota.QuotaExceededException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One noisy tenant against three steady ones on a shared producer with a
+ * small buffer.memory, with and without app.kafka.quota.
+ *
+ * The noisy tenant sends {@link #NOISY_SIZE} records as fast as the service
+ * takes them; each steady tenant paces {@link #STEADY_RATE} records/s of
+ * {@link #STEADY_SIZE}. Unthrottled, the noisy tenant keeps the buffer full
+ * and every send() waits for space behind it. With the quota it is held to
+ * {@link #NOISY_QUOTA} bytes/s in its own queue (and backs off on rejection
+ * once that is full). Latency is a steady tenant's send call to its ack.
+ * Report: build/reports/load/tenant-quota.json.
+ */
+@Tag("load")
+class TenantQuotaBenchmarkTest {
+
+    private static final int STEADY_TENANTS = 3;
+    private static final int STEADY_RATE = 50;
+    private static final int STEADY_SIZE = 512;
+    private static final int NOISY_SIZE = 16 * 1024;
+    private static final int NOISY_QUOTA = 1 << 20;
+    private static final Duration DURATION = Duration.ofSeconds(15);
+    private static final Path REPORT_DIR = Path.of("build", "reports", "load");
+
+    public record TenantReport(String setting, long steadySent, long steadyP50Millis, long steadyP99Millis,
+                               long steadyMaxMillis, long noisyAckedPerSecond, long noisyRejected) {
+    }
+
+    private static EmbeddedKafkaKraftBroker cluster;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void noisyTenantWithAndWithoutQuota() throws Exception {
+        List<TenantReport> reports = new ArrayList<>();
+        reports.add(run(false));
+        reports.add(run(true));
+
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("tenant-quota.json").toFile(), reports);
+        Assertions.assertTrue(reports.get(1).steadyP99Millis() <= reports.get(0).steadyP99Millis(),
+                "steady tenants' p99 should not get worse under the quota");
+    }
+
+    private TenantReport run(boolean quota) throws Exception {
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                .run("--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                        "--spring.main.web-application-type=none",
+                        "--app.tracing.e2e.report-interval=0s",
+                        "--app.kafka.dlq.store.dir=",
+                        "--spring.kafka.producer.buffer-memory=1048576",
+                        "--app.kafka.quota.enabled=" + quota,
+                        "--app.kafka.quota.tenant-rates=noisy=" + NOISY_QUOTA,
+                        "--app.kafka.quota.max-queued=200")) {
+            ProducerOneService producerOne = ctx.getBean(ProducerOneService.class);
+            long end = System.nanoTime() + DURATION.toNanos();
+
+            LongAdder noisyAcked = new LongAdder();
+            LongAdder noisyRejected = new LongAdder();
+            Thread noisy = new Thread(() -> flood(producerOne, end, noisyAcked, noisyRejected), "noisy-tenant");
+            noisy.start();
+
+            Histogram latency = new Histogram(TimeUnit.MINUTES.toMillis(10), 3);
+            LongAdder steadySent = new LongAdder();
+            List<Thread> steady = new ArrayList<>();
+            for (int t = 0; t < STEADY_TENANTS; t++) {
+                String tenant = "steady-" + t;
+                Thread thread = new Thread(() -> pace(producerOne, tenant, end, latency, steadySent), tenant);
+                thread.start();
+                steady.add(thread);
+            }
+            for (Thread t : steady) {
+                t.join();
+            }
+            noisy.join();
+
+            TenantReport report;
+            synchronized (latency) {
+                report = new TenantReport(quota ? "quota" : "unthrottled", steadySent.sum(),
+                        latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getMaxValue(),
+                        noisyAcked.sum() / DURATION.toSeconds(), noisyRejected.sum());
+            }
+            System.out.printf("tenant quota %-11s steady sent=%d p50=%dms p99=%dms max=%dms noisy acked=%d/s rejected=%d%n",
+                    report.setting(), report.steadySent(), report.steadyP50Millis(), report.steadyP99Millis(),
+                    report.steadyMaxMillis(), report.noisyAckedPerSecond(), report.noisyRejected());
+            return report;
+        }
+    }
+
+    private static void flood(ProducerOneService producerOne, long end, LongAdder acked, LongAdder rejected) {
+        // random text so lz4 doesn't shrink the flood away
+        String payload = text(new SplittableRandom(3), NOISY_SIZE);
+        // bounds this thread's own backlog once sends are queued instead of blocking
+        Semaphore inFlight = new Semaphore(1000);
+        for (long i = 0; System.nanoTime() < end; i++) {
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<?> sent = producerOne.send("noisy", "noisy:" + i, payload)
+                    .whenComplete((r, ex) -> {
+                        inFlight.release();
+                        if (ex == null) {
+                            acked.increment();
+                        }
+                    });
+            if (sent.isCompletedExceptionally()) {
+                try {
+                    sent.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof QuotaExceededException q) {
+                        rejected.increment();
+                        LockSupport.parkNanos(q.getRetryAfter().toNanos());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void pace(ProducerOneService producerOne, String tenant, long end, Histogram latency,
+                             LongAdder sent) {
+        String payload = text(new SplittableRandom(tenant.hashCode()), STEADY_SIZE);
+        long interval = TimeUnit.SECONDS.toNanos(1) / STEADY_RATE;
+        List<CompletableFuture<?>> acks = new ArrayList<>();
+        long next = System.nanoTime();
+        for (long i = 0; next < end; i++, next += interval) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long start = System.nanoTime();
+            acks.add(producerOne.send(tenant, tenant + ":" + i, payload).thenRun(() -> {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                synchronized (latency) {
+                    latency.recordValue(Math.min(millis, latency.getHighestTrackableValue()));
+                }
+            }));
+            sent.increment();
+        }
+        CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).orTimeout(2, TimeUnit.MINUTES).join();
+    }
+
+    private static String text(SplittableRandom random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.kafkatesting.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+class EventLoggerTest {
+
+    @Test
+    void samplesSuccessesAndKeepsEveryFailure() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("app.logging.events.sample-rate.consumer.processed", "100")
+                .withProperty("app.logging.events.sample-rate.consumer.received", "0");
+        EventLogger events = new EventLogger(env);
+
+        int processed = 0, failed = 0, received = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (events.isEnabled(EventType.PROCESSED)) processed++;
+            if (events.isEnabled(EventType.PROCESS_FAILED)) failed++;
+            if (events.isEnabled(EventType.RECEIVED)) received++;
+        }
+        Assertions.assertTrue(processed > 700 && processed < 1300, "about 1 in 100, got " + processed);
+        Assertions.assertEquals(100_000, failed);
+        Assertions.assertEquals(0, received);
+    }
+}
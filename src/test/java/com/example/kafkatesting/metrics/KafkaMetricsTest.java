@@ -0,0 +1,62 @@
+package com.example.kafkatesting.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+class KafkaMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final KafkaMetrics metrics = new KafkaMetrics(registry);
+
+    @Test
+    void producerListenerRecordsLatencyAndFailuresPerTopic() {
+        MetricsProducerListener listener = new MetricsProducerListener(metrics);
+        long sentAt = System.currentTimeMillis() - 25;
+        RecordMetadata meta = new RecordMetadata(new TopicPartition("topic-one", 0), 0, 0, sentAt, 3, 5);
+
+        listener.onSuccess(new ProducerRecord<>("topic-one", "k", "v"), meta);
+        listener.onError(new ProducerRecord<>("topic-two", "k", "v"), null, new IllegalStateException("x"));
+
+        var timer = registry.get("app.kafka.send.latency").tag("topic", "topic-one").timer();
+        Assertions.assertEquals(1, timer.count());
+        Assertions.assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 25);
+        Assertions.assertEquals(1, registry.get("app.kafka.send.failed").tag("topic", "topic-two").counter().count());
+
+        // the first-send gauge keeps the first ack only
+        var first = registry.get("app.kafka.send.first.latency").tag("topic", "topic-one").gauge();
+        double firstMillis = first.value();
+        Assertions.assertTrue(firstMillis >= 25);
+        listener.onSuccess(new ProducerRecord<>("topic-one", "k", "v"),
+                new RecordMetadata(new TopicPartition("topic-one", 0), 1, 0, System.currentTimeMillis(), 3, 5));
+        Assertions.assertEquals(2, timer.count());
+        Assertions.assertEquals(firstMillis, first.value());
+    }
+
+    @Test
+    void retriesAreCountedByAttempt() {
+        metrics.retryScheduled(1);
+        metrics.retryScheduled(1);
+        metrics.retryScheduled(3);
+        metrics.deadLettered();
+
+        Assertions.assertEquals(2, registry.get("app.kafka.retry.scheduled").tag("attempt", "1").counter().count());
+        Assertions.assertEquals(0, registry.get("app.kafka.retry.scheduled").tag("attempt", "2").counter().count());
+        Assertions.assertEquals(1, registry.get("app.kafka.retry.scheduled").tag("attempt", "3").counter().count());
+        Assertions.assertEquals(1, registry.get("app.kafka.dlq.sent").counter().count());
+    }
+
+    @Test
+    void recordCounterReadsTheStripedAdder() {
+        LongAdder processed = new LongAdder();
+        metrics.bindRecordCounter("consumer-two", processed);
+        processed.add(42);
+        Assertions.assertEquals(42, registry.get("app.kafka.records.processed").tag("listener", "consumer-two").functionCounter().count());
+    }
+}
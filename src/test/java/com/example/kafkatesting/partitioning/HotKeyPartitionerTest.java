@@ -0,0 +1,112 @@
+package com.example.kafkatesting.partitioning;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class HotKeyPartitionerTest {
+
+    private static final Node NODE = new Node(0, "localhost", 9092);
+    private static final Cluster CLUSTER = new Cluster("c", List.of(NODE), List.of(
+            new PartitionInfo("t", 0, NODE, new Node[] {NODE}, new Node[] {NODE}),
+            new PartitionInfo("t", 1, NODE, new Node[] {NODE}, new Node[] {NODE}),
+            new PartitionInfo("t", 2, NODE, new Node[] {NODE}, new Node[] {NODE})), Set.of(), Set.of());
+
+    @Test
+    void keepsDefaultPlacementUnlessTheTopicSpreadsHotKeys() {
+        KeySkewMonitor monitor = monitor("");
+        HotKeyPartitioner partitioner = partitioner(monitor);
+        int[] counts = sendSkewed(partitioner, 3000);
+
+        int hotHome = Utils.toPositive(Utils.murmur2(bytes("hot"))) % 3;
+        for (int i = 0; i < 50; i++) {
+            byte[] key = bytes("k" + i);
+            Assertions.assertEquals(Utils.toPositive(Utils.murmur2(key)) % 3, partitioner.partition("t", null, key, null, key, CLUSTER));
+        }
+        // 60% hot plus its share of the rest
+        Assertions.assertTrue(counts[hotHome] > 1800, Arrays.toString(counts));
+        Assertions.assertEquals(0, monitor.getSpreadCount());
+        Assertions.assertTrue(hotKeys(monitor).contains("hot"), monitor.status().toString());
+        Assertions.assertFalse(hotKeys(monitor).contains("k1"), monitor.status().toString());
+    }
+
+    @Test
+    void spreadsHotKeysOverTheLeastLoadedPartitions() {
+        KeySkewMonitor monitor = monitor("t");
+        int[] counts = sendSkewed(partitioner(monitor), 3000);
+
+        // the first hot-min-records of the hot key still go to its hash partition
+        for (int c : counts) {
+            Assertions.assertTrue(c > 850 && c < 1150, Arrays.toString(counts));
+        }
+        Assertions.assertTrue(monitor.getSpreadCount() > 1500);
+    }
+
+    @Test
+    void nullKeysStickToAPartitionForAboutOneBatch() {
+        HotKeyPartitioner partitioner = partitioner(monitor(""));
+        byte[] value = new byte[1000];
+        int first = partitioner.partition("t", null, null, null, value, CLUSTER);
+        for (int i = 1; i < 16; i++) {
+            Assertions.assertEquals(first, partitioner.partition("t", null, null, null, value, CLUSTER));
+        }
+    }
+
+    @Test
+    void countMinSketchNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(64);
+        for (long key = 0; key < 1000; key++) {
+            for (int i = 0; i <= key % 7; i++) {
+                sketch.add(key * 0x9E3779B97F4A7C15L);
+            }
+        }
+        for (long key = 0; key < 1000; key++) {
+            Assertions.assertTrue(sketch.estimate(key * 0x9E3779B97F4A7C15L) >= key % 7 + 1);
+        }
+        sketch.clear();
+        Assertions.assertEquals(0, sketch.estimate(42));
+    }
+
+    // 60% "hot", the rest over 100 other keys
+    private static int[] sendSkewed(HotKeyPartitioner partitioner, int n) {
+        int[] counts = new int[3];
+        for (int i = 0; i < n; i++) {
+            byte[] key = bytes(i % 5 < 3 ? "hot" : "k" + (i % 100));
+            counts[partitioner.partition("t", null, key, null, key, CLUSTER)]++;
+        }
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> hotKeys(KeySkewMonitor monitor) {
+        List<Map<String, Object>> hot = (List<Map<String, Object>>) monitor.status().get("t").get("hotKeys");
+        return hot.stream().map(k -> (String) k.get("key")).toList();
+    }
+
+    private static KeySkewMonitor monitor(String spreadTopics) {
+        return new KeySkewMonitor(new KafkaMetrics(new SimpleMeterRegistry()), Duration.ofHours(1), 0.1, 100,
+                spreadTopics.isEmpty() ? new String[0] : new String[] {spreadTopics});
+    }
+
+    private static HotKeyPartitioner partitioner(KeySkewMonitor monitor) {
+        HotKeyPartitioner partitioner = new HotKeyPartitioner();
+        partitioner.configure(Map.of(KeySkewMonitor.CONFIG, monitor));
+        return partitioner;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.kafkatesting.pipeline;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.claimcheck.FileBlobStore;
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.tracing.TraceHeaders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+class NotificationTransformerTest {
+
+    @Test
+    void claimCheckedMessageIsResolvedAndItsHeadersDropped(@TempDir Path dir) throws Exception {
+        ClaimCheck claimCheck = new ClaimCheck(new FileBlobStore(dir), new KafkaMetrics(new SimpleMeterRegistry()), 1024, 1 << 20);
+        String message = "urgent: " + "x".repeat(2_000);
+        ProducerRecord<String, String> sent = claimCheck.record(KafkaTopics.TOPIC_ONE, "k", message);
+        sent.headers().add(TraceHeaders.ORIGIN_TIMESTAMP, TraceHeaders.encode(42L));
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(sent.topic(), 1, 7L, 0L, TimestampType.CREATE_TIME,
+                0, 0, sent.key(), sent.value(), new RecordHeaders(sent.headers().toArray()), Optional.empty());
+
+        ProducerRecord<String, String> out = new NotificationTransformer(claimCheck).apply(record);
+
+        Notification notification = new ObjectMapper().readValue(out.value(), Notification.class);
+        Assertions.assertEquals(message, notification.message());
+        Assertions.assertEquals("high", notification.priority());
+        Assertions.assertEquals(42L, notification.originTimestamp());
+        Assertions.assertNull(out.headers().lastHeader(ClaimCheck.HEADER));
+        Assertions.assertNull(out.headers().lastHeader(ClaimCheck.LENGTH_HEADER));
+        Assertions.assertNotNull(out.headers().lastHeader(TraceHeaders.ORIGIN_TIMESTAMP));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.kafkatesting.processing;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class CommitCoalescerTest {
+
+    private final KafkaMetrics metrics = new KafkaMetrics(new SimpleMeterRegistry());
+    private final ConsumerSeekCallback seeks = mock(ConsumerSeekCallback.class);
+    private CommitCoalescer commits;
+
+    @AfterEach
+    void tearDown() {
+        commits.destroy();
+    }
+
+    @Test
+    void acksHighestContiguousRecordOncePerMaxRecords() {
+        commits = new CommitCoalescer(metrics, 3, Duration.ofHours(1));
+        List<Acknowledgment> acks = new ArrayList<>();
+        List<CommitCoalescer.Pending> pending = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Acknowledgment ack = mock(Acknowledgment.class);
+            acks.add(ack);
+            pending.add(commits.register(record(0, i), ack, seeks));
+        }
+        pending.forEach(commits::complete);
+
+        // 7 completions: acked at the 3rd and the 6th, the 7th waits for the tick
+        verify(acks.get(2)).acknowledge();
+        verify(acks.get(5)).acknowledge();
+        verifyNoInteractions(acks.get(0), acks.get(1), acks.get(3), acks.get(4), acks.get(6));
+        Assertions.assertEquals(2, commits.getCommitCount());
+
+        commits.flushAll();
+        verify(acks.get(6)).acknowledge();
+        Assertions.assertEquals(0, commits.getPendingCount());
+    }
+
+    @Test
+    void tickCommitsWhatIsBelowTheThreshold() {
+        commits = new CommitCoalescer(metrics, 1000, Duration.ofMillis(20));
+        Acknowledgment ack = mock(Acknowledgment.class);
+        commits.complete(commits.register(record(0, 0), ack, seeks));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(ack).acknowledge());
+    }
+
+    @Test
+    void recordWithSendInFlightHoldsBackLaterOffsets() {
+        commits = new CommitCoalescer(metrics, 1, Duration.ofHours(1));
+        Acknowledgment republished = mock(Acknowledgment.class);
+        Acknowledgment next = mock(Acknowledgment.class);
+        CommitCoalescer.Pending sending = commits.register(record(0, 0), republished, seeks);
+        commits.complete(commits.register(record(0, 1), next, seeks));
+
+        // offset 1 is done, but 0 is still being sent to a retry tier
+        verifyNoInteractions(republished, next);
+        commits.complete(sending);
+        verify(next).acknowledge();
+        verifyNoInteractions(republished);
+    }
+
+    @Test
+    void failedSendIsNeverCommittedPastAndIsSoughtBackTo() {
+        commits = new CommitCoalescer(metrics, 1, Duration.ofHours(1));
+        Acknowledgment before = mock(Acknowledgment.class);
+        Acknowledgment failed = mock(Acknowledgment.class);
+        Acknowledgment after = mock(Acknowledgment.class);
+        CommitCoalescer.Pending first = commits.register(record(0, 0), before, seeks);
+        CommitCoalescer.Pending second = commits.register(record(0, 1), failed, seeks);
+        CommitCoalescer.Pending third = commits.register(record(0, 2), after, seeks);
+
+        commits.complete(first);
+        commits.fail(second, new IllegalStateException("broker down"));
+        commits.complete(third);
+        commits.flushAll();
+        verify(before).acknowledge();
+        verify(seeks).seek("t", 0, 1L);
+        verifyNoInteractions(failed, after);
+        Assertions.assertEquals(1, commits.getFailedCount());
+        Assertions.assertEquals(0, commits.getPendingCount());
+    }
+
+    @Test
+    void recordsAfterAFailedSendKeepCompletingWithoutPilingUp() {
+        commits = new CommitCoalescer(metrics, 1, Duration.ofHours(1));
+        CommitCoalescer.Pending failing = commits.register(record(0, 0), mock(Acknowledgment.class), seeks);
+        CommitCoalescer.Pending inFlight = commits.register(record(0, 1), mock(Acknowledgment.class), seeks);
+        commits.fail(failing, new IllegalStateException("broker down"));
+        verify(seeks).seek("t", 0, 0L);
+
+        // the rest of the poll, delivered before the seek takes effect
+        Acknowledgment stale = mock(Acknowledgment.class);
+        commits.complete(inFlight);
+        for (int i = 2; i < 1000; i++) {
+            commits.complete(commits.register(record(0, i), stale, seeks));
+        }
+        commits.fail(commits.register(record(0, 1000), stale, seeks), new IllegalStateException("broker down"));
+        commits.flushAll();
+        verifyNoInteractions(stale);
+        Assertions.assertEquals(0, commits.getPendingCount());
+        verifyNoMoreInteractions(seeks);
+
+        // read again from the failed record, which is committed once its send succeeds
+        Acknowledgment again = mock(Acknowledgment.class);
+        Acknowledgment next = mock(Acknowledgment.class);
+        commits.complete(commits.register(record(0, 0), again, seeks));
+        commits.complete(commits.register(record(0, 1), next, seeks));
+        verify(again).acknowledge();
+        verify(next).acknowledge();
+        Assertions.assertEquals(0, commits.getPendingCount());
+    }
+
+    @Test
+    void revokeFlushesAndIgnoresLateCompletions() {
+        commits = new CommitCoalescer(metrics, 1000, Duration.ofHours(1));
+        Acknowledgment p0 = mock(Acknowledgment.class);
+        Acknowledgment p1 = mock(Acknowledgment.class);
+        Acknowledgment late = mock(Acknowledgment.class);
+        commits.complete(commits.register(record(0, 0), p0, seeks));
+        commits.complete(commits.register(record(1, 0), p1, seeks));
+        CommitCoalescer.Pending inFlight = commits.register(record(0, 1), late, seeks);
+
+        commits.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(new TopicPartition("t", 0)));
+        verify(p0).acknowledge();
+        verifyNoInteractions(p1);
+
+        commits.complete(inFlight);
+        commits.flushAll();
+        verifyNoInteractions(late);
+        verify(p1).acknowledge();
+    }
+
+    @Test
+    void lostPartitionsAreDroppedWithoutCommit() {
+        commits = new CommitCoalescer(metrics, 1000, Duration.ofHours(1));
+        Acknowledgment ack = mock(Acknowledgment.class);
+        commits.complete(commits.register(record(0, 0), ack, seeks));
+        commits.onPartitionsLost(mock(Consumer.class), List.of(new TopicPartition("t", 0)));
+        commits.flushAll();
+        verifyNoInteractions(ack);
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>("t", partition, offset, "k", "v");
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.kafkatesting.processing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.*;
+
+class HandOffBufferTest {
+
+    private final KeyedParallelProcessor processor = new KeyedParallelProcessor(4);
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    private final ConsumerSeekCallback seeks = mock(ConsumerSeekCallback.class);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.destroy();
+    }
+
+    @Test
+    void pausesAboveHighWaterAndResumesBelowLowWater() throws Exception {
+        when(registry.getListenerContainer("l")).thenReturn(container);
+        HandOffBuffer buffer = new HandOffBuffer("l", registry, processor, 10, Long.MAX_VALUE, 0.5);
+
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 12; i++) {
+            buffer.dispatch(record(0, i, "k" + i), mock(Acknowledgment.class), seeks, () -> await(release));
+        }
+        verify(container, times(1)).pause();
+        Assertions.assertTrue(buffer.isPaused());
+        Assertions.assertEquals(12, buffer.getDepth());
+
+        release.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 0);
+        verify(container, times(1)).resume();
+        Assertions.assertFalse(buffer.isPaused());
+        Assertions.assertEquals(1, buffer.getPauseCount());
+    }
+
+    @Test
+    void drainingWhileThePauseIsInProgressStillResumes() throws Exception {
+        when(registry.getListenerContainer("l")).thenReturn(container);
+        HandOffBuffer buffer = new HandOffBuffer("l", registry, processor, 10, Long.MAX_VALUE, 0.5);
+        CountDownLatch pausing = new CountDownLatch(1);
+        CountDownLatch drained = new CountDownLatch(1);
+        doAnswer(inv -> {
+            pausing.countDown();
+            await(drained);
+            return null;
+        }).when(container).pause();
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch last = new CountDownLatch(1);
+        Thread poll = new Thread(() -> {
+            for (int i = 0; i < 11; i++) {
+                CountDownLatch done = i < 10 ? release : last;
+                buffer.dispatch(record(0, i, "k" + i), mock(Acknowledgment.class), seeks, () -> await(done));
+            }
+        });
+        poll.start();
+
+        // the 11th record pauses the container; the first ten finish before pause() returns
+        Assertions.assertTrue(pausing.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 1);
+        drained.countDown();
+        poll.join(5000);
+
+        // below the low-water mark with no other release to come
+        verify(container).resume();
+        Assertions.assertFalse(buffer.isPaused());
+        last.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 0);
+    }
+
+    @Test
+    void pausesOnBytesAndAcksOnlyContiguousOffsets() throws Exception {
+        when(registry.getListenerContainer("l")).thenReturn(container);
+        HandOffBuffer buffer = new HandOffBuffer("l", registry, processor, 1000, 25, 0.5);
+
+        CountDownLatch slow = new CountDownLatch(1);
+        CountDownLatch fast = new CountDownLatch(1);
+        Acknowledgment first = mock(Acknowledgment.class);
+        Acknowledgment second = mock(Acknowledgment.class);
+        Acknowledgment third = mock(Acknowledgment.class);
+        // nothing finishes before all three are in, so the bytes really pass the mark
+        buffer.dispatch(record(0, 0, "a"), first, seeks, () -> await(slow));
+        buffer.dispatch(record(0, 1, "b"), second, seeks, () -> await(fast));
+        buffer.dispatch(record(0, 2, "c"), third, seeks, () -> await(fast));
+        verify(container).pause(); // 3 x 10 bytes > 25
+
+        // offsets 1 and 2 finish first but must not be acked while 0 is still running
+        fast.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 1);
+        verifyNoInteractions(first, second, third);
+
+        slow.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 0);
+        verify(third).acknowledge();
+        verifyNoInteractions(first, second);
+        verify(container).resume();
+    }
+
+    @Test
+    void asyncWorkIsAckedWhenItsFutureCompletesAndRewindsThePartitionWhenItFails() throws Exception {
+        HandOffBuffer buffer = new HandOffBuffer("l", registry, processor, 1000, Long.MAX_VALUE, 0.5);
+
+        CompletableFuture<Void> firstSend = new CompletableFuture<>();
+        CompletableFuture<Void> secondSend = new CompletableFuture<>();
+        Acknowledgment first = mock(Acknowledgment.class);
+        Acknowledgment second = mock(Acknowledgment.class);
+        Acknowledgment third = mock(Acknowledgment.class);
+        buffer.dispatch(record(0, 0, "a"), first, seeks, () -> firstSend);
+        buffer.dispatch(record(0, 1, "b"), second, seeks, () -> secondSend);
+        buffer.dispatch(record(0, 2, "c"), third, seeks, () -> CompletableFuture.completedFuture(null));
+
+        // the work has returned, but its sends are still in flight
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 2);
+        verifyNoInteractions(first, second, third);
+
+        firstSend.complete(null);
+        verify(first).acknowledge();
+
+        // a failed send leaves the buffer unacked, and the partition is sought back to it
+        secondSend.completeExceptionally(new IllegalStateException("broker said no"));
+        Assertions.assertEquals(0, buffer.getDepth());
+        Assertions.assertEquals(1, buffer.getFailedCount());
+        verify(seeks).seek("t", 0, 1L);
+        verifyNoInteractions(second, third);
+
+        // records fetched before the seek took effect keep completing without piling up or being acked
+        Acknowledgment stale = mock(Acknowledgment.class);
+        for (int i = 3; i < 100; i++) {
+            buffer.dispatch(record(0, i, "d"), stale, seeks, () -> CompletableFuture.completedFuture(null));
+        }
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 0);
+        verifyNoInteractions(second, third, stale);
+
+        // read again from the failed record
+        Acknowledgment again = mock(Acknowledgment.class);
+        buffer.dispatch(record(0, 1, "b"), mock(Acknowledgment.class), seeks, () -> CompletableFuture.completedFuture(null));
+        buffer.dispatch(record(0, 2, "c"), again, seeks, () -> CompletableFuture.completedFuture(null));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(again).acknowledge());
+        verifyNoMoreInteractions(seeks);
+    }
+
+    @Test
+    void fanOutRunsLanesInParallelAndAcksWhenAllAreDone() throws Exception {
+        HandOffBuffer buffer = new HandOffBuffer("l", registry, processor, 1000, Long.MAX_VALUE, 0.5);
+
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        Acknowledgment ack = mock(Acknowledgment.class);
+        List<Supplier<CompletableFuture<?>>> works = List.of(
+                () -> { slowStarted.countDown(); await(slow); return CompletableFuture.completedFuture(null); },
+                () -> { fastDone.countDown(); return CompletableFuture.completedFuture(null); });
+        buffer.dispatch(record(0, 0, "k"), ack, seeks, works);
+
+        // same key, different lanes: the fast handler is not stuck behind the slow one
+        Assertions.assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, buffer.getDepth());
+        verifyNoInteractions(ack);
+
+        slow.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 0);
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void fanOutRecordIsReadAgainWhenOneLaneFails() {
+        HandOffBuffer buffer = new HandOffBuffer("l", registry, processor, 1000, Long.MAX_VALUE, 0.5);
+
+        Acknowledgment ack = mock(Acknowledgment.class);
+        List<Supplier<CompletableFuture<?>>> works = List.of(
+                () -> CompletableFuture.completedFuture(null),
+                () -> CompletableFuture.failedFuture(new IllegalStateException("dead letter not sent")));
+        buffer.dispatch(record(0, 0, "k"), ack, seeks, works);
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> buffer.getDepth() == 0);
+        Assertions.assertEquals(1, buffer.getFailedCount());
+        verify(seeks).seek("t", 0, 0L);
+        verifyNoInteractions(ack);
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset, String key) {
+        return new ConsumerRecord<>("t", partition, offset, 0L, TimestampType.CREATE_TIME, 1, 9,
+                key, "123456789", new RecordHeaders(), Optional.empty());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.kafkatesting.processing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class KeyedParallelProcessorTest {
+
+    private final KeyedParallelProcessor processor = new KeyedParallelProcessor(8);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.destroy();
+    }
+
+    @Test
+    void sameKeyKeepsOrderDifferentKeysRunConcurrently() throws Exception {
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String key = "k" + (i % 8);
+            int seq = i;
+            done.add(processor.submit(key, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(1);
+                seen.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(seq);
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        seen.forEach((key, order) -> {
+            List<Integer> sorted = new ArrayList<>(order);
+            Collections.sort(sorted);
+            Assertions.assertEquals(sorted, order, "out of order for " + key);
+        });
+        Assertions.assertEquals(400, seen.values().stream().mapToInt(List::size).sum());
+        Assertions.assertTrue(maxRunning.get() > 1, "different keys should run in parallel");
+        Assertions.assertTrue(maxRunning.get() <= 8, "at most one task per key at a time");
+    }
+
+    @Test
+    void failingTaskDoesNotBlockLaterTasksForTheKey() throws Exception {
+        AtomicInteger ran = new AtomicInteger();
+        processor.submit("k", () -> {
+            throw new IllegalStateException("boom");
+        });
+        processor.submit("k", ran::incrementAndGet).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, ran.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.kafkatesting.producers;
+
+import com.example.kafkatesting.claimcheck.ClaimCheck;
+import com.example.kafkatesting.claimcheck.FileBlobStore;
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import com.example.kafkatesting.quota.QuotaExceededException;
+import com.example.kafkatesting.quota.TenantFlowControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+class BulkSenderTest {
+
+    private final KafkaMetrics metrics = new KafkaMetrics(new SimpleMeterRegistry());
+    private ClaimCheck claimCheck = new ClaimCheck(null, metrics, 0, 0);
+    private TenantFlowControl flowControl;
+
+    @AfterEach
+    void stop() {
+        if (flowControl != null) {
+            flowControl.destroy();
+        }
+    }
+
+    private BulkSender sender(MockProducer<String, String> mock, int budget, boolean block) {
+        return sender(mock, budget, block, TenantFlowControl.Settings.DISABLED);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkSender sender(MockProducer<String, String> mock, int budget, boolean block,
+                              TenantFlowControl.Settings quota) {
+        MockProducer<String, String> producer = spy(mock);
+        doNothing().when(producer).close(); // behave like the factory's shared producer
+        ProducerFactory<String, String> factory = mock(ProducerFactory.class);
+        when(factory.createProducer()).thenReturn(producer);
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(factory);
+        flowControl = new TenantFlowControl(template, metrics, quota);
+        return new BulkSender(template, metrics, claimCheck, flowControl, budget, block);
+    }
+
+    private static List<KeyValue> records(int n) {
+        List<KeyValue> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            list.add(new KeyValue("k" + i, "value-" + i)); // 9 chars each
+        }
+        return list;
+    }
+
+    @Test
+    void batchCompletesOnceWithAllRecordsSent() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        BulkSendResult result = sender(producer, 1 << 20, true).sendBatch("t", records(1000)).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(result.isSuccess());
+        Assertions.assertEquals(1000, result.getSentCount());
+    }
+
+    @Test
+    void perRecordFailuresAreReportedInTheAggregate() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+        BulkSender sender = sender(producer, 1 << 20, true);
+        CompletableFuture<BulkSendResult> done = sender.sendBatch("t", records(3));
+        Assertions.assertFalse(done.isDone());
+        Assertions.assertEquals(27, sender.getInFlightBytes());
+
+        producer.completeNext();
+        producer.errorNext(new IllegalStateException("broker said no"));
+        producer.completeNext();
+
+        BulkSendResult result = done.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, result.getSentCount());
+        Assertions.assertEquals(1, result.getFailures().size());
+        Assertions.assertEquals(1, result.getFailures().get(0).index());
+        Assertions.assertEquals("k1", result.getFailures().get(0).key());
+        Assertions.assertEquals(0, sender.getInFlightBytes());
+    }
+
+    @Test
+    void rejectsAboveByteBudgetWhenNotBlocking() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+        CompletableFuture<BulkSendResult> done = sender(producer, 25, false).sendBatch("t", records(3));
+
+        producer.completeNext();
+        producer.completeNext();
+        BulkSendResult result = done.get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(2, result.getSentCount());
+        Assertions.assertEquals(2, result.getFailures().get(0).index());
+        Assertions.assertInstanceOf(RejectedExecutionException.class, result.getFailures().get(0).exception());
+    }
+
+    @Test
+    void streamsFromPublisher() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        BulkSender sender = sender(producer, 1 << 20, true);
+
+        CompletableFuture<BulkSendResult> done;
+        try (SubmissionPublisher<KeyValue> publisher = new SubmissionPublisher<>()) {
+            done = sender.send("t", publisher);
+            records(5000).forEach(publisher::submit);
+        }
+
+        BulkSendResult result = done.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(5000, result.getSentCount());
+        Assertions.assertEquals(5000, producer.history().size());
+    }
+
+    // a 1 kB burst per tenant
+    private static TenantFlowControl.Settings quota(TenantFlowControl.OverLimit overLimit, double rate) {
+        return new TenantFlowControl.Settings(true, overLimit, ":", rate, Map.of(),
+                Duration.ofMillis((long) (1000 / rate * 1000)), 10, 100, Duration.ZERO, 0.25);
+    }
+
+    private static List<KeyValue> tenantRecords(String tenant, int n) {
+        List<KeyValue> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String key = tenant + ":" + i;
+            list.add(new KeyValue(key, "x".repeat(100 - key.length())));
+        }
+        return list;
+    }
+
+    @Test
+    void batchOverItsTenantsQuotaIsRejectedPerRecord() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        // 100 B/s: one more record per second
+        BulkSender sender = sender(producer, 1 << 20, true, quota(TenantFlowControl.OverLimit.REJECT, 100));
+
+        BulkSendResult result = sender.sendBatch("t", tenantRecords("acme", 15)).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(10, result.getSentCount());
+        Assertions.assertEquals(5, result.getFailures().size());
+        Assertions.assertInstanceOf(QuotaExceededException.class, result.getFailures().get(0).exception());
+
+        // another tenant has its own bucket
+        Assertions.assertTrue(sender.sendBatch("t", tenantRecords("globex", 5)).get(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    void batchWaitsForItsTenantsQuotaWhenQueueing() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        BulkSender sender = sender(producer, 1 << 20, true, quota(TenantFlowControl.OverLimit.QUEUE, 10_000));
+
+        long start = System.nanoTime();
+        BulkSendResult result = sender.sendBatch("t", tenantRecords("acme", 30)).get(5, TimeUnit.SECONDS);
+        // 3000 B at 10 kB/s after a 1000 B burst
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+        Assertions.assertEquals(30, result.getSentCount());
+    }
+
+    @Test
+    void budgetCountsUtf8Bytes() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+        BulkSender sender = sender(producer, 1 << 20, true);
+        CompletableFuture<BulkSendResult> done = sender.sendBatch("t", List.of(new KeyValue("k", "€€€")));
+        Assertions.assertEquals(10, sender.getInFlightBytes());
+        producer.completeNext();
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void payloadOverTheClaimCheckThresholdIsSentAsItsReference(@TempDir Path dir) throws Exception {
+        claimCheck = new ClaimCheck(new FileBlobStore(dir), metrics, 1024, 1 << 20);
+        MockProducer<String, String> producer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+        BulkSender sender = sender(producer, 1 << 20, true);
+        String large = "x".repeat(1 << 20);
+
+        CompletableFuture<BulkSendResult> done = sender.sendBatch("t", List.of(
+                new KeyValue("big", large), new KeyValue("small", "inline")));
+
+        ProducerRecord<String, String> sent = producer.history().get(0);
+        Assertions.assertEquals("", sent.value());
+        Assertions.assertNotNull(sent.headers().lastHeader(ClaimCheck.HEADER));
+        String reference = new String(sent.headers().lastHeader(ClaimCheck.HEADER).value(), StandardCharsets.UTF_8);
+        Assertions.assertEquals(large, StandardCharsets.UTF_8.decode(new FileBlobStore(dir).get(reference)).toString());
+        Assertions.assertEquals("inline", producer.history().get(1).value());
+        Assertions.assertNull(producer.history().get(1).headers().lastHeader(ClaimCheck.HEADER));
+        // the budget holds the records as sent, not the megabyte payload
+        Assertions.assertEquals(TenantFlowControl.sizeOf(sent) + "small".length() + "inline".length(),
+                sender.getInFlightBytes());
+        Assertions.assertTrue(sender.getInFlightBytes() < 1024);
+
+        producer.completeNext();
+        producer.completeNext();
+        Assertions.assertTrue(done.get(5, TimeUnit.SECONDS).isSuccess());
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.kafkatesting.quota;
+
+import com.example.kafkatesting.metrics.KafkaMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+class TenantFlowControlTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MockProducer<String, String> producer =
+            spy(new MockProducer<>(true, new StringSerializer(), new StringSerializer()));
+    private TenantFlowControl flowControl;
+
+    @BeforeEach
+    void shareProducer() {
+        // behave like the factory's shared producer
+        doNothing().when(producer).close();
+        doNothing().when(producer).close(any());
+    }
+
+    @AfterEach
+    void stop() {
+        if (flowControl != null) {
+            flowControl.destroy();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private TenantFlowControl flowControl(TenantFlowControl.OverLimit overLimit, double rate, int maxQueued) {
+        ProducerFactory<String, String> factory = mock(ProducerFactory.class);
+        when(factory.createProducer()).thenReturn(producer);
+        flowControl = new TenantFlowControl(new KafkaTemplate<>(factory), new KafkaMetrics(registry),
+                new TenantFlowControl.Settings(true, overLimit, ":", rate, Map.of("vip", rate * 100),
+                        Duration.ofMillis(100), 2, maxQueued, Duration.ZERO, 0.25));
+        return flowControl;
+    }
+
+    private static ProducerRecord<String, String> record(String key, String value) {
+        return new ProducerRecord<>("t", key, value);
+    }
+
+    @Test
+    void bucketAdmitsItsBurstThenPacesAtTheRate() {
+        // 1000 B/s, 100 B burst
+        TokenBucket bucket = new TokenBucket(1000, 100);
+        long now = 0;
+        Assertions.assertEquals(0, bucket.tryAcquire(50, now));
+        Assertions.assertEquals(0, bucket.tryAcquire(50, now));
+        long wait = bucket.tryAcquire(10, now);
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), wait);
+        Assertions.assertEquals(0, bucket.tryAcquire(10, now + wait));
+
+        // larger than the burst: charged as a full burst once the bucket is full again
+        long later = TimeUnit.SECONDS.toNanos(10);
+        Assertions.assertEquals(0, bucket.tryAcquire(10_000, later));
+        Assertions.assertTrue(bucket.tryAcquire(1, later) > 0);
+    }
+
+    @Test
+    void tenantComesFromHeaderThenKeyPrefix() {
+        TenantFlowControl fc = flowControl(TenantFlowControl.OverLimit.QUEUE, 1000, 10);
+        Assertions.assertEquals("acme", fc.tenantOf(record("acme:order-1", "v")));
+        Assertions.assertEquals(TenantFlowControl.DEFAULT_TENANT, fc.tenantOf(record("order-1", "v")));
+        Assertions.assertEquals(TenantFlowControl.DEFAULT_TENANT, fc.tenantOf(record(null, "v")));
+        Assertions.assertEquals("globex", fc.tenantOf(TenantFlowControl.withTenant(record("acme:order-1", "v"), "globex")));
+    }
+
+    @Test
+    void overLimitSendsAreRejectedWithRetryAfter() throws Exception {
+        TenantFlowControl fc = flowControl(TenantFlowControl.OverLimit.REJECT, 1000, 10);
+        // burst is 100 B: the first 90 fit, the next 90 don't
+        fc.send(record("acme:1", "x".repeat(84))).get(5, TimeUnit.SECONDS);
+        CompletableFuture<SendResult<String, String>> rejected = fc.send(record("acme:2", "x".repeat(84)));
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, rejected::get);
+        QuotaExceededException quota = Assertions.assertInstanceOf(QuotaExceededException.class, e.getCause());
+        Assertions.assertEquals("acme", quota.getTenant());
+        Assertions.assertTrue(quota.getRetryAfter().toMillis() > 0);
+        // another tenant's bucket is untouched
+        fc.send(record("globex:1", "x".repeat(84))).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, registry.get("app.kafka.quota.records").tag("tenant", "acme").tag("result", "rejected").functionCounter().count());
+        Assertions.assertEquals(1, registry.get("app.kafka.quota.records").tag("tenant", "acme").tag("result", "admitted").functionCounter().count());
+    }
+
+    @Test
+    void queuedSendsKeepTheirOrderAndDoNotHoldUpOtherTenants() throws Exception {
+        // 10 kB/s, 1 kB burst, 100 B records: the noisy tenant queues after ten
+        TenantFlowControl fc = flowControl(TenantFlowControl.OverLimit.QUEUE, 10_000, 1000);
+        List<CompletableFuture<SendResult<String, String>>> noisy = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            noisy.add(fc.send(record("noisy:" + i, "x".repeat(100 - 8 - Integer.toString(i).length()))));
+        }
+        Assertions.assertTrue(fc.getQueued("noisy") > 0);
+
+        long start = System.nanoTime();
+        fc.send(record("vip:1", "x".repeat(100))).get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+        CompletableFuture.allOf(noisy.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        List<String> noisyKeys = producer.history().stream()
+                .map(ProducerRecord::key)
+                .filter(k -> k.startsWith("noisy:"))
+                .toList();
+        for (int i = 0; i < 30; i++) {
+            Assertions.assertEquals("noisy:" + i, noisyKeys.get(i));
+        }
+        // counted down just after the send is handed over, which may complete it first
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> fc.getQueued("noisy") == 0);
+    }
+
+    @Test
+    void recordsAreChargedTheirUtf8Bytes() throws Exception {
+        TenantFlowControl fc = flowControl(TenantFlowControl.OverLimit.REJECT, 1000, 10);
+        // 6 + 90 bytes from 36 chars: the 100 B burst takes one of them, not two
+        fc.send(record("acme:1", "€".repeat(30))).get(5, TimeUnit.SECONDS);
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> fc.send(record("acme:2", "€".repeat(30))).get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(QuotaExceededException.class, e.getCause());
+
+        Assertions.assertEquals(0, TenantFlowControl.utf8Length(null));
+        Assertions.assertEquals(3, TenantFlowControl.utf8Length("abc"));
+        Assertions.assertEquals(2 + 3 + 4, TenantFlowControl.utf8Length("é€\uD83D\uDE00"));
+    }
+
+    @Test
+    void fullQueueRejects() {
+        TenantFlowControl fc = flowControl(TenantFlowControl.OverLimit.QUEUE, 1, 2);
+        // 1 B/s: the first record empties the bucket, the next two queue, the fourth has no room
+        fc.send(record("acme:1", "x"));
+        fc.send(record("acme:2", "x"));
+        fc.send(record("acme:3", "x"));
+        CompletableFuture<SendResult<String, String>> rejected = fc.send(record("acme:4", "x"));
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, rejected::get);
+        Assertions.assertTrue(e.getCause().getMessage().contains("queue full"));
+    }
+
+    @Test
+    void tenantsBeyondTheLimitShareTheOtherBucket() throws Exception {
+        TenantFlowControl fc = flowControl(TenantFlowControl.OverLimit.REJECT, 1000, 10);
+        fc.send(record("a:1", "v")).get(5, TimeUnit.SECONDS);
+        fc.send(record("b:1", "v")).get(5, TimeUnit.SECONDS);
+        fc.send(record("c:1", "v")).get(5, TimeUnit.SECONDS);
+        fc.send(record("d:1", "v")).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(2, registry.get("app.kafka.quota.records").tag("result", "admitted")
+                .tag("tenant", TenantFlowControl.OTHER_TENANT).functionCounter().count());
+    }
+
+    @Test
+    void disabledPassesStraightThrough() throws Exception {
+        @SuppressWarnings("unchecked")
+        ProducerFactory<String, String> factory = mock(ProducerFactory.class);
+        when(factory.createProducer()).thenReturn(producer);
+        TenantFlowControl fc = new TenantFlowControl(new KafkaTemplate<>(factory), new KafkaMetrics(registry),
+                TenantFlowControl.Settings.DISABLED);
+        for (int i = 0; i < 100; i++) {
+            fc.send(record("acme:" + i, "x".repeat(1000))).get(5, TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(100, producer.history().size());
+        Assertions.assertTrue(registry.find("app.kafka.quota.records").meters().isEmpty());
+    }
+
+    @Test
+    void factorHalvesUnderPressureAndRecoversSlowly() {
+        Assertions.assertEquals(0.5, TenantFlowControl.nextFactor(1, 12, 1, 0.25));
+        Assertions.assertEquals(0.5, TenantFlowControl.nextFactor(1, 0, 0.1, 0.25));
+        Assertions.assertEquals(TenantFlowControl.MIN_FACTOR, TenantFlowControl.nextFactor(0.06, 5, 1, 0.25));
+        Assertions.assertEquals(0.6, TenantFlowControl.nextFactor(0.5, 0, 0.9, 0.25), 1e-9);
+        Assertions.assertEquals(1, TenantFlowControl.nextFactor(0.95, 0, 0.9, 0.25));
+    }
+
+    @Test
+    void tenantRatesParse() {
+        Assertions.assertEquals(Map.of("acme", 1048576.0, "globex", 512.0),
+                TenantFlowControl.parseRates(" acme=1048576, globex = 512 ,"));
+        Assertions.assertEquals(Map.of(), TenantFlowControl.parseRates(""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TenantFlowControl.parseRates("acme"));
+    }
+}
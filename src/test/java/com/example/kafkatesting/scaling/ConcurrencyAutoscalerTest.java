@@ -0,0 +1,64 @@
+package com.example.kafkatesting.scaling;
+
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.KeyValue;
+import com.example.kafkatesting.producers.ProducerTwoService;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst on topic-two scales ConsumerTwo's record listener out to one consumer
+ * per partition; once the backlog is gone it steps back down.
+ */
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "app.kafka.autoscale.enabled=true",
+        "app.kafka.autoscale.interval=500ms",
+        "app.kafka.autoscale.drain-target=100ms",
+        "app.kafka.autoscale.scale-up-ticks=1",
+        "app.kafka.autoscale.scale-down-ticks=2",
+        "app.kafka.autoscale.cooldown-ticks=0",
+        "app.kafka.autoscale.max-partitions=0"})
+@EmbeddedKafka(count = 3, partitions = 3)
+class ConcurrencyAutoscalerTest {
+
+    @Autowired
+    ProducerTwoService producerTwo;
+
+    @Autowired
+    ConsumerTwo consumerTwo;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Test
+    void scalesOutUnderBacklogAndBackWhenIdle() throws Exception {
+        ConcurrentMessageListenerContainer<?, ?> container =
+                (ConcurrentMessageListenerContainer<?, ?>) registry.getListenerContainer(ConsumerTwo.RECORD_LISTENER_ID);
+        ContainerTestUtils.waitForAssignment(container, 3);
+
+        List<KeyValue> burst = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            burst.add(new KeyValue("k" + (i % 300), "burst-" + i));
+        }
+        producerTwo.sendBatch(burst).get(60, TimeUnit.SECONDS);
+
+        Awaitility.await().atMost(Duration.ofSeconds(30)).pollInterval(Duration.ofMillis(100))
+                .until(() -> container.getConcurrency() == 3);
+        Awaitility.await().atMost(Duration.ofSeconds(60)).pollInterval(Duration.ofMillis(100))
+                .until(() -> consumerTwo.getProcessedCount() >= burst.size());
+        Awaitility.await().atMost(Duration.ofSeconds(30)).pollInterval(Duration.ofMillis(100))
+                .until(() -> container.getConcurrency() == 1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.kafkatesting.scaling;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class ScalingPolicyTest {
+
+    // 2 ticks to scale up, 3 to scale down, 1 tick cooldown, partitions after 2 growing ticks
+    private static ScalingPolicy policy() {
+        return new ScalingPolicy(new ScalingPolicy.Settings(1, 0.5, Duration.ofSeconds(10), 2, 3, 1, 2));
+    }
+
+    // 1ms per record; arrival rate in records/s over a 1s tick
+    private static ScalingPolicy.Sample sample(long arrivedPerSecond, long lag, int concurrency, int partitions) {
+        return new ScalingPolicy.Sample(1.0, lag, arrivedPerSecond, arrivedPerSecond,
+                arrivedPerSecond * 0.001, concurrency, partitions);
+    }
+
+    @Test
+    void scalesUpOnlyAfterConsecutiveTicksAndCapsAtPartitions() {
+        ScalingPolicy policy = policy();
+        // 2000 rec/s * 1ms / 0.5 = 4 consumers wanted, 3 partitions
+        Assertions.assertEquals(1, policy.decide(sample(2000, 0, 1, 3)).concurrency());
+        Assertions.assertEquals(3, policy.decide(sample(2000, 0, 1, 3)).concurrency());
+    }
+
+    @Test
+    void singleBurstTickDoesNotScale() {
+        ScalingPolicy policy = policy();
+        Assertions.assertEquals(1, policy.decide(sample(2000, 0, 1, 3)).concurrency());
+        Assertions.assertEquals(1, policy.decide(sample(100, 0, 1, 3)).concurrency());
+        Assertions.assertEquals(1, policy.decide(sample(2000, 0, 1, 3)).concurrency());
+    }
+
+    @Test
+    void backlogCountsTowardsWantedConcurrency() {
+        ScalingPolicy policy = policy();
+        // 100 rec/s alone wants 1; a 10k backlog over a 10s drain target adds 1000 rec/s -> 3
+        policy.decide(sample(100, 10_000, 1, 3));
+        Assertions.assertEquals(3, policy.decide(sample(100, 10_000, 1, 3)).concurrency());
+    }
+
+    @Test
+    void scalesDownOneStepAfterCooldownAndLongerStreak() {
+        ScalingPolicy policy = policy();
+        policy.decide(sample(2000, 0, 1, 3));
+        Assertions.assertEquals(3, policy.decide(sample(2000, 0, 1, 3)).concurrency());
+
+        Assertions.assertEquals(3, policy.decide(sample(10, 0, 3, 3)).concurrency()); // cooldown
+        Assertions.assertEquals(3, policy.decide(sample(10, 0, 3, 3)).concurrency());
+        Assertions.assertEquals(3, policy.decide(sample(10, 0, 3, 3)).concurrency());
+        Assertions.assertEquals(2, policy.decide(sample(10, 0, 3, 3)).concurrency());
+    }
+
+    @Test
+    void asksForPartitionsWhenLagGrowsAtFullConcurrency() {
+        ScalingPolicy policy = policy();
+        Assertions.assertFalse(policy.decide(sample(5000, 1_000, 3, 3)).growPartitions());
+        Assertions.assertFalse(policy.decide(sample(5000, 2_000, 3, 3)).growPartitions());
+        Assertions.assertTrue(policy.decide(sample(5000, 3_000, 3, 3)).growPartitions());
+        // lag shrinking resets the streak
+        Assertions.assertFalse(policy.decide(sample(5000, 2_500, 3, 3)).growPartitions());
+    }
+
+    @Test
+    void withoutProcessingTimeFallsBackToLagTrend() {
+        ScalingPolicy policy = policy();
+        ScalingPolicy.Sample idle = new ScalingPolicy.Sample(1.0, 100, 0, 0, 0, 1, 3);
+        ScalingPolicy.Sample growing = new ScalingPolicy.Sample(1.0, 500, 400, 0, 0, 1, 3);
+        Assertions.assertEquals(1, policy.decide(idle).concurrency());
+        Assertions.assertEquals(1, policy.decide(growing).concurrency());
+        Assertions.assertEquals(2, policy.decide(new ScalingPolicy.Sample(1.0, 900, 400, 0, 0, 1, 3)).concurrency());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.kafkatesting.startup;
+
+import com.example.kafkatesting.constants.KafkaTopics;
+import com.example.kafkatesting.consumers.ConsumerTwo;
+import com.example.kafkatesting.producers.ProducerOneService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.config.TopicConfig;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * By the time the context is up and ready, every topic exists as declared, the
+ * producer knows their partitions and the record listener has its partitions.
+ */
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "app.kafka.dlq.store.dir="})
+@EmbeddedKafka(count = 3, partitions = 3)
+class StartupWarmupTest {
+
+    @Autowired
+    ApplicationAvailability availability;
+
+    @Autowired
+    KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ProducerOneService producerOne;
+
+    @Test
+    void readyOnlyWithTopicsMetadataAndAssignmentsInPlace() throws Exception {
+        Assertions.assertEquals(ReadinessState.ACCEPTING_TRAFFIC, availability.getReadinessState());
+
+        try (Admin admin = Admin.create(kafkaAdmin.getConfigurationProperties())) {
+            Map<String, TopicDescription> topics = admin.describeTopics(KafkaTopics.ALL_TOPICS)
+                    .allTopicNames().get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(KafkaTopics.ALL_TOPICS.size(), topics.size());
+            topics.values().forEach(d -> Assertions.assertEquals(3, d.partitions().get(0).replicas().size(), d.name()));
+        }
+        Assertions.assertFalse(registry.getListenerContainer(ConsumerTwo.RECORD_LISTENER_ID).getAssignedPartitions().isEmpty());
+        for (String phase : List.of("topics", "metadata", "listeners")) {
+            Assertions.assertEquals(1, meterRegistry.get("app.kafka.startup.phase").tag("phase", phase).timer().count());
+        }
+
+        producerOne.send("warm", "first").get(10, TimeUnit.SECONDS);
+        // the producer listener records the send after the send future completes
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> meterRegistry.find("app.kafka.send.first.latency")
+                .tag("topic", KafkaTopics.TOPIC_ONE).gauge() != null);
+        double first = meterRegistry.get("app.kafka.send.first.latency").tag("topic", KafkaTopics.TOPIC_ONE).gauge().value();
+        Assertions.assertTrue(first >= 0, "first send latency " + first);
+    }
+
+    @Test
+    void reportsWhereATopicDiffersFromItsDeclaration() {
+        Node node = new Node(1, "localhost", 9092);
+        TopicDescription actual = new TopicDescription("t", false, List.of(
+                new TopicPartitionInfo(0, node, List.of(node), List.of(node)),
+                new TopicPartitionInfo(1, node, List.of(node), List.of(node))));
+        Config deleteCleanup = new Config(List.of(new ConfigEntry(TopicConfig.CLEANUP_POLICY_CONFIG, "delete")));
+
+        NewTopic matching = new NewTopic("t", 2, (short) 1);
+        Assertions.assertFalse(StartupWarmup.missingPartitions(matching, actual));
+        Assertions.assertEquals(List.of(), StartupWarmup.replicationMismatches(matching, actual));
+        Assertions.assertEquals(List.of(), StartupWarmup.mismatches(matching, deleteCleanup));
+        // more partitions than declared is fine
+        Assertions.assertFalse(StartupWarmup.missingPartitions(new NewTopic("t", 1, (short) 1), actual));
+
+        NewTopic compacted = new NewTopic("t", 3, (short) 3)
+                .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+        // fewer partitions are added, a different replication factor is only reported, a config fails
+        Assertions.assertTrue(StartupWarmup.missingPartitions(compacted, actual));
+        List<String> replication = StartupWarmup.replicationMismatches(compacted, actual);
+        Assertions.assertEquals(1, replication.size(), replication.toString());
+        Assertions.assertTrue(replication.get(0).contains("1 replicas, declared 3"));
+        List<String> problems = StartupWarmup.mismatches(compacted, deleteCleanup);
+        Assertions.assertEquals(1, problems.size(), problems.toString());
+        Assertions.assertTrue(problems.get(0).contains("cleanup.policy=delete, declared compact"));
+    }
+}
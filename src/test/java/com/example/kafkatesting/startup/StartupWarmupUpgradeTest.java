@@ -0,0 +1,58 @@
+package com.example.kafkatesting.startup;
+
+import com.example.kafkatesting.KafkaMultiTestingApplication;
+import com.example.kafkatesting.constants.KafkaTopics;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starting against a cluster where topic-dlq still has the layout of an older
+ * release (one partition, one replica): the start succeeds, the topic is grown
+ * to its declared partitions and its replication factor is left alone.
+ */
+class StartupWarmupUpgradeTest {
+
+    private static EmbeddedKafkaKraftBroker cluster;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster = new EmbeddedKafkaKraftBroker(3, 3);
+        cluster.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        cluster.destroy();
+    }
+
+    @Test
+    void existingTopicWithAnOlderLayoutIsGrownNotRejected() throws Exception {
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, cluster.getBrokersAsString()))) {
+            admin.createTopics(List.of(new NewTopic(KafkaTopics.TOPIC_DLQ, 1, (short) 1))).all().get(10, TimeUnit.SECONDS);
+
+            try (ConfigurableApplicationContext ignored = new SpringApplicationBuilder(KafkaMultiTestingApplication.class)
+                    .run("--spring.kafka.bootstrap-servers=" + cluster.getBrokersAsString(),
+                            "--spring.main.web-application-type=none",
+                            "--app.tracing.e2e.report-interval=0s",
+                            "--app.kafka.dlq.store.dir=")) {
+                TopicDescription dlq = admin.describeTopics(List.of(KafkaTopics.TOPIC_DLQ))
+                        .allTopicNames().get(10, TimeUnit.SECONDS).get(KafkaTopics.TOPIC_DLQ);
+                Assertions.assertEquals(3, dlq.partitions().size());
+                Assertions.assertEquals(1, dlq.partitions().get(0).replicas().size());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.kafkatesting.tracing;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+class EndToEndLatencyTest {
+
+    @Test
+    void interceptorStampsOriginOnceAndKeepsItOnRepublish() {
+        OriginHeadersInterceptor interceptor = new OriginHeadersInterceptor();
+        ProducerRecord<Object, Object> first = interceptor.onSend(new ProducerRecord<>("topic-two", "k", "v"));
+        long ts = TraceHeaders.readLong(first.headers(), TraceHeaders.ORIGIN_TIMESTAMP, -1);
+        long id = TraceHeaders.readLong(first.headers(), TraceHeaders.ORIGIN_ID, -1);
+        byte[] eventId = TraceHeaders.readEventId(first.headers());
+        Assertions.assertTrue(ts > 0);
+        Assertions.assertNotNull(eventId);
+
+        // a retry republish copies the headers: the origin must not be replaced
+        ProducerRecord<Object, Object> retry = interceptor.onSend(
+                new ProducerRecord<>("topic-two-retry-1s", null, "k", "v", first.headers()));
+        Assertions.assertEquals(ts, TraceHeaders.readLong(retry.headers(), TraceHeaders.ORIGIN_TIMESTAMP, -1));
+        Assertions.assertEquals(id, TraceHeaders.readLong(retry.headers(), TraceHeaders.ORIGIN_ID, -1));
+        Assertions.assertArrayEquals(eventId, TraceHeaders.readEventId(retry.headers()));
+        Assertions.assertEquals(3, retry.headers().toArray().length);
+
+        Assertions.assertNotEquals(id, TraceHeaders.nextOriginId());
+        // same producer prefix, next sequence
+        byte[] next = TraceHeaders.nextEventId();
+        Assertions.assertEquals(TraceHeaders.get(eventId, 0), TraceHeaders.get(next, 0));
+        Assertions.assertNotEquals(TraceHeaders.get(eventId, 8), TraceHeaders.get(next, 8));
+    }
+
+    @Test
+    void recordsPercentilesPerTopicAndRetryDepth() {
+        EndToEndLatency latency = new EndToEndLatency(Duration.ZERO);
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 100; i++) {
+            latency.record(record("topic-two", now - i), 0);
+        }
+        // latency is taken against the clock at record time: allow for a slow (cold) loop
+        long slack = System.currentTimeMillis() - now;
+        latency.record(record("topic-two-retry-60s", now - 71_000), 3);
+        latency.record(new ConsumerRecord<>("topic-two", 0, 0L, "k", "untraced"), 0);
+
+        Map<String, Object> main = latency.snapshot().get("topic-two").get(0);
+        Assertions.assertEquals(100L, main.get("count"));
+        Assertions.assertTrue((Long) main.get("p50") >= 50 && (Long) main.get("p50") <= 60 + slack, "p50=" + main.get("p50"));
+        Assertions.assertTrue((Long) main.get("p99") >= 99);
+
+        Map<String, Object> dlq = latency.snapshot().get("topic-two-retry-60s").get(3);
+        Assertions.assertEquals(1L, dlq.get("count"));
+        Assertions.assertTrue((Long) dlq.get("max") >= 71_000);
+    }
+
+    private static ConsumerRecord<String, String> record(String topic, long originMillis) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(TraceHeaders.ORIGIN_TIMESTAMP, TraceHeaders.encode(originMillis));
+        return new ConsumerRecord<>(topic, 0, 0L, 0L, TimestampType.CREATE_TIME, 1, 1, "k", "v", headers, Optional.empty());
+    }
+}